@@ -0,0 +1,64 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import generators.StochasticBlockModel;
+
+/**
+ * Input networks of the benchmarks: "zachary" is the karate club network shipped with the project, any number is the size of a
+ * network generated with {@link StochasticBlockModel}. Generated networks are written once per JVM to a temporary file and are
+ * the same for a given size in every run.
+ * @version 1.0.17102026
+ */
+public final class BenchmarkGraphs {
+
+	public static final String ZACHARY = "zachary";
+	private static final HashMap<String, String> files = new HashMap<>();
+
+	private BenchmarkGraphs() {
+	}
+
+	/**
+	 * @param graph "zachary" or a number of nodes
+	 * @return the path of the edge list
+	 * @throws IOException
+	 */
+	public static synchronized String path(String graph) throws IOException {
+		String path = files.get(graph);
+		if(path!=null)return path;
+		if(graph.equals(ZACHARY)) {
+			path = findZachary();
+		}else {
+			File file = File.createTempFile("core-expansion-"+graph+"-", ".dat");
+			file.deleteOnExit();
+			generate(Integer.parseInt(graph), file);
+			path = file.getPath();
+		}
+		files.put(graph, path);
+		return path;
+	}
+
+	/**
+	 * the file is given by the system property "zachary", or found in the working directory or its parent
+	 */
+	private static String findZachary() throws IOException {
+		String[] candidates = {System.getProperty("zachary"), "zachary.dat", "../zachary.dat"};
+		for(String candidate:candidates) {
+			if(candidate!=null && new File(candidate).isFile())return candidate;
+		}
+		throw new IOException("zachary.dat not found, run from the project folder or set -Dzachary=<path>");
+	}
+
+	/**
+	 * writes a stochastic block model of n nodes in blocks of 32 nodes, each node has about 8 links inside its block and 2 outside
+	 * @param n
+	 * @param file
+	 * @throws IOException
+	 */
+	private static void generate(int n, File file) throws IOException {
+		int blocks = Math.max(1, n/32);
+		new StochasticBlockModel(n, n, blocks, Math.min(1, 8.0/31), 2.0/n).generate(file.getPath(), null, 1);
+	}
+}
@@ -0,0 +1,35 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import networkanalysis.PartitionQuality;
+
+/**
+ * quality measures of the communities found by Core Expansion, NMI is computed against the cores
+ * @version 1.0.17102026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EvaluationBenchmark {
+
+	@Benchmark
+	public PartitionQuality evaluate(GraphState graph, ExpansionState state) {
+		return PartitionQuality.evaluate(graph.network.getCompactGraph(), state.communityLabels, graph.threads);
+	}
+
+	@Benchmark
+	public double nmi(GraphState graph, ExpansionState state) {
+		return PartitionQuality.nmi(state.communityLabels, state.cores);
+	}
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * core construction and the addition iterations of Core Expansion. Each benchmark starts from a copy of the labels the previous
+ * phase produced, the copy is part of the measured time and costs O(n).
+ * @version 1.0.17102026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpansionBenchmark {
+
+	@Benchmark
+	public int[] findCores(GraphState graph, ExpansionState state) {
+		return state.harness.cores(state.maximumNodes);
+	}
+
+	/**
+	 * the first iteration of the weighted phase, it checks every node outside the cores
+	 */
+	@Benchmark
+	public int[] firstSweep(GraphState graph, ExpansionState state) {
+		int[] labels = state.cores.clone();
+		return state.harness.sweep(labels, state.groupIds, state.unclassified, true);
+	}
+
+	/**
+	 * the remaining iterations of the weighted phase, each checks the neighbours of the nodes added by the previous one
+	 */
+	@Benchmark
+	public int[] frontierSweeps(GraphState graph, ExpansionState state) {
+		int[] labels = state.afterFirstSweep.clone();
+		state.harness.frontierSweeps(labels, state.groupIds, state.addedByFirstSweep, true);
+		return labels;
+	}
+
+	/**
+	 * the extra phase without weights that classifies the nodes of out-weight 0
+	 */
+	@Benchmark
+	public int[] unweightedPhase(GraphState graph, ExpansionState state) {
+		int[] labels = state.afterWeightedPhase.clone();
+		state.harness.phase(labels, state.groupIds, false);
+		return labels;
+	}
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import algorithms.CoreExpansionAlgorithm;
+import algorithms.ExpansionFrontier;
+import utils.CompactGraph;
+import utils.Graph;
+
+/**
+ * gives the benchmarks access to the phases of {@link CoreExpansionAlgorithm#generateClasses(Graph)}
+ * @version 1.0.17102026
+ */
+class ExpansionHarness extends CoreExpansionAlgorithm {
+
+	ExpansionHarness(Graph<String> graph) {
+		super(graph);
+	}
+
+	CompactGraph compact() {
+		return graph.getCompactGraph();
+	}
+
+	int[] cores(HashMap<String, Double> maximumNodes) {
+		return findCores(compact(), maximumNodes);
+	}
+
+	static int[] groupIds(int[] labels) {
+		return getGroupIds(labels);
+	}
+
+	/**
+	 * one addition iteration over the given candidates, labels are updated
+	 */
+	int[] sweep(int[] labels, int[] groupIds, int[] candidates, boolean useWeights) {
+		return addNodesToClosestGroup(compact(), labels, groupIds, candidates, false, true, useWeights);
+	}
+
+	/**
+	 * the iterations following the first one of a phase, until no node is added
+	 */
+	void frontierSweeps(int[] labels, int[] groupIds, int[] added, boolean useWeights) {
+		ExpansionFrontier frontier = new ExpansionFrontier(compact());
+		while(added.length>0) {
+			added = sweep(labels, groupIds, frontier.next(labels, added), useWeights);
+		}
+	}
+
+	/**
+	 * a whole phase: all unclassified nodes, then the frontier iterations
+	 */
+	void phase(int[] labels, int[] groupIds, boolean useWeights) {
+		ExpansionFrontier frontier = new ExpansionFrontier(compact());
+		frontierSweeps(labels, groupIds, sweep(labels, groupIds, frontier.unclassified(labels), useWeights), useWeights);
+	}
+
+	HashMap<Integer, ArrayList<String>> groups(int[] labels) {
+		return toGroups(compact(), labels);
+	}
+
+	void shutdown() {
+		if(pool!=null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import algorithms.ExpansionFrontier;
+import networkanalysis.LocalMaximumFinder;
+
+/**
+ * labels of the network before each phase of the expansion, computed once per trial so that each benchmark only times its
+ * own phase
+ * @version 1.0.17102026
+ */
+@State(Scope.Benchmark)
+public class ExpansionState {
+
+	public ExpansionHarness harness;
+	public HashMap<String, Double> maximumNodes;
+	public int[] cores;
+	public int[] groupIds;
+	/**
+	 * candidates of the first iteration, i.e. all nodes outside the cores
+	 */
+	public int[] unclassified;
+	/**
+	 * labels and added nodes after the first iteration of the weighted phase
+	 */
+	public int[] afterFirstSweep;
+	public int[] addedByFirstSweep;
+	/**
+	 * labels after the weighted phase
+	 */
+	public int[] afterWeightedPhase;
+	/**
+	 * final labels and communities
+	 */
+	public int[] communityLabels;
+	public HashMap<Integer, ArrayList<String>> communities;
+
+	@Setup
+	public void setUp(GraphState state) {
+		harness = new ExpansionHarness(state.network);
+		maximumNodes = LocalMaximumFinder.findLocalMaximumNodes(state.network);
+		cores = harness.cores(maximumNodes);
+		groupIds = ExpansionHarness.groupIds(cores);
+		unclassified = new ExpansionFrontier(harness.compact()).unclassified(cores);
+
+		afterFirstSweep = cores.clone();
+		addedByFirstSweep = harness.sweep(afterFirstSweep, groupIds, unclassified, true);
+		afterWeightedPhase = afterFirstSweep.clone();
+		harness.frontierSweeps(afterWeightedPhase, groupIds, addedByFirstSweep, true);
+		communityLabels = afterWeightedPhase.clone();
+		harness.phase(communityLabels, groupIds, false);
+		communities = harness.groups(communityLabels);
+	}
+
+	@TearDown
+	public void tearDown() {
+		harness.shutdown();
+	}
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import algorithms.CommunitiesWriter;
+import algorithms.CoreExpansionAlgorithm;
+import networkanalysis.NeighborhoodOverlap;
+import utils.Graph;
+
+/**
+ * Network and thread count shared by the benchmarks. The network is loaded once per trial, the benchmarks that need the overlap
+ * weights find them already set on the graph.
+ * @version 1.0.17102026
+ */
+@State(Scope.Benchmark)
+public class GraphState {
+
+	/**
+	 * "zachary" or the number of nodes of a generated network, see {@link BenchmarkGraphs}
+	 */
+	@Param({"zachary", "10000", "100000"})
+	public String graph;
+
+	@Param({"1", "4"})
+	public int threads;
+
+	public String path;
+	public Graph<String> network;
+
+	@Setup
+	public void setUp() throws IOException {
+		//keep the console quiet, the messages are still built like in a real run
+		CoreExpansionAlgorithm.logger.setLevel(Level.WARNING);
+		CommunitiesWriter.logger.setLevel(Level.WARNING);
+		NeighborhoodOverlap.logger.setLevel(Level.WARNING);
+		CoreExpansionAlgorithm.logFolder = null;
+		CoreExpansionAlgorithm.threads = threads;
+
+		path = BenchmarkGraphs.path(graph);
+		network = Graph.loadFromFile(path, false, false, threads);
+		NeighborhoodOverlap.calculateWeights(network, threads);
+	}
+}
@@ -0,0 +1,41 @@
+package benchmarks;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import networkanalysis.LocalMaximumFinder;
+
+/**
+ * local maximum nodes and edges of the overlap weights
+ * @version 1.0.17102026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalMaximumBenchmark {
+
+	@Benchmark
+	public HashMap<String, Double> findLocalMaximumNodes(GraphState state) {
+		return LocalMaximumFinder.findLocalMaximumNodes(state.network, state.threads);
+	}
+
+	@Benchmark
+	public HashMap<String, Double> findLocalMaximumEdges(GraphState state) {
+		return LocalMaximumFinder.findLocalMaximumEdges(state.network, state.threads);
+	}
+
+	@Benchmark
+	public LocalMaximumFinder.Edges findLocalMaximumEdgeIds(GraphState state) {
+		return LocalMaximumFinder.findLocalMaximumEdges(state.network.getCompactGraph(), state.network.getEdgeWeights(), state.threads);
+	}
+}
@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import networkanalysis.NeighborhoodOverlap;
+import networkanalysis.ParallelOverlap;
+import networkanalysis.TriangleOverlap;
+import utils.EdgeWeights;
+
+/**
+ * neighbourhood overlap of all edges, as a primitive store and as the map returned by {@link NeighborhoodOverlap#calculate}, and
+ * with each engine: one intersection per edge or the triangles of the graph
+ * @version 1.0.17102026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OverlapBenchmark {
+
+	@Benchmark
+	public EdgeWeights calculateWeights(GraphState state) {
+		return NeighborhoodOverlap.calculateWeights(state.network, state.threads);
+	}
+
+	@Benchmark
+	public HashMap<String, Double> calculate(GraphState state) {
+		return NeighborhoodOverlap.calculate(state.network, state.threads);
+	}
+
+	@Benchmark
+	public EdgeWeights perEdge(GraphState state) {
+		return ParallelOverlap.calculate(state.network.getCompactGraph(), state.threads);
+	}
+
+	@Benchmark
+	public EdgeWeights triangles(GraphState state) {
+		return TriangleOverlap.calculate(state.network.getCompactGraph(), state.threads);
+	}
+}
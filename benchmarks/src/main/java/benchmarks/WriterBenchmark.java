@@ -0,0 +1,52 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * writing the communities and the edge weights with {@link algorithms.CommunitiesWriter}
+ * @version 1.0.17102026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriterBenchmark {
+
+	private File file;
+
+	@Setup
+	public void setUp() throws IOException {
+		file = File.createTempFile("core-expansion-results-", ".csv");
+	}
+
+	@TearDown
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Benchmark
+	public void writeCommunities(GraphState graph, ExpansionState state) {
+		state.harness.writeResults(state.communities, file.getPath(), "class");
+	}
+
+	@Benchmark
+	public void writeWeights(GraphState graph, ExpansionState state) {
+		state.harness.writeResults(graph.network.getEdgeWeights(), "weight", file.getPath());
+	}
+}
@@ -21,4 +21,4 @@ javac -d bin $javaFiles
 echo "Creating jar ..."
 
 cd bin
-jar cfe ../CoreExpansion.jar algorithms.CoreExpansionAlgorithm algorithms/*.class networkanalysis/*.class utils/*.class
+jar cfe ../CoreExpansion.jar algorithms.CoreExpansionAlgorithm algorithms/*.class generators/*.class networkanalysis/*.class utils/*.class
@@ -7,7 +7,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.logging.Level;
 
+import utils.CompactGraph;
 import utils.CustomLogger;
+import utils.EdgeWeights;
 import utils.Graph;
 
 /**
@@ -52,8 +54,6 @@ public abstract class CommunitiesWriter {
 		}
 		return sum;
 	}
-
-	
 	
 	/**
 	 * 
@@ -97,6 +97,30 @@ public abstract class CommunitiesWriter {
 		}
 	}
 	
+	/**
+	 * writes edge weights to a file, each edge is written in both directions like the map returned by {@link EdgeWeights#toMap()}
+	 * @param weights
+	 * @param attributeName
+	 * @param file
+	 */
+	public void writeResults(EdgeWeights weights, String attributeName, String file) {
+		try {
+			BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+			writer.write("Source\tTarget\t"+attributeName+"\n");
+			CompactGraph compact = weights.getGraph();
+			int[] offsets = compact.getOffsets();
+			int[] targets = compact.getTargets();
+			for(int u=0;u<compact.getNumberNodes();u++) {
+				for(int slot=offsets[u];slot<offsets[u+1];slot++) {
+					writer.write(compact.getLabel(u)+"\t"+compact.getLabel(targets[slot])+"\t"+weights.get(slot)+"\n");
+				}
+			}
+			writer.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
 	public void writeResults(HashMap<String, Double> attributes, BufferedWriter writer, boolean edgeAttrs) {
 		try {
 			//write results with attributes
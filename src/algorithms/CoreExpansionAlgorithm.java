@@ -1,19 +1,31 @@
 package algorithms;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import networkanalysis.NetworkAnalysisHelper;
+import networkanalysis.CommunityAffinity;
 import networkanalysis.LocalMaximumFinder;
 import networkanalysis.NeighborhoodOverlap;
+import utils.CompactGraph;
 import utils.CustomLogger;
+import utils.EdgeWeights;
 import utils.Graph;
+import utils.GraphSnapshot;
+import utils.Metrics;
 import utils.TimeTracker;
+import utils.UnionFind;
 
 /**
  * Takes input:
@@ -41,112 +53,439 @@ public class CoreExpansionAlgorithm extends CommunitiesWriter{
 	public static String graphPath = outputDirectory+"\\edges.csv";
 	public static String communities = outputDirectory +"\\CoreExp_Communities.csv";
 	public static String logFolder = outputDirectory+"\\logs";
+	/**
+	 * JSON report of the phases, counters and histograms of the run, see {@link Metrics}
+	 */
+	public static String reportPath = outputDirectory+"\\report.json";
 
 	public static boolean useWeightsInAddition = true;
+	/**
+	 * number of worker threads used by the parallel phases, set with -t
+	 */
+	public static int threads = Runtime.getRuntime().availableProcessors();
+	/**
+	 * when set with -s, the loaded graph and its overlap weights are written to this binary snapshot, see {@link GraphSnapshot}
+	 */
+	public static String snapshotPath = null;
+	/**
+	 * intermediate results written to logFolder, set with -w
+	 */
+	public static EnumSet<IntermediateWriter.Artifact> artifacts = IntermediateWriter.DEFAULT;
+	/**
+	 * when set with -m, in bytes, the network is kept on disk and at most about this much edge data is held in memory at once,
+	 * see {@link ExternalCoreExpansion}
+	 */
+	public static long memoryBudget = 0;
+	/**
+	 * work folder of the out-of-core mode, null for a folder next to the communities file
+	 */
+	public static String externalFolder = null;
+	/**
+	 * when set with -n, the network is split in this number of shards, each run by its own process, see
+	 * {@link PartitionedCoreExpansion}
+	 */
+	public static int shards = 0;
+	/**
+	 * the shard run by this process, set with -r, -1 to start one process per shard on this machine
+	 */
+	public static int shardRank = -1;
+	/**
+	 * how the shard processes exchange messages, set with -x, see {@link utils.ShardTransport#open(String, int, int, long)}
+	 */
+	public static String transport = "socket";
+	/**
+	 * when set with -k, the overlaps of the edges between nodes of higher degree are estimated from sketches of this many hashes,
+	 * see {@link networkanalysis.SketchOverlap}
+	 */
+	public static int sketchSize = 0;
+	/**
+	 * set with -e, the estimated overlaps around possible local maximums are computed again exactly
+	 */
+	public static boolean exactRecheck = false;
+	/**
+	 * below this number of candidates an addition iteration runs in the calling thread
+	 */
+	public static int parallelThreshold = 2048;
 	
+	/**
+	 * pool of the parallel addition iterations, created on first use and shut down at the end of {@link #generateClasses(Graph)}
+	 */
+	protected ForkJoinPool pool = null;
+	/**
+	 * writes the intermediate results in the background, null to write none
+	 */
+	protected IntermediateWriter intermediate = null;
+	
+	@SuppressWarnings("try")
 	public static void main(String[] args) {
 		CommunitiesWriter.logger.setLevel(Level.FINEST);
 		if(!loadArgs(args)) {
 			return;
 		}
+		if(shards>0) {
+			//partitioned mode, v1.0.17102026
+			if(!PartitionedCoreExpansion.run(args))System.exit(1);
+			return;
+		}
+		if(memoryBudget>0) {
+			//out-of-core mode, v1.0.17102026
+			ExternalCoreExpansion.run();
+			return;
+		}
 		
 		TimeTracker timeTracker = new TimeTracker();
+		Metrics.Phase run = Metrics.phase("run");
+		Metrics.info("graph", graphPath);
+		Metrics.info("threads", threads);
 
-		Graph<String> graph = Graph.loadFromFile(graphPath, false);
+		Graph<String> graph;
+		EdgeWeights weights = null;
+		try(Metrics.Phase load = Metrics.phase("load")) {
+			if(GraphSnapshot.isSnapshot(graphPath)) {
+				//the snapshot may already contain the overlap weights and out-weights
+				try {
+					GraphSnapshot snapshot = GraphSnapshot.load(graphPath);
+					graph = snapshot.getGraph();
+					weights = snapshot.getWeights();
+				}catch (IOException e) {
+					System.out.println("could not load snapshot "+graphPath+": "+e.getMessage());
+					return;
+				}
+			}else {
+				graph = Graph.loadFromFile(graphPath, false, false, threads);
+			}
+			Metrics.recordDegrees(graph.getCompactGraph());
+		}
 		CoreExpansionAlgorithm generator = new CoreExpansionAlgorithm(graph);
-		HashMap<String,Double> weights = NeighborhoodOverlap.calculate(graph);
-		if(logFolder!=null)generator.writeResults(weights, "weight-initial", logFolder+"/weights-initial.csv", true);
-		if(logFolder!=null)generator.writeResults(graph.getOutWeights(), "outWeights", logFolder+"/outWeights_initial.csv", false);
+		if(weights==null) {
+			try(Metrics.Phase overlap = Metrics.phase("overlap")) {
+				weights = NeighborhoodOverlap.calculateWeights(graph, threads, sketchSize, exactRecheck);
+			}
+		}
+		if(snapshotPath!=null) {
+			try(Metrics.Phase snapshot = Metrics.phase("snapshot")) {
+				GraphSnapshot.write(snapshotPath, graph, weights);
+			}catch (IOException e) {
+				System.out.println("could not write snapshot "+snapshotPath+": "+e.getMessage());
+			}
+		}
+		if(logFolder!=null && !artifacts.isEmpty())generator.intermediate = new IntermediateWriter(generator, logFolder, artifacts);
+		if(generator.intermediate!=null) {
+			generator.intermediate.weights(weights);
+			generator.intermediate.outWeights(graph.getOutWeights());
+		}
 		
 		HashMap<Integer, ArrayList<String>> groups = new HashMap<>();
 
-		groups = generator.generateClasses(graph);
+		try(Metrics.Phase expansion = Metrics.phase("expansion")) {
+			groups = generator.generateClasses(graph);
+		}
 		
-		generator.writeResults(groups, communities, "class");
+		try(Metrics.Phase write = Metrics.phase("write")) {
+			generator.writeResults(groups, communities, "class");
+		}
+		if(generator.intermediate!=null) {
+			try(Metrics.Phase intermediate = Metrics.phase("intermediate")) {
+				generator.intermediate.close();
+			}catch (IOException e) {
+				logger.log(Level.WARNING, "unable to write intermediate results, "+e.getMessage()+"\n");
+			}
+		}
+		run.close();
 		
 		logger.log(Level.FINER, groups.size()+" communities detected\n");
 		int sum=0;
 		for(Integer id:groups.keySet()) {
 			int groupSize = groups.get(id).size();
 			sum+=groupSize;
-			logger.log(Level.FINER, "community "+id+": "+groupSize+" nodes\n");
+			logger.log(Level.FINER, "community {}: {} nodes\n", id, groupSize);
 		}
 		timeTracker.stop();
-		logger.log(Level.FINER, sum+" nodes classified out of "+graph.getAllNodes().size()+"\n");
+		logger.log(Level.FINER, sum+" nodes classified out of "+graph.getCompactGraph().getNumberNodes()+"\n");
 		logger.log(Level.FINER, "time elapsed "+timeTracker.toString());
+		
+		Metrics.info("nodes", graph.getCompactGraph().getNumberNodes());
+		Metrics.info("edges", graph.getCompactGraph().getNumberEdgeIds());
+		Metrics.info("communities", groups.size());
+		Metrics.info("classified", sum);
+		if(reportPath!=null) {
+			try {
+				Metrics.writeReport(reportPath);
+			}catch (IOException e) {
+				logger.log(Level.WARNING, "unable to write the run report, "+e.getMessage()+"\n");
+			}
+		}
 	}
 	
+	@SuppressWarnings("try")
 	public HashMap<Integer, ArrayList<String>> generateClasses(Graph<String> graph){
 		logger.log(Level.FINER, "finding local maximums, ");
-		HashMap<String, Double> maximumNodes = LocalMaximumFinder.findLocalMaximumNodes(graph);
-		writeResults(maximumNodes, "localOutWeightMax", logFolder+"/localOutWeightMax.csv", false);
+		HashMap<String, Double> maximumNodes;
+		try(Metrics.Phase maximums = Metrics.phase("localMaximums")) {
+			maximumNodes = LocalMaximumFinder.findLocalMaximumNodes(graph, threads);
+		}
+		if(intermediate!=null)intermediate.maximums(maximumNodes);
 		logger.log(Level.FINER, maximumNodes.size()+" maximums found\n");
 		
 		//find communities
-		HashMap<Integer, ArrayList<String>> groupsList = new HashMap<>();
-		int i=0;
-		for(String node:maximumNodes.keySet()) {
-			ArrayList<Integer> coresOfNode = new ArrayList<>();// stores the cores that 'node' could be added to
-			for(String successor:graph.getSuccessors(node)) {
-				Integer groupId = getGroupIdOf(successor, groupsList);
-				if(groupId!=null) {
-					groupsList.get(groupId).add(node);
-					if(!coresOfNode.contains(groupId))coresOfNode.add(groupId);
-				}
-			}
-			if(coresOfNode.size()==0){
-				ArrayList<String> members = new ArrayList<String>();
-				members.add(node);
-				groupsList.put(i++, members);
-			}else if(coresOfNode.size()>1) {
-				//merge the two cores
-				for (int j = 1; j < coresOfNode.size(); j++) {
-					for (String member : groupsList.get(coresOfNode.get(j))) {
-						if (!groupsList.get(coresOfNode.get(0)).contains(member))
-							groupsList.get(coresOfNode.get(0)).add(member);
-					}
-					groupsList.remove(coresOfNode.get(j));
-				}
-			}
+		CompactGraph compact = graph.getCompactGraph();
+		int[] labels;
+		int[] groupIds;
+		try(Metrics.Phase cores = Metrics.phase("cores")) {
+			labels = findCores(compact, maximumNodes);
+			groupIds = getGroupIds(labels);
 		}
-		logger.log(Level.FINER, groupsList.size()+" cores constructed\n");
+		logger.log(Level.FINER, groupIds.length+" cores constructed\n");
+		if(intermediate!=null)intermediate.cores(compact, labels);
 		
 		//groupsList = addNodesUsingSortedWeights(groupsList);
+		//each phase starts with all unclassified nodes, then only checks the neighbours of the nodes added by the last iteration
+		ExpansionFrontier frontier = new ExpansionFrontier(compact);
+		addRemainingNodes(compact, labels, (previous, phase, iteration, useWeights) -> 
+				sweep(compact, frontier, labels, groupIds, previous, phase, iteration, useWeights));
+		if(pool!=null) {
+			pool.shutdown();
+			pool = null;
+		}
+		return toGroups(compact, labels);
+	}
+	
+	/**
+	 * one addition iteration over the current labels, see {@link CoreExpansionAlgorithm#addRemainingNodes(CompactGraph, int[], Sweep)}
+	 */
+	protected interface Sweep {
+		/**
+		 * @param previous the nodes added by the last iteration of the phase, null for the first iteration
+		 * @param phase 0 for the addition with weights, 1 for the extra addition
+		 * @param iteration
+		 * @param useWeights
+		 * @return the added nodes
+		 */
+		int[] run(int[] previous, int phase, int iteration, boolean useWeights);
+	}
+	
+	/**
+	 * repeats addition iterations until no node is added, using weights if {@link #useWeightsInAddition} is set, then redoes
+	 * them without weights, v1.0.17102026
+	 * @param compact the graph of the intermediate results, null if there are none
+	 * @param labels group id of each node, -1 for unclassified nodes
+	 * @param sweep performs one iteration and updates labels
+	 */
+	@SuppressWarnings("try")
+	protected void addRemainingNodes(CompactGraph compact, int[] labels, Sweep sweep) {
 		int j=1;
-		logger.log(Level.FINER, "performing addition iteration #"+j+"...\n");
-		HashMap<String, Integer> removed = addNodesToClosestGroup(groupsList, false, true, useWeightsInAddition);
-		if(logFolder!=null)writeResults(groupsList, logFolder+"/coresAtIteration-"+j+".csv","classes-it-"+j);//write intermidiate results
-		while(removed.isEmpty()==false) {
-			j++;
+		int[] added;
+		try(Metrics.Phase addition = Metrics.phase("addition")) {
 			logger.log(Level.FINER, "performing addition iteration #"+j+"...\n");
-			removed = addNodesToClosestGroup(groupsList, false, true, useWeightsInAddition);
-			if(logFolder!=null)writeResults(groupsList, logFolder+"/coresAtIteration-"+j+".csv","classes-it-"+j);//write intermidiate results
+			added = sweep.run(null, 0, j, useWeightsInAddition);
+			if(intermediate!=null)intermediate.iteration(compact, labels, 0, j, added);//write intermidiate results
+			while(anyAdded(added)) {
+				j++;
+				logger.log(Level.FINER, "performing addition iteration #"+j+"...\n");
+				added = sweep.run(added, 0, j, useWeightsInAddition);
+				if(intermediate!=null)intermediate.iteration(compact, labels, 0, j, added);//write intermidiate results
+			}
 		}
 		//redo addition iteration without using weights to solve the problem of addition of nodes with out weight = 0
 		if(useWeightsInAddition) {
-			removed = addNodesToClosestGroup(groupsList, false, true, false);
-			j=1;
-			if(removed.isEmpty()==false) {
-				logger.log(Level.FINER, "performed extra addition iteration #1...\n");
-				if(logFolder!=null)writeResults(groupsList, logFolder+"/coresAtIteration-"+j+".csv","classes-it-"+j);
+			try(Metrics.Phase extraAddition = Metrics.phase("extraAddition")) {
+				added = sweep.run(null, 1, 1, false);
+				j=1;
+				boolean more = anyAdded(added);
+				if(more) {
+					logger.log(Level.FINER, "performed extra addition iteration #1...\n");
+					if(intermediate!=null)intermediate.iteration(compact, labels, 1, j, added);
+				}
+				while(more) {
+					added = sweep.run(added, 1, j+1, false);
+					j++;
+					more = anyAdded(added);
+					if(more) {
+						logger.log(Level.FINER, "performed extra addition iteration #"+j+"...\n");
+						if(intermediate!=null)intermediate.iteration(compact, labels, 1, j, added);
+					}
+				}
 			}
-			while(removed.isEmpty()==false) {
-				removed = addNodesToClosestGroup(groupsList, false, true, false);
-				j++;
-				if(removed.isEmpty()==false) {
-					logger.log(Level.FINER, "performed extra addition iteration #"+j+"...\n");
-					if(logFolder!=null)writeResults(groupsList, logFolder+"/coresAtIteration-"+j+".csv","classes-it-"+j);
+		}
+	}
+	
+	/**
+	 * @param added the nodes added by the last iteration
+	 * @return true if the iteration added nodes, so the phase goes on. Overridden when nodes are added by several processes,
+	 * v1.0.17102026
+	 */
+	protected boolean anyAdded(int[] added) {
+		return added.length>0;
+	}
+	
+	/**
+	 * one addition iteration, timed as a sweep of {@link Metrics} with its number of candidates and added nodes
+	 * @param compact
+	 * @param frontier
+	 * @param labels
+	 * @param groupIds
+	 * @param previous the nodes added by the last iteration of the phase, null for the first iteration
+	 * @param phase 0 for the addition with weights, 1 for the extra addition
+	 * @param iteration
+	 * @param useWeights
+	 * @return the added nodes
+	 */
+	private int[] sweep(CompactGraph compact, ExpansionFrontier frontier, int[] labels, int[] groupIds, int[] previous, int phase, 
+			int iteration, boolean useWeights) {
+		try(Metrics.Phase sweep = Metrics.sweep(phase, iteration)) {
+			int[] candidates = previous==null?frontier.unclassified(labels):frontier.next(labels, previous);
+			int[] added = addNodesToClosestGroup(compact, labels, groupIds, candidates, false, true, useWeights);
+			sweep.set("candidates", candidates.length).set("added", added.length);
+			Metrics.counter("expansion.nodesExamined").add(candidates.length);
+			Metrics.counter("expansion.assignments").add(added.length);
+			Metrics.histogram("sweep.candidates").record(candidates.length);
+			Metrics.histogram("sweep.added").record(added.length);
+			return added;
+		}
+	}
+	
+	/**
+	 * builds the cores from the local maximum nodes: a maximum node joins the cores of its neighbours, and cores sharing a maximum
+	 * node are merged into the first one found, the neighbours being taken in the order of their edges like the successor lists.
+	 * Merging is done with a union-find over core ids.
+	 * @param compact a graph whose edge ids follow the edge list, see {@link CompactGraph#getSlotsInEdgeOrder()}
+	 * @param maximumNodes
+	 * @return the core id of each node, -1 for nodes outside all cores
+	 */
+	protected int[] findCores(CompactGraph compact, HashMap<String, Double> maximumNodes) {
+		int[] labels = new int[compact.getNumberNodes()];
+		Arrays.fill(labels, -1);
+		int[] offsets = compact.getOffsets();
+		int[] targets = compact.getTargets();
+		int[] slots = compact.getSlotsInEdgeOrder();
+		UnionFind cores = new UnionFind(maximumNodes.size());
+		int[] names = new int[maximumNodes.size()];//id kept by the core rooted at each element
+		int i=0;
+		for(String node:maximumNodes.keySet()) {
+			int id = compact.getId(node);
+			int first = -1;// root of the first core that 'node' could be added to
+			for(int k=offsets[id];k<offsets[id+1];k++) {
+				int core = labels[targets[slots[k]]];
+				if(core==-1)continue;
+				core = cores.find(core);
+				if(first==-1) {
+					first = core;
+				}else if(core!=first) {
+					//merge the two cores
+					int name = names[first];
+					first = cores.union(first, core);
+					names[first] = name;
 				}
 			}
+			if(first==-1){
+				names[i] = i;
+				labels[id] = i++;
+			}else {
+				labels[id] = first;
+			}
+		}
+		for(int id=0;id<labels.length;id++) {
+			if(labels[id]!=-1)labels[id] = names[cores.find(labels[id])];
+		}
+		return labels;
+	}
+	
+	/**
+	 * builds a graph whose edge ids follow the positions of the edges in the edge list, e.g. the subgraph induced by the maximum
+	 * nodes of a graph read from disk, so that {@link #findCores(CompactGraph, HashMap)} takes the neighbours in file order
+	 * @param names
+	 * @param offsets
+	 * @param targets sorted by id for each node
+	 * @param orders position in the edge list of the edge of each slot, the same for both directions of an edge
+	 * @return
+	 */
+	protected static CompactGraph inducedGraph(String[] names, int[] offsets, int[] targets, long[] orders) {
+		long[] distinct = orders.clone();
+		Arrays.sort(distinct);
+		int count = 0;
+		for(int k=0;k<distinct.length;k++) {
+			if(count==0 || distinct[count-1]!=distinct[k])distinct[count++] = distinct[k];
+		}
+		int[] edgeIds = new int[orders.length];
+		for(int slot=0;slot<orders.length;slot++) {
+			edgeIds[slot] = Arrays.binarySearch(distinct, 0, count, orders[slot]);
+		}
+		return new CompactGraph(names, offsets, targets, edgeIds, count);
+	}
+	
+	/**
+	 * @param labels
+	 * @return the distinct group ids used in labels, sorted
+	 */
+	protected static int[] getGroupIds(int[] labels) {
+		int[] ids = labels.clone();
+		Arrays.sort(ids);
+		int count=0;
+		for(int k=0;k<ids.length;k++) {
+			if(ids[k]!=-1 && (count==0 || ids[count-1]!=ids[k]))ids[count++] = ids[k];
+		}
+		return Arrays.copyOf(ids, count);
+	}
+	
+	/**
+	 * builds the groups map from the group id of each node, nodes of each group are listed in id order
+	 * @param compact
+	 * @param labels
+	 * @return
+	 */
+	protected static HashMap<Integer, ArrayList<String>> toGroups(CompactGraph compact, int[] labels) {
+		HashMap<Integer, ArrayList<String>> groups = new HashMap<>();
+		for(int id=0;id<labels.length;id++) {
+			if(labels[id]==-1)continue;
+			ArrayList<String> group = groups.get(labels[id]);
+			if(group==null) {
+				group = new ArrayList<>();
+				groups.put(labels[id], group);
+			}
+			group.add(compact.getLabel(id));
 		}
-		return groupsList;
+		return groups;
 	}
 	
-	private static Integer getGroupIdOf(String node, HashMap<Integer, ArrayList<String>> groups) {
-		for(Integer key:groups.keySet()) {
-			if(groups.get(key).contains(node))return key;
+	/**
+	 * writes the communities like {@link #writeResults(HashMap, String, String)} writes the groups of
+	 * {@link #toGroups(CompactGraph, int[])}, without building the lists of labels, v1.0.17102026
+	 * @param labels group id of each node, -1 for unclassified nodes
+	 * @param names label of each node id
+	 * @param file
+	 * @return the number of communities
+	 * @throws IOException
+	 */
+	protected static int writeResults(int[] labels, IntFunction<String> names, String file) throws IOException {
+		//same insertions as toGroups, so the groups are listed in the same order
+		HashSet<Integer> groups = new HashSet<>();
+		int numberGroups = 0;
+		for(int label:labels) {
+			if(label==-1)continue;
+			groups.add(label);
+			numberGroups = Math.max(numberGroups, label+1);
+		}
+		int[] starts = new int[numberGroups+1];
+		for(int label:labels) {
+			if(label!=-1)starts[label+1]++;
+		}
+		for(int g=0;g<numberGroups;g++) {
+			starts[g+1] += starts[g];
+		}
+		int[] members = new int[starts[numberGroups]];
+		int[] cursor = Arrays.copyOf(starts, numberGroups);
+		for(int id=0;id<labels.length;id++) {
+			if(labels[id]!=-1)members[cursor[labels[id]]++] = id;
+		}
+		try(BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+			writer.write("Id\tclass\n");
+			for(Integer group:groups) {
+				for(int k=starts[group];k<starts[group+1];k++) {
+					writer.write(names.apply(members[k])+"\t"+group+"\n");
+				}
+			}
 		}
-		return null;
+		return groups.size();
 	}
 	
 	/**
@@ -159,83 +498,233 @@ public class CoreExpansionAlgorithm extends CommunitiesWriter{
 	 */
 	public HashMap<String, Integer> addNodesToClosestGroup(HashMap<Integer, ArrayList<String>> groups, boolean usePredecessors, 
 			boolean useOnlyInt, boolean useWeightsInAddition) {
-		ArrayList<String> nodes = graph.getAllNodes();
+		CompactGraph compact = graph.getCompactGraph();
+		int[] labels = new int[compact.getNumberNodes()];
+		Arrays.fill(labels, -1);
+		int[] groupIds = new int[groups.size()];
+		int k=0;
+		for(Integer groupId:groups.keySet()) {
+			groupIds[k++] = groupId;
+			for(String node:groups.get(groupId)) {
+				labels[compact.getId(node)] = groupId;
+			}
+		}
+		Arrays.sort(groupIds);
+		
 		HashMap<String, Integer> toBeAdded = new HashMap<>();
+		int[] candidates = new ExpansionFrontier(compact).unclassified(labels);
+		for(int id:addNodesToClosestGroup(compact, labels, groupIds, candidates, usePredecessors, useOnlyInt, useWeightsInAddition)) {
+			String node = compact.getLabel(id);
+			toBeAdded.put(node, labels[id]);
+			groups.get(labels[id]).add(node);
+		}
+		return toBeAdded;
+	}
+	
+	/**
+	 * performs one addition iteration on the group id of each node. The candidates are checked against the groups as they were
+	 * before the iteration, then the chosen nodes are added to labels. Since no decision depends on another one of the same
+	 * iteration, large iterations are checked in parallel over {@link #threads} workers; decisions are stored by candidate index
+	 * and applied in candidate order, so the result doesn't depend on the number of threads.
+	 * @param compact
+	 * @param labels group id of each node, -1 for unclassified nodes, updated with the added nodes
+	 * @param groupIds ids of all groups
+	 * @param candidates unclassified nodes to check, see {@link ExpansionFrontier}
+	 * @param usePredecessors
+	 * @param useOnlyInt
+	 * @param useWeightsInAddition
+	 * @return ids of the added nodes
+	 */
+	protected int[] addNodesToClosestGroup(CompactGraph compact, int[] labels, int[] groupIds, int[] candidates, 
+			boolean usePredecessors, boolean useOnlyInt, boolean useWeightsInAddition) {
+		return addNodesToClosestGroup(compact, graph.getEdgeWeights(), labels, groupIds, candidates, usePredecessors, useOnlyInt, 
+				useWeightsInAddition);
+	}
+	
+	/**
+	 * same as {@link #addNodesToClosestGroup(CompactGraph, int[], int[], int[], boolean, boolean, boolean)} on a graph other than
+	 * the one of this algorithm, e.g. the affected region of {@link DynamicCoreExpansion}, v1.0.17102026
+	 * @param compact
+	 * @param weights edge weights aligned with compact
+	 * @param labels
+	 * @param groupIds
+	 * @param candidates
+	 * @param usePredecessors
+	 * @param useOnlyInt
+	 * @param useWeightsInAddition
+	 * @return ids of the added nodes
+	 */
+	protected int[] addNodesToClosestGroup(CompactGraph compact, EdgeWeights weights, int[] labels, int[] groupIds, int[] candidates, 
+			boolean usePredecessors, boolean useOnlyInt, boolean useWeightsInAddition) {
+		int[] toBeAdded = new int[candidates.length];
+		int[] addedTo = new int[candidates.length];
+		int count = 0;
+		int numberGroups = groupIds.length==0?0:groupIds[groupIds.length-1]+1;
 		
-		//start adding
-		for(String node:nodes) {
-			if(groupsContains(groups, node)) {
-				continue;//TODO:performance give unclassified nodes as parameter to avoid this check
-			} else {
-				//check if we can add to a group
-				logger.log(Level.FINEST, "checking node: "+node+"\n");
-				int possibleGroupId=-1;
-				double maxDifference=0;
-				boolean validMax = true;//max is not valid if it was repeated twice
-				
-				ArrayList<String> s = graph.getSuccessors(node);
-				int[] nbLinks = null;
-				for(Integer groupId:groups.keySet()) {
-					ArrayList<String> group = groups.get(groupId);
-					if(s.size()>0) {
-						//depend on successors
-						nbLinks = NetworkAnalysisHelper.getNumberIntAndExtLinks(graph, group, node);
-						//starting from v1.8.28112018, add node to other group if it has edges to it more than to others,
-						//previously, addition was based on adding node to group that maximise dif between int and ext
-						double nb=(useOnlyInt)?nbLinks[0]:nbLinks[0]-nbLinks[1];
-						//use weights to calculate nb
-						if(useWeightsInAddition) {
-							//double outWeight = graph.getOutWeight(node);
-							double sumWeightsInternal = sumWeightsInternal(graph, group, node);
-							nb = sumWeightsInternal;/*/outWeight;//v1.13.26012019*/
-						}
-						if(nb>=maxDifference) {
-							if(nb==maxDifference)validMax=false;
-							else if(nb>maxDifference) {
-								validMax=true;
-								maxDifference = nb;
-								possibleGroupId = groupId;
-							}
-						}
-					}else if(usePredecessors && s.size()==0) {
-						//add if node have only predecessors from one group
-						//current version, add node to group where in-edges coming are more
-						nbLinks = NetworkAnalysisHelper.getNumberIntAndExtLinks(graph, group, node, false);
-						double nbPre=(useOnlyInt)?nbLinks[0]:nbLinks[0]-nbLinks[1];
-						if(nbPre>=maxDifference) {
-							if(nbPre==maxDifference)validMax=false;
-							else if(nbPre>maxDifference) {
-								validMax=true;
-								maxDifference = nbPre;
-								possibleGroupId = groupId;
-							}
-						}
-					}
-					if((!useOnlyInt && nbLinks[0]-nbLinks[1]>maxDifference) || (useOnlyInt && nbLinks[0]>maxDifference)) {
-						if(!useWeightsInAddition)throw new RuntimeException("int:"+nbLinks[0]+", ext:"+nbLinks[1]+", currentMaxDif:"+maxDifference);
-					}
-					logger.log(Level.FINEST, "wrt group:"+groupId+", int:"+nbLinks[0]+", ext:"+nbLinks[1]+", currentMaxDif:"+maxDifference+"\n");
-				}
-				
-				if(possibleGroupId!=-1 && validMax) {
-					//we can add to a group
-					if(toBeAdded.get(node)!=null) {
-						logger.log(Level.SEVERE, "node already marked for classification! "+node+", to Be added to "+possibleGroupId+", already added to "+toBeAdded.get(node)+"\n");
-					}
-					toBeAdded.put(node, possibleGroupId);
-					logger.log(Level.FINEST, "maxDifference:"+maxDifference+" for group:"+possibleGroupId+", to be added\n");
-				}else {
-					logger.log(Level.FINEST, "no possible group to add to!\n");
-				}
+		//start adding, decisions[k] is the group chosen for candidates[k]
+		int[] decisions = new int[candidates.length];
+		ClosestGroupTask task = new ClosestGroupTask(compact, weights, labels, numberGroups, candidates, decisions, 0, candidates.length, 
+				usePredecessors, useOnlyInt, useWeightsInAddition);
+		//the predecessors are listed from adjacency lists the graph builds on first use, so they are read from one thread
+		if(threads>1 && candidates.length>=parallelThreshold && !usePredecessors) {
+			if(pool==null)pool = new ForkJoinPool(threads);
+			pool.invoke(task);
+		}else {
+			task.compute();
+		}
+		for(int k=0;k<candidates.length;k++) {
+			if(decisions[k]!=-1) {
+				toBeAdded[count] = candidates[k];
+				addedTo[count++] = decisions[k];
 			}
 		}
 		//add the nodes we got
-		for(String node: toBeAdded.keySet()) {
-			logger.log(Level.FINEST, "add "+node+" to group "+toBeAdded.get(node)+"\n");
-			groups.get(toBeAdded.get(node)).add(node);
+		boolean finest = logger.isLoggable(Level.FINEST);
+		for(int k=0;k<count;k++) {
+			if(finest)logger.log(Level.FINEST, "add {} to group {}\n", compact.getLabel(toBeAdded[k]), addedTo[k]);
+			labels[toBeAdded[k]] = addedTo[k];
 		}
 		
-		return toBeAdded;
+		return Arrays.copyOf(toBeAdded, count);
+	}
+	
+	/**
+	 * finds the group an unclassified node should be added to. The links of the node are accumulated per neighbour group in a
+	 * single pass, then the group with the strictly highest score is chosen. Groups without links to the node score 0 (or less
+	 * when useOnlyInt is false) and can never be chosen, so they are not visited.
+	 * @param compact
+	 * @param labels group id of each node, -1 for unclassified nodes
+	 * @param weights edge weights aligned with compact
+	 * @param id the node to check
+	 * @param affinity empty accumulator, left empty on return
+	 * @param usePredecessors
+	 * @param useOnlyInt
+	 * @param useWeightsInAddition
+	 * @return the group to add the node to, or -1 if no group has a unique maximum score
+	 */
+	protected int closestGroup(CompactGraph compact, EdgeWeights weights, int[] labels, int id, CommunityAffinity affinity, 
+			boolean usePredecessors, boolean useOnlyInt, boolean useWeightsInAddition) {
+		String node = compact.getLabel(id);
+		//check if we can add to a group
+		if(logger.isLoggable(Level.FINEST))logger.log(Level.FINEST, "checking node: "+node+"\n");
+		
+		int degree = compact.getDegree(id);
+		int links = degree;
+		if(degree>0) {
+			//depend on successors
+			affinity.scan(compact, weights, labels, id);
+		}else if(usePredecessors) {
+			//add if node have only predecessors from one group
+			//current version, add node to group where in-edges coming are more
+			ArrayList<String> predecessors = graph.getPredecessors(node);
+			links = predecessors.size();
+			for(String p:predecessors) {
+				int group = labels[compact.getId(p)];
+				if(group!=-1)affinity.add(group, 0);
+			}
+		}
+		return closestGroup(affinity, links, useOnlyInt, useWeightsInAddition && degree>0);
+	}
+	
+	/**
+	 * chooses among the groups accumulated for a node the one with the strictly highest score, v1.0.17102026
+	 * @param affinity links of the node to its neighbour groups, left empty on return
+	 * @param links number of links of the node
+	 * @param useOnlyInt
+	 * @param useWeights if true groups are scored by the weights of the links, else by their number
+	 * @return the group to add the node to, or -1 if no group has a unique maximum score
+	 */
+	protected int closestGroup(CommunityAffinity affinity, int links, boolean useOnlyInt, boolean useWeights) {
+		boolean finest = logger.isLoggable(Level.FINEST);
+		int possibleGroupId=-1;
+		double maxDifference=0;
+		boolean validMax = true;//max is not valid if it was repeated twice
+		
+		for(int k=0;k<affinity.size();k++) {
+			int groupId = affinity.getGroup(k);
+			int[] nbLinks = {affinity.getLinks(k), links-affinity.getLinks(k)};
+			//starting from v1.8.28112018, add node to other group if it has edges to it more than to others,
+			//previously, addition was based on adding node to group that maximise dif between int and ext
+			double nb=(useOnlyInt)?nbLinks[0]:nbLinks[0]-nbLinks[1];
+			//use weights to calculate nb
+			if(useWeights) {
+				//double outWeight = graph.getOutWeight(node);
+				nb = affinity.getWeight(k);/*/outWeight;//v1.13.26012019*/
+			}
+			if(nb>=maxDifference) {
+				if(nb==maxDifference)validMax=false;
+				else if(nb>maxDifference) {
+					validMax=true;
+					maxDifference = nb;
+					possibleGroupId = groupId;
+				}
+			}
+			if((!useOnlyInt && nbLinks[0]-nbLinks[1]>maxDifference) || (useOnlyInt && nbLinks[0]>maxDifference)) {
+				if(!useWeights)throw new RuntimeException("int:"+nbLinks[0]+", ext:"+nbLinks[1]+", currentMaxDif:"+maxDifference);
+			}
+			if(finest)logger.log(Level.FINEST, "wrt group:"+groupId+", int:"+nbLinks[0]+", ext:"+nbLinks[1]+", currentMaxDif:"+maxDifference+"\n");
+		}
+		affinity.clear();
+		
+		if(possibleGroupId!=-1 && validMax) {
+			//we can add to a group
+			if(finest)logger.log(Level.FINEST, "maxDifference:"+maxDifference+" for group:"+possibleGroupId+", to be added\n");
+			return possibleGroupId;
+		}
+		if(finest)logger.log(Level.FINEST, "no possible group to add to!\n");
+		return -1;
+	}
+	
+	/**
+	 * checks the candidates [from, to) against a snapshot of the groups, splitting in halves down to {@link #GRAIN} candidates.
+	 * Each leaf uses its own accumulator.
+	 */
+	@SuppressWarnings("serial")
+	private class ClosestGroupTask extends RecursiveAction {
+		private static final int GRAIN = 512;
+		private final CompactGraph compact;
+		private final EdgeWeights weights;
+		private final int[] labels;
+		private final int numberGroups;
+		private final int[] candidates;
+		private final int[] decisions;
+		private final int from;
+		private final int to;
+		private final boolean usePredecessors;
+		private final boolean useOnlyInt;
+		private final boolean useWeightsInAddition;
+		
+		ClosestGroupTask(CompactGraph compact, EdgeWeights weights, int[] labels, int numberGroups, int[] candidates, int[] decisions, 
+				int from, int to, boolean usePredecessors, boolean useOnlyInt, boolean useWeightsInAddition) {
+			this.compact = compact;
+			this.weights = weights;
+			this.labels = labels;
+			this.numberGroups = numberGroups;
+			this.candidates = candidates;
+			this.decisions = decisions;
+			this.from = from;
+			this.to = to;
+			this.usePredecessors = usePredecessors;
+			this.useOnlyInt = useOnlyInt;
+			this.useWeightsInAddition = useWeightsInAddition;
+		}
+		
+		@Override
+		protected void compute() {
+			if(to-from>GRAIN && getPool()!=null) {
+				int middle = (from+to)>>>1;
+				invokeAll(new ClosestGroupTask(compact, weights, labels, numberGroups, candidates, decisions, from, middle, 
+								usePredecessors, useOnlyInt, useWeightsInAddition),
+						new ClosestGroupTask(compact, weights, labels, numberGroups, candidates, decisions, middle, to, 
+								usePredecessors, useOnlyInt, useWeightsInAddition));
+				return;
+			}
+			CommunityAffinity affinity = new CommunityAffinity(numberGroups);
+			for(int k=from;k<to;k++) {
+				decisions[k] = closestGroup(compact, weights, labels, candidates[k], affinity, usePredecessors, useOnlyInt, 
+						useWeightsInAddition);
+			}
+		}
 	}
 	
 	/**
@@ -259,17 +748,98 @@ public class CoreExpansionAlgorithm extends CommunitiesWriter{
 		if(args.length==1 && args[0].equals("-h")) {
 			//print help
 			System.out.println("Please provide the following argument to run the program:");
-			System.out.println("-f followed by the network file name (undirected, unweighted, one edge per line)");
+			System.out.println("-f followed by the network file name (undirected, unweighted, one edge per line) or a snapshot written with -s");
+			System.out.println("optional:");
+			System.out.println("-t followed by the number of threads (default: number of available processors)");
+			System.out.println("-s followed by a file name to write a binary snapshot of the network and its weights");
+			System.out.println("-w followed by the intermediate results to write to the logs folder, comma separated, or none");
+			System.out.println("   (weights, outweights, maximums, iterations, deltas, deltas.gz; default: weights,outweights,maximums,iterations)");
+			System.out.println("-m followed by a memory budget in megabytes for the edges, the network is then kept on disk (out-of-core mode)");
+			System.out.println("-k followed by a sketch size, the overlaps between nodes of higher degree are then estimated (in memory only)");
+			System.out.println("-e followed by yes to compute again exactly the estimated overlaps around possible local maximums");
+			System.out.println("-n followed by a number of shards, each run by its own process (partitioned mode)");
+			System.out.println("-r followed by the shard run by this process (default: one process per shard is started on this machine)");
+			System.out.println("-x followed by the transport between the shards: socket, socket:port, socket:host:port,host:port,... or");
+			System.out.println("   file:folder (default: socket on ports 47100 and up)");
 			return false;
 		}
 		
-		if(args.length == 2) {
+		if(args.length%2 == 0) {
 			int index = -1;
 			
 			index = argsList.indexOf("-f");
 			if(index==-1) return loadArgs(new String[]{"-h"});
 			graphPath = argsList.get(index+1);
 			
+			index = argsList.indexOf("-t");
+			if(index!=-1) {
+				try {
+					threads = Integer.parseInt(argsList.get(index+1));
+				}catch (NumberFormatException e) {
+					return loadArgs(new String[]{"-h"});
+				}
+				if(threads<1) return loadArgs(new String[]{"-h"});
+			}
+			
+			index = argsList.indexOf("-s");
+			if(index!=-1) snapshotPath = argsList.get(index+1);
+			
+			index = argsList.indexOf("-m");
+			if(index!=-1) {
+				try {
+					memoryBudget = Long.parseLong(argsList.get(index+1))<<20;
+				}catch (NumberFormatException e) {
+					return loadArgs(new String[]{"-h"});
+				}
+				if(memoryBudget<1) return loadArgs(new String[]{"-h"});
+			}
+			
+			index = argsList.indexOf("-k");
+			if(index!=-1) {
+				try {
+					sketchSize = Integer.parseInt(argsList.get(index+1));
+				}catch (NumberFormatException e) {
+					return loadArgs(new String[]{"-h"});
+				}
+				if(sketchSize<2) return loadArgs(new String[]{"-h"});
+			}
+			
+			index = argsList.indexOf("-e");
+			if(index!=-1) exactRecheck = argsList.get(index+1).equals("yes");
+			
+			index = argsList.indexOf("-n");
+			if(index!=-1) {
+				try {
+					shards = Integer.parseInt(argsList.get(index+1));
+				}catch (NumberFormatException e) {
+					return loadArgs(new String[]{"-h"});
+				}
+				if(shards<1) return loadArgs(new String[]{"-h"});
+			}
+			
+			index = argsList.indexOf("-r");
+			if(index!=-1) {
+				try {
+					shardRank = Integer.parseInt(argsList.get(index+1));
+				}catch (NumberFormatException e) {
+					return loadArgs(new String[]{"-h"});
+				}
+				if(shardRank<0 || shardRank>=shards) return loadArgs(new String[]{"-h"});
+			}
+			
+			index = argsList.indexOf("-x");
+			if(index!=-1) transport = argsList.get(index+1);
+			
+			index = argsList.indexOf("-w");
+			if(index!=-1) {
+				try {
+					artifacts = IntermediateWriter.parseArtifacts(argsList.get(index+1));
+				}catch (IllegalArgumentException e) {
+					System.out.println(e.getMessage());
+					return loadArgs(new String[]{"-h"});
+				}
+			}
+			
                         File graphFile = new File(graphPath);
 			
 			if(!graphFile.exists()) 
@@ -282,6 +852,7 @@ public class CoreExpansionAlgorithm extends CommunitiesWriter{
                         outputDirectory=(new File(graphFile.getCanonicalPath())).getParentFile().getAbsolutePath();
                         communities = outputDirectory + "/communities_" + graphFile.getName();
 			logFolder = outputDirectory + "/logs";
+                        reportPath = outputDirectory + "/report_" + graphFile.getName() + ".json";
                         
                         File logFile = new File(logFolder);
                         if(!logFile.exists()) logFile.mkdir();
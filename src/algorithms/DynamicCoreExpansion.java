@@ -0,0 +1,1014 @@
+package algorithms;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import networkanalysis.IntersectionKernel;
+import networkanalysis.NeighborhoodOverlap;
+import utils.CompactGraph;
+import utils.EdgeWeights;
+import utils.Graph;
+import utils.Metrics;
+import utils.NodeOrder;
+
+/**
+ * Core Expansion on a graph that changes by batches of edge insertions and deletions. The communities of the initial graph are
+ * found once, then each batch only updates the region it touches:
+ * <ol>
+ * <li>the overlap of an edge only depends on the neighbourhoods of its ends, so only the edges of the nodes whose neighbourhood
+ * changed are recomputed</li>
+ * <li>out-weights are recomputed for these nodes and their neighbours</li>
+ * <li>the local maximum status is checked again for those nodes and their neighbours</li>
+ * <li>the communities of the changed nodes and of the nodes whose maximum status changed are dissolved, together with the
+ * unclassified nodes around them, and expanded again from their local maximums: the region and its neighbours are copied to a
+ * small {@link CompactGraph} and go through the same core construction and addition iterations as a full run, while the
+ * neighbours keep their communities</li>
+ * <li>if a neighbour would see the region change, i.e. a node it counted is added to another community or at another iteration,
+ * an edge it counted changed weight, or a maximum of the region is next to it while it is a maximum too, its community is
+ * dissolved as well and the region is expanded again</li>
+ * </ol>
+ * The cost of a batch depends on the size of the touched communities, of the communities around them that change, and of the
+ * neighbourhoods of the changed nodes, not on the size of the graph. Weights, out-weights, maximum status and communities are
+ * those of a full run on the updated graph, a full run only differs by the community ids. A rebuilt community keeps the id of the
+ * dissolved community it shares the most nodes with, so the reported {@link PartitionDelta} only lists real changes.
+ * <p>
+ * Each edge keeps its position in the edge list, inserted edges come after all others, so out-weights are summed and local
+ * maximums are visited in the same order as a full run, see {@link NodeOrder}.
+ * @version 1.2.17102026
+ */
+public class DynamicCoreExpansion extends CoreExpansionAlgorithm {
+
+	private static final int EXTRA = 1<<24;
+
+	private final HashMap<String, Integer> ids = new HashMap<>();
+	private int n = 0;
+	private String[] names;
+	/**
+	 * neighbours of each node sorted by id, the first degrees[u] entries are used
+	 */
+	private int[][] neighbours;
+	/**
+	 * overlap weight of each edge, aligned with neighbours
+	 */
+	private double[][] edgeWeights;
+	/**
+	 * position of each edge in the edge list, aligned with neighbours
+	 */
+	private int[][] edgeOrders;
+	private int nextOrder;
+	private int[] degrees;
+	private double[] outWeights;
+	private boolean[] maximums;
+	private int[] labels;
+	/**
+	 * the addition iteration that classified each node: 0 for the cores, then 1, 2... and {@link #EXTRA}+1, +2... for the addition
+	 * without weights
+	 */
+	private int[] levels;
+	private final Communities partition = new Communities();
+	/**
+	 * each node is marked with the number of the batch that put it in a set, so sets are never cleared
+	 */
+	private int[] changed;
+	private int[] reweighted;
+	private int[] checked;
+	private int[] dissolved;
+	private int[] localStamps;
+	private int[] localIds;
+	private int epoch = 0;
+	/**
+	 * number of expansions so far, a batch may expand several times
+	 */
+	private int expansions = 0;
+
+	/**
+	 * computes the overlap weights and the communities of the initial graph
+	 * @param graph
+	 */
+	public DynamicCoreExpansion(Graph<String> graph) {
+		this(graph, NeighborhoodOverlap.calculateWeights(graph, threads));
+	}
+
+	/**
+	 * computes the communities of the initial graph
+	 * @param graph
+	 * @param weights overlap weights of graph, e.g. loaded by {@link utils.GraphSnapshot#load(String)}
+	 */
+	public DynamicCoreExpansion(Graph<String> graph, EdgeWeights weights) {
+		super(graph);
+		if(graph.getEdgeWeights()!=weights)graph.setWeights(weights);
+		CompactGraph compact = graph.getCompactGraph();
+		int[] offsets = compact.getOffsets();
+		int[] targets = compact.getTargets();
+		int[] edgeIds = compact.getEdgeIds();
+		EdgeWeights aligned = graph.getEdgeWeights();
+		nextOrder = compact.getNumberEdgeIds();
+		n = compact.getNumberNodes();
+		allocate(Math.max(16, n));
+		for(int u=0;u<n;u++) {
+			names[u] = compact.getLabel(u);
+			ids.put(names[u], u);
+			degrees[u] = offsets[u+1]-offsets[u];
+			neighbours[u] = Arrays.copyOfRange(targets, offsets[u], offsets[u+1]);
+			edgeWeights[u] = new double[degrees[u]];
+			edgeOrders[u] = Arrays.copyOfRange(edgeIds, offsets[u], offsets[u+1]);
+			for(int slot=offsets[u];slot<offsets[u+1];slot++) {
+				edgeWeights[u][slot-offsets[u]] = aligned.get(slot);
+			}
+			outWeights[u] = outWeight(u);
+		}
+		for(int u=0;u<n;u++) {
+			maximums[u] = isMaximum(u);
+		}
+		//the initial communities are the expansion of the whole graph as one region
+		Arrays.fill(labels, -1);
+		epoch++;
+		IntList all = new IntList();
+		for(int u=0;u<n;u++) {
+			mark(all, dissolved, u);
+		}
+		expand(all, new IntList(), new PartitionDelta());
+	}
+
+	/**
+	 * applies a batch of edge changes and updates the communities of the region it touches
+	 * @param batch
+	 * @return the nodes whose community changed, with the created and removed communities
+	 */
+	public PartitionDelta apply(Batch batch) {
+		long start = System.nanoTime();
+		epoch++;
+		PartitionDelta delta = new PartitionDelta();
+		try(Metrics.Phase phase = Metrics.phase("dynamicBatch")) {
+			IntList touched = new IntList();
+			for(int k=0;k<batch.size();k++) {
+				int a = idOf(batch.sources.get(k), batch.inserts.get(k));
+				int b = idOf(batch.targets.get(k), batch.inserts.get(k));
+				if(a<0 || b<0 || a==b)continue;
+				if(batch.inserts.get(k)) {
+					if(!link(a, b))continue;
+					delta.inserted++;
+				}else {
+					if(!unlink(a, b))continue;
+					delta.deleted++;
+				}
+				mark(touched, changed, a);
+				mark(touched, changed, b);
+			}
+
+			//1. overlaps of the edges of the changed nodes, each edge once
+			for(int i=0;i<touched.size;i++) {
+				int u = touched.values[i];
+				for(int k=0;k<degrees[u];k++) {
+					int v = neighbours[u][k];
+					if(changed[v]==epoch && v<u)continue;
+					double weight = overlap(u, v);
+					edgeWeights[u][k] = weight;
+					edgeWeights[v][Arrays.binarySearch(neighbours[v], 0, degrees[v], u)] = weight;
+					delta.reweightedEdges++;
+				}
+			}
+			//2. out-weights of the changed nodes and their neighbours
+			IntList region = new IntList();
+			for(int i=0;i<touched.size;i++) {
+				int u = touched.values[i];
+				mark(region, reweighted, u);
+				for(int k=0;k<degrees[u];k++) {
+					mark(region, reweighted, neighbours[u][k]);
+				}
+			}
+			for(int i=0;i<region.size;i++) {
+				outWeights[region.values[i]] = outWeight(region.values[i]);
+			}
+			//3. maximum status of these nodes and their neighbours
+			IntList check = new IntList();
+			for(int i=0;i<region.size;i++) {
+				int u = region.values[i];
+				mark(check, checked, u);
+				for(int k=0;k<degrees[u];k++) {
+					mark(check, checked, neighbours[u][k]);
+				}
+			}
+			IntList seeds = new IntList();
+			for(int i=0;i<touched.size;i++) {
+				seeds.add(touched.values[i]);
+			}
+			for(int i=0;i<check.size;i++) {
+				int u = check.values[i];
+				boolean maximum = isMaximum(u);
+				if(maximum!=maximums[u]) {
+					maximums[u] = maximum;
+					seeds.add(u);
+				}
+			}
+			delta.checkedNodes = check.size;
+
+			//4. dissolve the affected communities and the unclassified nodes around them
+			IntList dissolvedNodes = new IntList();
+			IntList dissolvedIds = new IntList();
+			for(int i=0;i<seeds.size;i++) {
+				dissolve(seeds.values[i], dissolvedNodes, dissolvedIds);
+			}
+			for(int i=0;i<region.size;i++) {
+				if(labels[region.values[i]]==-1)mark(dissolvedNodes, dissolved, region.values[i]);
+			}
+			addUnclassifiedNeighbours(dissolvedNodes);
+
+			//5. expand the region again, its neighbours keep their communities unless the new region changes what they saw
+			for(IntList conflicts=expand(dissolvedNodes, dissolvedIds, delta);conflicts.size>0;
+					conflicts=expand(dissolvedNodes, dissolvedIds, delta)) {
+				for(int i=0;i<conflicts.size;i++) {
+					dissolve(conflicts.values[i], dissolvedNodes, dissolvedIds);
+				}
+				addUnclassifiedNeighbours(dissolvedNodes);
+				delta.widenings++;
+			}
+			delta.expandedNodes = dissolvedNodes.size;
+			if(pool!=null) {
+				pool.shutdown();
+				pool = null;
+			}
+			delta.nanos = System.nanoTime()-start;
+			phase.set("inserted", delta.inserted).set("deleted", delta.deleted).set("reweighted", delta.reweightedEdges)
+					.set("expanded", delta.expandedNodes).set("widenings", delta.widenings).set("changed", delta.size());
+		}
+		logger.log(Level.FINER, "batch: +{} -{} edges, {} nodes expanded again, {}\n", delta.inserted, delta.deleted,
+				delta.expandedNodes, delta);
+		return delta;
+	}
+
+	/**
+	 * dissolves the community of u, or only u if it is unclassified
+	 */
+	private void dissolve(int u, IntList dissolvedNodes, IntList dissolvedIds) {
+		int community = labels[u];
+		if(community!=-1 && partition.dissolvedAt[community]!=epoch) {
+			partition.dissolvedAt[community] = epoch;
+			dissolvedIds.add(community);
+			for(int k=0;k<partition.sizes[community];k++) {
+				mark(dissolvedNodes, dissolved, partition.members[community][k]);
+			}
+		}
+		mark(dissolvedNodes, dissolved, u);
+	}
+
+	/**
+	 * adds the unclassified nodes reachable from the dissolved nodes through unclassified nodes, so the nodes around the region
+	 * are all classified
+	 */
+	private void addUnclassifiedNeighbours(IntList dissolvedNodes) {
+		for(int i=0;i<dissolvedNodes.size;i++) {
+			int u = dissolvedNodes.values[i];
+			for(int k=0;k<degrees[u];k++) {
+				if(labels[neighbours[u][k]]==-1)mark(dissolvedNodes, dissolved, neighbours[u][k]);
+			}
+		}
+	}
+
+	/**
+	 * expands the dissolved nodes again and keeps the result if the nodes around them see the region as in the last expansion:
+	 * the same communities added at the same iterations, the same weights on the edges they used, and no local maximum next to
+	 * a maximum of the region. A full run then gives them the same communities as before, so the partition is the one of a
+	 * full run on the updated graph.
+	 * @return the nodes around the region that would see it change, nothing is kept if there are any
+	 */
+	private IntList expand(IntList dissolvedNodes, IntList dissolvedIds, PartitionDelta delta) {
+		int stamp = ++expansions;
+		int[] region = Arrays.copyOf(dissolvedNodes.values, dissolvedNodes.size);
+		Arrays.sort(region);
+		//local ids: the region first, then its neighbours, both in id order so that sorted neighbours stay sorted
+		for(int k=0;k<region.length;k++) {
+			localStamps[region[k]] = stamp;
+			localIds[region[k]] = k;
+		}
+		IntList boundary = new IntList();
+		for(int u:region) {
+			for(int k=0;k<degrees[u];k++) {
+				int v = neighbours[u][k];
+				if(localStamps[v]!=stamp) {
+					localStamps[v] = stamp;
+					boundary.add(v);
+				}
+			}
+		}
+		int[] outside = Arrays.copyOf(boundary.values, boundary.size);
+		Arrays.sort(outside);
+		for(int k=0;k<outside.length;k++) {
+			localIds[outside[k]] = region.length+k;
+		}
+		int size = region.length+outside.length;
+		String[] localNames = new String[size];
+		int[] offsets = new int[size+1];
+		for(int k=0;k<region.length;k++) {
+			localNames[k] = names[region[k]];
+			offsets[k+1] = degrees[region[k]];
+			for(int i=0;i<degrees[region[k]];i++) {
+				int local = localIds[neighbours[region[k]][i]];
+				if(local>=region.length)offsets[local+1]++;
+			}
+		}
+		for(int k=0;k<outside.length;k++) {
+			localNames[region.length+k] = names[outside[k]];
+		}
+		for(int k=0;k<size;k++) {
+			offsets[k+1] += offsets[k];
+		}
+		int[] targets = new int[offsets[size]];
+		long[] orders = new long[offsets[size]];
+		int[] fill = Arrays.copyOf(offsets, size);
+		for(int k=0;k<region.length;k++) {
+			int u = region[k];
+			//neighbours in the region have smaller local ids than the others
+			for(int i=0;i<degrees[u];i++) {
+				int local = localIds[neighbours[u][i]];
+				if(local<region.length) {
+					orders[fill[k]] = edgeOrders[u][i];
+					targets[fill[k]++] = local;
+				}
+			}
+			for(int i=0;i<degrees[u];i++) {
+				int local = localIds[neighbours[u][i]];
+				if(local>=region.length) {
+					orders[fill[k]] = edgeOrders[u][i];
+					targets[fill[k]++] = local;
+					orders[fill[local]] = edgeOrders[u][i];
+					targets[fill[local]++] = k;
+				}
+			}
+		}
+		//the edges keep their order so that the cores are merged as in a full run
+		CompactGraph local = inducedGraph(localNames, offsets, targets, orders);
+		EdgeWeights localWeights = new EdgeWeights(local, 0);
+		for(int k=0;k<region.length;k++) {
+			int u = region[k];
+			for(int slot=offsets[k];slot<offsets[k+1];slot++) {
+				int global = targets[slot]<region.length?region[targets[slot]]:outside[targets[slot]-region.length];
+				localWeights.set(slot, edgeWeights[u][Arrays.binarySearch(neighbours[u], 0, degrees[u], global)]);
+			}
+		}
+		HashMap<String, Double> maximumNodes = new HashMap<>();
+		for(int u:listMaximums(region)) {
+			maximumNodes.put(names[u], outWeights[u]);
+		}
+
+		//cores of the region get the local ids below maximumNodes.size(), the communities around it the ids after
+		int[] localLabels = findCores(local, maximumNodes);
+		int first = maximumNodes.size();
+		HashMap<Integer, Integer> outsideIds = new HashMap<>();
+		IntList outsideCommunities = new IntList();
+		for(int k=0;k<outside.length;k++) {
+			int community = labels[outside[k]];
+			Integer id = outsideIds.get(community);
+			if(id==null) {
+				id = first+outsideIds.size();
+				outsideIds.put(community, id);
+				outsideCommunities.add(community);
+			}
+			localLabels[region.length+k] = id;
+		}
+		int[] groupIds = getGroupIds(localLabels);
+		//the communities around the region appear in the iteration that added each node in the last expansion, as in a full run
+		int[] hidden = new int[outside.length];
+		Integer[] boxed = new Integer[outside.length];
+		for(int k=0;k<outside.length;k++) {
+			hidden[k] = localLabels[region.length+k];
+			if(levels[outside[k]]>0)localLabels[region.length+k] = -1;
+			boxed[k] = k;
+		}
+		Arrays.sort(boxed, (x, y) -> Integer.compare(levels[outside[x]], levels[outside[y]]));
+		int[] order = new int[outside.length];
+		int next = 0;
+		for(int k=0;k<outside.length;k++) {
+			order[k] = boxed[k];
+			if(levels[outside[order[k]]]==0)next++;
+		}
+		int[] localLevels = new int[region.length];
+		for(int k=0;k<region.length;k++) {
+			localLevels[k] = localLabels[k]==-1?-1:0;
+		}
+		ExpansionFrontier frontier = new ExpansionFrontier(local);
+		for(int phase=0;phase<(useWeightsInAddition?2:1);phase++) {
+			int base = phase==0?0:EXTRA;
+			boolean useWeights = phase==0 && useWeightsInAddition;
+			IntList candidates = new IntList();
+			for(int k=0;k<region.length;k++) {
+				if(localLabels[k]==-1)candidates.add(k);
+			}
+			for(int j=1;;j++) {
+				int[] added = addNodesToClosestGroup(local, localWeights, localLabels, groupIds, 
+						Arrays.copyOf(candidates.values, candidates.size), false, true, useWeights);
+				IntList changedNodes = new IntList();
+				for(int k:added) {
+					localLevels[k] = base+j;
+					changedNodes.add(k);
+				}
+				while(next<order.length && levels[outside[order[next]]]<=base+j) {
+					int k = region.length+order[next++];
+					localLabels[k] = hidden[k-region.length];
+					changedNodes.add(k);
+				}
+				boolean pending = next<order.length && levels[outside[order[next]]]<base+EXTRA;
+				if(changedNodes.size==0 && !pending)break;
+				candidates = new IntList();
+				for(int k:frontier.next(localLabels, Arrays.copyOf(changedNodes.values, changedNodes.size))) {
+					if(k<region.length)candidates.add(k);
+				}
+			}
+		}
+
+		//a rebuilt core keeps the id of the dissolved community it shares the most nodes with
+		HashMap<Long, Integer> shared = new HashMap<>();
+		for(int k=0;k<region.length;k++) {
+			int community = labels[region[k]];
+			if(localLabels[k]!=-1 && localLabels[k]<first && community!=-1) {
+				shared.merge(((long)localLabels[k]<<32)|community, 1, Integer::sum);
+			}
+		}
+		ArrayList<Map.Entry<Long, Integer>> pairs = new ArrayList<>(shared.entrySet());
+		pairs.sort((x, y) -> x.getValue().equals(y.getValue())?Long.compare(x.getKey(), y.getKey()):y.getValue()-x.getValue());
+		int[] global = new int[first];
+		Arrays.fill(global, -1);
+		for(Map.Entry<Long, Integer> pair:pairs) {
+			int core = (int)(pair.getKey()>>>32);
+			int community = (int)(long)pair.getKey();
+			if(global[core]==-1 && partition.dissolvedAt[community]==epoch && partition.keptAt[community]!=stamp) {
+				global[core] = community;
+				partition.keptAt[community] = stamp;
+			}
+		}
+
+		IntList conflicts = new IntList();
+		for(int k=0;k<region.length;k++) {
+			int u = region[k];
+			int label = localLabels[k];
+			if(label>=first)label = outsideCommunities.values[label-first];
+			else if(label!=-1)label = global[label]==-1?-2:global[label];
+			boolean same = label==labels[u] && localLevels[k]==levels[u];
+			//the first iteration that sees u classified, before or after the batch
+			int seen = Math.min(levels[u]==-1?Integer.MAX_VALUE:levels[u], localLevels[k]==-1?Integer.MAX_VALUE:localLevels[k]);
+			for(int i=0;i<degrees[u];i++) {
+				int v = neighbours[u][i];
+				if(localIds[v]<region.length)continue;
+				boolean merged = maximums[u] && maximums[v];
+				boolean reweightedEdge = changed[u]==epoch && levels[v]<EXTRA;
+				if(merged || seen<levels[v] && (!same || reweightedEdge))conflicts.add(v);
+			}
+		}
+		if(conflicts.size>0)return conflicts;
+
+		for(int k=0;k<region.length;k++) {
+			levels[region[k]] = localLevels[k];
+		}
+
+		for(int k=0;k<region.length;k++) {
+			int u = region[k];
+			int label = localLabels[k];
+			if(label>=first) {
+				label = outsideCommunities.values[label-first];
+			}else if(label!=-1) {
+				if(global[label]==-1) {
+					global[label] = partition.newId();
+					delta.created.add(global[label]);
+				}
+				label = global[label];
+			}
+			if(label!=labels[u]) {
+				delta.add(names[u], labels[u], label);
+				if(labels[u]!=-1)partition.remove(u, labels[u]);
+				if(label!=-1)partition.add(u, label);
+				labels[u] = label;
+			}
+		}
+		for(int i=0;i<dissolvedIds.size;i++) {
+			int community = dissolvedIds.values[i];
+			if(partition.sizes[community]==0) {
+				partition.free(community);
+				delta.removed.add(community);
+			}
+		}
+		return conflicts;
+	}
+
+	/**
+	 * @param label
+	 * @param create if true an unknown label gets a new node without edges
+	 * @return the id of the node, -1 if unknown
+	 */
+	private int idOf(String label, boolean create) {
+		Integer id = ids.get(label);
+		if(id!=null)return id;
+		if(!create)return -1;
+		if(n==names.length)grow(2*n);
+		names[n] = label;
+		neighbours[n] = new int[4];
+		edgeWeights[n] = new double[4];
+		edgeOrders[n] = new int[4];
+		labels[n] = -1;
+		levels[n] = -1;
+		ids.put(label, n);
+		return n++;
+	}
+
+	private boolean link(int a, int b) {
+		int position = Arrays.binarySearch(neighbours[a], 0, degrees[a], b);
+		if(position>=0)return false;
+		int order = nextOrder++;
+		insert(a, -position-1, b, order);
+		insert(b, -Arrays.binarySearch(neighbours[b], 0, degrees[b], a)-1, a, order);
+		return true;
+	}
+
+	private void insert(int u, int position, int v, int order) {
+		if(degrees[u]==neighbours[u].length) {
+			neighbours[u] = Arrays.copyOf(neighbours[u], Math.max(4, 2*degrees[u]));
+			edgeWeights[u] = Arrays.copyOf(edgeWeights[u], neighbours[u].length);
+			edgeOrders[u] = Arrays.copyOf(edgeOrders[u], neighbours[u].length);
+		}
+		System.arraycopy(neighbours[u], position, neighbours[u], position+1, degrees[u]-position);
+		System.arraycopy(edgeWeights[u], position, edgeWeights[u], position+1, degrees[u]-position);
+		System.arraycopy(edgeOrders[u], position, edgeOrders[u], position+1, degrees[u]-position);
+		neighbours[u][position] = v;
+		edgeWeights[u][position] = 0;
+		edgeOrders[u][position] = order;
+		degrees[u]++;
+	}
+
+	private boolean unlink(int a, int b) {
+		int position = Arrays.binarySearch(neighbours[a], 0, degrees[a], b);
+		if(position<0)return false;
+		remove(a, position);
+		remove(b, Arrays.binarySearch(neighbours[b], 0, degrees[b], a));
+		return true;
+	}
+
+	private void remove(int u, int position) {
+		System.arraycopy(neighbours[u], position+1, neighbours[u], position, degrees[u]-position-1);
+		System.arraycopy(edgeWeights[u], position+1, edgeWeights[u], position, degrees[u]-position-1);
+		System.arraycopy(edgeOrders[u], position+1, edgeOrders[u], position, degrees[u]-position-1);
+		degrees[u]--;
+	}
+
+	/**
+	 * the overlap of the edge a-b, computed like {@link NeighborhoodOverlap#calculateWeights(Graph, int)}
+	 */
+	private double overlap(int a, int b) {
+		//a and b are neighbours of each other and never belong to the intersection
+		int sizeA = degrees[a]-1;
+		int sizeB = degrees[b]-1;
+		int inter = 0;
+		int[] x = neighbours[a];
+		int[] y = neighbours[b];
+		for(int i=0, j=0;i<degrees[a] && j<degrees[b];) {
+			if(x[i]<y[j])i++;
+			else if(x[i]>y[j])j++;
+			else {
+				inter++;
+				i++;
+				j++;
+			}
+		}
+		double union = sizeA+sizeB-inter;
+		if(union<=0)return 0;
+		return IntersectionKernel.round(inter/union);
+	}
+
+	/**
+	 * the sum of the weights of the edges of u in edge list order, the rounding then matches a full run
+	 */
+	private double outWeight(int u) {
+		long[] keys = new long[degrees[u]];
+		for(int k=0;k<degrees[u];k++) {
+			keys[k] = ((long)edgeOrders[u][k]<<32)|k;
+		}
+		Arrays.sort(keys);
+		double sum = 0;
+		for(long key:keys) {
+			sum += edgeWeights[u][(int)key];
+		}
+		return sum;
+	}
+
+	/**
+	 * @param region
+	 * @return the local maximums of the region in the order a full run lists them, see {@link NodeOrder#sort(int[], long[], long[])}
+	 */
+	private int[] listMaximums(int[] region) {
+		int count = 0;
+		for(int u:region) {
+			if(maximums[u])count++;
+		}
+		int[] listed = new int[count];
+		long[] keys = new long[count];
+		long[] edges = new long[count];
+		int capacity = NodeOrder.capacity(n);
+		count = 0;
+		for(int u:region) {
+			if(!maximums[u])continue;
+			listed[count] = u;
+			keys[count] = NodeOrder.hashKey(names[u], capacity, u);
+			edges[count] = -1;
+			for(int k=0;k<degrees[u];k++) {
+				int v = neighbours[u][k];
+				long key = NodeOrder.hashKey(names[v], capacity, v);
+				if(key<keys[count]) {
+					keys[count] = key;
+					edges[count] = edgeOrders[u][k];
+				}
+			}
+			count++;
+		}
+		NodeOrder.sort(listed, keys, edges);
+		return listed;
+	}
+
+	/**
+	 * same rule as {@link networkanalysis.LocalMaximumFinder#findLocalMaximumNodes(Graph)}
+	 */
+	private boolean isMaximum(int u) {
+		if(outWeights[u]==0)return false;
+		for(int k=0;k<degrees[u];k++) {
+			if(outWeights[u]<outWeights[neighbours[u][k]])return false;
+		}
+		return true;
+	}
+
+	private void mark(IntList list, int[] stamps, int u) {
+		if(stamps[u]==epoch)return;
+		stamps[u] = epoch;
+		list.add(u);
+	}
+
+	private void allocate(int capacity) {
+		names = new String[capacity];
+		neighbours = new int[capacity][];
+		edgeWeights = new double[capacity][];
+		edgeOrders = new int[capacity][];
+		degrees = new int[capacity];
+		outWeights = new double[capacity];
+		maximums = new boolean[capacity];
+		labels = new int[capacity];
+		levels = new int[capacity];
+		changed = new int[capacity];
+		reweighted = new int[capacity];
+		checked = new int[capacity];
+		dissolved = new int[capacity];
+		localStamps = new int[capacity];
+		localIds = new int[capacity];
+		partition.positions = new int[capacity];
+	}
+
+	private void grow(int capacity) {
+		names = Arrays.copyOf(names, capacity);
+		neighbours = Arrays.copyOf(neighbours, capacity);
+		edgeWeights = Arrays.copyOf(edgeWeights, capacity);
+		edgeOrders = Arrays.copyOf(edgeOrders, capacity);
+		degrees = Arrays.copyOf(degrees, capacity);
+		outWeights = Arrays.copyOf(outWeights, capacity);
+		maximums = Arrays.copyOf(maximums, capacity);
+		labels = Arrays.copyOf(labels, capacity);
+		levels = Arrays.copyOf(levels, capacity);
+		changed = Arrays.copyOf(changed, capacity);
+		reweighted = Arrays.copyOf(reweighted, capacity);
+		checked = Arrays.copyOf(checked, capacity);
+		dissolved = Arrays.copyOf(dissolved, capacity);
+		localStamps = Arrays.copyOf(localStamps, capacity);
+		localIds = Arrays.copyOf(localIds, capacity);
+		partition.positions = Arrays.copyOf(partition.positions, capacity);
+	}
+
+	/**
+	 * @param node
+	 * @return the community of the node, -1 if it is unclassified or unknown
+	 */
+	public int getCommunity(String node) {
+		Integer id = ids.get(node);
+		return id==null?-1:labels[id];
+	}
+
+	public int getNumberNodes() {
+		return n;
+	}
+
+	/**
+	 * @param node
+	 * @return the out-weight of the node, 0 if it is unknown
+	 */
+	public double getOutWeight(String node) {
+		Integer id = ids.get(node);
+		return id==null?0:outWeights[id];
+	}
+
+	/**
+	 * @param node
+	 * @return true if the node is a local maximum of the out-weights
+	 */
+	public boolean isMaximum(String node) {
+		Integer id = ids.get(node);
+		return id!=null && maximums[id];
+	}
+
+	/**
+	 * @param a
+	 * @param b
+	 * @return the overlap weight of the edge a-b, NaN if there is no such edge
+	 */
+	public double getWeight(String a, String b) {
+		Integer u = ids.get(a);
+		Integer v = ids.get(b);
+		if(u==null || v==null)return Double.NaN;
+		int position = Arrays.binarySearch(neighbours[u], 0, degrees[u], v);
+		return position<0?Double.NaN:edgeWeights[u][position];
+	}
+
+	/**
+	 * @return the current communities, nodes of each community in id order, O(n)
+	 */
+	public HashMap<Integer, ArrayList<String>> getCommunities() {
+		HashMap<Integer, ArrayList<String>> groups = new HashMap<>();
+		for(int u=0;u<n;u++) {
+			if(labels[u]==-1)continue;
+			ArrayList<String> group = groups.get(labels[u]);
+			if(group==null) {
+				group = new ArrayList<>();
+				groups.put(labels[u], group);
+			}
+			group.add(names[u]);
+		}
+		return groups;
+	}
+
+	/**
+	 * members of each community id, a node is removed by moving the last member to its place. Ids of removed communities are
+	 * reused.
+	 */
+	private static final class Communities {
+
+		int[][] members = new int[0][];
+		int[] sizes = new int[0];
+		int[] dissolvedAt = new int[0];
+		int[] keptAt = new int[0];
+		/**
+		 * position of each node in the members of its community
+		 */
+		int[] positions;
+		private final IntList free = new IntList();
+		private int next = 0;
+
+		private void ensure(int capacity) {
+			if(capacity<=sizes.length)return;
+			capacity = Math.max(capacity, 2*sizes.length);
+			members = Arrays.copyOf(members, capacity);
+			sizes = Arrays.copyOf(sizes, capacity);
+			dissolvedAt = Arrays.copyOf(dissolvedAt, capacity);
+			keptAt = Arrays.copyOf(keptAt, capacity);
+		}
+
+		int newId() {
+			if(free.size>0)return free.values[--free.size];
+			ensure(next+1);
+			return next++;
+		}
+
+		void free(int id) {
+			free.add(id);
+		}
+
+		void add(int node, int id) {
+			if(members[id]==null)members[id] = new int[4];
+			else if(sizes[id]==members[id].length)members[id] = Arrays.copyOf(members[id], 2*sizes[id]);
+			positions[node] = sizes[id];
+			members[id][sizes[id]++] = node;
+		}
+
+		void remove(int node, int id) {
+			int last = members[id][--sizes[id]];
+			members[id][positions[node]] = last;
+			positions[last] = positions[node];
+		}
+	}
+
+	/**
+	 * growable list of ints
+	 */
+	private static final class IntList {
+
+		int[] values = new int[16];
+		int size = 0;
+
+		void add(int value) {
+			if(size==values.length)values = Arrays.copyOf(values, 2*size);
+			values[size++] = value;
+		}
+	}
+
+	/**
+	 * a batch of edge insertions and deletions, applied in order. Inserting an existing edge or deleting a missing one does nothing.
+	 */
+	public static final class Batch {
+
+		private final ArrayList<String> sources = new ArrayList<>();
+		private final ArrayList<String> targets = new ArrayList<>();
+		private final ArrayList<Boolean> inserts = new ArrayList<>();
+
+		public Batch insert(String a, String b) {
+			sources.add(a);
+			targets.add(b);
+			inserts.add(true);
+			return this;
+		}
+
+		public Batch delete(String a, String b) {
+			sources.add(a);
+			targets.add(b);
+			inserts.add(false);
+			return this;
+		}
+
+		public int size() {
+			return sources.size();
+		}
+
+		/**
+		 * reads the next batch: one change per line, "+ a b" to insert and "- a b" to delete an edge, separated by tabs or spaces.
+		 * A blank line ends the batch, lines starting with # are ignored.
+		 * @param reader
+		 * @return the batch, null at the end of the input
+		 * @throws IOException if a line is malformed
+		 */
+		public static Batch read(BufferedReader reader) throws IOException {
+			Batch batch = new Batch();
+			String line;
+			while((line = reader.readLine())!=null) {
+				line = line.trim();
+				if(line.isEmpty()) {
+					if(batch.size()>0)break;
+					continue;
+				}
+				if(line.startsWith("#"))continue;
+				String[] fields = line.split("\\s+");
+				if(fields.length!=3 || !(fields[0].equals("+") || fields[0].equals("-")))throw new IOException("malformed change: "+line);
+				if(fields[0].equals("+"))batch.insert(fields[1], fields[2]);
+				else batch.delete(fields[1], fields[2]);
+			}
+			return batch.size()>0?batch:null;
+		}
+	}
+
+	/**
+	 * the result of a batch: the nodes that changed community, and what had to be recomputed
+	 */
+	public static final class PartitionDelta {
+
+		private final ArrayList<String> nodes = new ArrayList<>();
+		private final IntList from = new IntList();
+		private final IntList to = new IntList();
+		private final IntList created = new IntList();
+		private final IntList removed = new IntList();
+		private int inserted = 0;
+		private int deleted = 0;
+		private int reweightedEdges = 0;
+		private int checkedNodes = 0;
+		private int expandedNodes = 0;
+		private int widenings = 0;
+		private long nanos = 0;
+
+		private void add(String node, int oldCommunity, int newCommunity) {
+			nodes.add(node);
+			from.add(oldCommunity);
+			to.add(newCommunity);
+		}
+
+		/**
+		 * @return the number of nodes whose community changed
+		 */
+		public int size() {
+			return nodes.size();
+		}
+
+		public String getNode(int k) {
+			return nodes.get(k);
+		}
+
+		/**
+		 * @param k
+		 * @return the community of the k-th node before the batch, -1 if it was unclassified or new
+		 */
+		public int getFrom(int k) {
+			return from.values[k];
+		}
+
+		/**
+		 * @param k
+		 * @return the community of the k-th node after the batch, -1 if it is unclassified
+		 */
+		public int getTo(int k) {
+			return to.values[k];
+		}
+
+		public int[] getCreated() {
+			return Arrays.copyOf(created.values, created.size);
+		}
+
+		public int[] getRemoved() {
+			return Arrays.copyOf(removed.values, removed.size);
+		}
+
+		public int getInserted() {
+			return inserted;
+		}
+
+		public int getDeleted() {
+			return deleted;
+		}
+
+		/**
+		 * @return the number of edges whose overlap was recomputed
+		 */
+		public int getReweightedEdges() {
+			return reweightedEdges;
+		}
+
+		/**
+		 * @return the number of nodes whose maximum status was checked
+		 */
+		public int getCheckedNodes() {
+			return checkedNodes;
+		}
+
+		/**
+		 * @return the number of nodes of the dissolved region
+		 */
+		public int getExpandedNodes() {
+			return expandedNodes;
+		}
+
+		/**
+		 * @return the number of times the region was widened because the nodes around it would have seen it change
+		 */
+		public int getWidenings() {
+			return widenings;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		@Override
+		public String toString() {
+			return nodes.size()+" nodes changed community, "+created.size+" communities created, "+removed.size+" removed in "
+					+nanos/1000000.0+" ms";
+		}
+	}
+
+	/**
+	 * usage: -f network -u changes [-t threads], see {@link Batch#read(BufferedReader)} for the changes file
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		ArrayList<String> argsList = new ArrayList<>(Arrays.asList(args));
+		int changesIndex = argsList.indexOf("-u");
+		if(changesIndex==-1 || args.length%2!=0) {
+			System.out.println("Please provide the following arguments to maintain communities under edge changes:");
+			System.out.println("-f followed by the network file name");
+			System.out.println("-u followed by the changes file name, one change per line (+ a b to insert, - a b to delete an edge),");
+			System.out.println("   batches separated by blank lines");
+			System.out.println("optional:");
+			System.out.println("-t followed by the number of threads (default: number of available processors)");
+			return;
+		}
+		if(!loadArgs(args))return;
+		logFolder = null;
+		Graph<String> graph = Graph.loadFromFile(graphPath, false, false, threads);
+		DynamicCoreExpansion dynamic = new DynamicCoreExpansion(graph);
+		logger.log(Level.FINER, dynamic.getCommunities().size()+" communities in the initial network\n");
+		String deltas = outputDirectory+"/deltas_"+new File(graphPath).getName();
+		try(BufferedReader reader = new BufferedReader(new FileReader(argsList.get(changesIndex+1)));
+				BufferedWriter writer = new BufferedWriter(new FileWriter(deltas))) {
+			writer.write("batch\tId\tfrom\tto\n");
+			Batch batch;
+			int number = 0;
+			while((batch = Batch.read(reader))!=null) {
+				number++;
+				PartitionDelta delta = dynamic.apply(batch);
+				for(int k=0;k<delta.size();k++) {
+					writer.write(number+"\t"+delta.getNode(k)+"\t"+delta.getFrom(k)+"\t"+delta.getTo(k)+"\n");
+				}
+			}
+		}catch (IOException e) {
+			System.out.println("could not apply the changes: "+e.getMessage());
+			return;
+		}
+		HashMap<Integer, ArrayList<String>> groups = dynamic.getCommunities();
+		dynamic.writeResults(groups, communities, "class");
+		logger.log(Level.FINER, groups.size()+" communities after the changes, written to "+communities+", changes written to "+deltas+"\n");
+	}
+}
@@ -0,0 +1,67 @@
+package algorithms;
+
+import java.util.Arrays;
+
+import utils.CompactGraph;
+
+/**
+ * Worklist of the nodes to check in the next addition iteration. The decision of an unclassified node depends only on the groups
+ * of its neighbours, so a node that was not added in an iteration can only be added later if one of its neighbours was added
+ * in between. After the first full iteration of a phase, only the unclassified neighbours of the nodes added by the previous
+ * iteration need to be checked again. The graph is assumed undirected, like the rest of Core Expansion.
+ * @version 1.0.17102026
+ */
+public final class ExpansionFrontier {
+
+	private final CompactGraph graph;
+	/**
+	 * the iteration in which each node was last queued, avoids queueing a node twice
+	 */
+	private final int[] stamps;
+	private int iteration = 0;
+
+	public ExpansionFrontier(CompactGraph graph) {
+		this.graph = graph;
+		this.stamps = new int[graph.getNumberNodes()];
+	}
+
+	/**
+	 * starts a phase, all unclassified nodes are checked
+	 * @param labels group id of each node, -1 for unclassified nodes
+	 * @return ids of unclassified nodes, sorted
+	 */
+	public int[] unclassified(int[] labels) {
+		iteration++;
+		int[] nodes = new int[labels.length];
+		int count = 0;
+		for(int id=0;id<labels.length;id++) {
+			if(labels[id]==-1)nodes[count++] = id;
+		}
+		return Arrays.copyOf(nodes, count);
+	}
+
+	/**
+	 * @param labels group id of each node, already updated with the added nodes
+	 * @param added nodes added by the previous iteration
+	 * @return ids of the unclassified neighbours of the added nodes, sorted
+	 */
+	public int[] next(int[] labels, int[] added) {
+		iteration++;
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		int[] nodes = new int[Math.min(labels.length, 16)];
+		int count = 0;
+		for(int node:added) {
+			for(int slot=offsets[node];slot<offsets[node+1];slot++) {
+				int s = targets[slot];
+				if(labels[s]!=-1 || stamps[s]==iteration)continue;
+				stamps[s] = iteration;
+				if(count==nodes.length)nodes = Arrays.copyOf(nodes, Math.min(labels.length, count*2));
+				nodes[count++] = s;
+			}
+		}
+		nodes = Arrays.copyOf(nodes, count);
+		Arrays.sort(nodes);
+		return nodes;
+	}
+}
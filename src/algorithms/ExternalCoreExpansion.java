@@ -0,0 +1,349 @@
+package algorithms;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+
+import networkanalysis.CommunityAffinity;
+import networkanalysis.ExternalOverlap;
+import networkanalysis.LocalMaximumFinder;
+import utils.CompactGraph;
+import utils.ExternalGraph;
+import utils.Metrics;
+import utils.NodeOrder;
+import utils.RangeTask;
+import utils.TimeTracker;
+
+/**
+ * Out-of-core mode of Core Expansion, for networks whose edges don't fit on the heap. The network is an {@link ExternalGraph}:
+ * the edge list is partitioned on disk by source node range, the overlaps are computed with block nested passes of
+ * {@link ExternalOverlap}, and every addition iteration streams the adjacency and weights of its candidates from disk in blocks
+ * of consecutive nodes. Only per node arrays stay in memory (labels, offsets, out-weights, groups), the edge data held at once
+ * is bounded by the memory budget given with -m.
+ * <p>
+ * The decisions are those of {@link CoreExpansionAlgorithm}, so the communities and their ids are the same as in memory.
+ * Intermediate results and snapshots are not written in this mode.
+ * @version 1.1.17102026
+ */
+public class ExternalCoreExpansion extends CoreExpansionAlgorithm {
+
+	/**
+	 * candidates given to a task of an addition iteration
+	 */
+	private static final int GRAIN = 512;
+
+	private final ExternalGraph external;
+	private final long blockSlots;
+	/**
+	 * the iteration in which each node was last queued, like {@link ExpansionFrontier}
+	 */
+	private final int[] stamps;
+	private int iteration = 0;
+
+	/**
+	 * @param graph
+	 * @param budget bytes of edge data held in memory at once
+	 */
+	public ExternalCoreExpansion(ExternalGraph graph, long budget) {
+		super(null);
+		this.external = graph;
+		this.blockSlots = ExternalGraph.blockSlots(budget);
+		this.stamps = new int[graph.getNumberNodes()];
+	}
+
+	/**
+	 * runs Core Expansion on {@link #graphPath} within {@link #memoryBudget} and writes the communities to {@link #communities}
+	 */
+	@SuppressWarnings("try")
+	public static void run() {
+		TimeTracker timeTracker = new TimeTracker();
+		Metrics.Phase run = Metrics.phase("run");
+		Metrics.info("graph", graphPath);
+		Metrics.info("threads", threads);
+		Metrics.info("memoryBudget", memoryBudget);
+
+		File folder = new File(externalFolder!=null?externalFolder:outputDirectory+"/external_"+new File(graphPath).getName());
+		ExternalGraph graph;
+		try(Metrics.Phase load = Metrics.phase("load")) {
+			graph = ExternalGraph.build(graphPath, folder, memoryBudget, threads);
+		}catch (IOException e) {
+			System.out.println("could not partition "+graphPath+" in "+folder+": "+e.getMessage());
+			return;
+		}
+		int classified = 0;
+		int numberGroups = 0;
+		try {
+			ExternalCoreExpansion generator = new ExternalCoreExpansion(graph, memoryBudget);
+			double[] outWeights;
+			try(Metrics.Phase overlap = Metrics.phase("overlap")) {
+				outWeights = ExternalOverlap.calculate(graph, generator.blockSlots, threads);
+			}
+			int[] labels;
+			try(Metrics.Phase expansion = Metrics.phase("expansion")) {
+				labels = generator.generateClasses(outWeights);
+			}
+			try(Metrics.Phase write = Metrics.phase("write")) {
+				numberGroups = writeResults(labels, graph::getLabel, communities);
+			}
+			for(int label:labels) {
+				if(label!=-1)classified++;
+			}
+		}catch (IOException | UncheckedIOException e) {
+			System.out.println("out of core run failed: "+e.getMessage());
+			return;
+		}finally {
+			try {
+				graph.close();
+			}catch (IOException e) {
+				logger.log(Level.WARNING, "unable to delete "+folder+", "+e.getMessage()+"\n");
+			}
+		}
+		run.close();
+
+		timeTracker.stop();
+		logger.log(Level.FINER, numberGroups+" communities detected\n");
+		logger.log(Level.FINER, classified+" nodes classified out of "+graph.getNumberNodes()+"\n");
+		logger.log(Level.FINER, "time elapsed "+timeTracker.toString());
+
+		Metrics.info("nodes", graph.getNumberNodes());
+		Metrics.info("edges", graph.getNumberSlots()/2);
+		Metrics.info("communities", numberGroups);
+		Metrics.info("classified", classified);
+		if(reportPath!=null) {
+			try {
+				Metrics.writeReport(reportPath);
+			}catch (IOException e) {
+				logger.log(Level.WARNING, "unable to write the run report, "+e.getMessage()+"\n");
+			}
+		}
+	}
+
+	/**
+	 * same steps as {@link CoreExpansionAlgorithm#generateClasses(utils.Graph)}, reading the edges from disk
+	 * @param outWeights out-weight of each node
+	 * @return the group id of each node, -1 for unclassified nodes
+	 * @throws IOException
+	 */
+	@SuppressWarnings("try")
+	public int[] generateClasses(double[] outWeights) throws IOException {
+		logger.log(Level.FINER, "finding local maximums, ");
+		int[] maximums;
+		try(Metrics.Phase phase = Metrics.phase("localMaximums")) {
+			maximums = LocalMaximumFinder.findLocalMaximumNodes(external, outWeights, blockSlots);
+		}
+		logger.log(Level.FINER, maximums.length+" maximums found\n");
+
+		int[] labels;
+		int[] groupIds;
+		try(Metrics.Phase cores = Metrics.phase("cores")) {
+			labels = findCores(maximums, outWeights);
+			groupIds = getGroupIds(labels);
+		}
+		logger.log(Level.FINER, groupIds.length+" cores constructed\n");
+
+		int numberGroups = groupIds.length==0?0:groupIds[groupIds.length-1]+1;
+		try {
+			addRemainingNodes(null, labels, (previous, phase, iteration, useWeights) ->
+					sweep(labels, numberGroups, previous, phase, iteration, useWeights));
+		}catch (UncheckedIOException e) {
+			throw e.getCause();
+		}finally {
+			if(pool!=null) {
+				pool.shutdown();
+				pool = null;
+			}
+		}
+		return labels;
+	}
+
+	/**
+	 * builds the cores with {@link #findCores(CompactGraph, HashMap)} on the subgraph induced by the maximum nodes. A maximum node
+	 * only joins the cores of maximum neighbours, so this subgraph, usually tiny since adjacent maximums must have the same
+	 * out-weight, gives the same cores as the whole graph. Its edges keep their order in the file and the maximums are put in the
+	 * map in the order of the listing of the graph in memory, found from their neighbourhood with
+	 * {@link NodeOrder#sort(int[], long[], long[])}, so the cores get the same ids.
+	 * @param maximums sorted ids of the maximum nodes
+	 * @param outWeights
+	 * @return the core id of each node, -1 for nodes outside all cores
+	 * @throws IOException
+	 */
+	private int[] findCores(int[] maximums, double[] outWeights) throws IOException {
+		int n = external.getNumberNodes();
+		int[] local = new int[n];
+		Arrays.fill(local, -1);
+		String[] names = new String[maximums.length];
+		for(int k=0;k<maximums.length;k++) {
+			local[maximums[k]] = k;
+			names[k] = external.getLabel(maximums[k]);
+		}
+		//nodes are numbered in order of their first edge, so the listing order only depends on the neighbourhood
+		int capacity = NodeOrder.capacity(n);
+		long[] keys = new long[maximums.length];
+		long[] edges = new long[maximums.length];
+		int[] offsets = new int[maximums.length+1];
+		int[] targets = new int[16];
+		long[] targetOrders = new long[16];
+		ExternalGraph.Block block = null;
+		for(int start=0;start<maximums.length;) {
+			int end = external.run(maximums, start, maximums.length, blockSlots);
+			block = external.read(maximums[start], maximums[end-1]+1, false, true, block);
+			int[] neighbours = block.getTargets();
+			int[] orders = block.getOrders();
+			for(int k=start;k<end;k++) {
+				keys[k] = NodeOrder.hashKey(names[k], capacity, maximums[k]);
+				edges[k] = -1;
+				int count = offsets[k];
+				for(int slot=block.start(maximums[k]);slot<block.end(maximums[k]);slot++) {
+					long key = NodeOrder.hashKey(external.getLabel(neighbours[slot]), capacity, neighbours[slot]);
+					if(key<keys[k]) {
+						keys[k] = key;
+						edges[k] = orders[slot]&0xffffffffL;
+					}
+					int v = local[neighbours[slot]];
+					if(v==-1)continue;
+					if(count==targets.length) {
+						targets = Arrays.copyOf(targets, count*2);
+						targetOrders = Arrays.copyOf(targetOrders, count*2);
+					}
+					targetOrders[count] = orders[slot]&0xffffffffL;
+					targets[count++] = v;
+				}
+				offsets[k+1] = count;
+			}
+			start = end;
+		}
+		CompactGraph induced = inducedGraph(names, offsets, Arrays.copyOf(targets, offsets[maximums.length]),
+				Arrays.copyOf(targetOrders, offsets[maximums.length]));
+		int[] listed = maximums.clone();
+		NodeOrder.sort(listed, keys, edges);
+		HashMap<String, Double> maximumNodes = new HashMap<String, Double>();
+		for(int u:listed) {
+			maximumNodes.put(external.getLabel(u), outWeights[u]);
+		}
+		int[] cores = findCores(induced, maximumNodes);
+		int[] labels = new int[n];
+		Arrays.fill(labels, -1);
+		for(int k=0;k<maximums.length;k++) {
+			labels[maximums[k]] = cores[k];
+		}
+		return labels;
+	}
+
+	/**
+	 * one addition iteration, timed like the sweeps of {@link CoreExpansionAlgorithm}
+	 */
+	private int[] sweep(int[] labels, int numberGroups, int[] previous, int phase, int iteration, boolean useWeights) {
+		try(Metrics.Phase sweep = Metrics.sweep(phase, iteration)) {
+			int[] candidates = previous==null?unclassified(labels):next(labels, previous);
+			int[] added = addNodesToClosestGroup(labels, numberGroups, candidates, useWeights);
+			sweep.set("candidates", candidates.length).set("added", added.length);
+			Metrics.counter("expansion.nodesExamined").add(candidates.length);
+			Metrics.counter("expansion.assignments").add(added.length);
+			Metrics.histogram("sweep.candidates").record(candidates.length);
+			Metrics.histogram("sweep.added").record(added.length);
+			return added;
+		}catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return ids of the unclassified nodes, sorted
+	 */
+	private int[] unclassified(int[] labels) {
+		iteration++;
+		int[] nodes = new int[labels.length];
+		int count = 0;
+		for(int id=0;id<labels.length;id++) {
+			if(labels[id]==-1)nodes[count++] = id;
+		}
+		return Arrays.copyOf(nodes, count);
+	}
+
+	/**
+	 * @param labels
+	 * @param added nodes added by the previous iteration, sorted
+	 * @return ids of the unclassified neighbours of the added nodes, sorted
+	 * @throws IOException
+	 */
+	private int[] next(int[] labels, int[] added) throws IOException {
+		iteration++;
+		int[] nodes = new int[Math.min(labels.length, 16)];
+		int count = 0;
+		ExternalGraph.Block block = null;
+		for(int start=0;start<added.length;) {
+			int end = external.run(added, start, added.length, blockSlots);
+			block = external.read(added[start], added[end-1]+1, false, block);
+			int[] targets = block.getTargets();
+			for(int k=start;k<end;k++) {
+				for(int slot=block.start(added[k]);slot<block.end(added[k]);slot++) {
+					int s = targets[slot];
+					if(labels[s]!=-1 || stamps[s]==iteration)continue;
+					stamps[s] = iteration;
+					if(count==nodes.length)nodes = Arrays.copyOf(nodes, Math.min(labels.length, count*2));
+					nodes[count++] = s;
+				}
+			}
+			start = end;
+		}
+		nodes = Arrays.copyOf(nodes, count);
+		Arrays.sort(nodes);
+		return nodes;
+	}
+
+	/**
+	 * same as {@link CoreExpansionAlgorithm#addNodesToClosestGroup(CompactGraph, utils.EdgeWeights, int[], int[], int[], boolean, boolean, boolean)},
+	 * the candidates are read in blocks and each block is checked in parallel
+	 * @param labels
+	 * @param numberGroups upper bound (exclusive) of the group ids
+	 * @param candidates sorted
+	 * @param useWeightsInAddition
+	 * @return ids of the added nodes
+	 * @throws IOException
+	 */
+	private int[] addNodesToClosestGroup(int[] labels, int numberGroups, int[] candidates, boolean useWeightsInAddition)
+			throws IOException {
+		int[] decisions = new int[candidates.length];
+		if(threads>1 && candidates.length>=parallelThreshold && pool==null)pool = new ForkJoinPool(threads);
+		ForkJoinPool workers = candidates.length>=parallelThreshold?pool:null;
+		boolean finest = logger.isLoggable(Level.FINEST);
+		ExternalGraph.Block block = null;
+		for(int start=0;start<candidates.length;) {
+			int end = external.run(candidates, start, candidates.length, blockSlots);
+			block = external.read(candidates[start], candidates[end-1]+1, true, true, block);
+			ExternalGraph.Block read = block;
+			RangeTask.run(workers, start, end, GRAIN, (from, to) -> {
+				CommunityAffinity affinity = new CommunityAffinity(numberGroups);
+				int[] targets = read.getTargets();
+				double[] weights = read.getWeights();
+				int[] slots = null;
+				for(int k=from;k<to;k++) {
+					int id = candidates[k];
+					if(finest)logger.log(Level.FINEST, "checking node: "+external.getLabel(id)+"\n");
+					//the weights of each group are summed in file order
+					slots = read.slotsInOrder(id, slots);
+					for(int i=0;i<read.end(id)-read.start(id);i++) {
+						int group = labels[targets[slots[i]]];
+						if(group!=-1)affinity.add(group, weights[slots[i]]);
+					}
+					int degree = external.getDegree(id);
+					decisions[k] = closestGroup(affinity, degree, true, useWeightsInAddition && degree>0);
+				}
+			});
+			start = end;
+		}
+		int[] toBeAdded = new int[candidates.length];
+		int count = 0;
+		for(int k=0;k<candidates.length;k++) {
+			if(decisions[k]==-1)continue;
+			if(finest)logger.log(Level.FINEST, "add {} to group {}\n", external.getLabel(candidates[k]), decisions[k]);
+			labels[candidates[k]] = decisions[k];
+			toBeAdded[count++] = candidates[k];
+		}
+		return Arrays.copyOf(toBeAdded, count);
+	}
+}
@@ -0,0 +1,333 @@
+package algorithms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import utils.CompactGraph;
+import utils.EdgeWeights;
+
+/**
+ * Writes the intermediate results of Core Expansion in a background thread, so the computing thread never waits for the disk.
+ * The computing thread only copies what it hands over, the files are opened, formatted and written by the writer thread in the
+ * order of the calls. Each kind of result is enabled with an {@link Artifact}.
+ * <p>
+ * The delta log records, instead of the whole partition after each addition iteration, the nodes added by the iteration and
+ * their community. It is an append-only binary file, optionally gzip compressed, read back with {@link DeltaReader}:
+ * <ul>
+ * <li>header: int magic "CEXD", int version, int number of nodes, then the label of each node id with writeUTF</li>
+ * <li>one record per iteration: byte phase, int iteration, int count, then count pairs of int node id, int community</li>
+ * </ul>
+ * The first record (phase 0, iteration 0) holds the cores, phase 0 is the addition with weights and phase 1 the extra addition
+ * without weights. Integers are big endian like {@link DataOutputStream}.
+ * @version 1.0.17102026
+ */
+public class IntermediateWriter implements Closeable {
+
+	public static final int MAGIC = 0x43455844;//"CEXD"
+	public static final int VERSION = 1;
+	public static final String DELTA_FILE = "deltas.bin";
+
+	/**
+	 * the intermediate results that can be written, with their name for the -w option
+	 */
+	public enum Artifact {
+		/** overlap weight of each edge, weights-initial.csv */
+		WEIGHTS("weights"),
+		/** out-weight of each node, outWeights_initial.csv */
+		OUT_WEIGHTS("outweights"),
+		/** local maximum nodes, localOutWeightMax.csv */
+		MAXIMUMS("maximums"),
+		/** the whole partition after each addition iteration, coresAtIteration-j.csv */
+		ITERATIONS("iterations"),
+		/** binary delta log, deltas.bin */
+		DELTAS("deltas"),
+		/** gzip compressed delta log, deltas.bin.gz */
+		DELTAS_GZIP("deltas.gz");
+
+		private final String name;
+
+		Artifact(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	/**
+	 * the files written before v1.0.17102026
+	 */
+	public static final EnumSet<Artifact> DEFAULT = EnumSet.of(Artifact.WEIGHTS, Artifact.OUT_WEIGHTS, Artifact.MAXIMUMS, Artifact.ITERATIONS);
+
+	private final CommunitiesWriter writer;
+	private final String folder;
+	private final EnumSet<Artifact> artifacts;
+	private final ExecutorService executor;
+	private DataOutputStream deltas = null;//opened by the writer thread
+
+	/**
+	 * @param writer formats the csv files
+	 * @param folder where the files are written
+	 * @param artifacts the enabled results
+	 */
+	public IntermediateWriter(CommunitiesWriter writer, String folder, EnumSet<Artifact> artifacts) {
+		this.writer = writer;
+		this.folder = folder;
+		this.artifacts = EnumSet.copyOf(artifacts);
+		if(this.artifacts.contains(Artifact.DELTAS_GZIP))this.artifacts.remove(Artifact.DELTAS);
+		executor = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "intermediate-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @param names comma separated artifact names, "none" or an empty string for no artifact
+	 * @return
+	 * @throws IllegalArgumentException if a name is unknown
+	 */
+	public static EnumSet<Artifact> parseArtifacts(String names) {
+		EnumSet<Artifact> artifacts = EnumSet.noneOf(Artifact.class);
+		for(String name:names.split(",")) {
+			name = name.trim();
+			if(name.isEmpty() || name.equals("none"))continue;
+			Artifact found = null;
+			for(Artifact artifact:Artifact.values()) {
+				if(artifact.getName().equals(name))found = artifact;
+			}
+			if(found==null)throw new IllegalArgumentException("unknown intermediate result: "+name);
+			artifacts.add(found);
+		}
+		return artifacts;
+	}
+
+	public boolean isEnabled(Artifact artifact) {
+		return artifacts.contains(artifact);
+	}
+
+	/**
+	 * @return true if the delta log is written, compressed or not
+	 */
+	public boolean isDeltaEnabled() {
+		return artifacts.contains(Artifact.DELTAS) || artifacts.contains(Artifact.DELTAS_GZIP);
+	}
+
+	/**
+	 * @param weights not modified afterwards
+	 */
+	public void weights(EdgeWeights weights) {
+		if(!isEnabled(Artifact.WEIGHTS))return;
+		executor.execute(() -> writer.writeResults(weights, "weight-initial", folder+"/weights-initial.csv"));
+	}
+
+	/**
+	 * @param outWeights not modified afterwards
+	 */
+	public void outWeights(HashMap<String, Double> outWeights) {
+		if(!isEnabled(Artifact.OUT_WEIGHTS))return;
+		executor.execute(() -> writer.writeResults(outWeights, "outWeights", folder+"/outWeights_initial.csv", false));
+	}
+
+	/**
+	 * @param maximumNodes not modified afterwards
+	 */
+	public void maximums(HashMap<String, Double> maximumNodes) {
+		if(!isEnabled(Artifact.MAXIMUMS))return;
+		executor.execute(() -> writer.writeResults(maximumNodes, "localOutWeightMax", folder+"/localOutWeightMax.csv", false));
+	}
+
+	/**
+	 * records the cores, the first record of the delta log
+	 * @param compact
+	 * @param labels copied
+	 */
+	public void cores(CompactGraph compact, int[] labels) {
+		if(!isDeltaEnabled())return;
+		int count = 0;
+		for(int label:labels) {
+			if(label!=-1)count++;
+		}
+		int[] nodes = new int[count];
+		count = 0;
+		for(int id=0;id<labels.length;id++) {
+			if(labels[id]!=-1)nodes[count++] = id;
+		}
+		delta(compact, labels, 0, 0, nodes);
+	}
+
+	/**
+	 * records an addition iteration
+	 * @param compact
+	 * @param labels community of each node after the iteration, copied if needed
+	 * @param phase 0 for the addition with weights, 1 for the extra addition
+	 * @param iteration number of the coresAtIteration file
+	 * @param added the nodes added by the iteration, not modified afterwards
+	 */
+	public void iteration(CompactGraph compact, int[] labels, int phase, int iteration, int[] added) {
+		if(isEnabled(Artifact.ITERATIONS)) {
+			int[] copy = labels.clone();
+			executor.execute(() -> writer.writeResults(CoreExpansionAlgorithm.toGroups(compact, copy),
+					folder+"/coresAtIteration-"+iteration+".csv", "classes-it-"+iteration));
+		}
+		if(isDeltaEnabled())delta(compact, labels, phase, iteration, added);
+	}
+
+	private void delta(CompactGraph compact, int[] labels, int phase, int iteration, int[] nodes) {
+		int[] communities = new int[nodes.length];
+		for(int k=0;k<nodes.length;k++) {
+			communities[k] = labels[nodes[k]];
+		}
+		executor.execute(() -> {
+			try {
+				if(deltas==null)deltas = openDeltas(compact);
+				deltas.writeByte(phase);
+				deltas.writeInt(iteration);
+				deltas.writeInt(nodes.length);
+				for(int k=0;k<nodes.length;k++) {
+					deltas.writeInt(nodes[k]);
+					deltas.writeInt(communities[k]);
+				}
+			}catch (IOException e) {
+				CoreExpansionAlgorithm.logger.log(Level.WARNING, "unable to write the delta log, "+e.getMessage()+"\n");
+			}
+		});
+	}
+
+	private DataOutputStream openDeltas(CompactGraph compact) throws IOException {
+		boolean gzip = isEnabled(Artifact.DELTAS_GZIP);
+		OutputStream out = new FileOutputStream(folder+"/"+DELTA_FILE+(gzip?".gz":""));
+		out = gzip?new GZIPOutputStream(out, 1<<16):new BufferedOutputStream(out, 1<<16);
+		DataOutputStream stream = new DataOutputStream(out);
+		stream.writeInt(MAGIC);
+		stream.writeInt(VERSION);
+		stream.writeInt(compact.getNumberNodes());
+		for(int id=0;id<compact.getNumberNodes();id++) {
+			stream.writeUTF(compact.getLabel(id));
+		}
+		return stream;
+	}
+
+	/**
+	 * waits until every pending result is written, then closes the delta log
+	 */
+	@Override
+	public void close() throws IOException {
+		executor.shutdown();
+		try {
+			while(!executor.awaitTermination(1, TimeUnit.MINUTES));
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if(deltas!=null) {
+			deltas.close();
+			deltas = null;
+		}
+	}
+
+	/**
+	 * replays a delta log, compressed or not, record by record
+	 */
+	public static class DeltaReader implements Closeable {
+
+		private final DataInputStream in;
+		private final String[] nodes;
+		private final int[] labels;
+		private int phase = -1;
+		private int iteration = -1;
+		private int[] added = new int[0];
+
+		public DeltaReader(String file) throws IOException {
+			InputStream stream = new BufferedInputStream(new FileInputStream(file), 1<<16);
+			stream.mark(2);
+			boolean gzip = stream.read()==0x1f && stream.read()==0x8b;
+			stream.reset();
+			in = new DataInputStream(gzip?new BufferedInputStream(new GZIPInputStream(stream, 1<<16)):stream);
+			if(in.readInt()!=MAGIC) {
+				in.close();
+				throw new IOException(file+" is not a delta log");
+			}
+			int version = in.readInt();
+			if(version!=VERSION) {
+				in.close();
+				throw new IOException("unsupported delta log version "+version);
+			}
+			nodes = new String[in.readInt()];
+			for(int id=0;id<nodes.length;id++) {
+				nodes[id] = in.readUTF();
+			}
+			labels = new int[nodes.length];
+			Arrays.fill(labels, -1);
+		}
+
+		/**
+		 * reads the next record and applies it to the labels
+		 * @return false at the end of the log
+		 * @throws IOException
+		 */
+		public boolean next() throws IOException {
+			int read = in.read();
+			if(read==-1)return false;
+			phase = read;
+			iteration = in.readInt();
+			added = new int[in.readInt()];
+			for(int k=0;k<added.length;k++) {
+				added[k] = in.readInt();
+				labels[added[k]] = in.readInt();
+			}
+			return true;
+		}
+
+		/**
+		 * @return the label of each node id
+		 */
+		public String[] getNodes() {
+			return nodes;
+		}
+
+		/**
+		 * @return community of each node id after the records read so far, -1 for unclassified nodes
+		 */
+		public int[] getLabels() {
+			return labels;
+		}
+
+		public int getPhase() {
+			return phase;
+		}
+
+		public int getIteration() {
+			return iteration;
+		}
+
+		/**
+		 * @return the node ids of the last record
+		 */
+		public int[] getAdded() {
+			return added;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
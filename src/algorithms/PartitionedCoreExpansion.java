@@ -0,0 +1,841 @@
+package algorithms;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import networkanalysis.CommunityAffinity;
+import networkanalysis.IntersectionKernel;
+import networkanalysis.LocalMaximumFinder;
+import utils.CompactGraph;
+import utils.ExternalGraph;
+import utils.GraphShard;
+import utils.NodeOrder;
+import utils.Metrics;
+import utils.RangeTask;
+import utils.ShardTransport;
+import utils.TimeTracker;
+
+/**
+ * Partitioned mode of Core Expansion: the network is split in {@link GraphShard}s of consecutive node ids, each run by its own
+ * process, and the processes exchange messages in bulk-synchronous rounds through a {@link ShardTransport}. A shard holds the
+ * edges of its nodes and a halo of ghosts, the neighbours owned by other shards with their own edges, so that:
+ * <ol>
+ * <li>the overlaps and out-weights of the owned nodes are computed locally</li>
+ * <li>one round sends the out-weights of the boundary nodes to the shards holding them as ghosts, then each shard finds its
+ * local maximums</li>
+ * <li>two rounds gather the maximums and the edges between them on all shards, which build the same cores as a single process</li>
+ * <li>each addition iteration checks the owned candidates, then one round sends the labels of the added boundary nodes to the
+ * shards holding them as ghosts, with the number of added nodes: a phase ends when no shard added a node</li>
+ * </ol>
+ * The iterations check the labels of the previous iteration only, like {@link CoreExpansionAlgorithm}, so the communities and
+ * their ids are the same as with a single process. Shard 0 splits the network at the start and writes the communities at the end.
+ * Without -r, one process per shard is started on this machine.
+ * @version 1.1.17102026
+ */
+public class PartitionedCoreExpansion extends CoreExpansionAlgorithm {
+
+	/**
+	 * nodes given to a task of the overlap and of the addition iterations
+	 */
+	private static final int GRAIN = 256;
+	/**
+	 * memory budget used to split the network when none is given with -m
+	 */
+	private static final long DEFAULT_BUDGET = 256L<<20;
+
+	private final GraphShard shard;
+	private final ShardTransport peers;
+	private final int from;
+	private final int owned;
+	/**
+	 * local id of the target of each slot of the owned nodes: owned node from+k is k, ghost k is owned+k
+	 */
+	private final int[] local;
+	private final double[] weights;
+	/**
+	 * out-weight of each owned node then of each ghost
+	 */
+	private final double[] outWeights;
+	/**
+	 * group id of each owned node then of each ghost
+	 */
+	private int[] labels;
+	/**
+	 * the ghosts owned by shard s are [ghostStarts[s], ghostStarts[s+1])
+	 */
+	private final int[] ghostStarts;
+	/**
+	 * subscribed[s]: the owned nodes shard s holds as ghosts, sorted local ids
+	 */
+	private int[][] subscribed;
+	/**
+	 * the shards holding each owned node as a ghost are subscribers[subscriberOffsets[k]..subscriberOffsets[k+1])
+	 */
+	private int[] subscriberOffsets;
+	private int[] subscribers;
+	private int numberGroups = 0;
+	/**
+	 * ghosts whose label was received in the last iteration, local ids
+	 */
+	private int[] updated = new int[0];
+	/**
+	 * nodes added by all shards in the last iteration
+	 */
+	private long globalAdded = 0;
+	private final int[] stamps;
+	private int iteration = 0;
+
+	public PartitionedCoreExpansion(GraphShard shard, ShardTransport peers) {
+		super(null);
+		this.shard = shard;
+		this.peers = peers;
+		this.from = shard.getFrom();
+		this.owned = shard.getTo()-from;
+		this.local = new int[shard.getTargets().length];
+		this.weights = new double[local.length];
+		this.outWeights = new double[owned+shard.getGhosts().length];
+		this.stamps = new int[owned];
+		int shards = shard.getNumberShards();
+		int[] ghosts = shard.getGhosts();
+		ghostStarts = new int[shards+1];
+		for(int s=0;s<shards;s++) {
+			int k = Arrays.binarySearch(ghosts, shard.getFrom(s));
+			ghostStarts[s] = k>=0?k:-k-1;
+		}
+		ghostStarts[shards] = ghosts.length;
+	}
+
+	/**
+	 * runs the shard {@link #shardRank} of {@link #graphPath}, or starts a process for each shard when it is -1
+	 * @param args the arguments of the program, given again to the started processes
+	 * @return false if the run failed
+	 */
+	@SuppressWarnings("try")
+	public static boolean run(String[] args) {
+		if(shardRank<0)return launch(args);
+		String name = new File(graphPath).getName();
+		reportPath = outputDirectory+"/report_"+name+".shard"+shardRank+".json";
+		TimeTracker timeTracker = new TimeTracker();
+		Metrics.Phase run = Metrics.phase("run");
+		Metrics.info("graph", graphPath);
+		Metrics.info("threads", threads);
+		Metrics.info("shard", shardRank);
+		Metrics.info("shards", shards);
+		Metrics.info("transport", transport);
+
+		File folder = new File(externalFolder!=null?externalFolder:outputDirectory+"/shards_"+name);
+		String spec = transport.equals("file")?"file:"+messagesFolder(name):transport;
+		int numberGroups = 0;
+		int classified = 0;
+		GraphShard shard;
+		try(ShardTransport peers = ShardTransport.open(spec, shardRank, shards, 0)) {
+			try(Metrics.Phase load = Metrics.phase("load")) {
+				if(shardRank==0)split(folder);
+				//every shard waits until the files are written
+				peers.exchange(new byte[shards][]);
+				shard = GraphShard.load(GraphShard.file(folder, shardRank));
+			}
+			logger.log(Level.FINER, "shard "+shardRank+": nodes "+shard.getFrom()+" to "+(shard.getTo()-1)+", "
+					+shard.getGhosts().length+" ghosts\n");
+			PartitionedCoreExpansion generator = new PartitionedCoreExpansion(shard, peers);
+			try(Metrics.Phase overlap = Metrics.phase("overlap")) {
+				generator.calculateWeights();
+			}
+			int[] labels;
+			try(Metrics.Phase expansion = Metrics.phase("expansion")) {
+				labels = generator.generateClasses();
+			}
+			for(int label:labels) {
+				if(label!=-1)classified++;
+			}
+			try(Metrics.Phase write = Metrics.phase("write")) {
+				numberGroups = generator.gather(labels, folder);
+			}
+		}catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+			System.out.println("shard "+shardRank+" failed: "+e.getMessage());
+			return false;
+		}
+		run.close();
+
+		timeTracker.stop();
+		if(shardRank==0)logger.log(Level.FINER, numberGroups+" communities detected\n");
+		logger.log(Level.FINER, classified+" nodes classified out of the "+(shard.getTo()-shard.getFrom())+" nodes of shard "+shardRank+"\n");
+		logger.log(Level.FINER, "time elapsed "+timeTracker.toString());
+
+		Metrics.info("nodes", shard.getTo()-shard.getFrom());
+		Metrics.info("ghosts", shard.getGhosts().length);
+		Metrics.info("edges", shard.getTargets().length);
+		if(shardRank==0)Metrics.info("communities", numberGroups);
+		Metrics.info("classified", classified);
+		try {
+			Metrics.writeReport(reportPath);
+		}catch (IOException e) {
+			logger.log(Level.WARNING, "unable to write the run report, "+e.getMessage()+"\n");
+		}
+		return true;
+	}
+
+	/**
+	 * runs a shard, see {@link CoreExpansionAlgorithm#loadArgs(String[])}, the exit status is 1 if the shard failed
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		if(!loadArgs(args))return;
+		if(shards<1) {
+			System.out.println("-n followed by the number of shards is required");
+			return;
+		}
+		if(!run(args))System.exit(1);
+	}
+
+	private static File messagesFolder(String name) {
+		return new File(outputDirectory+"/messages_"+name);
+	}
+
+	/**
+	 * partitions the network on disk and writes the file of each shard
+	 * @param folder
+	 * @throws IOException
+	 */
+	private static void split(File folder) throws IOException {
+		long budget = memoryBudget>0?memoryBudget:DEFAULT_BUDGET;
+		try(ExternalGraph graph = ExternalGraph.build(graphPath, new File(folder, "graph"), budget, threads)) {
+			int[] bounds = GraphShard.split(graph, shards, folder, ExternalGraph.blockSlots(budget));
+			logger.log(Level.FINER, graph.getNumberNodes()+" nodes split in "+shards+" shards "+Arrays.toString(bounds)+"\n");
+		}
+	}
+
+	/**
+	 * starts one process per shard with the same arguments and waits for them. The output of shard 0 is shown, the others write
+	 * theirs to the logs folder.
+	 * @param args
+	 * @return false if a shard failed, the other shards are then stopped
+	 */
+	private static boolean launch(String[] args) {
+		String name = new File(graphPath).getName();
+		if(transport.startsWith("file")) {
+			//messages left by an interrupted run would be read as messages of this one
+			File[] stale = (transport.equals("file")?messagesFolder(name):new File(transport.substring(5))).listFiles();
+			if(stale!=null) {
+				for(File file:stale) {
+					file.delete();
+				}
+			}
+		}
+		ArrayList<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home")+File.separator+"bin"+File.separator+"java");
+		for(String option:ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			//the memory settings, other options such as a recording file can't be shared by several processes
+			if(option.startsWith("-Xmx") || option.startsWith("-Xms") || option.startsWith("-Xss"))command.add(option);
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(PartitionedCoreExpansion.class.getName());
+		command.addAll(Arrays.asList(args));
+		command.add("-r");
+		Process[] processes = new Process[shards];
+		try {
+			for(int s=0;s<shards;s++) {
+				command.add(Integer.toString(s));
+				ProcessBuilder builder = new ProcessBuilder(command);
+				if(s==0) {
+					builder.inheritIO();
+				}else {
+					builder.redirectErrorStream(true);
+					builder.redirectOutput(new File(logFolder, "shard"+s+"_"+name+".log"));
+				}
+				processes[s] = builder.start();
+				command.remove(command.size()-1);
+			}
+			boolean failed = false;
+			for(int done=0;done<shards && !failed;) {
+				done = 0;
+				for(int s=0;s<shards;s++) {
+					if(processes[s].waitFor(100, TimeUnit.MILLISECONDS)) {
+						done++;
+						if(processes[s].exitValue()!=0) {
+							System.out.println("shard "+s+" failed"+(s>0?", see "+logFolder+"/shard"+s+"_"+name+".log":""));
+							failed = true;
+						}
+					}
+				}
+			}
+			return !failed;
+		}catch (IOException e) {
+			System.out.println("could not start the shards: "+e.getMessage());
+			return false;
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}finally {
+			for(Process process:processes) {
+				if(process!=null && process.isAlive())process.destroy();
+			}
+		}
+	}
+
+	/**
+	 * computes the overlap weights of the slots of the owned nodes and their out-weights, with the same values as
+	 * {@link networkanalysis.NeighborhoodOverlap#calculateWeights(utils.Graph, int)}, then subscribes to the ghosts and receives
+	 * their out-weights
+	 * @throws IOException
+	 */
+	public void calculateWeights() throws IOException {
+		int[] offsets = shard.getOffsets();
+		int[] targets = shard.getTargets();
+		int[] ghosts = shard.getGhosts();
+		int[] ghostOffsets = shard.getGhostOffsets();
+		int[] ghostTargets = shard.getGhostTargets();
+		if(threads>1 && pool==null)pool = new ForkJoinPool(threads);
+		AtomicLong intersections = new AtomicLong();
+		RangeTask.run(pool, 0, owned, GRAIN, (start, end) -> {
+			long computed = 0;
+			int[] slots = null;
+			for(int u=start;u<end;u++) {
+				int first = offsets[u];
+				int last = offsets[u+1];
+				int sizeU = last-first-1;
+				for(int slot=first;slot<last;slot++) {
+					int v = targets[slot];
+					int inter;
+					double union;
+					if(v>=from && v<from+owned) {
+						local[slot] = v-from;
+						inter = IntersectionKernel.intersect(targets, first, last, targets, offsets[v-from], offsets[v-from+1]);
+						union = sizeU+(offsets[v-from+1]-offsets[v-from]-1)-inter;
+					}else {
+						int g = Arrays.binarySearch(ghosts, v);
+						local[slot] = owned+g;
+						inter = IntersectionKernel.intersect(targets, first, last, ghostTargets, ghostOffsets[g], ghostOffsets[g+1]);
+						union = sizeU+(ghostOffsets[g+1]-ghostOffsets[g]-1)-inter;
+					}
+					//u and v are neighbours of each other and never belong to the intersection
+					weights[slot] = union<=0?0:IntersectionKernel.round(inter/union);
+				}
+				//in file order, the rounding of the sum then matches the successor lists
+				slots = shard.slotsInOrder(u, slots);
+				double sum = 0;
+				for(int k=0;k<last-first;k++) {
+					sum += weights[slots[k]];
+				}
+				outWeights[u] = sum;
+				computed += last-first;
+			}
+			intersections.addAndGet(computed);
+		});
+		Metrics.counter("overlap.intersections").add(intersections.get());
+		subscribe();
+
+		//out-weights of the ghosts
+		Round round = new Round();
+		for(int s=0;s<subscribed.length;s++) {
+			for(int u:subscribed[s]) {
+				round.to(s).writeDouble(outWeights[u]);
+			}
+		}
+		DataInputStream[] received = round.exchange();
+		for(int s=0;s<received.length;s++) {
+			for(int g=ghostStarts[s];g<ghostStarts[s+1];g++) {
+				outWeights[owned+g] = received[s].readDouble();
+			}
+		}
+	}
+
+	/**
+	 * tells each shard which of its nodes are ghosts here, and builds the lists of shards to send the values of the owned nodes to
+	 * @throws IOException
+	 */
+	private void subscribe() throws IOException {
+		int[] ghosts = shard.getGhosts();
+		int shards = peers.getSize();
+		Round round = new Round();
+		for(int s=0;s<shards;s++) {
+			if(s==peers.getRank())continue;
+			round.to(s).writeInt(ghostStarts[s+1]-ghostStarts[s]);
+			for(int g=ghostStarts[s];g<ghostStarts[s+1];g++) {
+				round.to(s).writeInt(ghosts[g]);
+			}
+		}
+		DataInputStream[] received = round.exchange();
+		subscribed = new int[shards][];
+		subscriberOffsets = new int[owned+1];
+		for(int s=0;s<shards;s++) {
+			int count = s==peers.getRank()?0:received[s].readInt();
+			subscribed[s] = new int[count];
+			for(int k=0;k<count;k++) {
+				subscribed[s][k] = received[s].readInt()-from;
+				subscriberOffsets[subscribed[s][k]+1]++;
+			}
+		}
+		for(int u=0;u<owned;u++) {
+			subscriberOffsets[u+1] += subscriberOffsets[u];
+		}
+		subscribers = new int[subscriberOffsets[owned]];
+		int[] cursor = Arrays.copyOf(subscriberOffsets, owned);
+		for(int s=0;s<shards;s++) {
+			for(int u:subscribed[s]) {
+				subscribers[cursor[u]++] = s;
+			}
+		}
+	}
+
+	/**
+	 * same steps as {@link CoreExpansionAlgorithm#generateClasses(utils.Graph)} on the owned nodes
+	 * @return the group id of each owned node, -1 for unclassified nodes
+	 * @throws IOException
+	 */
+	@SuppressWarnings("try")
+	public int[] generateClasses() throws IOException {
+		logger.log(Level.FINER, "finding local maximums, ");
+		int[] maximums;
+		try(Metrics.Phase phase = Metrics.phase("localMaximums")) {
+			maximums = LocalMaximumFinder.findLocalMaximumNodes(shard.getOffsets(), local, outWeights, owned, threads);
+		}
+		logger.log(Level.FINER, maximums.length+" maximums found in the shard\n");
+
+		try(Metrics.Phase cores = Metrics.phase("cores")) {
+			labels = findCores(maximums);
+		}
+
+		try {
+			addRemainingNodes(null, labels, this::sweep);
+		}catch (UncheckedIOException e) {
+			throw e.getCause();
+		}finally {
+			if(pool!=null) {
+				pool.shutdown();
+				pool = null;
+			}
+		}
+		return Arrays.copyOf(labels, owned);
+	}
+
+	/**
+	 * builds the cores of all shards with {@link #findCores(CompactGraph, HashMap)} on the subgraph induced by the maximum nodes of
+	 * the whole graph, like {@link ExternalCoreExpansion}: the maximums and the edges between them are gathered from all shards. Each
+	 * shard sends the listing key of its maximums, see {@link NodeOrder#sort(int[], long[], long[])}, so the maximums are put in the
+	 * map in the same order as in memory.
+	 * @param maximums local ids of the owned maximum nodes, sorted
+	 * @return the core id of each owned node and ghost, -1 for nodes outside all cores
+	 * @throws IOException
+	 */
+	private int[] findCores(int[] maximums) throws IOException {
+		int shards = peers.getSize();
+		int rank = peers.getRank();
+		//1. the maximums of all shards, in id order since the shards own increasing ranges
+		int[] offsets = shard.getOffsets();
+		int[] targets = shard.getTargets();
+		int[] orders = shard.getOrders();
+		int[] ghostHashes = shard.getGhostHashes();
+		int capacity = NodeOrder.capacity(shard.getNumberNodes());
+		long[] ownKeys = new long[maximums.length];
+		long[] ownEdges = new long[maximums.length];
+		for(int i=0;i<maximums.length;i++) {
+			int u = maximums[i];
+			ownKeys[i] = NodeOrder.hashKey(shard.getLabel(from+u), capacity, from+u);
+			ownEdges[i] = -1;
+			for(int slot=offsets[u];slot<offsets[u+1];slot++) {
+				int v = local[slot];
+				int hashCode = v<owned?shard.getLabel(from+v).hashCode():ghostHashes[v-owned];
+				long key = NodeOrder.hashKey(hashCode, capacity, targets[slot]);
+				if(key<ownKeys[i]) {
+					ownKeys[i] = key;
+					ownEdges[i] = orders[slot]&0xffffffffL;
+				}
+			}
+		}
+		Round round = new Round();
+		for(int s=0;s<shards;s++) {
+			if(s==rank)continue;
+			DataOutputStream out = round.to(s);
+			out.writeInt(maximums.length);
+			for(int i=0;i<maximums.length;i++) {
+				int u = maximums[i];
+				byte[] label = shard.getLabel(from+u).getBytes(StandardCharsets.UTF_8);
+				out.writeInt(from+u);
+				out.writeDouble(outWeights[u]);
+				out.writeLong(ownKeys[i]);
+				out.writeLong(ownEdges[i]);
+				out.writeInt(label.length);
+				out.write(label);
+			}
+		}
+		DataInputStream[] received = round.exchange();
+		int[] counts = new int[shards];
+		for(int s=0;s<shards;s++) {
+			counts[s] = s==rank?maximums.length:received[s].readInt();
+		}
+		int total = 0;
+		for(int count:counts) {
+			total += count;
+		}
+		int[] ids = new int[total];
+		String[] names = new String[total];
+		double[] weights = new double[total];
+		long[] keys = new long[total];
+		long[] firstEdges = new long[total];
+		int k = 0;
+		for(int s=0;s<shards;s++) {
+			for(int i=0;i<counts[s];i++) {
+				if(s==rank) {
+					ids[k] = from+maximums[i];
+					names[k] = shard.getLabel(ids[k]);
+					weights[k] = outWeights[maximums[i]];
+					keys[k] = ownKeys[i];
+					firstEdges[k] = ownEdges[i];
+				}else {
+					ids[k] = received[s].readInt();
+					weights[k] = received[s].readDouble();
+					keys[k] = received[s].readLong();
+					firstEdges[k] = received[s].readLong();
+					byte[] label = new byte[received[s].readInt()];
+					received[s].readFully(label);
+					names[k] = new String(label, StandardCharsets.UTF_8);
+				}
+				k++;
+			}
+		}
+		int[] listed = new int[total];
+		for(k=0;k<total;k++) {
+			listed[k] = k;
+		}
+		NodeOrder.sort(listed, keys, firstEdges);
+		HashMap<String, Double> maximumNodes = new HashMap<String, Double>();
+		for(int i:listed) {
+			maximumNodes.put(names[i], weights[i]);
+		}
+
+		//2. the edges between maximums with their orders, sent by the owner of their source
+		ArrayList<int[]> edges = new ArrayList<>(maximums.length);
+		ArrayList<int[]> edgeOrders = new ArrayList<>(maximums.length);
+		for(int u:maximums) {
+			int[] neighbours = new int[offsets[u+1]-offsets[u]];
+			int[] neighbourOrders = new int[neighbours.length];
+			int count = 0;
+			for(int slot=offsets[u];slot<offsets[u+1];slot++) {
+				if(Arrays.binarySearch(ids, targets[slot])>=0) {
+					neighbourOrders[count] = orders[slot];
+					neighbours[count++] = targets[slot];
+				}
+			}
+			edges.add(Arrays.copyOf(neighbours, count));
+			edgeOrders.add(Arrays.copyOf(neighbourOrders, count));
+		}
+		round = new Round();
+		for(int s=0;s<shards;s++) {
+			if(s==rank)continue;
+			for(int i=0;i<edges.size();i++) {
+				int[] neighbours = edges.get(i);
+				round.to(s).writeInt(neighbours.length);
+				for(int j=0;j<neighbours.length;j++) {
+					round.to(s).writeInt(neighbours[j]);
+					round.to(s).writeInt(edgeOrders.get(i)[j]);
+				}
+			}
+		}
+		received = round.exchange();
+		int[] inducedOffsets = new int[total+1];
+		int[] inducedTargets = new int[16];
+		long[] inducedOrders = new long[16];
+		k = 0;
+		for(int s=0;s<shards;s++) {
+			for(int i=0;i<counts[s];i++) {
+				int[] neighbours;
+				int[] neighbourOrders;
+				if(s==rank) {
+					neighbours = edges.get(i);
+					neighbourOrders = edgeOrders.get(i);
+				}else {
+					neighbours = new int[received[s].readInt()];
+					neighbourOrders = new int[neighbours.length];
+					for(int j=0;j<neighbours.length;j++) {
+						neighbours[j] = received[s].readInt();
+						neighbourOrders[j] = received[s].readInt();
+					}
+				}
+				int count = inducedOffsets[k];
+				if(count+neighbours.length>inducedTargets.length) {
+					inducedTargets = Arrays.copyOf(inducedTargets, Math.max(count+neighbours.length, inducedTargets.length*2));
+					inducedOrders = Arrays.copyOf(inducedOrders, inducedTargets.length);
+				}
+				for(int j=0;j<neighbours.length;j++) {
+					inducedOrders[count] = neighbourOrders[j]&0xffffffffL;
+					inducedTargets[count++] = Arrays.binarySearch(ids, neighbours[j]);
+				}
+				inducedOffsets[++k] = count;
+			}
+		}
+		CompactGraph induced = inducedGraph(names, inducedOffsets, Arrays.copyOf(inducedTargets, inducedOffsets[total]),
+				Arrays.copyOf(inducedOrders, inducedOffsets[total]));
+		int[] cores = findCores(induced, maximumNodes);
+		//the groups of all shards, not only those of the nodes held here
+		for(int core:cores) {
+			numberGroups = Math.max(numberGroups, core+1);
+		}
+
+		int[] ghosts = shard.getGhosts();
+		int[] labels = new int[owned+ghosts.length];
+		Arrays.fill(labels, -1);
+		for(k=0;k<total;k++) {
+			if(ids[k]>=from && ids[k]<from+owned) {
+				labels[ids[k]-from] = cores[k];
+			}else {
+				int g = Arrays.binarySearch(ghosts, ids[k]);
+				if(g>=0)labels[owned+g] = cores[k];
+			}
+		}
+		return labels;
+	}
+
+	/**
+	 * one addition iteration on the owned nodes followed by the exchange of the added labels, timed like the sweeps of
+	 * {@link CoreExpansionAlgorithm}
+	 */
+	private int[] sweep(int[] previous, int phase, int iteration, boolean useWeights) {
+		try(Metrics.Phase sweep = Metrics.sweep(phase, iteration)) {
+			int[] candidates = previous==null?unclassified():next(previous);
+			int[] added = addNodesToClosestGroup(candidates, useWeights);
+			exchangeLabels(added);
+			sweep.set("candidates", candidates.length).set("added", added.length);
+			Metrics.counter("expansion.nodesExamined").add(candidates.length);
+			Metrics.counter("expansion.assignments").add(added.length);
+			Metrics.histogram("sweep.candidates").record(candidates.length);
+			Metrics.histogram("sweep.added").record(added.length);
+			return added;
+		}catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * a phase goes on while any shard adds nodes
+	 */
+	@Override
+	protected boolean anyAdded(int[] added) {
+		return globalAdded>0;
+	}
+
+	/**
+	 * @return local ids of the unclassified owned nodes, sorted
+	 */
+	private int[] unclassified() {
+		iteration++;
+		int[] nodes = new int[owned];
+		int count = 0;
+		for(int u=0;u<owned;u++) {
+			if(labels[u]==-1)nodes[count++] = u;
+		}
+		return Arrays.copyOf(nodes, count);
+	}
+
+	/**
+	 * @param added owned nodes added by the previous iteration
+	 * @return local ids of the unclassified owned neighbours of the nodes added by all shards in the previous iteration, sorted
+	 */
+	private int[] next(int[] added) {
+		iteration++;
+		int[] offsets = shard.getOffsets();
+		int[] ghostOffsets = shard.getGhostOffsets();
+		int[] ghostTargets = shard.getGhostTargets();
+		int[] nodes = new int[Math.min(owned, 16)];
+		int count = 0;
+		for(int u:added) {
+			for(int slot=offsets[u];slot<offsets[u+1];slot++) {
+				int s = local[slot];
+				if(s>=owned || labels[s]!=-1 || stamps[s]==iteration)continue;
+				stamps[s] = iteration;
+				if(count==nodes.length)nodes = Arrays.copyOf(nodes, Math.min(owned, count*2));
+				nodes[count++] = s;
+			}
+		}
+		//the owned neighbours of the ghosts added by other shards
+		for(int g:updated) {
+			for(int slot=ghostOffsets[g-owned];slot<ghostOffsets[g-owned+1];slot++) {
+				int s = ghostTargets[slot]-from;
+				if(s<0 || s>=owned || labels[s]!=-1 || stamps[s]==iteration)continue;
+				stamps[s] = iteration;
+				if(count==nodes.length)nodes = Arrays.copyOf(nodes, Math.min(owned, count*2));
+				nodes[count++] = s;
+			}
+		}
+		nodes = Arrays.copyOf(nodes, count);
+		Arrays.sort(nodes);
+		return nodes;
+	}
+
+	/**
+	 * same as {@link CoreExpansionAlgorithm#addNodesToClosestGroup(CompactGraph, utils.EdgeWeights, int[], int[], int[], boolean, boolean, boolean)}
+	 * on the owned candidates, the ghosts have the labels of the previous iteration
+	 * @param candidates local ids, sorted
+	 * @param useWeightsInAddition
+	 * @return local ids of the added nodes
+	 */
+	private int[] addNodesToClosestGroup(int[] candidates, boolean useWeightsInAddition) {
+		int[] offsets = shard.getOffsets();
+		int[] decisions = new int[candidates.length];
+		if(threads>1 && candidates.length>=parallelThreshold && pool==null)pool = new ForkJoinPool(threads);
+		ForkJoinPool workers = candidates.length>=parallelThreshold?pool:null;
+		boolean finest = logger.isLoggable(Level.FINEST);
+		RangeTask.run(workers, 0, candidates.length, GRAIN, (start, end) -> {
+			CommunityAffinity affinity = new CommunityAffinity(numberGroups);
+			int[] slots = null;
+			for(int k=start;k<end;k++) {
+				int u = candidates[k];
+				if(finest)logger.log(Level.FINEST, "checking node: "+shard.getLabel(from+u)+"\n");
+				//the weights of each group are summed in file order
+				slots = shard.slotsInOrder(u, slots);
+				for(int i=0;i<offsets[u+1]-offsets[u];i++) {
+					int group = labels[local[slots[i]]];
+					if(group!=-1)affinity.add(group, weights[slots[i]]);
+				}
+				int degree = offsets[u+1]-offsets[u];
+				decisions[k] = closestGroup(affinity, degree, true, useWeightsInAddition && degree>0);
+			}
+		});
+		int[] toBeAdded = new int[candidates.length];
+		int count = 0;
+		for(int k=0;k<candidates.length;k++) {
+			if(decisions[k]==-1)continue;
+			if(finest)logger.log(Level.FINEST, "add {} to group {}\n", shard.getLabel(from+candidates[k]), decisions[k]);
+			labels[candidates[k]] = decisions[k];
+			toBeAdded[count++] = candidates[k];
+		}
+		return Arrays.copyOf(toBeAdded, count);
+	}
+
+	/**
+	 * sends the labels of the added nodes to the shards holding them as ghosts and the number of added nodes to all shards, then
+	 * applies the labels received
+	 * @param added
+	 * @throws IOException
+	 */
+	private void exchangeLabels(int[] added) throws IOException {
+		int shards = peers.getSize();
+		int rank = peers.getRank();
+		int[] counts = new int[shards];
+		for(int u:added) {
+			for(int k=subscriberOffsets[u];k<subscriberOffsets[u+1];k++) {
+				counts[subscribers[k]]++;
+			}
+		}
+		Round round = new Round();
+		for(int s=0;s<shards;s++) {
+			if(s==rank)continue;
+			round.to(s).writeInt(added.length);
+			round.to(s).writeInt(counts[s]);
+		}
+		for(int u:added) {
+			for(int k=subscriberOffsets[u];k<subscriberOffsets[u+1];k++) {
+				DataOutputStream out = round.to(subscribers[k]);
+				out.writeInt(from+u);
+				out.writeInt(labels[u]);
+			}
+		}
+		DataInputStream[] received = round.exchange();
+		int[] ghosts = shard.getGhosts();
+		globalAdded = added.length;
+		int total = 0;
+		int[] count = new int[shards];
+		for(int s=0;s<shards;s++) {
+			if(s==rank)continue;
+			globalAdded += received[s].readInt();
+			count[s] = received[s].readInt();
+			total += count[s];
+		}
+		updated = new int[total];
+		total = 0;
+		for(int s=0;s<shards;s++) {
+			for(int k=0;k<count[s];k++) {
+				int g = owned+Arrays.binarySearch(ghosts, received[s].readInt());
+				labels[g] = received[s].readInt();
+				updated[total++] = g;
+			}
+		}
+	}
+
+	/**
+	 * sends the labels of the owned nodes to shard 0, which writes the communities to {@link #communities} and deletes the shard
+	 * files
+	 * @param labels group id of each owned node
+	 * @param folder the folder of the shard files
+	 * @return the number of communities on shard 0, 0 on the other shards
+	 * @throws IOException
+	 */
+	private int gather(int[] labels, File folder) throws IOException {
+		int shards = peers.getSize();
+		Round round = new Round();
+		if(peers.getRank()!=0) {
+			for(int label:labels) {
+				round.to(0).writeInt(label);
+			}
+		}
+		DataInputStream[] received = round.exchange();
+		if(peers.getRank()!=0)return 0;
+		int n = shard.getNumberNodes();
+		int[] all = new int[n];
+		String[] names = new String[n];
+		for(int s=0;s<shards;s++) {
+			int start = shard.getFrom(s);
+			String[] shardNames = GraphShard.loadLabels(GraphShard.file(folder, s));
+			for(int k=0;k<shardNames.length;k++) {
+				all[start+k] = s==0?labels[k]:received[s].readInt();
+				names[start+k] = shardNames[k];
+			}
+		}
+		int numberGroups = writeResults(all, id -> names[id], communities);
+		for(int s=0;s<shards;s++) {
+			GraphShard.file(folder, s).delete();
+		}
+		folder.delete();
+		return numberGroups;
+	}
+
+	/**
+	 * the messages of one exchange round, written to a buffer per shard
+	 */
+	private final class Round {
+
+		private final ByteArrayOutputStream[] buffers = new ByteArrayOutputStream[peers.getSize()];
+		private final DataOutputStream[] outputs = new DataOutputStream[peers.getSize()];
+
+		DataOutputStream to(int shard) {
+			if(outputs[shard]==null) {
+				buffers[shard] = new ByteArrayOutputStream();
+				outputs[shard] = new DataOutputStream(buffers[shard]);
+			}
+			return outputs[shard];
+		}
+
+		/**
+		 * sends the messages and waits for the messages of the other shards
+		 * @return a stream on the message of each shard
+		 * @throws IOException
+		 */
+		DataInputStream[] exchange() throws IOException {
+			byte[][] messages = new byte[buffers.length][];
+			for(int s=0;s<buffers.length;s++) {
+				if(buffers[s]!=null)messages[s] = buffers[s].toByteArray();
+			}
+			byte[][] received = peers.exchange(messages);
+			DataInputStream[] inputs = new DataInputStream[received.length];
+			for(int s=0;s<received.length;s++) {
+				inputs[s] = new DataInputStream(new ByteArrayInputStream(received[s]));
+			}
+			return inputs;
+		}
+	}
+}
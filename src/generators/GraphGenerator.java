@@ -0,0 +1,272 @@
+package generators;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Streaming generator of benchmark networks with known communities. Nodes are processed in fixed chunks, each chunk draws the
+ * edges of its nodes with its own random generator derived from the seed, so the output only depends on the seed and the model,
+ * not on the number of threads. Chunks are generated in parallel and written in order, at most two chunks per thread are held in
+ * memory, so networks larger than the memory can be written.
+ * <p>
+ * The edge file has the "Source\tTarget" layout read by {@link utils.Graph#loadFromFile(String, boolean)}, the ground truth the
+ * "Id\tclass" layout written by {@link algorithms.CommunitiesWriter#writeResults(java.util.HashMap, String, String)}. Communities
+ * are contiguous ranges of internal ids, labels are a permutation of the ids so that they don't reveal the communities.
+ * @version 1.0.17102026
+ */
+public abstract class GraphGenerator {
+
+	/**
+	 * number of nodes per chunk, fixed so that the output doesn't depend on the number of threads
+	 */
+	public static final int CHUNK = 4096;
+
+	protected final int n;
+	protected final long seed;
+	/**
+	 * first internal id of each community, followed by n
+	 */
+	protected int[] starts;
+	private final long multiplier;
+	private final long shift;
+
+	protected GraphGenerator(int n, long seed) {
+		if(n<2)throw new IllegalArgumentException("at least 2 nodes are needed");
+		this.n = n;
+		this.seed = seed;
+		SplittableRandom random = new SplittableRandom(seed);
+		long a = 1+random.nextLong(n);
+		while(gcd(a, n)!=1)a = 1+random.nextLong(n);
+		multiplier = a;
+		shift = random.nextLong(n);
+	}
+
+	/**
+	 * receives the edges drawn by a model
+	 */
+	protected interface EdgeSink {
+		void edge(int source, int target);
+	}
+
+	/**
+	 * draws the edges of the given node, each undirected edge should be drawn by one of its ends only
+	 * @param node internal id
+	 * @param random generator of the chunk of the node
+	 * @param sink
+	 */
+	protected abstract void edges(int node, SplittableRandom random, EdgeSink sink);
+
+	public int getNumberNodes() {
+		return n;
+	}
+
+	public int getNumberCommunities() {
+		return starts.length-1;
+	}
+
+	/**
+	 * @param node internal id
+	 * @return the community of the node, found by binary search over the community starts
+	 */
+	public int community(int node) {
+		int index = Arrays.binarySearch(starts, node);
+		return index>=0?index:-index-2;
+	}
+
+	/**
+	 * @param node internal id
+	 * @return the label written to the files, a bijection of [0,n)
+	 */
+	public long label(int node) {
+		return (multiplier*node+shift)%n;
+	}
+
+	/**
+	 * writes the edges and, if groundTruthFile is not null, the community of each node
+	 * @param edgesFile
+	 * @param groundTruthFile
+	 * @param threads
+	 * @return the number of edges written
+	 * @throws IOException
+	 */
+	public long generate(String edgesFile, String groundTruthFile, int threads) throws IOException {
+		if(groundTruthFile!=null)writeGroundTruth(groundTruthFile);
+		threads = Math.max(1, threads);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		long edges = 0;
+		try(OutputStream out = new BufferedOutputStream(new FileOutputStream(edgesFile), 1<<16)) {
+			out.write("Source\tTarget\n".getBytes("US-ASCII"));
+			ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+			int chunks = (n+CHUNK-1)/CHUNK;
+			for(int chunk=0;chunk<chunks;chunk++) {
+				final int index = chunk;
+				pending.add(pool.submit(() -> generateChunk(index)));
+				if(pending.size()>=2*threads)edges += pending.poll().get().writeTo(out);
+			}
+			while(!pending.isEmpty()) {
+				edges += pending.poll().get().writeTo(out);
+			}
+		}catch (InterruptedException | ExecutionException e) {
+			throw new IOException("generation failed", e);
+		}finally {
+			pool.shutdownNow();
+		}
+		return edges;
+	}
+
+	/**
+	 * @param fileName
+	 * @throws IOException
+	 */
+	public void writeGroundTruth(String fileName) throws IOException {
+		try(BufferedWriter writer = new BufferedWriter(new FileWriter(fileName), 1<<16)) {
+			writer.write("Id\tclass\n");
+			for(int node=0;node<n;node++) {
+				writer.write(label(node)+"\t"+community(node)+"\n");
+			}
+		}
+	}
+
+	private Chunk generateChunk(int chunk) {
+		SplittableRandom random = new SplittableRandom(mix(seed+(chunk+1)*0x9E3779B97F4A7C15L));
+		Chunk result = new Chunk();
+		int end = Math.min(n, (chunk+1)*CHUNK);
+		for(int node=chunk*CHUNK;node<end;node++) {
+			edges(node, random, result);
+		}
+		return result;
+	}
+
+	/**
+	 * text of the edges of one chunk
+	 */
+	private final class Chunk implements EdgeSink {
+
+		private byte[] bytes = new byte[1<<12];
+		private int size = 0;
+		private long edges = 0;
+
+		@Override
+		public void edge(int source, int target) {
+			if(size+42>bytes.length)bytes = Arrays.copyOf(bytes, bytes.length*2);
+			append(label(source));
+			bytes[size++] = '\t';
+			append(label(target));
+			bytes[size++] = '\n';
+			edges++;
+		}
+
+		private void append(long value) {
+			int from = size;
+			do {
+				bytes[size++] = (byte)('0'+value%10);
+				value /= 10;
+			}while(value>0);
+			for(int i=from, j=size-1;i<j;i++, j--) {
+				byte swap = bytes[i];
+				bytes[i] = bytes[j];
+				bytes[j] = swap;
+			}
+		}
+
+		long writeTo(OutputStream out) throws IOException {
+			out.write(bytes, 0, size);
+			return edges;
+		}
+	}
+
+	private static long gcd(long a, long b) {
+		while(b!=0) {
+			long r = a%b;
+			a = b;
+			b = r;
+		}
+		return a;
+	}
+
+	private static long mix(long z) {
+		z = (z^(z>>>30))*0xBF58476D1CE4E5B9L;
+		z = (z^(z>>>27))*0x94D049BB133111EBL;
+		return z^(z>>>31);
+	}
+
+	/**
+	 * usage: -m lfr|sbm -n nodes -o edges file, see {@link #printHelp()} for the optional arguments
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		ArrayList<String> argsList = new ArrayList<>(Arrays.asList(args));
+		if(args.length%2!=0 || argsList.indexOf("-m")==-1 || argsList.indexOf("-n")==-1 || argsList.indexOf("-o")==-1) {
+			printHelp();
+			return;
+		}
+		GraphGenerator generator;
+		String output;
+		String groundTruth;
+		int threads;
+		try {
+			String model = value(argsList, "-m", null);
+			int n = Integer.parseInt(value(argsList, "-n", null));
+			long seed = Long.parseLong(value(argsList, "-s", "1"));
+			threads = Integer.parseInt(value(argsList, "-t", ""+Runtime.getRuntime().availableProcessors()));
+			output = value(argsList, "-o", null);
+			File outputFile = new File(output);
+			String parent = outputFile.getParent();
+			groundTruth = value(argsList, "-g", (parent==null?"":parent+File.separator)+"groundtruth_"+outputFile.getName());
+			if(model.equals("lfr")) {
+				generator = new LFRGenerator(n, seed,
+						Double.parseDouble(value(argsList, "-kmin", "5")), Double.parseDouble(value(argsList, "-kmax", "50")),
+						Double.parseDouble(value(argsList, "-t1", "2.5")),
+						Double.parseDouble(value(argsList, "-cmin", "50")), Double.parseDouble(value(argsList, "-cmax", "500")),
+						Double.parseDouble(value(argsList, "-t2", "1.5")),
+						Double.parseDouble(value(argsList, "-mu", "0.2")));
+			}else if(model.equals("sbm")) {
+				generator = new StochasticBlockModel(n, seed, Integer.parseInt(value(argsList, "-k", ""+Math.max(1, n/100))),
+						Double.parseDouble(value(argsList, "-pin", "0.1")), Double.parseDouble(value(argsList, "-pout", "0.0001")));
+			}else {
+				printHelp();
+				return;
+			}
+		}catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			printHelp();
+			return;
+		}
+		long edges = generator.generate(output, groundTruth, threads);
+		System.out.println(edges+" edges between "+generator.getNumberNodes()+" nodes in "+generator.getNumberCommunities()
+				+" communities written to "+output+", ground truth written to "+groundTruth);
+	}
+
+	private static String value(ArrayList<String> argsList, String name, String defaultValue) {
+		int index = argsList.indexOf(name);
+		return index==-1?defaultValue:argsList.get(index+1);
+	}
+
+	private static void printHelp() {
+		System.out.println("Please provide the following arguments to generate a network:");
+		System.out.println("-m followed by the model, lfr (power law degrees and community sizes) or sbm (stochastic block model)");
+		System.out.println("-n followed by the number of nodes");
+		System.out.println("-o followed by the edges file name");
+		System.out.println("optional:");
+		System.out.println("-g followed by the ground truth file name (default: groundtruth_ followed by the edges file name)");
+		System.out.println("-s followed by the seed (default: 1)");
+		System.out.println("-t followed by the number of threads (default: number of available processors)");
+		System.out.println("lfr: -kmin, -kmax degree range (5, 50), -t1 degree exponent (2.5), -cmin, -cmax community sizes (50, 500),");
+		System.out.println("     -t2 community size exponent (1.5), -mu fraction of edges leaving the community (0.2)");
+		System.out.println("sbm: -k number of blocks (n/100), -pin edge probability inside a block (0.1), -pout between blocks (0.0001)");
+	}
+}
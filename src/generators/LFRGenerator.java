@@ -0,0 +1,115 @@
+package generators;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * LFR-style benchmark: degrees follow a power law of exponent t1 in [kmin,kmax], community sizes a power law of exponent t2 in
+ * [cmin,cmax], and a fraction mu of the edges of each node leaves its community.
+ * <p>
+ * Unlike the original LFR algorithm, which rewires a configuration model, edges are drawn Chung-Lu style so that nothing per node
+ * is stored: the nodes of a community get the degrees of evenly spaced quantiles of the degree law, and each node draws half of
+ * its degree as links to targets chosen with probability proportional to their degree, inside its community with probability
+ * 1-mu and anywhere otherwise. Both the degree of a node and the degree-biased choice of a target have closed forms, so the degree
+ * sequence and mixing are right in expectation. Self loops are skipped and a pair drawn twice gives a duplicate line, which
+ * the loader merges, so hubs end up with slightly fewer edges than drawn.
+ * @version 1.0.17102026
+ */
+public class LFRGenerator extends GraphGenerator {
+
+	private final double kmin;
+	private final double kmax;
+	private final double t1;
+	private final double mu;
+
+	/**
+	 * @param n number of nodes
+	 * @param seed
+	 * @param kmin minimum degree
+	 * @param kmax maximum degree
+	 * @param t1 exponent of the degree distribution
+	 * @param cmin minimum community size
+	 * @param cmax maximum community size
+	 * @param t2 exponent of the community size distribution
+	 * @param mu mixing parameter in [0,1]
+	 */
+	public LFRGenerator(int n, long seed, double kmin, double kmax, double t1, double cmin, double cmax, double t2, double mu) {
+		super(n, seed);
+		if(!(kmin>0 && kmax>=kmin && cmin>=1 && cmax>=cmin && t1>1 && t2>0 && mu>=0 && mu<=1))
+			throw new IllegalArgumentException("invalid parameters, expected 0<kmin<=kmax, 1<=cmin<=cmax, t1>1, t2>0, 0<=mu<=1");
+		this.kmin = kmin;
+		this.kmax = kmax;
+		this.t1 = t1;
+		this.mu = mu;
+
+		//community sizes, the remainder smaller than cmin joins the last community
+		SplittableRandom random = new SplittableRandom(seed);
+		int[] bounds = new int[16];
+		int count = 0;
+		int start = 0;
+		while(true) {
+			if(count==bounds.length)bounds = Arrays.copyOf(bounds, count*2);
+			bounds[count++] = start;
+			int size = (int)Math.round(inverse(random.nextDouble(), cmin, cmax, t2));
+			if(n-start-size<cmin)break;
+			start += size;
+		}
+		starts = Arrays.copyOf(bounds, count+1);
+		starts[count] = n;
+	}
+
+	/**
+	 * @param node
+	 * @return the expected degree of the node, the quantile of its rank in its community
+	 */
+	public double degree(int node) {
+		int community = community(node);
+		int size = starts[community+1]-starts[community];
+		return inverse((node-starts[community]+0.5)/size, kmin, kmax, t1);
+	}
+
+	@Override
+	protected void edges(int node, SplittableRandom random, EdgeSink sink) {
+		double half = degree(node)/2;
+		int stubs = (int)half;
+		if(random.nextDouble()<half-stubs)stubs++;
+		int community = community(node);
+		for(int k=0;k<stubs;k++) {
+			int target = random.nextDouble()<mu?community(random.nextInt(n)):community;
+			target = biased(target, random);
+			if(target!=node)sink.edge(node, target);
+		}
+	}
+
+	/**
+	 * @param community
+	 * @param random
+	 * @return a node of the community chosen with probability proportional to its degree
+	 */
+	private int biased(int community, SplittableRandom random) {
+		double degree = inverse(random.nextDouble(), kmin, kmax, t1-1);//the degree-biased law has exponent t1-1
+		int size = starts[community+1]-starts[community];
+		int rank = (int)(cdf(degree, kmin, kmax, t1)*size);
+		return starts[community]+Math.min(size-1, rank);
+	}
+
+	/**
+	 * @return the p-quantile of the power law of exponent t truncated to [a,b]
+	 */
+	static double inverse(double p, double a, double b, double t) {
+		if(a==b)return a;
+		if(Math.abs(t-1)<1e-12)return a*Math.pow(b/a, p);
+		double e = 1-t;
+		return Math.pow(Math.pow(a, e)+p*(Math.pow(b, e)-Math.pow(a, e)), 1/e);
+	}
+
+	/**
+	 * @return the cumulative distribution at x of the power law of exponent t truncated to [a,b]
+	 */
+	static double cdf(double x, double a, double b, double t) {
+		if(a==b)return 1;
+		if(Math.abs(t-1)<1e-12)return Math.log(x/a)/Math.log(b/a);
+		double e = 1-t;
+		return (Math.pow(x, e)-Math.pow(a, e))/(Math.pow(b, e)-Math.pow(a, e));
+	}
+}
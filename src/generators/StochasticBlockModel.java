@@ -0,0 +1,61 @@
+package generators;
+
+import java.util.SplittableRandom;
+
+/**
+ * Stochastic block model with k blocks of equal size: two nodes of the same block are linked with probability pIn, two nodes of
+ * different blocks with probability pOut. Each node draws its links to the nodes after it by geometric skipping, so the cost is
+ * proportional to the number of edges and nothing but the block bounds is stored.
+ * @version 1.0.17102026
+ */
+public class StochasticBlockModel extends GraphGenerator {
+
+	private final double pIn;
+	private final double pOut;
+
+	/**
+	 * @param n number of nodes
+	 * @param seed
+	 * @param k number of blocks
+	 * @param pIn edge probability inside a block
+	 * @param pOut edge probability between blocks
+	 */
+	public StochasticBlockModel(int n, long seed, int k, double pIn, double pOut) {
+		super(n, seed);
+		if(k<1 || k>n)throw new IllegalArgumentException("the number of blocks must be in [1,n]");
+		if(!(pIn>=0 && pIn<=1 && pOut>=0 && pOut<=1))throw new IllegalArgumentException("probabilities must be in [0,1]");
+		this.pIn = pIn;
+		this.pOut = pOut;
+		starts = new int[k+1];
+		for(int b=0;b<=k;b++) {
+			starts[b] = (int)((long)b*n/k);
+		}
+	}
+
+	@Override
+	protected void edges(int node, SplittableRandom random, EdgeSink sink) {
+		int end = starts[community(node)+1];
+		link(node, node+1, end, pIn, random, sink);
+		link(node, end, n, pOut, random, sink);
+	}
+
+	/**
+	 * links the node to each node of [from,to) with probability p, skipping a geometric number of nodes between two links
+	 */
+	private static void link(int node, int from, int to, double p, SplittableRandom random, EdgeSink sink) {
+		if(p<=0 || from>=to)return;
+		if(p>=1) {
+			for(int target=from;target<to;target++) {
+				sink.edge(node, target);
+			}
+			return;
+		}
+		double logQ = Math.log1p(-p);
+		long target = from-1;
+		while(true) {
+			target += 1+(long)Math.floor(Math.log(1-random.nextDouble())/logQ);
+			if(target>=to)break;
+			sink.edge(node, (int)target);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package networkanalysis;
+
+import utils.CompactGraph;
+import utils.EdgeWeights;
+
+/**
+ * Sparse accumulator of the links and edge weights between one node and the communities of its neighbours. A single pass over the
+ * neighbours fills it, only the touched communities are listed and reset afterwards, so scoring a node costs O(degree) whatever
+ * the number of communities. An instance is not thread safe, each worker uses its own.
+ * @version 1.1.17102026
+ */
+public final class CommunityAffinity {
+
+	private final int[] links;
+	private final double[] weights;
+	private final int[] touched;
+	private int size = 0;
+
+	/**
+	 * @param numberGroups upper bound (exclusive) of the community ids
+	 */
+	public CommunityAffinity(int numberGroups) {
+		links = new int[numberGroups];
+		weights = new double[numberGroups];
+		touched = new int[numberGroups];
+	}
+
+	/**
+	 * counts one link of weight 'weight' to the given community
+	 * @param group
+	 * @param weight
+	 */
+	public void add(int group, double weight) {
+		if(links[group]==0)touched[size++] = group;
+		links[group]++;
+		weights[group] += weight;
+	}
+
+	/**
+	 * adds all links of the given node to classified neighbours, in the order of its edges so that the weights of each community
+	 * are rounded as in its successor list, v1.1.17102026
+	 * @param graph
+	 * @param edgeWeights weights aligned with graph
+	 * @param labels community id of each node, -1 for unclassified nodes
+	 * @param node
+	 */
+	public void scan(CompactGraph graph, EdgeWeights edgeWeights, int[] labels, int node) {
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		int[] slots = graph.getSlotsInEdgeOrder();
+		for(int k=offsets[node];k<offsets[node+1];k++) {
+			int group = labels[targets[slots[k]]];
+			if(group!=-1)add(group, edgeWeights.get(slots[k]));
+		}
+	}
+
+	/**
+	 * @return number of communities touched since the last {@link #clear()}
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param k index in [0, size())
+	 * @return the k-th touched community
+	 */
+	public int getGroup(int k) {
+		return touched[k];
+	}
+
+	/**
+	 * @param k index in [0, size())
+	 * @return number of links to the k-th touched community
+	 */
+	public int getLinks(int k) {
+		return links[touched[k]];
+	}
+
+	/**
+	 * @param k index in [0, size())
+	 * @return sum of the weights of the links to the k-th touched community
+	 */
+	public double getWeight(int k) {
+		return weights[touched[k]];
+	}
+
+	/**
+	 * resets the touched communities only
+	 */
+	public void clear() {
+		for(int k=0;k<size;k++) {
+			links[touched[k]] = 0;
+			weights[touched[k]] = 0;
+		}
+		size = 0;
+	}
+}
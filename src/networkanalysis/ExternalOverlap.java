@@ -0,0 +1,127 @@
+package networkanalysis;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import utils.ExternalGraph;
+import utils.Metrics;
+import utils.RangeTask;
+
+/**
+ * computes the neighbourhood overlap of all edges of an {@link ExternalGraph} with block nested loop passes. The blocks of the graph
+ * are taken one at a time as the outer block, and each block holding neighbours of its nodes is read once as the inner block: the
+ * edges from the outer to the inner block are then computed by merging the two sorted neighbour ranges, in parallel over the outer
+ * nodes. Only two blocks of targets and the weights of the outer block are in memory at once. The weights are appended to the
+ * weights file of the graph in slot order, with the same values as {@link NeighborhoodOverlap#calculateWeights(utils.Graph, int)}.
+ * <p>
+ * Unlike {@link ParallelOverlap}, each edge is computed from both of its ends, since the slot of the other direction usually
+ * belongs to another block.
+ * @version 1.1.17102026
+ */
+public final class ExternalOverlap {
+
+	/**
+	 * outer nodes given to a task
+	 */
+	private static final int GRAIN = 256;
+
+	private ExternalOverlap() {
+	}
+
+	/**
+	 * computes and writes the weights of all slots of the graph
+	 * @param graph
+	 * @param blockSlots number of slots of a block, see {@link ExternalGraph#blockSlots(long)}
+	 * @param threads number of workers, 1 runs in the calling thread
+	 * @return the out-weight of each node, the sum of the weights of its edges in file order like {@link utils.Graph#getOutWeight(int)}
+	 * @throws IOException
+	 */
+	public static double[] calculate(ExternalGraph graph, long blockSlots, int threads) throws IOException {
+		int[] blocks = graph.blocks(blockSlots);
+		int count = blocks.length-1;
+		double[] outWeights = new double[graph.getNumberNodes()];
+		AtomicLong intersections = new AtomicLong();
+		ForkJoinPool pool = threads>1?new ForkJoinPool(threads):null;
+		try(ExternalGraph.WeightsWriter writer = graph.writeWeights()) {
+			ExternalGraph.Block outer = null;
+			ExternalGraph.Block inner = null;
+			double[] values = new double[0];
+			for(int b=0;b<count;b++) {
+				outer = graph.read(blocks[b], blocks[b+1], false, true, outer);
+				if(values.length<outer.size())values = new double[outer.size()];
+				int[] targets = outer.getTargets();
+				//the blocks holding neighbours of the outer nodes
+				boolean[] needed = new boolean[count];
+				for(int slot=0;slot<outer.size();slot++) {
+					needed[block(blocks, targets[slot])] = true;
+				}
+				for(int i=0;i<count;i++) {
+					if(!needed[i])continue;
+					if(i!=b)inner = graph.read(blocks[i], blocks[i+1], false, inner);
+					ExternalGraph.Block a = outer;
+					ExternalGraph.Block c = i==b?outer:inner;
+					double[] weights = values;
+					RangeTask.run(pool, a.getFrom(), a.getTo(), GRAIN, (from, to) -> {
+						long computed = 0;
+						int[] x = a.getTargets();
+						int[] y = c.getTargets();
+						for(int u=from;u<to;u++) {
+							int start = a.start(u);
+							int end = a.end(u);
+							//the targets are sorted, so the neighbours in the inner block are contiguous
+							int first = lowerBound(x, start, end, c.getFrom());
+							int last = lowerBound(x, first, end, c.getTo());
+							int sizeU = end-start-1;
+							for(int slot=first;slot<last;slot++) {
+								int v = x[slot];
+								int inter = IntersectionKernel.intersect(x, start, end, y, c.start(v), c.end(v));
+								//u and v are neighbours of each other and never belong to the intersection
+								double union = sizeU+(c.end(v)-c.start(v)-1)-inter;
+								weights[slot] = union<=0?0:IntersectionKernel.round(inter/union);
+							}
+							computed += last-first;
+						}
+						intersections.addAndGet(computed);
+					});
+				}
+				int[] slots = null;
+				for(int u=outer.getFrom();u<outer.getTo();u++) {
+					//in file order, the rounding of the sum then matches the successor lists
+					slots = outer.slotsInOrder(u, slots);
+					double sum = 0;
+					for(int k=0;k<outer.end(u)-outer.start(u);k++) {
+						sum += values[slots[k]];
+					}
+					outWeights[u] = sum;
+				}
+				writer.write(values, 0, outer.size());
+			}
+		}finally {
+			if(pool!=null)pool.shutdown();
+		}
+		Metrics.counter("overlap.intersections").add(intersections.get());
+		return outWeights;
+	}
+
+	/**
+	 * @return the block whose node range contains the given node
+	 */
+	private static int block(int[] blocks, int node) {
+		int b = Arrays.binarySearch(blocks, node);
+		return b>=0?b:-b-2;
+	}
+
+	/**
+	 * @return the first index of the sorted range values[from..to) holding a value not less than key
+	 */
+	private static int lowerBound(int[] values, int from, int to, int key) {
+		while(from<to) {
+			int middle = (from+to)>>>1;
+			if(values[middle]<key)from = middle+1;
+			else to = middle;
+		}
+		return from;
+	}
+}
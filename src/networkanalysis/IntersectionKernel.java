@@ -0,0 +1,156 @@
+package networkanalysis;
+
+import java.math.BigDecimal;
+
+/**
+ * allocation-free kernels used by the overlap calculation: intersection of sorted neighbour ranges and rounding of overlap values.
+ * Neighbour ranges are read in place from the CSR targets array, so no scratch buffer is needed.
+ * @version 1.1.17102026
+ */
+public final class IntersectionKernel {
+
+	/**
+	 * when the larger range is this many times longer than the smaller one, galloping search is used instead of linear merge
+	 */
+	public static final int GALLOP_RATIO = 32;
+
+	private static final double SCALE = 10000;
+	private static final long MANTISSA_MASK = (1L<<52)-1;
+
+	private IntersectionKernel() {
+	}
+
+	/**
+	 * counts the values common to the sorted ranges values[aStart..aEnd) and values[bStart..bEnd)
+	 * @return size of the intersection
+	 */
+	public static int intersect(int[] values, int aStart, int aEnd, int bStart, int bEnd) {
+		return intersect(values, aStart, aEnd, values, bStart, bEnd);
+	}
+
+	/**
+	 * counts the values common to the sorted ranges a[aStart..aEnd) and b[bStart..bEnd), e.g. two neighbour ranges read in
+	 * different blocks of a {@link utils.ExternalGraph}, v1.1.17102026
+	 * @return size of the intersection
+	 */
+	public static int intersect(int[] a, int aStart, int aEnd, int[] b, int bStart, int bEnd) {
+		int sizeA = aEnd-aStart;
+		int sizeB = bEnd-bStart;
+		if(sizeA==0 || sizeB==0)return 0;
+		if(sizeA>sizeB*(long)GALLOP_RATIO)return gallop(b, bStart, bEnd, a, aStart, aEnd);
+		if(sizeB>sizeA*(long)GALLOP_RATIO)return gallop(a, aStart, aEnd, b, bStart, bEnd);
+		return merge(a, aStart, aEnd, b, bStart, bEnd);
+	}
+
+	/**
+	 * linear merge of two sorted ranges
+	 */
+	static int merge(int[] a, int i, int endA, int[] b, int j, int endB) {
+		int count = 0;
+		while(i<endA && j<endB) {
+			int x = a[i];
+			int y = b[j];
+			if(x<y)i++;
+			else if(x>y)j++;
+			else {
+				count++;
+				i++;
+				j++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * looks up each value of the small range in the large one with exponential search, starting from the position of the last match
+	 */
+	static int gallop(int[] small, int smallStart, int smallEnd, int[] large, int largeStart, int largeEnd) {
+		int count = 0;
+		int low = largeStart;
+		for(int i=smallStart;i<smallEnd && low<largeEnd;i++) {
+			int key = small[i];
+			if(large[low]>=key) {
+				if(large[low]==key) {
+					count++;
+					low++;
+				}
+				continue;
+			}
+			//large[low]<key, double the step until passing key
+			int step = 1;
+			int high = low+step;
+			while(high<largeEnd && large[high]<key) {
+				low = high;
+				step <<= 1;
+				high = low+step;
+			}
+			if(high>largeEnd)high = largeEnd;
+			//binary search in (low, high]
+			int l = low+1;
+			int h = high-1;
+			while(l<=h) {
+				int middle = (l+h)>>>1;
+				if(large[middle]<key)l = middle+1;
+				else h = middle-1;
+			}
+			low = l;
+			if(low<largeEnd && large[low]==key) {
+				count++;
+				low++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * rounds the given value to 4 decimals with {@link java.math.RoundingMode#HALF_UP}, giving exactly the same double as
+	 * <code>new BigDecimal(value).setScale(4, RoundingMode.HALF_UP).doubleValue()</code> without allocating
+	 * @param value a finite value
+	 * @return
+	 */
+	public static double round(double value) {
+		if(value<0)return -round(-value);
+		double scaled = value*SCALE;
+		if(!(scaled<(1L<<52))) {
+			//out of the range of overlap values, not worth a fast path
+			return new BigDecimal(value).setScale(4, java.math.RoundingMode.HALF_UP).doubleValue();
+		}
+		long rounded = (long)Math.floor(scaled+0.5);
+		//scaled is inexact, correct the candidate with exact comparisons against the rounding boundaries (2r-1)/20000 and (2r+1)/20000
+		if(rounded>0 && compareToHalf(value, 2*rounded-1)<0) {
+			rounded--;
+		}else if(compareToHalf(value, 2*rounded+1)>=0) {
+			rounded++;
+		}
+		return rounded/SCALE;
+	}
+
+	/**
+	 * exactly compares value with odd/20000
+	 * @param value a non-negative finite value
+	 * @param odd a non-negative numerator
+	 * @return &gt;0 if value is greater, 0 if equal, &lt;0 otherwise
+	 */
+	static int compareToHalf(double value, long odd) {
+		long bits = Double.doubleToRawLongBits(value);
+		int exponent = Math.getExponent(value);
+		long mantissa;
+		if(exponent<Double.MIN_EXPONENT) {
+			mantissa = bits & MANTISSA_MASK;
+			exponent = Double.MIN_EXPONENT-52;
+		}else {
+			mantissa = (bits & MANTISSA_MASK) | (1L<<52);
+			exponent -= 52;
+		}
+		//value*20000 = mantissa*625*2^(exponent+5), mantissa*625 < 2^63
+		long left = mantissa*625;
+		int shift = exponent+5;
+		if(shift>=0) {
+			if(shift>=63 || left>(Long.MAX_VALUE>>shift))return 1;
+			return Long.compare(left<<shift, odd);
+		}
+		shift = -shift;
+		if(shift>=63 || odd>(Long.MAX_VALUE>>shift))return -1;
+		return Long.compare(left, odd<<shift);
+	}
+}
@@ -1,46 +1,171 @@
 package networkanalysis;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
 
+import utils.CompactGraph;
+import utils.EdgeWeights;
+import utils.ExternalGraph;
 import utils.Graph;
+import utils.Metrics;
+import utils.RangeTask;
 
 /**
  * As it is clear from the name, this class contains methods to return local maximum edges or nodes in a given weighted graph.
- * v1.1.27012019
+ * v1.4.17102026
  */
 public class LocalMaximumFinder {
 	
+	/**
+	 * weights are compared on 10 digits after the point, see {@link #compare(double, double, int)}
+	 */
+	private static final int FLOATING_POINTS = 10;
+	/**
+	 * the powers of 10 that are exact doubles
+	 */
+	private static final double[] POWERS = new double[23];
+	static {
+		POWERS[0] = 1;
+		for(int k=1;k<POWERS.length;k++) {
+			POWERS[k] = POWERS[k-1]*10;
+		}
+	}
+	/**
+	 * nodes given to a task
+	 */
+	private static final int GRAIN = 4096;
+	
 	/**
 	 * returns edges with maximum weights locally
 	 * @param graph weighted graph
 	 * @return HashMap where key is a string with format "node1,node2", and value is the edge weight
 	 */
 	public static HashMap<String, Double> findLocalMaximumEdges(Graph<String> graph){
+		return findLocalMaximumEdges(graph, 1);
+	}
+	
+	/**
+	 * same as {@link #findLocalMaximumEdges(Graph)} over the given number of threads, v1.4.17102026. The keys are the ones of
+	 * the single threaded scan of {@link Graph#getAllNodes()}: an edge starts with the end that comes first in that order when
+	 * both ends list each other, and a one-way edge with its source.
+	 * @param graph
+	 * @param threads
+	 * @return
+	 */
+	public static HashMap<String, Double> findLocalMaximumEdges(Graph<String> graph, int threads){
+		CompactGraph compact = graph.getCompactGraph();
+		Edges edges = findLocalMaximumEdges(compact, graph.getEdgeWeights(), threads);
+		int[] edgeIds = compact.getEdgeIds();
+		//rank the ends in the order of graph.getAllNodes()
+		boolean[] seen = new boolean[compact.getNumberNodes()];
+		int[] ends = new int[2*edges.size()];
+		int count = 0;
+		for(int k=0;k<edges.size();k++) {
+			for(int end:new int[] {edges.getSource(k), edges.getTarget(k)}) {
+				if(!seen[end]) {
+					seen[end] = true;
+					ends[count++] = end;
+				}
+			}
+		}
+		ends = Arrays.copyOf(ends, count);
+		graph.sortNodes(ends);
+		int[] ranks = new int[compact.getNumberNodes()];
+		for(int k=0;k<count;k++) {
+			ranks[ends[k]] = k;
+		}
+		int[] firsts = new int[edges.size()];
+		int[] seconds = new int[edges.size()];
+		long[] order = new long[edges.size()];
+		for(int k=0;k<edges.size();k++) {
+			int a = edges.getSource(k), b = edges.getTarget(k);
+			int reverse = compact.getSlot(b, a);
+			if(reverse>=0 && edgeIds[reverse]==edgeIds[compact.getSlot(a, b)] && ranks[b]<ranks[a]) {
+				int swap = a;
+				a = b;
+				b = swap;
+			}
+			firsts[k] = a;
+			seconds[k] = b;
+			order[k] = ((long)ranks[a]<<32)|k;
+		}
+		Arrays.sort(order);
 		HashMap<String, Double> maximumEdges = new HashMap<String, Double>();
-		ArrayList<String> nodes = graph.getAllNodes();
-		for(String a:nodes) {
-			for(String b:graph.getSuccessors(a)) {
-				//edge a-b
-				boolean localMaxima=true;
-				double weight = graph.getWeight(a, b);
-				//find all edges surrounding [a-b]
-				for(String n_b:graph.getSuccessors(b)) {
-					if(compare(weight,graph.getWeight(b, n_b),10)<0 /*weight<graph.getWeight(b, n_b)*/) {
-						localMaxima=false;
-						break;
+		for(long entry:order) {
+			int k = (int)entry;
+			String a = compact.getLabel(firsts[k]), b = compact.getLabel(seconds[k]);
+			//both directions of a directed edge are kept once, under the first one met
+			if(!maximumEdges.containsKey(b+","+a))maximumEdges.put(a+","+b, edges.getWeight(k));
+		}
+		return maximumEdges;
+	}
+	
+	/**
+	 * finds the edges whose weight is not below the weight of any edge of their two ends, comparing weights on 10 digits like
+	 * {@link #compare(double, double, int)}. The weights are quantized once per slot and each node keeps the largest quantized
+	 * weight of its slots, so an edge is checked against its two ends in constant time and each edge is visited once, from the
+	 * slot that owns it. O(m) over the given number of threads, v1.4.17102026
+	 * @param compact
+	 * @param weights weights aligned with compact
+	 * @param threads
+	 * @return the maximum edges, ordered by source then slot
+	 */
+	public static Edges findLocalMaximumEdges(CompactGraph compact, EdgeWeights weights, int threads) {
+		int n = compact.getNumberNodes();
+		int[] offsets = compact.getOffsets();
+		int[] targets = compact.getTargets();
+		int[] edgeIds = compact.getEdgeIds();
+		double[] values = weights.getValues();
+		double factor = POWERS[FLOATING_POINTS];
+		double[] highest = new double[n];
+		int[] counts = new int[n+1];
+		ForkJoinPool pool = threads>1 && n>GRAIN?new ForkJoinPool(threads):null;
+		try {
+			RangeTask.run(pool, 0, n, GRAIN, (from, to) -> {
+				for(int a=from;a<to;a++) {
+					double max = Double.NEGATIVE_INFINITY;
+					for(int slot=offsets[a];slot<offsets[a+1];slot++) {
+						max = Math.max(max, Math.floor(values[edgeIds[slot]]*factor)/factor);
 					}
+					highest[a] = max;
 				}
-				for(String n_a:graph.getSuccessors(a)) {
-					if(compare(weight,graph.getWeight(a, n_a),10)<0 /*weight<graph.getWeight(a, n_a)*/) {
-						localMaxima=false;
-						break;
+			});
+			//edge a-b, both directions have the same status so it is checked from its first slot only
+			RangeTask.run(pool, 0, n, GRAIN, (from, to) -> {
+				for(int a=from;a<to;a++) {
+					int count = 0;
+					for(int slot=offsets[a];slot<offsets[a+1];slot++) {
+						double weight = Math.floor(values[edgeIds[slot]]*factor)/factor;
+						if(weight>=highest[a] && weight>=highest[targets[slot]] && compact.ownsEdge(a, slot))count++;
 					}
+					counts[a+1] = count;
 				}
-				if(localMaxima && !maximumEdges.keySet().contains(b+","+a))maximumEdges.put(a+","+b, weight);
+			});
+			for(int a=0;a<n;a++) {
+				counts[a+1] += counts[a];
 			}
+			int[] sources = new int[counts[n]];
+			int[] ends = new int[counts[n]];
+			double[] maximums = new double[counts[n]];
+			RangeTask.run(pool, 0, n, GRAIN, (from, to) -> {
+				for(int a=from;a<to;a++) {
+					int k = counts[a];
+					for(int slot=offsets[a];slot<offsets[a+1] && k<counts[a+1];slot++) {
+						double weight = Math.floor(values[edgeIds[slot]]*factor)/factor;
+						if(weight>=highest[a] && weight>=highest[targets[slot]] && compact.ownsEdge(a, slot)) {
+							sources[k] = a;
+							ends[k] = targets[slot];
+							maximums[k++] = values[edgeIds[slot]];
+						}
+					}
+				}
+			});
+			return new Edges(sources, ends, maximums);
+		}finally {
+			if(pool!=null)pool.shutdown();
 		}
-		return maximumEdges;
 	}
 	
 	/**
@@ -49,24 +174,117 @@ public class LocalMaximumFinder {
 	 * @return
 	 */
 	public static HashMap<String, Double> findLocalMaximumNodes(Graph<String> graph){
+		return findLocalMaximumNodes(graph, 1);
+	}
+	
+	/**
+	 * same as {@link #findLocalMaximumNodes(Graph)} over the given number of threads, v1.4.17102026. The map is filled in the order
+	 * of {@link Graph#getAllNodes()}, which decides the order of its keys and so the ids of the cores.
+	 * @param graph
+	 * @param threads
+	 * @return
+	 */
+	public static HashMap<String, Double> findLocalMaximumNodes(Graph<String> graph, int threads){
+		CompactGraph compact = graph.getCompactGraph();
+		double[] outWeights = graph.getOutWeightValues();
+		if(outWeights==null) {
+			//the graph changed since its out-weights were computed, they are looked up by label
+			double[] values = new double[compact.getNumberNodes()];
+			ForkJoinPool pool = threads>1 && values.length>GRAIN?new ForkJoinPool(threads):null;
+			try {
+				RangeTask.run(pool, 0, values.length, GRAIN, (from, to) -> {
+					for(int a=from;a<to;a++) {
+						values[a] = graph.getOutWeight(compact.getLabel(a));
+					}
+				});
+			}finally {
+				if(pool!=null)pool.shutdown();
+			}
+			outWeights = values;
+		}
+		int[] maximums = findLocalMaximumNodes(compact.getOffsets(), compact.getTargets(), outWeights, outWeights.length, threads);
+		graph.sortNodes(maximums);
 		HashMap<String, Double> maximumNodes = new HashMap<String, Double>();
-		ArrayList<String> nodes = graph.getAllNodes();
-		for(String a:nodes) {
-			boolean localMaxima=true;
-			double weight = graph.getOutWeight(a)/**graph.getSuccessors(a).size()*/;
-			if(weight==0) {
-				localMaxima=false;
-			}else {
-				for(String b:graph.getSuccessors(a)) {
-					if(weight<graph.getOutWeight(b))/**graph.getSuccessors(b).size())*/ {
-						localMaxima=false;
-						break;
+		for(int a:maximums) {
+			maximumNodes.put(compact.getLabel(a), outWeights[a]);
+		}
+		return maximumNodes;
+	}
+	
+	/**
+	 * same as {@link #findLocalMaximumNodes(Graph)} on the first nodes of a CSR whose targets index outWeights, e.g. the nodes owned by
+	 * a shard followed by its ghosts. A node is a local maximum if its out-weight is not 0 and not below the out-weight of any
+	 * neighbour, v1.3.17102026
+	 * @param offsets offsets of the slots of the checked nodes
+	 * @param targets
+	 * @param outWeights out-weight of each node a target can refer to
+	 * @param count number of nodes to check
+	 * @param threads
+	 * @return ids of the local maximum nodes among the first count nodes, sorted
+	 */
+	public static int[] findLocalMaximumNodes(int[] offsets, int[] targets, double[] outWeights, int count, int threads) {
+		boolean[] maximum = new boolean[count];
+		ForkJoinPool pool = threads>1 && count>GRAIN?new ForkJoinPool(threads):null;
+		try {
+			RangeTask.run(pool, 0, count, GRAIN, (from, to) -> {
+				for(int a=from;a<to;a++) {
+					double weight = outWeights[a];
+					boolean localMaxima = weight!=0;
+					for(int slot=offsets[a];slot<offsets[a+1] && localMaxima;slot++) {
+						if(weight<outWeights[targets[slot]])localMaxima=false;
 					}
+					maximum[a] = localMaxima;
 				}
+			});
+		}finally {
+			if(pool!=null)pool.shutdown();
+		}
+		Metrics.counter("localMaximum.nodesExamined").add(count);
+		return ids(maximum);
+	}
+
+	/**
+	 * @return the indexes of the set flags, sorted
+	 */
+	private static int[] ids(boolean[] flags) {
+		int count = 0;
+		for(boolean flag:flags) {
+			if(flag)count++;
+		}
+		int[] ids = new int[count];
+		count = 0;
+		for(int a=0;a<flags.length;a++) {
+			if(flags[a])ids[count++] = a;
+		}
+		return ids;
+	}
+
+	/**
+	 * same as {@link #findLocalMaximumNodes(Graph)} on a graph kept on disk, read block by block, v1.2.17102026
+	 * @param graph
+	 * @param outWeights out-weight of each node
+	 * @param blockSlots number of slots of a block, see {@link ExternalGraph#blockSlots(long)}
+	 * @return ids of the local maximum nodes, sorted
+	 * @throws IOException
+	 */
+	public static int[] findLocalMaximumNodes(ExternalGraph graph, double[] outWeights, long blockSlots) throws IOException {
+		int[] blocks = graph.blocks(blockSlots);
+		boolean[] maximum = new boolean[outWeights.length];
+		ExternalGraph.Block block = null;
+		for(int b=0;b<blocks.length-1;b++) {
+			block = graph.read(blocks[b], blocks[b+1], false, block);
+			int[] targets = block.getTargets();
+			for(int a=block.getFrom();a<block.getTo();a++) {
+				double weight = outWeights[a];
+				boolean localMaxima = weight!=0;
+				for(int slot=block.start(a);slot<block.end(a) && localMaxima;slot++) {
+					if(weight<outWeights[targets[slot]])localMaxima=false;
+				}
+				maximum[a] = localMaxima;
 			}
-			if(localMaxima)maximumNodes.put(a, weight);
 		}
-		return maximumNodes;
+		Metrics.counter("localMaximum.nodesExamined").add(outWeights.length);
+		return ids(maximum);
 	}
 
 	/**
@@ -77,7 +295,7 @@ public class LocalMaximumFinder {
 	 * @return >0 if a>b, 0 if a=b, <0 otherwise
 	 */
 	public static int compare(double a, double b, int floatingPoints) {
-		double factor=Math.pow(10, floatingPoints);
+		double factor = floatingPoints>=0 && floatingPoints<POWERS.length?POWERS[floatingPoints]:Math.pow(10, floatingPoints);
 		double o1 = Math.floor(a*factor)/factor;
 		double o2 = Math.floor(b*factor)/factor;
 		
@@ -86,4 +304,35 @@ public class LocalMaximumFinder {
 		else return 0;
 	}
 
+	/**
+	 * local maximum edges as parallel arrays of source, target and weight, v1.4.17102026
+	 */
+	public static final class Edges {
+
+		private final int[] sources;
+		private final int[] targets;
+		private final double[] weights;
+
+		private Edges(int[] sources, int[] targets, double[] weights) {
+			this.sources = sources;
+			this.targets = targets;
+			this.weights = weights;
+		}
+
+		public int size() {
+			return sources.length;
+		}
+
+		public int getSource(int k) {
+			return sources[k];
+		}
+
+		public int getTarget(int k) {
+			return targets[k];
+		}
+
+		public double getWeight(int k) {
+			return weights[k];
+		}
+	}
 }
@@ -3,18 +3,19 @@ package networkanalysis;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.logging.Level;
 
+import utils.CompactGraph;
 import utils.CustomLogger;
+import utils.EdgeWeights;
 import utils.Graph;
 
 /**
  * computes neighbourhood overlap on the edges of the given graph, gives the output as a weighted graph or directly alter the graph
  * based on the results.
- * @version 3.1.13032019
+ * @version 3.3.17102026
  */
 public class NeighborhoodOverlap {
 	
@@ -55,22 +56,63 @@ public class NeighborhoodOverlap {
 		}
 	}
 	/**
-	 * 
+	 * calculates the overlap of all edges using all available processors
 	 * @param graph
-	 * @param useWeights
 	 * @return
 	 */
 	public static HashMap<String, Double> calculate(Graph<String> graph) {
-		ArrayList<String> nodes = graph.getAllNodes();
-		HashMap<String, Double> weights = new HashMap<>();
+		return calculate(graph, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * calculates the overlap of all edges from the triangles of the graph with {@link TriangleOverlap}, or with one intersection per
+	 * edge with {@link ParallelOverlap} when some edges have a single direction, v3.3.17102026. The result doesn't depend on the
+	 * number of threads
+	 * @param graph
+	 * @param threads number of worker threads, 1 to calculate in the calling thread
+	 * @return a map keyed by "node1,node2", each edge appears in both directions
+	 */
+	public static HashMap<String, Double> calculate(Graph<String> graph, int threads) {
+		return calculateWeights(graph, threads).toMap();
+	}
+	
+	/**
+	 * same as {@link #calculate(Graph, int)} but returns the weights as a primitive store, one value per undirected edge
+	 * @param graph
+	 * @param threads
+	 * @return
+	 */
+	public static EdgeWeights calculateWeights(Graph<String> graph, int threads) {
+		return calculateWeights(graph, threads, 0, false);
+	}
+	
+	/**
+	 * same as {@link #calculateWeights(Graph, int)}, the overlaps of the edges between nodes of degree above sketchSize are estimated
+	 * with {@link SketchOverlap} when sketchSize is not 0, v3.2.17102026
+	 * @param graph
+	 * @param threads
+	 * @param sketchSize number of hashes kept per node, 0 to compute all overlaps exactly
+	 * @param recheck recompute exactly the estimated edges of the nodes that could be local maximums
+	 * @return
+	 */
+	public static EdgeWeights calculateWeights(Graph<String> graph, int threads, int sketchSize, boolean recheck) {
+		CompactGraph compact = graph.getCompactGraph();
+		int[] offsets = compact.getOffsets();
+		int[] targets = compact.getTargets();
+		EdgeWeights weights;
+		if(sketchSize>0) {
+			weights = SketchOverlap.calculate(compact, sketchSize, recheck, threads);
+		}else if(TriangleOverlap.supports(compact)) {
+			weights = TriangleOverlap.calculate(compact, threads);
+		}else {
+			weights = ParallelOverlap.calculate(compact, threads);
+		}
 		
-		for(String a:nodes) {
-			for(String b:graph.getSuccessors(a)) {
-				//calculate the overlap between a and b
-				double overlap = 0;
-				overlap = overlap(graph, a, b, "o");
-				logger.log(Level.FINEST, "weight: "+a+","+b+" = "+overlap+"\n");//out
-				weights.put(a+","+b, overlap);
+		if(logger.isLoggable(Level.FINEST)) {
+			for(int a=0;a<compact.getNumberNodes();a++) {
+				for(int slot=offsets[a];slot<offsets[a+1];slot++) {
+					logger.log(Level.FINEST, "weight: "+compact.getLabel(a)+","+compact.getLabel(targets[slot])+" = "+weights.get(slot)+"\n");//out
+				}
 			}
 		}
 		graph.setWeights(weights);
@@ -83,35 +125,31 @@ public class NeighborhoodOverlap {
 	 * the overlap is the number of common neighbours over the number of all neighbours - 2 (because a and b belongs to neighbours set
 	 * of each other)
 	 * @param graph
-	 * @param a first node
-	 * @param b second node
+	 * @param a id of first node
+	 * @param b id of second node
 	 * @param mode o for neighbourhood overlap, i for intersection, u for union
 	 * @return overlap value
 	 */
-	private static double overlap(Graph<String> graph, String a, String b, String mode) {
+	static double overlap(CompactGraph graph, int a, int b, String mode) {
 		double nbNUnion = 0;
 		double nbNInter = 0;
-		ArrayList<String> sa = graph.getSuccessors(a);
-		sa.remove(b);
-		ArrayList<String> sb = graph.getSuccessors(b);
-		sb.remove(a);
+		//a and b are excluded from the neighbourhoods of each other, they never belong to the intersection
+		int sizeA = graph.getDegree(a)-(graph.hasEdge(a, b)?1:0);
+		int sizeB = graph.getDegree(b)-(graph.hasEdge(b, a)?1:0);
+		int[] offsets = graph.getOffsets();
+		int inter = IntersectionKernel.intersect(graph.getTargets(), offsets[a], offsets[a+1], offsets[b], offsets[b+1]);
 		
-		nbNUnion = sa.size()+sb.size();
-		sa.retainAll(sb);
-		nbNUnion = nbNUnion - sa.size();
-		nbNInter = sa.size();
+		nbNUnion = sizeA+sizeB-inter;
+		nbNInter = inter;
 		
 		double overlap = 0.0;
-		if(!sa.contains(b) || !sb.contains(a))nbNUnion+=2;//TODO temporal change to allow calculation NO even when no relation
+		nbNUnion+=2;//TODO temporal change to allow calculation NO even when no relation
 		overlap = (nbNInter)/(nbNUnion-2);
 		if(nbNUnion<=2)overlap = 0;
 		
 		if(mode.equals("o")) {
-			//round overlap value
-			BigDecimal bd = new BigDecimal(overlap);
-			bd = bd.setScale(4, java.math.RoundingMode.HALF_UP);
-			overlap = bd.doubleValue();
-			return overlap;
+			//round overlap value, same result as BigDecimal.setScale(4, HALF_UP)
+			return IntersectionKernel.round(overlap);
 		}else if(mode.equals("i")) {
 			return nbNInter;
 		}else if(mode.equals("u")) {
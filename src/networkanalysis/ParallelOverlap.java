@@ -0,0 +1,139 @@
+package networkanalysis;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import utils.CompactGraph;
+import utils.EdgeWeights;
+import utils.Metrics;
+
+/**
+ * computes the neighbourhood overlap of all edges of a compressed graph on a fork-join pool. Each undirected edge is computed once,
+ * by the endpoint with the smaller id, and its value is stored under its edge id. Edges are cut into chunks of roughly equal estimated
+ * intersection cost, so the edges of a few hubs are spread over several workers instead of being handled by one.
+ * @version 1.0.17102026
+ */
+public final class ParallelOverlap {
+
+	/**
+	 * number of chunks given to each worker, more chunks leave more room for work stealing
+	 */
+	private static final int CHUNKS_PER_THREAD = 8;
+
+	private ParallelOverlap() {
+	}
+
+	/**
+	 * @param graph
+	 * @param threads number of workers, 1 runs in the calling thread
+	 * @return the overlap of each edge of the graph
+	 */
+	public static EdgeWeights calculate(CompactGraph graph, int threads) {
+		EdgeWeights weights = new EdgeWeights(graph, 0);
+		if(threads<=1) {
+			new EdgeRangeTask(graph, weights, new int[] {0, graph.getNumberSlots()}, 0, 1).compute();
+			return weights;
+		}
+		int[] bounds = split(graph, threads*CHUNKS_PER_THREAD);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new EdgeRangeTask(graph, weights, bounds, 0, bounds.length-1));
+		}finally {
+			pool.shutdown();
+		}
+		return weights;
+	}
+
+	/**
+	 * estimated cost of intersecting the neighbourhoods of two nodes with the given degrees
+	 * @param degreeA
+	 * @param degreeB
+	 * @return
+	 */
+	static long cost(int degreeA, int degreeB) {
+		return (long)degreeA*degreeB;
+	}
+
+	/**
+	 * cuts the slots of the graph into at most 'chunks' contiguous ranges of roughly equal cost. A chunk may start or end in the
+	 * middle of the successors of a node, so a single hub can be shared by several chunks.
+	 * @param graph
+	 * @param chunks
+	 * @return chunk boundaries, the i-th chunk is [bounds[i], bounds[i+1])
+	 */
+	static int[] split(CompactGraph graph, int chunks) {
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		long total = 0;
+		for(int a=0;a<graph.getNumberNodes();a++) {
+			for(int slot=offsets[a];slot<offsets[a+1];slot++) {
+				if(a<targets[slot])total += cost(graph.getDegree(a), graph.getDegree(targets[slot]));
+			}
+		}
+		long target = Math.max(1, total/chunks);
+
+		int[] bounds = new int[chunks+1];
+		int count = 1;
+		long accumulated = 0;
+		for(int a=0;a<graph.getNumberNodes();a++) {
+			for(int slot=offsets[a];slot<offsets[a+1];slot++) {
+				if(a<targets[slot])accumulated += cost(graph.getDegree(a), graph.getDegree(targets[slot]));
+				if(accumulated>=target && count<chunks) {
+					bounds[count++] = slot+1;
+					accumulated = 0;
+				}
+			}
+		}
+		if(bounds[count-1]!=graph.getNumberSlots())bounds[count++] = graph.getNumberSlots();
+		return Arrays.copyOf(bounds, count);
+	}
+
+	/**
+	 * computes the chunks [from, to) of the given boundaries, splitting in halves until a single chunk remains
+	 */
+	@SuppressWarnings("serial")
+	private static class EdgeRangeTask extends RecursiveAction {
+		private final CompactGraph graph;
+		private final EdgeWeights weights;
+		private final int[] bounds;
+		private final int from;
+		private final int to;
+
+		EdgeRangeTask(CompactGraph graph, EdgeWeights weights, int[] bounds, int from, int to) {
+			this.graph = graph;
+			this.weights = weights;
+			this.bounds = bounds;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to-from>1) {
+				int middle = (from+to)>>>1;
+				invokeAll(new EdgeRangeTask(graph, weights, bounds, from, middle), new EdgeRangeTask(graph, weights, bounds, middle, to));
+				return;
+			}
+			int[] offsets = graph.getOffsets();
+			int[] targets = graph.getTargets();
+			int start = bounds[from];
+			int end = bounds[to];
+			if(start>=end)return;
+			//find the node owning the first slot of the chunk
+			int a = Arrays.binarySearch(offsets, start);
+			if(a<0) {
+				a = -a-2;
+			}
+			while(offsets[a+1]<=start)a++;
+			long intersections = 0;
+			for(int slot=start;slot<end;slot++) {
+				while(offsets[a+1]<=slot)a++;
+				if(!graph.ownsEdge(a, slot))continue;
+				weights.set(slot, NeighborhoodOverlap.overlap(graph, a, targets[slot], "o"));
+				intersections++;
+			}
+			Metrics.counter("overlap.intersections").add(intersections);
+		}
+	}
+}
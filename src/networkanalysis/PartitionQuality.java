@@ -0,0 +1,322 @@
+package networkanalysis;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import utils.CompactGraph;
+import utils.Graph;
+import utils.RangeTask;
+
+/**
+ * Quality of a partition of an undirected graph: modularity, coverage and the conductance of each community, plus NMI and ARI
+ * against a ground truth. The graph is scanned once, in parallel, into per-node primitive counters that are then summed per
+ * community, the comparison with a ground truth sorts one long per node. Nodes without a community (label -1) are counted as
+ * communities of their own, as Core Expansion leaves them alone.
+ * @version 1.0.17102026
+ */
+public final class PartitionQuality {
+
+	/**
+	 * below this number of nodes the scan runs in the calling thread
+	 */
+	public static int grain = 1<<14;
+
+	private final int numberCommunities;
+	private final double modularity;
+	private final double coverage;
+	private final double[] conductances;
+
+	private PartitionQuality(int numberCommunities, double modularity, double coverage, double[] conductances) {
+		this.numberCommunities = numberCommunities;
+		this.modularity = modularity;
+		this.coverage = coverage;
+		this.conductances = conductances;
+	}
+
+	/**
+	 * @param graph
+	 * @param labels community of each node in [0,k), or -1
+	 * @param threads
+	 * @return
+	 */
+	public static PartitionQuality evaluate(CompactGraph graph, int[] labels, int threads) {
+		int n = graph.getNumberNodes();
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		int k = 0;
+		for(int label:labels) {
+			k = Math.max(k, label+1);
+		}
+
+		//single pass, the number of links of each node to its own community
+		int[] internal = new int[n];
+		ForkJoinPool pool = threads>1 && n>=grain?new ForkJoinPool(threads):null;
+		try {
+			RangeTask.run(pool, 0, n, grain, (from, to) -> {
+				for(int u=from;u<to;u++) {
+					int label = labels[u];
+					if(label==-1)continue;
+					int links = 0;
+					for(int slot=offsets[u];slot<offsets[u+1];slot++) {
+						if(labels[targets[slot]]==label)links++;
+					}
+					internal[u] = links;
+				}
+			});
+		}finally {
+			if(pool!=null)pool.shutdown();
+		}
+
+		long[] volumes = new long[k];
+		long[] links = new long[k];
+		double twoM = graph.getNumberSlots();
+		double expected = 0;//sum of the squared volumes over (2m)^2
+		long internalSlots = 0;
+		for(int u=0;u<n;u++) {
+			int degree = offsets[u+1]-offsets[u];
+			if(labels[u]==-1) {
+				expected += ((double)degree/twoM)*((double)degree/twoM);
+				continue;
+			}
+			volumes[labels[u]] += degree;
+			links[labels[u]] += internal[u];
+			internalSlots += internal[u];
+		}
+		double[] conductances = new double[k];
+		for(int c=0;c<k;c++) {
+			expected += ((double)volumes[c]/twoM)*((double)volumes[c]/twoM);
+			double denominator = Math.min(volumes[c], twoM-volumes[c]);
+			conductances[c] = denominator==0?0:(volumes[c]-links[c])/denominator;
+		}
+		double modularity = twoM==0?0:internalSlots/twoM-expected;
+		double coverage = twoM==0?0:internalSlots/twoM;
+		return new PartitionQuality(k, modularity, coverage, conductances);
+	}
+
+	/**
+	 * reads a partition in the "Id\tclass" layout of {@link algorithms.CommunitiesWriter}, lines of unknown nodes such as the
+	 * header are ignored, a node listed twice keeps its last class
+	 * @param graph
+	 * @param fileName
+	 * @return community of each node of graph in [0,k), -1 for nodes missing from the file
+	 * @throws IOException
+	 */
+	public static int[] readPartition(CompactGraph graph, String fileName) throws IOException {
+		int[] labels = new int[graph.getNumberNodes()];
+		Arrays.fill(labels, -1);
+		HashMap<String, Integer> classes = new HashMap<>();
+		try(BufferedReader reader = new BufferedReader(new FileReader(fileName), 1<<16)) {
+			String line;
+			while((line = reader.readLine())!=null) {
+				int tab = line.indexOf('\t');
+				if(tab<0)continue;
+				int id = graph.getId(line.substring(0, tab));
+				if(id<0)continue;
+				String name = line.substring(tab+1).trim();
+				Integer label = classes.get(name);
+				if(label==null) {
+					label = classes.size();
+					classes.put(name, label);
+				}
+				labels[id] = label;
+			}
+		}
+		return labels;
+	}
+
+	/**
+	 * normalized mutual information, normalized by the arithmetic mean of the two entropies
+	 * @param a community of each node, -1 for a node alone
+	 * @param b community of each node in the other partition, -1 for a node alone
+	 * @return a value in [0,1], 1 when the partitions are the same
+	 */
+	public static double nmi(int[] a, int[] b) {
+		Contingency table = new Contingency(a, b);
+		double n = a.length;
+		double ha = entropy(table.sizesA, n);
+		double hb = entropy(table.sizesB, n);
+		if(ha+hb==0)return 1;
+		double mutual = 0;
+		for(int k=0;k<table.counts.length;k++) {
+			double count = table.counts[k];
+			mutual += count/n*Math.log(count*n/((double)table.sizesA[table.cellA[k]]*table.sizesB[table.cellB[k]]));
+		}
+		return Math.max(0, Math.min(1, 2*mutual/(ha+hb)));
+	}
+
+	/**
+	 * adjusted Rand index
+	 * @param a community of each node, -1 for a node alone
+	 * @param b community of each node in the other partition, -1 for a node alone
+	 * @return 1 when the partitions are the same, about 0 for independent partitions
+	 */
+	public static double ari(int[] a, int[] b) {
+		if(a.length<2)return 1;
+		Contingency table = new Contingency(a, b);
+		double pairs = 0;
+		for(long count:table.counts) {
+			pairs += pairs(count);
+		}
+		double pairsA = 0;
+		for(long size:table.sizesA) {
+			pairsA += pairs(size);
+		}
+		double pairsB = 0;
+		for(long size:table.sizesB) {
+			pairsB += pairs(size);
+		}
+		double expected = pairsA*pairsB/pairs(a.length);
+		double maximum = (pairsA+pairsB)/2;
+		if(maximum==expected)return 1;
+		return (pairs-expected)/(maximum-expected);
+	}
+
+	private static double pairs(long count) {
+		return count*(count-1)/2.0;
+	}
+
+	private static double entropy(long[] sizes, double n) {
+		double entropy = 0;
+		for(long size:sizes) {
+			if(size>0)entropy -= size/n*Math.log(size/n);
+		}
+		return entropy;
+	}
+
+	/**
+	 * sparse contingency table of two partitions, nodes without a community get a community of their own
+	 */
+	private static final class Contingency {
+
+		long[] sizesA;
+		long[] sizesB;
+		int[] cellA;
+		int[] cellB;
+		long[] counts;
+
+		Contingency(int[] a, int[] b) {
+			if(a.length!=b.length)throw new IllegalArgumentException("partitions of different graphs");
+			int[] denseA = dense(a);
+			int[] denseB = dense(b);
+			sizesA = new long[max(denseA)+1];
+			sizesB = new long[max(denseB)+1];
+			long[] keys = new long[a.length];
+			for(int u=0;u<a.length;u++) {
+				sizesA[denseA[u]]++;
+				sizesB[denseB[u]]++;
+				keys[u] = ((long)denseA[u]<<32)|denseB[u];
+			}
+			Arrays.parallelSort(keys);
+			int cells = 0;
+			for(int k=0;k<keys.length;k++) {
+				if(k==0 || keys[k]!=keys[k-1])cells++;
+			}
+			cellA = new int[cells];
+			cellB = new int[cells];
+			counts = new long[cells];
+			int cell = -1;
+			for(int k=0;k<keys.length;k++) {
+				if(k==0 || keys[k]!=keys[k-1]) {
+					cell++;
+					cellA[cell] = (int)(keys[k]>>>32);
+					cellB[cell] = (int)keys[k];
+				}
+				counts[cell]++;
+			}
+		}
+
+		/**
+		 * @return labels in [0,k) where each -1 gets a new label
+		 */
+		private static int[] dense(int[] labels) {
+			int next = max(labels)+1;
+			int[] result = new int[labels.length];
+			for(int u=0;u<labels.length;u++) {
+				result[u] = labels[u]==-1?next++:labels[u];
+			}
+			return result;
+		}
+
+		private static int max(int[] labels) {
+			int max = -1;
+			for(int label:labels) {
+				max = Math.max(max, label);
+			}
+			return max;
+		}
+	}
+
+	public int getNumberCommunities() {
+		return numberCommunities;
+	}
+
+	public double getModularity() {
+		return modularity;
+	}
+
+	/**
+	 * @return the fraction of edges inside communities
+	 */
+	public double getCoverage() {
+		return coverage;
+	}
+
+	/**
+	 * @param community
+	 * @return links leaving the community over the smallest of its volume and the volume of the rest of the graph
+	 */
+	public double getConductance(int community) {
+		return conductances[community];
+	}
+
+	/**
+	 * @return average conductance of the communities
+	 */
+	public double getAverageConductance() {
+		double sum = 0;
+		for(double conductance:conductances) {
+			sum += conductance;
+		}
+		return conductances.length==0?0:sum/conductances.length;
+	}
+
+	/**
+	 * usage: -f network -p partition [-g ground truth] [-t threads]
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		ArrayList<String> argsList = new ArrayList<>(Arrays.asList(args));
+		int graphIndex = argsList.indexOf("-f");
+		int partitionIndex = argsList.indexOf("-p");
+		if(args.length%2!=0 || graphIndex==-1 || partitionIndex==-1) {
+			System.out.println("Please provide the following arguments to evaluate a partition:");
+			System.out.println("-f followed by the network file name");
+			System.out.println("-p followed by the partition file name (Id\tclass)");
+			System.out.println("optional:");
+			System.out.println("-g followed by the ground truth file name (Id\tclass) to compute NMI and ARI");
+			System.out.println("-t followed by the number of threads (default: number of available processors)");
+			return;
+		}
+		int threadsIndex = argsList.indexOf("-t");
+		int threads = threadsIndex==-1?Runtime.getRuntime().availableProcessors():Integer.parseInt(argsList.get(threadsIndex+1));
+		CompactGraph graph = Graph.loadFromFile(argsList.get(graphIndex+1), false, false, threads).getCompactGraph();
+		int[] labels = readPartition(graph, argsList.get(partitionIndex+1));
+		PartitionQuality quality = evaluate(graph, labels, threads);
+		System.out.println("communities\t"+quality.getNumberCommunities());
+		System.out.println("modularity\t"+quality.getModularity());
+		System.out.println("coverage\t"+quality.getCoverage());
+		System.out.println("average conductance\t"+quality.getAverageConductance());
+		int truthIndex = argsList.indexOf("-g");
+		if(truthIndex!=-1) {
+			int[] truth = readPartition(graph, argsList.get(truthIndex+1));
+			System.out.println("NMI\t"+nmi(labels, truth));
+			System.out.println("ARI\t"+ari(labels, truth));
+		}
+	}
+}
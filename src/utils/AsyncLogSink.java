@@ -0,0 +1,151 @@
+package utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * Log handler that formats records in the logging thread and hands the text to a background writer through a bounded queue.
+ * The writer takes the pending messages in batches and flushes once per batch instead of once per record. When the queue is full
+ * the logging thread waits, so no message is lost and the memory used by the queue stays bounded. {@link #flush()} waits for the
+ * messages published before it, it is called on close and when the JVM exits.
+ * @version 1.1.17102026
+ */
+public class AsyncLogSink extends Handler {
+
+	public static final int DEFAULT_CAPACITY = 8192;
+	private static final int BATCH = 1024;
+	/**
+	 * the sinks not closed yet, flushed by a single shutdown hook
+	 */
+	private static final Set<AsyncLogSink> OPEN = Collections.newSetFromMap(new ConcurrentHashMap<>());
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			for(AsyncLogSink sink:OPEN) {
+				sink.flush();
+			}
+		}, "log-sink-flush"));
+	}
+
+	private final Writer writer;
+	private final boolean closeStream;
+	/**
+	 * formatted messages, and the latches of pending flushes
+	 */
+	private final ArrayBlockingQueue<Object> queue;
+	private final Thread worker;
+	private volatile boolean closed = false;
+
+	/**
+	 * @param stream where messages are written
+	 * @param formatter
+	 * @param capacity maximum number of pending messages
+	 * @param closeStream if false the stream is only flushed on close, for System.out
+	 */
+	public AsyncLogSink(OutputStream stream, Formatter formatter, int capacity, boolean closeStream) {
+		this.writer = new OutputStreamWriter(stream);
+		this.closeStream = closeStream;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		setFormatter(formatter);
+		worker = new Thread(this::drainLoop, "log-sink");
+		worker.setDaemon(true);
+		worker.start();
+		OPEN.add(this);
+	}
+
+	public AsyncLogSink(OutputStream stream, Formatter formatter) {
+		this(stream, formatter, DEFAULT_CAPACITY, false);
+	}
+
+	@Override
+	public void publish(LogRecord record) {
+		if(closed || !isLoggable(record))return;
+		String message;
+		try {
+			message = getFormatter().format(record);
+		}catch (RuntimeException e) {
+			reportError(null, e, ErrorManager.FORMAT_FAILURE);
+			return;
+		}
+		try {
+			queue.put(message);
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void drainLoop() {
+		ArrayList<Object> batch = new ArrayList<>(BATCH);
+		while(!closed) {
+			try {
+				batch.add(queue.take());
+			}catch (InterruptedException e) {
+				continue;//closing
+			}
+			queue.drainTo(batch, BATCH-1);
+			write(batch);
+			batch.clear();
+		}
+	}
+
+	/**
+	 * writes a batch in order and flushes the stream once, then releases the flushes waiting for this batch
+	 */
+	private void write(ArrayList<Object> batch) {
+		try {
+			for(Object item:batch) {
+				if(item instanceof String)writer.write((String)item);
+			}
+			writer.flush();
+		}catch (IOException e) {
+			reportError(null, e, ErrorManager.WRITE_FAILURE);
+		}
+		for(Object item:batch) {
+			if(item instanceof CountDownLatch)((CountDownLatch)item).countDown();
+		}
+	}
+
+	/**
+	 * waits until the messages published before this call are written
+	 */
+	@Override
+	public void flush() {
+		if(closed || !worker.isAlive())return;
+		CountDownLatch done = new CountDownLatch(1);
+		try {
+			queue.put(done);
+			while(!done.await(100, TimeUnit.MILLISECONDS)) {
+				if(!worker.isAlive())return;
+			}
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void close() throws SecurityException {
+		flush();
+		closed = true;
+		OPEN.remove(this);
+		worker.interrupt();
+		if(closeStream) {
+			try {
+				writer.close();
+			}catch (IOException e) {
+				reportError(null, e, ErrorManager.CLOSE_FAILURE);
+			}
+		}
+	}
+}
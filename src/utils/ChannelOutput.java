@@ -0,0 +1,104 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Buffered little endian writer on a channel, appending from the current position of the channel. Used by {@link GraphSnapshot}
+ * and {@link ExternalGraph}.
+ * @version 1.0.17102026
+ */
+final class ChannelOutput {
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(1<<20).order(ByteOrder.LITTLE_ENDIAN);
+	private long position = 0;
+
+	ChannelOutput(FileChannel channel) {
+		this.channel = channel;
+	}
+
+	private void ensure(int bytes) throws IOException {
+		if(buffer.remaining()<bytes)flush();
+	}
+
+	void flush() throws IOException {
+		((java.nio.Buffer)buffer).flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		((java.nio.Buffer)buffer).clear();
+	}
+
+	/**
+	 * @return number of bytes written so far, flushed or not
+	 */
+	long getPosition() {
+		return position;
+	}
+
+	void putInt(int value) throws IOException {
+		ensure(4);
+		buffer.putInt(value);
+		position += 4;
+	}
+
+	void putLong(long value) throws IOException {
+		ensure(8);
+		buffer.putLong(value);
+		position += 8;
+	}
+
+	/**
+	 * pads with zeros up to the next multiple of the given alignment
+	 */
+	void align(int alignment) throws IOException {
+		while(position%alignment!=0) {
+			ensure(1);
+			buffer.put((byte)0);
+			position++;
+		}
+	}
+
+	void putBytes(byte[] values) throws IOException {
+		for(int from=0;from<values.length;) {
+			ensure(1);
+			int count = Math.min(values.length-from, buffer.remaining());
+			buffer.put(values, from, count);
+			from += count;
+			position += count;
+		}
+	}
+
+	void putInts(int[] values) throws IOException {
+		putInts(values, 0, values.length);
+	}
+
+	void putInts(int[] values, int from, int length) throws IOException {
+		for(int end=from+length;from<end;) {
+			ensure(4);
+			int count = Math.min(end-from, buffer.remaining()/4);
+			buffer.asIntBuffer().put(values, from, count);
+			((java.nio.Buffer)buffer).position(buffer.position()+4*count);
+			from += count;
+			position += 4L*count;
+		}
+	}
+
+	void putDoubles(double[] values) throws IOException {
+		putDoubles(values, 0, values.length);
+	}
+
+	void putDoubles(double[] values, int from, int length) throws IOException {
+		for(int end=from+length;from<end;) {
+			ensure(8);
+			int count = Math.min(end-from, buffer.remaining()/8);
+			buffer.asDoubleBuffer().put(values, from, count);
+			((java.nio.Buffer)buffer).position(buffer.position()+8*count);
+			from += count;
+			position += 8L*count;
+		}
+	}
+}
@@ -0,0 +1,354 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Immutable compressed sparse row (CSR) representation of a graph. Node labels are interned once to dense ids in [0,n),
+ * and the successors of node u are stored in <code>targets[offsets[u]..offsets[u+1])</code>, sorted by id.
+ * A slot is the index of one directed adjacency entry in <code>targets</code>. The two slots u-&gt;v and v-&gt;u of an
+ * undirected edge share one edge id, which indexes per-edge attributes such as {@link EdgeWeights}, the two directions of a directed
+ * graph have their own ids so they can have different weights. Edge ids also keep the order
+ * in which the edges were added, see {@link #getSlotsInEdgeOrder()}.
+ * @version 1.3.17102026
+ */
+public final class CompactGraph {
+
+	private final String[] labels;
+	private final HashMap<String, Integer> ids;
+	private final int[] offsets;
+	private final int[] targets;
+	private final int[] edgeIds;
+	private final int numberEdgeIds;
+	/**
+	 * slots of each node by increasing edge id, built on first use
+	 */
+	private volatile int[] slotsInEdgeOrder;
+
+	/**
+	 * creates an undirected graph, see {@link #CompactGraph(String[], int[], int[], boolean)}
+	 * @param labels original label of each dense id
+	 * @param offsets n+1 offsets into targets
+	 * @param targets successors of each node, sorted by id within each node range
+	 */
+	public CompactGraph(String[] labels, int[] offsets, int[] targets) {
+		this(labels, offsets, targets, false);
+	}
+
+	/**
+	 * @param labels original label of each dense id
+	 * @param offsets n+1 offsets into targets
+	 * @param targets successors of each node, sorted by id within each node range
+	 * @param directed if true each slot gets its own edge id, otherwise u-&gt;v and v-&gt;u share one, v1.3.17102026
+	 */
+	public CompactGraph(String[] labels, int[] offsets, int[] targets, boolean directed) {
+		if(offsets.length!=labels.length+1 || offsets[labels.length]!=targets.length)
+			throw new IllegalArgumentException("offsets don't match labels and targets");
+		this.labels = labels;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.ids = new HashMap<>(labels.length*2);
+		for(int i=0;i<labels.length;i++) {
+			ids.put(labels[i], i);
+		}
+		
+		//number edges, u->v gets a new id unless the graph is undirected and v->u was already numbered
+		edgeIds = new int[targets.length];
+		int next = 0;
+		for(int u=0;u<labels.length;u++) {
+			for(int slot=offsets[u];slot<offsets[u+1];slot++) {
+				int v = targets[slot];
+				int reverse = !directed && v<u?getSlot(v, u):-1;
+				edgeIds[slot] = reverse>=0?edgeIds[reverse]:next++;
+			}
+		}
+		numberEdgeIds = next;
+	}
+
+	/**
+	 * creates a graph whose edge ids were already numbered, e.g. read from a {@link GraphSnapshot}, v1.2.17102026
+	 * @param labels original label of each dense id
+	 * @param offsets n+1 offsets into targets
+	 * @param targets successors of each node, sorted by id within each node range
+	 * @param edgeIds edge id of each slot, as returned by {@link #getEdgeIds()}
+	 * @param numberEdgeIds
+	 */
+	public CompactGraph(String[] labels, int[] offsets, int[] targets, int[] edgeIds, int numberEdgeIds) {
+		if(offsets.length!=labels.length+1 || offsets[labels.length]!=targets.length || edgeIds.length!=targets.length)
+			throw new IllegalArgumentException("offsets don't match labels and targets");
+		this.labels = labels;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.ids = new HashMap<>(labels.length*2);
+		for(int i=0;i<labels.length;i++) {
+			ids.put(labels[i], i);
+		}
+		this.edgeIds = edgeIds;
+		this.numberEdgeIds = numberEdgeIds;
+	}
+
+	/**
+	 * same graph with other edge ids, the labels and slots are shared
+	 */
+	private CompactGraph(CompactGraph graph, int[] edgeIds) {
+		this.labels = graph.labels;
+		this.ids = graph.ids;
+		this.offsets = graph.offsets;
+		this.targets = graph.targets;
+		this.edgeIds = edgeIds;
+		this.numberEdgeIds = graph.numberEdgeIds;
+	}
+
+	/**
+	 * builds the CSR of the visible part of the given graph, dense ids follow the order of {@link Graph#getAllNodes()} and edge ids
+	 * follow the order of the successor lists, see {@link #listOrder(CompactGraph, int[])}. {@link #getSlotsInEdgeOrder()} gives
+	 * the successors of each node in the order of its list even if the lists disagree, v1.3.17102026
+	 * @param graph
+	 * @return
+	 */
+	public static <T> CompactGraph of(Graph<T> graph) {
+		ArrayList<T> nodes = graph.getAllNodes();
+		HashMap<T, Integer> index = new HashMap<>(nodes.size()*2);
+		for(T node:nodes) {
+			index.put(node, index.size());
+		}
+
+		int n = index.size();
+		String[] labels = new String[n];
+		int[] offsets = new int[n+1];
+		for(int i=0;i<n;i++) {
+			T node = nodes.get(i);
+			labels[i] = node.toString();
+			int degree = 0;
+			ArrayList<T> successors = graph.adjacency().get(node);
+			if(successors!=null) {
+				for(T s:successors) {
+					if(index.containsKey(s))degree++;
+				}
+			}
+			offsets[i+1] = offsets[i]+degree;
+		}
+
+		int[] targets = new int[offsets[n]];
+		int[] positions = new int[offsets[n]];//position of each slot in the successor list of its node
+		long[] keys = new long[0];
+		for(int i=0;i<n;i++) {
+			ArrayList<T> successors = graph.adjacency().get(nodes.get(i));
+			if(successors==null)continue;
+			int degree = offsets[i+1]-offsets[i];
+			if(keys.length<degree)keys = new long[degree];
+			int k = 0;
+			for(T s:successors) {
+				Integer id = index.get(s);
+				if(id!=null) {
+					keys[k] = ((long)id<<32)|k;
+					k++;
+				}
+			}
+			Arrays.sort(keys, 0, degree);
+			for(k=0;k<degree;k++) {
+				targets[offsets[i]+k] = (int)(keys[k]>>>32);
+				positions[offsets[i]+k] = (int)keys[k];
+			}
+		}
+		CompactGraph compact = new CompactGraph(labels, offsets, targets, graph.isDirected());
+		int[] edgeIds = listOrder(compact, positions);
+		if(edgeIds!=compact.edgeIds)compact = new CompactGraph(compact, edgeIds);
+		//the lists may disagree on one order of the edges, each node still visits its successors in the order of its list
+		int[] slots = new int[positions.length];
+		for(int i=0;i<n;i++) {
+			for(int slot=offsets[i];slot<offsets[i+1];slot++) {
+				slots[offsets[i]+positions[slot]] = slot;
+			}
+		}
+		compact.slotsInEdgeOrder = slots;
+		return compact;
+	}
+
+	/**
+	 * numbers the edges again so that the edges of each node have increasing ids in the order of its successor list. Lists built
+	 * from an edge list always agree on such an order, which is found with a topological sort of the edges, each edge coming
+	 * before the next one of the lists of its two ends.
+	 * @param graph
+	 * @param positions position of each slot in the successor list of its node
+	 * @return the new edge id of each slot, or the ids of the graph if they are already in that order or if the lists disagree
+	 */
+	private static int[] listOrder(CompactGraph graph, int[] positions) {
+		int m = graph.numberEdgeIds;
+		int[] offsets = graph.offsets;
+		int[] edgeIds = graph.edgeIds;
+		int[] listed = new int[edgeIds.length];
+		for(int u=0;u<graph.getNumberNodes();u++) {
+			for(int slot=offsets[u];slot<offsets[u+1];slot++) {
+				listed[offsets[u]+positions[slot]] = slot;
+			}
+		}
+		//an edge has at most one next edge in the list of each of its ends
+		int[] next = new int[2*m];
+		Arrays.fill(next, -1);
+		int[] before = new int[m];
+		boolean sorted = true;
+		for(int u=0;u<graph.getNumberNodes();u++) {
+			for(int p=offsets[u];p+1<offsets[u+1];p++) {
+				int a = edgeIds[listed[p]];
+				int b = edgeIds[listed[p+1]];
+				if(next[2*a+1]>=0)return edgeIds;//repeated successors
+				next[next[2*a]<0?2*a:2*a+1] = b;
+				before[b]++;
+				if(b<a)sorted = false;
+			}
+		}
+		if(sorted)return edgeIds;
+
+		int[] queue = new int[m];
+		int head = 0;
+		int tail = 0;
+		for(int e=0;e<m;e++) {
+			if(before[e]==0)queue[tail++] = e;
+		}
+		int[] ranks = new int[m];
+		while(head<tail) {
+			int e = queue[head];
+			ranks[e] = head++;
+			for(int k=2*e;k<2*e+2;k++) {
+				if(next[k]>=0 && --before[next[k]]==0)queue[tail++] = next[k];
+			}
+		}
+		if(tail<m)return edgeIds;//the lists disagree
+		int[] result = new int[edgeIds.length];
+		for(int slot=0;slot<result.length;slot++) {
+			result[slot] = ranks[edgeIds[slot]];
+		}
+		return result;
+	}
+
+	public int getNumberNodes() {
+		return labels.length;
+	}
+
+	/**
+	 * @return the number of directed adjacency entries, i.e. twice the number of edges of an undirected graph
+	 */
+	public int getNumberSlots() {
+		return targets.length;
+	}
+
+	/**
+	 * @return the number of distinct edge ids, i.e. the number of edges of an undirected graph
+	 */
+	public int getNumberEdgeIds() {
+		return numberEdgeIds;
+	}
+	
+	/**
+	 * @param slot
+	 * @return the id of the edge stored in the given slot, shared by both directions of an undirected edge
+	 */
+	public int getEdgeId(int slot) {
+		return edgeIds[slot];
+	}
+	
+	/**
+	 * <b>don't modify the returned array because this function returns the same reference in the graph.</b>
+	 * @return the edge id of each slot
+	 */
+	public int[] getEdgeIds() {
+		return edgeIds;
+	}
+	
+	/**
+	 * <b>don't modify the returned array because this function returns the same reference in the graph.</b>
+	 * @return the slots of each node sorted by edge id, i.e. in the order its edges were added: the slots of u are the values in
+	 * <code>[offsets[u], offsets[u+1])</code>. A graph built with {@link #of(Graph)} keeps the order of each successor list
+	 * instead, which differs only if the lists disagree on one order of the edges
+	 */
+	public int[] getSlotsInEdgeOrder() {
+		int[] slots = slotsInEdgeOrder;
+		if(slots==null) {
+			slots = new int[targets.length];
+			long[] keys = new long[0];
+			for(int u=0;u<labels.length;u++) {
+				int degree = offsets[u+1]-offsets[u];
+				if(keys.length<degree)keys = new long[degree];
+				for(int k=0;k<degree;k++) {
+					keys[k] = ((long)edgeIds[offsets[u]+k]<<32)|k;
+				}
+				Arrays.sort(keys, 0, degree);
+				for(int k=0;k<degree;k++) {
+					slots[offsets[u]+k] = offsets[u]+(int)keys[k];
+				}
+			}
+			slotsInEdgeOrder = slots;
+		}
+		return slots;
+	}
+	
+	/**
+	 * @param u
+	 * @param slot a slot of u
+	 * @return true if this slot is the one the edge id was assigned from, i.e. the first of its two directions if they share the
+	 * id, always true in a directed graph
+	 */
+	public boolean ownsEdge(int u, int slot) {
+		int v = targets[slot];
+		if(u<v)return true;
+		int reverse = getSlot(v, u);
+		return reverse<0 || edgeIds[reverse]!=edgeIds[slot];
+	}
+
+	public int getDegree(int node) {
+		return offsets[node+1]-offsets[node];
+	}
+
+	public String getLabel(int node) {
+		return labels[node];
+	}
+
+	/**
+	 * @param label
+	 * @return the dense id of the given label, or -1 if the graph doesn't contain it
+	 */
+	public int getId(String label) {
+		Integer id = ids.get(label);
+		return id==null?-1:id;
+	}
+
+	/**
+	 * <b>don't modify the returned array because this function returns the same reference in the graph.</b>
+	 * @return
+	 */
+	public int[] getOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * <b>don't modify the returned array because this function returns the same reference in the graph.</b>
+	 * @return
+	 */
+	public int[] getTargets() {
+		return targets;
+	}
+
+	/**
+	 * @param u
+	 * @param v
+	 * @return the slot of edge u-&gt;v in the targets array, or -1 if there is no such edge
+	 */
+	public int getSlot(int u, int v) {
+		int slot = Arrays.binarySearch(targets, offsets[u], offsets[u+1], v);
+		return slot<0?-1:slot;
+	}
+
+	public boolean hasEdge(int u, int v) {
+		return getSlot(u, v)>=0;
+	}
+
+	/**
+	 * @param node
+	 * @return a copy of the successors of the given node
+	 */
+	public int[] getSuccessors(int node) {
+		return Arrays.copyOfRange(targets, offsets[node], offsets[node+1]);
+	}
+}
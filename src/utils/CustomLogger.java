@@ -1,8 +1,10 @@
 package utils;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.function.Supplier;
 import java.util.logging.*;
 
 import javax.swing.JTextArea;
@@ -11,13 +13,18 @@ import javax.swing.JTextArea;
  * Used by all programs accross the platform to perform logging. This class provides flexibility in output, it allows the output to
  * be redirected to the ui whenever needed, while still printed on System.out, and written to a file. The logger also provides multi
  * level logging. It is recommended to start with {@link Level#FINER}.
- *
+ * <p>
+ * The console and the log file are written by {@link AsyncLogSink}, all loggers share one console sink so their messages keep
+ * their order. Messages of hot loops should be built only when their level is enabled, with {@link #isLoggable(Level)}, a
+ * {@link Supplier} or a "{}" pattern.
+ * @version 1.2.17102026
  */
 public class CustomLogger{
 	private Logger logger;
-	private StreamHandler consoleHandler;
+	private Handler consoleHandler;
 	public static String logFolder = null;
-	private static FileHandler fileHandler;
+	private static Handler fileHandler;
+	private static AsyncLogSink consoleSink;
 	
 	public static Formatter getCustomFormatter() {
 		Formatter formatter = new Formatter() {
@@ -39,14 +46,29 @@ public class CustomLogger{
 		logger.setUseParentHandlers(false);
 		
 		Formatter formatter = getCustomFormatter();
-		//add console handler
-		consoleHandler = addHandler(System.out, formatter);
+		//add console handler, the level is checked before the record reaches the shared sink
+		AsyncLogSink sink = getConsoleSink(formatter);
+		consoleHandler = new Handler() {
+			@Override
+			public void publish(LogRecord record) {
+				if(isLoggable(record))sink.publish(record);
+			}
+			@Override
+			public void flush() {
+				sink.flush();
+			}
+			@Override
+			public void close() throws SecurityException {
+				sink.flush();
+			}
+		};
 		consoleHandler.setLevel(initialLevel);
+		addHandler(consoleHandler);
 		
 		//add file handler
 		if(logFolder!=null && fileHandler==null) {
 			try {
-				fileHandler = new FileHandler(logFolder+".log", false);
+				fileHandler = new AsyncLogSink(new FileOutputStream(logFolder+".log", false), formatter, AsyncLogSink.DEFAULT_CAPACITY, true);
 				fileHandler.setLevel(Level.ALL);
 				logger.addHandler(fileHandler);
 			} catch (SecurityException e) {
@@ -57,10 +79,21 @@ public class CustomLogger{
 		}
 	}
 	
+	private static synchronized AsyncLogSink getConsoleSink(Formatter formatter) {
+		if(consoleSink==null)consoleSink = new AsyncLogSink(System.out, formatter);
+		return consoleSink;
+	}
+	
 	public void setFileHandler(String file) {
+		//the previous file is closed, its pending messages are written first
+		if(fileHandler!=null) {
+			logger.removeHandler(fileHandler);
+			fileHandler.close();
+			fileHandler = null;
+		}
 		//add file handler
 		try {
-			fileHandler = new FileHandler(file, false);
+			fileHandler = new AsyncLogSink(new FileOutputStream(file, false), getCustomFormatter(), AsyncLogSink.DEFAULT_CAPACITY, true);
 			fileHandler.setLevel(Level.ALL);
 			logger.addHandler(fileHandler);
 		} catch (SecurityException e) {
@@ -78,6 +111,55 @@ public class CustomLogger{
 	public void log(Level level, String msg) {
 		logger.log(level, msg);
 	}
+	/**
+	 * @param level
+	 * @return true if a message of this level reaches at least the logger's handlers, to guard the building of costly messages
+	 */
+	public boolean isLoggable(Level level) {
+		return logger.isLoggable(level);
+	}
+	/**
+	 * @param level
+	 * @param msg called only if the level is enabled
+	 */
+	public void log(Level level, Supplier<String> msg) {
+		if(logger.isLoggable(level))logger.log(level, msg.get());
+	}
+	/**
+	 * each "{}" of the pattern is replaced by the next parameter, the message is built only if the level is enabled
+	 * @param level
+	 * @param pattern
+	 * @param p1
+	 */
+	public void log(Level level, String pattern, Object p1) {
+		if(logger.isLoggable(level))logger.log(level, format(pattern, p1));
+	}
+	public void log(Level level, String pattern, Object p1, Object p2) {
+		if(logger.isLoggable(level))logger.log(level, format(pattern, p1, p2));
+	}
+	public void log(Level level, String pattern, Object p1, Object p2, Object p3) {
+		if(logger.isLoggable(level))logger.log(level, format(pattern, p1, p2, p3));
+	}
+	public void log(Level level, String pattern, Object p1, Object p2, Object p3, Object p4) {
+		if(logger.isLoggable(level))logger.log(level, format(pattern, p1, p2, p3, p4));
+	}
+	/**
+	 * parameters are written with String.valueOf, unlike {@link java.text.MessageFormat} numbers are not reformatted
+	 * @param pattern
+	 * @param parameters
+	 * @return
+	 */
+	static String format(String pattern, Object... parameters) {
+		StringBuilder builder = new StringBuilder(pattern.length()+16*parameters.length);
+		int from = 0;
+		for(Object parameter:parameters) {
+			int index = pattern.indexOf("{}", from);
+			if(index<0)break;
+			builder.append(pattern, from, index).append(String.valueOf(parameter));
+			from = index+2;
+		}
+		return builder.append(pattern, from, pattern.length()).toString();
+	}
 	public Handler[] getHandlers() {
 		return logger.getHandlers();
 	}
@@ -0,0 +1,550 @@
+package utils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Loads an edge list in the format read by {@link Graph#loadFromFile(String, boolean, boolean)} directly into a {@link CompactGraph}.
+ * The file is memory-mapped and cut into line-aligned chunks that are parsed in parallel. Labels made only of digits are interned
+ * as numbers without building strings, and duplicate edges are removed by sorting the targets of each node. Lines starting with
+ * '#', "Id" or "Source" or without a tab are skipped, a header containing a 'weight' column selects the weight column, and
+ * self-loops are ignored. When an edge appears several times, the weight of its last line is kept. Edge ids are numbered in
+ * order of first appearance, so each node keeps the order of its successors in the file, see {@link CompactGraph#getSlotsInEdgeOrder()}.
+ * @version 1.2.17102026
+ */
+public final class EdgeListLoader {
+
+	/**
+	 * largest chunk mapped at once, files bigger than this are cut in more chunks than threads
+	 */
+	private static final long MAX_CHUNK = 64L<<20;
+	private static final int CHUNKS_PER_THREAD = 4;
+	private static final int NO_HEADER = Integer.MIN_VALUE;
+	private static final int DEFAULT_WEIGHT_INDEX = 2;
+
+	private EdgeListLoader() {
+	}
+
+	/**
+	 * @param fileName
+	 * @param directed if false, each line adds the edge in both directions
+	 * @param loadWeights load the weights from the column with header named 'weight' or from the third column by default
+	 * @param threads number of worker threads, 1 to load in the calling thread
+	 * @return
+	 * @throws IOException
+	 */
+	public static Graph<String> load(String fileName, boolean directed, boolean loadWeights, int threads) throws IOException {
+		ForkJoinPool pool = threads>1?new ForkJoinPool(threads):null;
+		try(RandomAccessFile file = new RandomAccessFile(fileName, "r"); FileChannel channel = file.getChannel()) {
+			Chunk[] chunks = split(channel, Math.max(1, threads));
+
+			//the weight column can be changed by any header line, find the index in force at the start of each chunk
+			if(loadWeights) {
+				RangeTask.run(pool, 0, chunks.length, 1, (from, to) -> {
+					for(int c=from;c<to;c++)chunks[c].scanHeaders();
+				});
+				int weightIndex = DEFAULT_WEIGHT_INDEX;
+				for(Chunk chunk:chunks) {
+					chunk.weightIndex = weightIndex;
+					if(chunk.lastWeightIndex!=NO_HEADER)weightIndex = chunk.lastWeightIndex;
+				}
+			}
+			RangeTask.run(pool, 0, chunks.length, 1, (from, to) -> {
+				for(int c=from;c<to;c++)chunks[c].parse(loadWeights);
+			});
+
+			//assign global ids in order of first appearance in the file
+			Labels labels = new Labels();
+			for(Chunk chunk:chunks) {
+				labels.assign(chunk);
+			}
+			RangeTask.run(pool, 0, chunks.length, 1, (from, to) -> {
+				for(int c=from;c<to;c++)chunks[c].translate();
+			});
+
+			Graph<String> graph = build(labels.toArray(), chunks, directed, loadWeights, pool);
+			graph.sourceFile = fileName;
+			return graph;
+		}finally {
+			if(pool!=null)pool.shutdown();
+		}
+	}
+
+	/**
+	 * receives the edges of an edge list read by {@link EdgeListLoader#stream(String, long, int, EdgeSink)}
+	 */
+	public interface EdgeSink {
+		/**
+		 * @param sources id of the first node of each edge
+		 * @param targets id of the second node of each edge
+		 * @param count number of edges in the arrays
+		 * @throws IOException
+		 */
+		void edges(int[] sources, int[] targets, int count) throws IOException;
+	}
+
+	/**
+	 * reads an edge list without keeping its edges: the file is parsed in chunks of about chunkSize bytes, 'threads' chunks at a
+	 * time, and the edges of each chunk are handed to the sink in file order. Nodes are numbered in order of first appearance like
+	 * {@link #load(String, boolean, boolean, int)}, so the ids are the same. Only the labels and the chunks being parsed are held
+	 * in memory. v1.1.17102026
+	 * @param fileName
+	 * @param chunkSize
+	 * @param threads
+	 * @param sink
+	 * @return the label of each id
+	 * @throws IOException
+	 */
+	public static String[] stream(String fileName, long chunkSize, int threads, EdgeSink sink) throws IOException {
+		ForkJoinPool pool = threads>1?new ForkJoinPool(threads):null;
+		try(RandomAccessFile file = new RandomAccessFile(fileName, "r"); FileChannel channel = file.getChannel()) {
+			long size = channel.size();
+			int count = (int)Math.max(1, Math.min((size+chunkSize-1)/Math.max(1, chunkSize), Math.max(1, size/4096)));
+			long[] bounds = bounds(channel, count);
+			Labels labels = new Labels();
+			int group = Math.max(1, threads);
+			for(int first=0;first<count;first+=group) {
+				Chunk[] chunks = new Chunk[Math.min(group, count-first)];
+				for(int c=0;c<chunks.length;c++) {
+					chunks[c] = new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, bounds[first+c], bounds[first+c+1]-bounds[first+c]));
+				}
+				RangeTask.run(pool, 0, chunks.length, 1, (from, to) -> {
+					for(int c=from;c<to;c++)chunks[c].parse(false);
+				});
+				for(Chunk chunk:chunks) {
+					labels.assign(chunk);
+				}
+				RangeTask.run(pool, 0, chunks.length, 1, (from, to) -> {
+					for(int c=from;c<to;c++)chunks[c].translate();
+				});
+				for(Chunk chunk:chunks) {
+					chunk.release();
+					sink.edges(chunk.sources, chunk.targets, chunk.count);
+				}
+			}
+			return labels.toArray();
+		}finally {
+			if(pool!=null)pool.shutdown();
+		}
+	}
+
+	/**
+	 * cuts the file in chunks ending right after a line break
+	 */
+	private static Chunk[] split(FileChannel channel, int threads) throws IOException {
+		long size = channel.size();
+		int count = (int)Math.max(1, Math.min(Math.max((long)threads*CHUNKS_PER_THREAD, (size+MAX_CHUNK-1)/MAX_CHUNK),
+				Math.max(1, size/4096)));
+		long[] bounds = bounds(channel, count);
+		Chunk[] chunks = new Chunk[count];
+		for(int i=0;i<count;i++) {
+			chunks[i] = new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i+1]-bounds[i]));
+		}
+		return chunks;
+	}
+
+	/**
+	 * @return count+1 positions, each chunk [bounds[i], bounds[i+1]) ends right after a line break or at the end of the file
+	 */
+	private static long[] bounds(FileChannel channel, int count) throws IOException {
+		long size = channel.size();
+		long[] bounds = new long[count+1];
+		bounds[count] = size;
+		ByteBuffer probe = ByteBuffer.allocate(4096);
+		for(int i=1;i<count;i++) {
+			long position = Math.max(bounds[i-1], size/count*i);
+			bounds[i] = size;
+			search:
+			while(position<size) {
+				((java.nio.Buffer)probe).clear();
+				int read = channel.read(probe, position);
+				if(read<=0)break;
+				for(int k=0;k<read;k++) {
+					if(probe.get(k)=='\n') {
+						bounds[i] = position+k+1;
+						break search;
+					}
+				}
+				position += read;
+			}
+		}
+		return bounds;
+	}
+
+	/**
+	 * builds the sorted and deduplicated adjacency from the parsed edges of all chunks
+	 */
+	private static Graph<String> build(String[] labels, Chunk[] chunks, boolean directed, boolean loadWeights, ForkJoinPool pool) {
+		int n = labels.length;
+		int[] offsets = new int[n+1];
+		for(Chunk chunk:chunks) {
+			for(int e=0;e<chunk.count;e++) {
+				offsets[chunk.sources[e]+1]++;
+				if(!directed)offsets[chunk.targets[e]+1]++;
+			}
+		}
+		for(int u=0;u<n;u++) {
+			offsets[u+1] += offsets[u];
+		}
+
+		//fill in file order, with the index of the line of each entry among the parsed edges
+		int[] raw = new int[offsets[n]];
+		int[] rawLines = new int[offsets[n]];
+		double[] rawWeights = loadWeights?new double[offsets[n]]:null;
+		int[] cursor = Arrays.copyOf(offsets, n);
+		int lines = 0;
+		for(Chunk chunk:chunks) {
+			for(int e=0;e<chunk.count;e++) {
+				int s = chunk.sources[e];
+				int t = chunk.targets[e];
+				if(loadWeights)rawWeights[cursor[s]] = chunk.weights[e];
+				rawLines[cursor[s]] = lines;
+				raw[cursor[s]++] = t;
+				if(!directed) {
+					if(loadWeights)rawWeights[cursor[t]] = chunk.weights[e];
+					rawLines[cursor[t]] = lines;
+					raw[cursor[t]++] = s;
+				}
+				lines++;
+			}
+			chunk.release();
+		}
+
+		//sort and unique the targets of each node, an edge keeps the first line it appears on and the weight of the last one
+		int[] degrees = new int[n];
+		int[] edgeLines = new int[lines];//1 for the lines that add a new edge, then the id of that edge
+		RangeTask.run(pool, 0, n, 4096, (from, to) -> {
+			long[] keys = new long[0];
+			int[] lineScratch = new int[0];
+			double[] scratch = new double[0];
+			for(int u=from;u<to;u++) {
+				int start = offsets[u];
+				int length = offsets[u+1]-start;
+				if(keys.length<length) {
+					keys = new long[length];
+					lineScratch = new int[length];
+					if(loadWeights)scratch = new double[length];
+				}
+				for(int p=0;p<length;p++) {
+					keys[p] = ((long)raw[start+p]<<32)|p;
+					lineScratch[p] = rawLines[start+p];
+					if(loadWeights)scratch[p] = rawWeights[start+p];
+				}
+				Arrays.sort(keys, 0, length);
+				int k = 0;
+				for(int p=0;p<length;p++) {
+					int target = (int)(keys[p]>>>32);
+					int position = (int)keys[p];
+					if(k==0 || raw[start+k-1]!=target) {
+						raw[start+k] = target;
+						rawLines[start+k++] = lineScratch[position];
+						edgeLines[lineScratch[position]] = 1;
+					}
+					if(loadWeights)rawWeights[start+k-1] = scratch[position];
+				}
+				degrees[u] = k;
+			}
+		});
+		//edges are numbered in order of first appearance, the order of the successor lists of the HashMap based loader
+		int numberEdgeIds = 0;
+		for(int line=0;line<lines;line++) {
+			if(edgeLines[line]!=0)edgeLines[line] = numberEdgeIds++;
+		}
+
+		int[] compactOffsets = new int[n+1];
+		for(int u=0;u<n;u++) {
+			compactOffsets[u+1] = compactOffsets[u]+degrees[u];
+		}
+		int[] targets = new int[compactOffsets[n]];
+		int[] edgeIds = new int[compactOffsets[n]];
+		double[] slotWeights = loadWeights?new double[compactOffsets[n]]:null;
+		RangeTask.run(pool, 0, n, 4096, (from, to) -> {
+			for(int u=from;u<to;u++) {
+				System.arraycopy(raw, offsets[u], targets, compactOffsets[u], degrees[u]);
+				for(int k=0;k<degrees[u];k++) {
+					edgeIds[compactOffsets[u]+k] = edgeLines[rawLines[offsets[u]+k]];
+				}
+				if(loadWeights)System.arraycopy(rawWeights, offsets[u], slotWeights, compactOffsets[u], degrees[u]);
+			}
+		});
+
+		CompactGraph compact = new CompactGraph(labels, compactOffsets, targets, edgeIds, numberEdgeIds);
+		EdgeWeights weights = new EdgeWeights(compact, 1.0);
+		if(loadWeights) {
+			for(int slot=0;slot<slotWeights.length;slot++) {
+				weights.set(slot, slotWeights[slot]);
+			}
+		}
+		Graph<String> graph = Graph.wrap(compact, directed);
+		graph.setWeights(weights);
+		return graph;
+	}
+
+	/**
+	 * global ids of the labels, numbered in order of first appearance
+	 */
+	private static class Labels {
+		private final LongIntMap numericIds = new LongIntMap(1024);
+		private final HashMap<String, Integer> nameIds = new HashMap<>();
+		private final ArrayList<String> labels = new ArrayList<>();
+
+		/**
+		 * numbers the new labels of a parsed chunk and fills its local to global translation
+		 */
+		void assign(Chunk chunk) {
+			chunk.localToGlobal = new int[chunk.localCount];
+			for(int l=0;l<chunk.localCount;l++) {
+				String name = chunk.localNames[l];
+				int id;
+				if(name==null) {
+					id = numericIds.get(chunk.localNumbers[l]);
+					if(id==-1) {
+						id = labels.size();
+						numericIds.put(chunk.localNumbers[l], id);
+						labels.add(Long.toString(chunk.localNumbers[l]));
+					}
+				}else {
+					Integer known = nameIds.get(name);
+					if(known==null) {
+						id = labels.size();
+						nameIds.put(name, id);
+						labels.add(name);
+					}else {
+						id = known;
+					}
+				}
+				chunk.localToGlobal[l] = id;
+			}
+		}
+
+		String[] toArray() {
+			return labels.toArray(new String[labels.size()]);
+		}
+	}
+
+	/**
+	 * a line-aligned part of the file, with the edges parsed from it. Labels are first interned to local ids, then translated to
+	 * global ids once all chunks are parsed.
+	 */
+	private static class Chunk {
+		private static final Charset CHARSET = Charset.defaultCharset();
+
+		private MappedByteBuffer buffer;
+		/**
+		 * index of the weight column at the start of the chunk
+		 */
+		int weightIndex = DEFAULT_WEIGHT_INDEX;
+		/**
+		 * index of the weight column set by the last header of the chunk, NO_HEADER if none
+		 */
+		int lastWeightIndex = NO_HEADER;
+
+		private LongIntMap numbers = new LongIntMap(1024);
+		private HashMap<String, Integer> names = new HashMap<>();
+		long[] localNumbers = new long[1024];
+		String[] localNames = new String[1024];
+		int localCount = 0;
+		int[] localToGlobal;
+
+		int[] sources = new int[1024];
+		int[] targets = new int[1024];
+		double[] weights;
+		int count = 0;
+
+		Chunk(MappedByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		void scanHeaders() {
+			int limit = buffer.limit();
+			int start = 0;
+			while(start<limit) {
+				int end = lineEnd(start, limit);
+				if(isHeader(start, trimEnd(start, end))) {
+					int index = weightColumn(start, trimEnd(start, end));
+					if(index!=NO_HEADER)lastWeightIndex = index;
+				}
+				start = end+1;
+			}
+		}
+
+		void parse(boolean loadWeights) {
+			if(loadWeights)weights = new double[sources.length];
+			int limit = buffer.limit();
+			int start = 0;
+			while(start<limit) {
+				int next = lineEnd(start, limit);
+				int end = trimEnd(start, next);
+				if(isHeader(start, end)) {
+					int index = weightColumn(start, end);
+					if(index!=NO_HEADER)weightIndex = index;
+				}else {
+					parseEdge(start, end, loadWeights);
+				}
+				start = next+1;
+			}
+		}
+
+		private void parseEdge(int start, int end, boolean loadWeights) {
+			int firstTab = indexOfTab(start, end);
+			int secondTab = indexOfTab(firstTab+1, end);
+			if(secondTab==firstTab+1) {
+				error(start, end);
+				return;
+			}
+			//ignore self-loops
+			if(secondTab-firstTab-1==firstTab-start && sameBytes(start, firstTab+1, firstTab-start))return;
+			double weight = 1.0;
+			if(loadWeights) {
+				int from = start;
+				for(int column=0;column<weightIndex && from<=end;column++) {
+					from = indexOfTab(from, end)+1;
+				}
+				if(weightIndex<0 || from>end) {
+					error(start, end);
+					return;
+				}
+				try {
+					weight = Double.parseDouble(decode(from, indexOfTab(from, end)));
+				}catch (NumberFormatException e){
+					error(start, end);
+					return;
+				}
+			}
+			int source = intern(start, firstTab);
+			int target = intern(firstTab+1, secondTab);
+			if(count==sources.length) {
+				sources = Arrays.copyOf(sources, count*2);
+				targets = Arrays.copyOf(targets, count*2);
+				if(loadWeights)weights = Arrays.copyOf(weights, count*2);
+			}
+			sources[count] = source;
+			targets[count] = target;
+			if(loadWeights)weights[count] = weight;
+			count++;
+		}
+
+		/**
+		 * @return the local id of the label in [start, end)
+		 */
+		private int intern(int start, int end) {
+			int length = end-start;
+			boolean numeric = length>0 && length<=18 && (length==1 || buffer.get(start)!='0');
+			long value = 0;
+			for(int i=start;i<end && numeric;i++) {
+				byte b = buffer.get(i);
+				if(b<'0' || b>'9')numeric = false;
+				else value = value*10+(b-'0');
+			}
+			int id;
+			String name = null;
+			if(numeric) {
+				id = numbers.get(value);
+				if(id!=-1)return id;
+				id = localCount;
+				numbers.put(value, id);
+			}else {
+				name = decode(start, end);
+				Integer known = names.get(name);
+				if(known!=null)return known;
+				id = localCount;
+				names.put(name, id);
+			}
+			if(localCount==localNumbers.length) {
+				localNumbers = Arrays.copyOf(localNumbers, localCount*2);
+				localNames = Arrays.copyOf(localNames, localCount*2);
+			}
+			localNumbers[id] = value;
+			localNames[id] = name;
+			localCount++;
+			return id;
+		}
+
+		void translate() {
+			for(int e=0;e<count;e++) {
+				sources[e] = localToGlobal[sources[e]];
+				targets[e] = localToGlobal[targets[e]];
+			}
+		}
+
+		/**
+		 * frees everything but the parsed edges
+		 */
+		void release() {
+			buffer = null;
+			numbers = null;
+			names = null;
+			localNumbers = null;
+			localNames = null;
+		}
+
+		/**
+		 * same rules as the Scanner based loader: comments, "Id" and "Source" headers, and lines without a tab are skipped
+		 */
+		private boolean isHeader(int start, int end) {
+			if(start<end && buffer.get(start)=='#')return true;
+			if(startsWith(start, end, "Id") || startsWith(start, end, "Source"))return true;
+			return indexOfTab(start, end)==end;
+		}
+
+		/**
+		 * @return the index of the 'weight' column of a header line, or NO_HEADER if the line doesn't mention a weight
+		 */
+		private int weightColumn(int start, int end) {
+			String line = decode(start, end).toLowerCase();
+			if(!line.contains("weight"))return NO_HEADER;
+			return Arrays.asList(line.split("\t")).indexOf("weight");
+		}
+
+		private void error(int start, int end) {
+			System.out.println("error parsing one of the elements of '"+decode(start, end)+"'");
+		}
+
+		private int lineEnd(int start, int limit) {
+			int i = start;
+			while(i<limit && buffer.get(i)!='\n')i++;
+			return i;
+		}
+
+		private int trimEnd(int start, int end) {
+			return (end>start && buffer.get(end-1)=='\r')?end-1:end;
+		}
+
+		private int indexOfTab(int start, int end) {
+			int i = start;
+			while(i<end && buffer.get(i)!='\t')i++;
+			return i;
+		}
+
+		private boolean startsWith(int start, int end, String prefix) {
+			if(end-start<prefix.length())return false;
+			for(int i=0;i<prefix.length();i++) {
+				if(buffer.get(start+i)!=prefix.charAt(i))return false;
+			}
+			return true;
+		}
+
+		private boolean sameBytes(int a, int b, int length) {
+			for(int i=0;i<length;i++) {
+				if(buffer.get(a+i)!=buffer.get(b+i))return false;
+			}
+			return true;
+		}
+
+		private String decode(int start, int end) {
+			byte[] bytes = new byte[end-start];
+			for(int i=0;i<bytes.length;i++) {
+				bytes[i] = buffer.get(start+i);
+			}
+			return new String(bytes, CHARSET);
+		}
+	}
+}
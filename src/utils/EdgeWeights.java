@@ -0,0 +1,171 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * Primitive store of edge weights aligned with the edge ids of a {@link CompactGraph}. Both directions of an undirected edge
+ * share a single value, those of a directed edge have their own, weights are looked up by slot without building any key.
+ * A store read from a map remembers which slots were in it, the others have the default weight but are not listed by
+ * {@link #toMap()}.
+ * @version 1.2.17102026
+ */
+public final class EdgeWeights {
+
+	private final CompactGraph graph;
+	private final double[] values;
+	/**
+	 * slots whose weight was set, null if all of them have one
+	 */
+	private BitSet assigned = null;
+
+	/**
+	 * creates a store where all edges have the given weight
+	 * @param graph
+	 * @param defaultValue
+	 */
+	public EdgeWeights(CompactGraph graph, double defaultValue) {
+		this.graph = graph;
+		this.values = new double[graph.getNumberEdgeIds()];
+		if(defaultValue!=0)Arrays.fill(values, defaultValue);
+	}
+
+	/**
+	 * wraps the given values without copying them
+	 * @param graph
+	 * @param values weight of each edge id of graph
+	 */
+	public EdgeWeights(CompactGraph graph, double[] values) {
+		if(values.length!=graph.getNumberEdgeIds())throw new IllegalArgumentException("values don't match the edge ids");
+		this.graph = graph;
+		this.values = values;
+	}
+
+	/**
+	 * reads the weights of a map keyed by "node1,node2" as returned by {@link #toMap()}. An edge id shared by both directions
+	 * takes the key of its first slot if the map has it, each direction of a directed graph reads its own key. Only the slots
+	 * found in the map are set, v1.2.17102026
+	 * @param graph
+	 * @param weights
+	 * @param defaultValue weight of edges missing from the map, used in sums but not set
+	 * @return
+	 */
+	public static EdgeWeights fromMap(CompactGraph graph, HashMap<String, Double> weights, double defaultValue) {
+		EdgeWeights result = new EdgeWeights(graph, defaultValue);
+		result.assigned = new BitSet(graph.getNumberSlots());
+		if(weights.isEmpty())return result;
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		for(int u=0;u<graph.getNumberNodes();u++) {
+			for(int slot=offsets[u];slot<offsets[u+1];slot++) {
+				Double weight = weights.get(graph.getLabel(u)+","+graph.getLabel(targets[slot]));
+				if(weight==null)continue;
+				if(graph.ownsEdge(u, slot) || !result.isSet(graph.getSlot(targets[slot], u)))result.set(slot, weight);
+				else result.assigned.set(slot);
+			}
+		}
+		return result;
+	}
+
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @param slot
+	 * @return the weight of the edge stored in the given slot
+	 */
+	public double get(int slot) {
+		return values[graph.getEdgeId(slot)];
+	}
+
+	/**
+	 * @param a label of the first node
+	 * @param b label of the second node
+	 * @return the weight of the edge a-b, or NaN if there is no such edge or its weight was not set
+	 */
+	public double get(String a, String b) {
+		int u = graph.getId(a);
+		int v = graph.getId(b);
+		if(u<0 || v<0)return Double.NaN;
+		int slot = graph.getSlot(u, v);
+		return slot<0 || !isSet(slot)?Double.NaN:get(slot);
+	}
+
+	/**
+	 * @param slot
+	 * @return false if the store was read from a map that doesn't have this direction of the edge
+	 */
+	public boolean isSet(int slot) {
+		return assigned==null || assigned.get(slot);
+	}
+
+	/**
+	 * sums the weights of the edges of a node in edge id order, the order in which they were added, so the last bits of the sum
+	 * are the same as when summing the successor lists of the edge list, v1.1.17102026
+	 * @param node
+	 * @return the out-weight of the node
+	 */
+	public double sum(int node) {
+		int[] offsets = graph.getOffsets();
+		int[] slots = graph.getSlotsInEdgeOrder();
+		int[] edgeIds = graph.getEdgeIds();
+		double sum = 0;
+		for(int k=offsets[node];k<offsets[node+1];k++) {
+			sum += values[edgeIds[slots[k]]];
+		}
+		return sum;
+	}
+
+	public void set(int slot, double weight) {
+		values[graph.getEdgeId(slot)] = weight;
+		if(assigned!=null)assigned.set(slot);
+	}
+
+	/**
+	 * <b>don't modify the returned array because this function returns the same reference in the store.</b>
+	 * @return the weight of each edge id
+	 */
+	public double[] getValues() {
+		return values;
+	}
+
+	/**
+	 * copies the weights to the given graph, matching edges by labels. The slots that are not set in this store are not set in
+	 * the result either.
+	 * @param other
+	 * @param defaultValue weight of edges of 'other' that are not in this store
+	 * @return
+	 */
+	public EdgeWeights remap(CompactGraph other, double defaultValue) {
+		EdgeWeights result = new EdgeWeights(other, defaultValue);
+		if(assigned!=null)result.assigned = new BitSet(other.getNumberSlots());
+		int[] offsets = other.getOffsets();
+		int[] targets = other.getTargets();
+		for(int u=0;u<other.getNumberNodes();u++) {
+			for(int slot=offsets[u];slot<offsets[u+1];slot++) {
+				double weight = get(other.getLabel(u), other.getLabel(targets[slot]));
+				if(!Double.isNaN(weight))result.set(slot, weight);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * compatibility view for callers that expect weights keyed by "node1,node2", each edge appears in both directions unless
+	 * the store was read from a map that only has one of them
+	 * @return a new map
+	 */
+	public HashMap<String, Double> toMap() {
+		HashMap<String, Double> map = new HashMap<>(graph.getNumberSlots()*2);
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		for(int u=0;u<graph.getNumberNodes();u++) {
+			for(int slot=offsets[u];slot<offsets[u+1];slot++) {
+				if(isSet(slot))map.put(graph.getLabel(u)+","+graph.getLabel(targets[slot]), get(slot));
+			}
+		}
+		return map;
+	}
+}
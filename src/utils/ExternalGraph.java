@@ -0,0 +1,621 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Undirected graph kept on disk, for networks whose edges don't fit on the heap. The adjacency is a CSR like {@link CompactGraph},
+ * but only the label and the offset of each node stay in memory: the targets of all slots, and once computed the weight of each
+ * slot, are files of a work folder read back in {@link Block}s of consecutive nodes. Both directions of an edge are stored, each
+ * with its own weight, so a block never needs another block to be read. The order of each slot, the position in the edge list
+ * of the first line of its edge, is kept in a third file so that the edges of a node can be taken in file order like the
+ * successor lists of {@link EdgeListLoader}.
+ * <p>
+ * {@link #build(String, File, long, int)} reads the edge list with {@link EdgeListLoader#stream(String, long, int, EdgeListLoader.EdgeSink)},
+ * so the ids are the ones {@link Graph#loadFromFile(String, boolean, boolean, int)} would give, spills the edges, scatters them
+ * into partitions of consecutive source nodes and sorts each partition in memory. Every step holds at most a given budget of
+ * edge data, whatever the number of edges. Files are little endian, targets and orders are ints, the orders unsigned, and weights
+ * doubles.
+ * @version 1.1.17102026
+ */
+public final class ExternalGraph implements Closeable {
+
+	public static final String ADJACENCY_FILE = "adjacency.bin";
+	public static final String WEIGHTS_FILE = "weights.bin";
+	public static final String ORDERS_FILE = "orders.bin";
+	private static final String EDGES_FILE = "edges.tmp";
+	private static final String SCATTER_FILE = "scatter.tmp";
+	/**
+	 * bytes of an entry of the scatter file: source, target and order
+	 */
+	private static final int ENTRY = 12;
+	/**
+	 * bytes moved between a file and an array at once
+	 */
+	private static final int IO_BUFFER = 1<<20;
+	/**
+	 * a run of nodes read as one block ends before two nodes further apart than this number of slots
+	 */
+	private static final long GAP = 1<<16;
+	/**
+	 * smallest number of slots of a block, whatever the budget
+	 */
+	public static final long MIN_BLOCK = 1<<12;
+
+	private final File folder;
+	private final String[] labels;
+	private final long[] offsets;
+	private final int maxDegree;
+	private final RandomAccessFile adjacencyFile;
+	private final FileChannel adjacency;
+	private final RandomAccessFile ordersFile;
+	private final FileChannel orders;
+	private RandomAccessFile weightsFile = null;
+	private FileChannel weights = null;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+
+	private ExternalGraph(File folder, String[] labels, long[] offsets) throws IOException {
+		this.folder = folder;
+		this.labels = labels;
+		this.offsets = offsets;
+		int max = 0;
+		for(int u=0;u<labels.length;u++) {
+			max = (int)Math.max(max, offsets[u+1]-offsets[u]);
+		}
+		this.maxDegree = max;
+		adjacencyFile = new RandomAccessFile(new File(folder, ADJACENCY_FILE), "r");
+		adjacency = adjacencyFile.getChannel();
+		ordersFile = new RandomAccessFile(new File(folder, ORDERS_FILE), "r");
+		orders = ordersFile.getChannel();
+	}
+
+	/**
+	 * @param budget bytes of edge data a phase may hold in memory
+	 * @return the number of slots of a block, such that a few blocks of targets and weights fit in the budget
+	 */
+	public static long blockSlots(long budget) {
+		return Math.min(1<<28, Math.max(MIN_BLOCK, budget/16));
+	}
+
+	/**
+	 * reads an undirected edge list into the given work folder. Self-loops and duplicate edges are removed like
+	 * {@link EdgeListLoader} does, an edge keeps the order of its first line.
+	 * @param fileName the edge list
+	 * @param folder created if needed, its files are deleted by {@link #close()}
+	 * @param budget bytes of edge data held in memory at once, see {@link #blockSlots(long)}
+	 * @param threads number of worker threads, 1 to build in the calling thread
+	 * @return
+	 * @throws IOException
+	 */
+	public static ExternalGraph build(String fileName, File folder, long budget, int threads) throws IOException {
+		if(!folder.isDirectory() && !folder.mkdirs())throw new IOException("unable to create "+folder);
+		long capacity = blockSlots(budget);
+		File edges = new File(folder, EDGES_FILE);
+		File scatter = new File(folder, SCATTER_FILE);
+		ForkJoinPool pool = threads>1?new ForkJoinPool(threads):null;
+		try {
+			//1. spill the edges as pairs of ids and count the entries of each node, duplicates included
+			Spill spill = new Spill(edges);
+			String[] labels;
+			try {
+				labels = EdgeListLoader.stream(fileName, Math.max(1<<16, budget/8/Math.max(1, threads)), threads, spill);
+			}finally {
+				spill.close();
+			}
+			int n = labels.length;
+			long[] raw = new long[n+1];
+			for(int u=0;u<n;u++) {
+				raw[u+1] = raw[u]+(u<spill.degrees.length?spill.degrees[u]:0);
+			}
+			spill.degrees = null;
+
+			//2. scatter both directions of each edge into partitions of consecutive sources, with the position of its line
+			int[] partitions = cut(raw, capacity);
+			scatter(edges, scatter, raw, partitions, budget);
+			edges.delete();
+
+			//3. sort and unique the targets of each partition, then append them to the adjacency and their orders to the orders
+			long[] offsets = new long[n+1];
+			try(RandomAccessFile in = new RandomAccessFile(scatter, "r");
+					RandomAccessFile out = new RandomAccessFile(new File(folder, ADJACENCY_FILE), "rw");
+					RandomAccessFile outOrders = new RandomAccessFile(new File(folder, ORDERS_FILE), "rw")) {
+				out.setLength(0);
+				outOrders.setLength(0);
+				ChannelOutput output = new ChannelOutput(out.getChannel());
+				ChannelOutput orderOutput = new ChannelOutput(outOrders.getChannel());
+				ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+				long[] keys = new long[0];
+				int[] targets = new int[0];
+				int[] orders = new int[0];
+				for(int p=0;p<partitions.length-1;p++) {
+					int from = partitions[p];
+					int to = partitions[p+1];
+					long base = raw[from];
+					int size = (int)(raw[to]-base);
+					if(keys.length<size) {
+						keys = new long[size];
+						targets = new int[size];
+						orders = new int[size];
+					}
+					int[] cursor = new int[to-from];
+					for(int u=from;u<to;u++) {
+						cursor[u-from] = (int)(raw[u]-base);
+					}
+					long position = ENTRY*base;
+					for(long left=size;left>0;) {
+						int entries = (int)Math.min(left, IO_BUFFER/ENTRY);
+						read(in.getChannel(), buffer, position, ENTRY*entries);
+						for(int k=0;k<entries;k++) {
+							int source = buffer.getInt();
+							int target = buffer.getInt();
+							keys[cursor[source-from]++] = ((long)target<<32)|(buffer.getInt()&0xffffffffL);
+						}
+						position += (long)ENTRY*entries;
+						left -= entries;
+					}
+					int[] degrees = new int[to-from];
+					long[] values = keys;
+					int[] sortedTargets = targets;
+					int[] sortedOrders = orders;
+					RangeTask.run(pool, from, to, 4096, (first, last) -> {
+						for(int u=first;u<last;u++) {
+							int start = (int)(raw[u]-base);
+							int end = (int)(raw[u+1]-base);
+							//by target then order, the first entry of a target is its first line
+							Arrays.sort(values, start, end);
+							int k = start;
+							for(int q=start;q<end;q++) {
+								int target = (int)(values[q]>>>32);
+								if(k==start || sortedTargets[k-1]!=target) {
+									sortedTargets[k] = target;
+									sortedOrders[k++] = (int)values[q];
+								}
+							}
+							degrees[u-from] = k-start;
+						}
+					});
+					for(int u=from;u<to;u++) {
+						output.putInts(targets, (int)(raw[u]-base), degrees[u-from]);
+						orderOutput.putInts(orders, (int)(raw[u]-base), degrees[u-from]);
+						offsets[u+1] = offsets[u]+degrees[u-from];
+					}
+				}
+				output.flush();
+				orderOutput.flush();
+			}
+			scatter.delete();
+			return new ExternalGraph(folder, labels, offsets);
+		}finally {
+			if(pool!=null)pool.shutdown();
+			edges.delete();
+			scatter.delete();
+		}
+	}
+
+	/**
+	 * writes the pairs of the spilled edges in both directions to the region of the partition of their source, each with the
+	 * position of the pair in the spill. A partition region starts at the number of entries of the nodes before it, each
+	 * partition has a small buffer and is written with positional writes, so the scatter file is written in one pass.
+	 */
+	private static void scatter(File edges, File scatter, long[] raw, int[] partitions, long budget) throws IOException {
+		int count = partitions.length-1;
+		//the buffers of all partitions share an eighth of the budget
+		int entries = (int)Math.max(256, Math.min(1<<16, budget/8/ENTRY/Math.max(1, count)));
+		long[][] pending = new long[count][];
+		int[][] pendingOrders = new int[count][];
+		int[] sizes = new int[count];
+		long[] positions = new long[count];
+		for(int p=0;p<count;p++) {
+			positions[p] = ENTRY*raw[partitions[p]];
+		}
+		ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+		try(RandomAccessFile in = new RandomAccessFile(edges, "r"); RandomAccessFile out = new RandomAccessFile(scatter, "rw")) {
+			out.setLength(0);
+			FileChannel channel = out.getChannel();
+			ByteBuffer flush = ByteBuffer.allocateDirect(ENTRY*entries).order(ByteOrder.LITTLE_ENDIAN);
+			long length = in.length();
+			int order = 0;
+			for(long position=0;position<length;) {
+				int bytes = (int)Math.min(length-position, IO_BUFFER);
+				read(in.getChannel(), buffer, position, bytes);
+				position += bytes;
+				for(int k=0;k<bytes/8;k++) {
+					int source = buffer.getInt();
+					int target = buffer.getInt();
+					for(int direction=0;direction<2;direction++) {
+						int p = partition(partitions, source);
+						if(pending[p]==null) {
+							pending[p] = new long[entries];
+							pendingOrders[p] = new int[entries];
+						}
+						pendingOrders[p][sizes[p]] = order;
+						pending[p][sizes[p]++] = ((long)source<<32)|(target&0xffffffffL);
+						if(sizes[p]==entries) {
+							positions[p] = write(channel, flush, pending[p], pendingOrders[p], sizes[p], positions[p]);
+							sizes[p] = 0;
+						}
+						int swap = source;
+						source = target;
+						target = swap;
+					}
+					order++;
+				}
+			}
+			for(int p=0;p<count;p++) {
+				if(sizes[p]>0)write(channel, flush, pending[p], pendingOrders[p], sizes[p], positions[p]);
+			}
+		}
+	}
+
+	private static long write(FileChannel channel, ByteBuffer buffer, long[] pairs, int[] orders, int size, long position)
+			throws IOException {
+		((java.nio.Buffer)buffer).clear();
+		for(int k=0;k<size;k++) {
+			buffer.putInt((int)(pairs[k]>>>32));
+			buffer.putInt((int)pairs[k]);
+			buffer.putInt(orders[k]);
+		}
+		((java.nio.Buffer)buffer).flip();
+		while(buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+		return position;
+	}
+
+	/**
+	 * @return the partition whose node range contains the given node
+	 */
+	private static int partition(int[] partitions, int node) {
+		int p = Arrays.binarySearch(partitions, node);
+		return p>=0?p:-p-2;
+	}
+
+	/**
+	 * fills the buffer with the given bytes of the channel and flips it
+	 */
+	private static void read(FileChannel channel, ByteBuffer buffer, long position, int bytes) throws IOException {
+		((java.nio.Buffer)buffer).clear();
+		((java.nio.Buffer)buffer).limit(bytes);
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, position+buffer.position())<0)throw new IOException("unexpected end of file");
+		}
+		((java.nio.Buffer)buffer).flip();
+	}
+
+	/**
+	 * cuts the nodes in ranges of at most 'capacity' entries, a node with more entries is alone in its range
+	 * @param prefix n+1 offsets of the entries of each node
+	 * @param capacity
+	 * @return the bounds of the ranges, the i-th range is [bounds[i], bounds[i+1])
+	 */
+	private static int[] cut(long[] prefix, long capacity) {
+		int n = prefix.length-1;
+		int[] bounds = new int[16];
+		int count = 1;
+		for(int from=0;from<n;) {
+			int to = from+1;
+			while(to<n && prefix[to+1]-prefix[from]<=capacity)to++;
+			if(count==bounds.length)bounds = Arrays.copyOf(bounds, count*2);
+			bounds[count++] = to;
+			from = to;
+		}
+		return Arrays.copyOf(bounds, count);
+	}
+
+	/**
+	 * @param capacity maximum number of slots of a block, exceeded only by a node whose degree is larger
+	 * @return the bounds of blocks covering all nodes, the i-th block is [bounds[i], bounds[i+1])
+	 */
+	public int[] blocks(long capacity) {
+		return cut(offsets, capacity);
+	}
+
+	/**
+	 * @param nodes sorted node ids
+	 * @param start first node of the run
+	 * @param end end of the nodes
+	 * @param capacity maximum number of slots spanned by the run, exceeded only by a node whose degree is larger
+	 * @return the end of the run of nodes starting at nodes[start] that can be read as one block: the run stops before a node
+	 * that doesn't fit in the capacity or that is far from the previous one
+	 */
+	public int run(int[] nodes, int start, int end, long capacity) {
+		long first = offsets[nodes[start]];
+		int k = start+1;
+		while(k<end && offsets[nodes[k]+1]-first<=capacity && offsets[nodes[k]]-offsets[nodes[k-1]+1]<=GAP)k++;
+		return k;
+	}
+
+	/**
+	 * reads the slots of the nodes [from, to)
+	 * @param from
+	 * @param to
+	 * @param withWeights also read the weights, see {@link #writeWeights()}
+	 * @param reuse a block whose arrays are reused, or null
+	 * @return
+	 * @throws IOException
+	 */
+	public Block read(int from, int to, boolean withWeights, Block reuse) throws IOException {
+		return read(from, to, withWeights, false, reuse);
+	}
+
+	/**
+	 * reads the slots of the nodes [from, to), v1.1.17102026
+	 * @param from
+	 * @param to
+	 * @param withWeights also read the weights, see {@link #writeWeights()}
+	 * @param withOrders also read the orders, see {@link Block#getOrders()}
+	 * @param reuse a block whose arrays are reused, or null
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized Block read(int from, int to, boolean withWeights, boolean withOrders, Block reuse) throws IOException {
+		Block block = reuse==null?new Block(offsets):reuse;
+		long base = offsets[from];
+		int size = (int)(offsets[to]-base);
+		block.from = from;
+		block.to = to;
+		block.base = base;
+		block.size = size;
+		if(block.targets.length<size)block.targets = new int[Math.max(size, block.targets.length+(block.targets.length>>1))];
+		for(int done=0;done<size;) {
+			int count = Math.min(size-done, IO_BUFFER/4);
+			read(adjacency, buffer, 4*(base+done), 4*count);
+			buffer.asIntBuffer().get(block.targets, done, count);
+			done += count;
+		}
+		if(withWeights) {
+			if(weights==null)throw new IllegalStateException("the weights are not written");
+			if(block.weights.length<size)block.weights = new double[Math.max(size, block.weights.length+(block.weights.length>>1))];
+			for(int done=0;done<size;) {
+				int count = Math.min(size-done, IO_BUFFER/8);
+				read(weights, buffer, 8*(base+done), 8*count);
+				buffer.asDoubleBuffer().get(block.weights, done, count);
+				done += count;
+			}
+		}
+		if(withOrders) {
+			if(block.orders.length<size)block.orders = new int[Math.max(size, block.orders.length+(block.orders.length>>1))];
+			for(int done=0;done<size;) {
+				int count = Math.min(size-done, IO_BUFFER/4);
+				read(orders, buffer, 4*(base+done), 4*count);
+				buffer.asIntBuffer().get(block.orders, done, count);
+				done += count;
+			}
+		}
+		return block;
+	}
+
+	/**
+	 * starts writing the weights file, the weights of all slots are appended in slot order
+	 * @return
+	 * @throws IOException
+	 */
+	public WeightsWriter writeWeights() throws IOException {
+		closeWeights();
+		return new WeightsWriter();
+	}
+
+	private void closeWeights() throws IOException {
+		if(weightsFile!=null) {
+			weightsFile.close();
+			weightsFile = null;
+			weights = null;
+		}
+	}
+
+	public int getNumberNodes() {
+		return labels.length;
+	}
+
+	/**
+	 * @return the number of slots, twice the number of edges
+	 */
+	public long getNumberSlots() {
+		return offsets[labels.length];
+	}
+
+	public int getDegree(int node) {
+		return (int)(offsets[node+1]-offsets[node]);
+	}
+
+	public int getMaxDegree() {
+		return maxDegree;
+	}
+
+	public String getLabel(int node) {
+		return labels[node];
+	}
+
+	/**
+	 * <b>don't modify the returned array because this function returns the same reference in the graph.</b>
+	 * @return n+1 offsets of the slots of each node
+	 */
+	public long[] getOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * closes and deletes the files of the graph, and the work folder if it is left empty
+	 */
+	@Override
+	public void close() throws IOException {
+		closeWeights();
+		adjacencyFile.close();
+		ordersFile.close();
+		new File(folder, ADJACENCY_FILE).delete();
+		new File(folder, ORDERS_FILE).delete();
+		new File(folder, WEIGHTS_FILE).delete();
+		folder.delete();
+	}
+
+	/**
+	 * the slots of consecutive nodes [from, to) read from disk, slot s of the graph is at index s-base of the arrays
+	 */
+	public static final class Block {
+
+		private final long[] offsets;
+		private int from;
+		private int to;
+		private long base;
+		private int size;
+		private int[] targets = new int[0];
+		private double[] weights = new double[0];
+		private int[] orders = new int[0];
+
+		private Block(long[] offsets) {
+			this.offsets = offsets;
+		}
+
+		public int getFrom() {
+			return from;
+		}
+
+		public int getTo() {
+			return to;
+		}
+
+		/**
+		 * @return number of slots of the block
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * @param node a node of the block
+		 * @return index of the first slot of the node in the arrays
+		 */
+		public int start(int node) {
+			return (int)(offsets[node]-base);
+		}
+
+		/**
+		 * @param node a node of the block
+		 * @return index after the last slot of the node in the arrays
+		 */
+		public int end(int node) {
+			return (int)(offsets[node+1]-base);
+		}
+
+		/**
+		 * <b>the array may be longer than {@link #size()} and is reused by the next read.</b>
+		 * @return
+		 */
+		public int[] getTargets() {
+			return targets;
+		}
+
+		/**
+		 * <b>the array may be longer than {@link #size()} and is reused by the next read.</b>
+		 * @return
+		 */
+		public double[] getWeights() {
+			return weights;
+		}
+
+		/**
+		 * <b>the array may be longer than {@link #size()} and is reused by the next read.</b>
+		 * @return the order of the edge of each slot, the position of its first line among the edges of the file, unsigned. Both
+		 * directions of an edge have the same order.
+		 */
+		public int[] getOrders() {
+			return orders;
+		}
+
+		/**
+		 * @param node a node of the block read with its orders
+		 * @param scratch reused if long enough, or null
+		 * @return indexes of the slots of the node in the arrays, by increasing order, i.e. its successors in file order
+		 */
+		public int[] slotsInOrder(int node, int[] scratch) {
+			int start = start(node);
+			int degree = end(node)-start;
+			int[] slots = scratch!=null && scratch.length>=degree?scratch:new int[degree];
+			long[] keys = new long[degree];
+			for(int k=0;k<degree;k++) {
+				keys[k] = ((orders[start+k]&0xffffffffL)<<32)|k;
+			}
+			Arrays.sort(keys);
+			for(int k=0;k<degree;k++) {
+				slots[k] = start+(int)keys[k];
+			}
+			return slots;
+		}
+	}
+
+	/**
+	 * appends the weights of the slots in slot order, closing it makes them readable
+	 */
+	public final class WeightsWriter implements Closeable {
+
+		private final RandomAccessFile file;
+		private final ChannelOutput output;
+
+		private WeightsWriter() throws IOException {
+			file = new RandomAccessFile(new File(folder, WEIGHTS_FILE), "rw");
+			file.setLength(0);
+			output = new ChannelOutput(file.getChannel());
+		}
+
+		public void write(double[] values, int from, int count) throws IOException {
+			output.putDoubles(values, from, count);
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				output.flush();
+				if(output.getPosition()!=8*getNumberSlots())throw new IOException("the weights don't match the slots");
+			}finally {
+				file.close();
+			}
+			weightsFile = new RandomAccessFile(new File(folder, WEIGHTS_FILE), "r");
+			weights = weightsFile.getChannel();
+		}
+	}
+
+	/**
+	 * writes the edges handed by the loader as pairs of ids and counts the entries of each node
+	 */
+	private static final class Spill implements EdgeListLoader.EdgeSink {
+
+		private final RandomAccessFile file;
+		private final ChannelOutput output;
+		int[] degrees = new int[1024];
+
+		Spill(File edges) throws IOException {
+			file = new RandomAccessFile(edges, "rw");
+			file.setLength(0);
+			output = new ChannelOutput(file.getChannel());
+		}
+
+		@Override
+		public void edges(int[] sources, int[] targets, int count) throws IOException {
+			for(int e=0;e<count;e++) {
+				int s = sources[e];
+				int t = targets[e];
+				int max = Math.max(s, t);
+				if(max>=degrees.length)degrees = Arrays.copyOf(degrees, Math.max(max+1, degrees.length*2));
+				degrees[s]++;
+				degrees[t]++;
+				output.putInt(s);
+				output.putInt(t);
+			}
+		}
+
+		void close() throws IOException {
+			try {
+				output.flush();
+			}finally {
+				file.close();
+			}
+		}
+	}
+}
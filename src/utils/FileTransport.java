@@ -0,0 +1,92 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * {@link ShardTransport} through a folder shared by the shards, e.g. on a local disk or a network file system. The message of a
+ * round from shard a to shard b is the file r{round}-{a}-{b}.msg: it is written under a temporary name and renamed once complete,
+ * so a reader never sees a partial message. The receiver polls for the files of the round and deletes them after reading.
+ * @version 1.0.17102026
+ */
+public final class FileTransport implements ShardTransport {
+
+	private static final long MAX_POLL = 20;
+
+	private final File folder;
+	private final int rank;
+	private final int size;
+	private final long timeout;
+	private int round = 0;
+
+	/**
+	 * @param folder shared folder, created if needed
+	 * @param rank the shard of this process
+	 * @param size number of shards
+	 * @param timeout milliseconds to wait for another shard, 0 to wait forever
+	 * @throws IOException
+	 */
+	public FileTransport(File folder, int rank, int size, long timeout) throws IOException {
+		if(!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory())throw new IOException("unable to create "+folder);
+		this.folder = folder;
+		this.rank = rank;
+		this.size = size;
+		this.timeout = timeout;
+	}
+
+	@Override
+	public int getRank() {
+		return rank;
+	}
+
+	@Override
+	public int getSize() {
+		return size;
+	}
+
+	@Override
+	public byte[][] exchange(byte[][] messages) throws IOException {
+		round++;
+		for(int s=0;s<size;s++) {
+			if(s==rank)continue;
+			File temporary = new File(folder, "r"+round+"-"+rank+"-"+s+".tmp");
+			Files.write(temporary.toPath(), messages[s]==null?new byte[0]:messages[s]);
+			Files.move(temporary.toPath(), message(rank, s).toPath(), StandardCopyOption.ATOMIC_MOVE);
+		}
+		byte[][] received = new byte[size][];
+		received[rank] = new byte[0];
+		long deadline = timeout>0?System.currentTimeMillis()+timeout:Long.MAX_VALUE;
+		for(int s=0;s<size;s++) {
+			if(s==rank)continue;
+			File file = message(s, rank);
+			long wait = 1;
+			while(!file.exists()) {
+				if(System.currentTimeMillis()>deadline)throw new IOException("no message from shard "+s+" in round "+round);
+				try {
+					Thread.sleep(wait);
+				}catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("interrupted while waiting for shard "+s);
+				}
+				wait = Math.min(MAX_POLL, wait*2);
+			}
+			received[s] = Files.readAllBytes(file.toPath());
+			Files.delete(file.toPath());
+		}
+		return received;
+	}
+
+	private File message(int from, int to) {
+		return new File(folder, "r"+round+"-"+from+"-"+to+".msg");
+	}
+
+	/**
+	 * deletes the folder if no message is left in it
+	 */
+	@Override
+	public void close() {
+		folder.delete();
+	}
+}
@@ -1,13 +1,14 @@
 package utils;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.Scanner;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -18,22 +19,55 @@ public class Graph<T> implements Cloneable{
 
 	protected HashMap<T, ArrayList<T>> graph = new HashMap<>();
 	
-	protected HashMap<String, Double> weights = new HashMap<>();//TODO:clean make weights HashMap generic
+	/**
+	 * edge weights as they were set, aligned with the compact graph of that time (v1.11.17102026)
+	 */
+	protected EdgeWeights weights = null;
+	/**
+	 * weights aligned with the current compact graph, see {@link #getEdgeWeights()}
+	 */
+	protected EdgeWeights alignedWeights = null;
+	protected HashMap<String, Double> weightsView = null;
 	protected HashMap<T, Double> outWeights = new HashMap<>();
-	protected ArrayList<Double> sortedOutWeights = new ArrayList<>();//stores out-weights sorted from min to max
-	protected ArrayList<Double> sortedWeights = new ArrayList<>();//stores sorted edge weights v1.9.11012019
+	/**
+	 * the values of outWeights by dense id in outWeightGraph, the compact graph they were computed on (v1.13.17102026)
+	 */
+	protected double[] outWeightValues = null;
+	protected CompactGraph outWeightGraph = null;
+	protected WeightStatistics sortedOutWeights = WeightStatistics.EMPTY;//stores distinct out-weights sorted from min to max
+	protected WeightStatistics sortedWeights = WeightStatistics.EMPTY;//stores sorted distinct edge weights v1.9.11012019
 	
 	protected boolean directed;
 	public String sourceFile = null;
 
-	protected HashMap<String, Double> optionalWeights = new HashMap<>();//stores optional weights
-	protected ArrayList<T> hiddenNodes = new ArrayList<>();
+	protected EdgeWeights optionalWeights = null;//stores optional weights
+	/**
+	 * dense index of every node that was ever hidden or checked, the bit of a hidden node is set in hiddenNodes (v1.12.17102026)
+	 */
+	protected HashMap<T, Integer> nodeIndex = new HashMap<>();
+	protected BitSet hiddenNodes = new BitSet();
 	
 	protected boolean flag_sortWeights=false;//when true, the weights and outWeights are sorted
 	/**
 	 * when -1 then it is not calculated, otherwise this value is ready to be returned
 	 */
 	protected int numberOfEdges = -1;
+	/**
+	 * CSR snapshot of the visible graph, null when it needs to be rebuilt after a change (v1.11.17102026)
+	 */
+	protected CompactGraph compactGraph = null;
+	/**
+	 * the compressed graph this graph wraps, with all its nodes, while the adjacency lists are not built (v1.12.17102026)
+	 */
+	protected CompactGraph wrapped = null;
+	/**
+	 * all nodes, hidden or not, in order of first appearance. Built on first use and kept up to date by node removals (v1.12.17102026)
+	 */
+	protected LinkedHashSet<T> nodeRegistry = null;
+	/**
+	 * visible nodes in registry order, null when a node was hidden, unhidden or removed since the last call
+	 */
+	protected ArrayList<T> visibleNodes = null;
 	
 	public Graph(){
 		
@@ -43,8 +77,58 @@ public class Graph<T> implements Cloneable{
 		this.graph=graph;
 	}
 	
+	/**
+	 * shares the adjacency lists of the given graph, or its compressed graph if it is wrapped and its lists were never built
+	 * @param graph
+	 */
 	public Graph(Graph<T> graph){
-		this(graph.graph);
+		this.directed = graph.directed;
+		if(graph.graph==null) {
+			this.graph = null;
+			this.wrapped = graph.wrapped;
+		}else {
+			this.graph = graph.adjacency();
+		}
+	}
+	
+	/**
+	 * added in v1.12.17102026, wraps a compressed graph. The adjacency lists of the generic API are only built if one of the methods
+	 * working on them is called, the algorithms working on {@link #getCompactGraph()} never build them.
+	 * @param compact
+	 * @param directed
+	 * @return
+	 */
+	public static Graph<String> wrap(CompactGraph compact, boolean directed) {
+		Graph<String> inst = new Graph<>();
+		inst.graph = null;
+		inst.wrapped = compact;
+		inst.compactGraph = compact;
+		inst.directed = directed;
+		return inst;
+	}
+	
+	/**
+	 * @return the adjacency lists, built from the compact graph if this graph was created with {@link #wrap(CompactGraph, boolean)}
+	 */
+	@SuppressWarnings("unchecked")
+	protected HashMap<T, ArrayList<T>> adjacency() {
+		if(graph==null) {
+			registry();//listed from the compact graph
+			HashMap<T, ArrayList<T>> lists = new HashMap<>(wrapped.getNumberNodes()*2);
+			int[] offsets = wrapped.getOffsets();
+			int[] targets = wrapped.getTargets();
+			int[] slots = wrapped.getSlotsInEdgeOrder();
+			for(int u=0;u<wrapped.getNumberNodes();u++) {
+				if(offsets[u]==offsets[u+1])continue;//like the loaded lists, only nodes with successors are keys
+				ArrayList<T> successors = new ArrayList<>(offsets[u+1]-offsets[u]);
+				for(int k=offsets[u];k<offsets[u+1];k++) {
+					successors.add((T)wrapped.getLabel(targets[slots[k]]));//in the order the edges were added
+				}
+				lists.put((T)wrapped.getLabel(u), successors);
+			}
+			graph = lists;
+		}
+		return graph;
 	}
 	
 	//TODO:clean-code add HashMap<String, HashMap<Node,attribute>> to store attributes in graph such as weights of edges and nodes classification
@@ -53,40 +137,174 @@ public class Graph<T> implements Cloneable{
 	@Override
 	public Object clone() {
 		Graph<T> newGraph = new Graph<>(new HashMap<>());
-		for(T node:this.graph.keySet()) {
-			newGraph.graph.put(node, (ArrayList<T>)this.graph.get(node).clone());
+		for(T node:adjacency().keySet()) {
+			newGraph.graph.put(node, (ArrayList<T>)adjacency().get(node).clone());
 		}
-		newGraph.hiddenNodes = (ArrayList<T>)hiddenNodes.clone();
+		newGraph.nodeIndex = (HashMap<T, Integer>)nodeIndex.clone();
+		newGraph.hiddenNodes = (BitSet)hiddenNodes.clone();
 		newGraph.sourceFile = sourceFile+"";
 		newGraph.weights = weights;//updated on 28/11/2018
+		newGraph.weightsView = weightsView;
 		newGraph.outWeights = (HashMap<T, Double>)outWeights.clone();//updated on 18/12/2018
-		newGraph.sortedOutWeights = (ArrayList<Double>)sortedOutWeights.clone();
-		newGraph.sortedWeights = (ArrayList<Double>)sortedWeights.clone();
+		newGraph.sortedOutWeights = sortedOutWeights;//immutable since v1.12.17102026
+		newGraph.sortedWeights = sortedWeights;
 		return newGraph;
 	}
 	
+	/**
+	 * added in v1.11.17102026, returns the compressed representation of the visible part of this graph. The snapshot is
+	 * built on first use and rebuilt after nodes or edges are removed, hidden or unhidden. A wrapped graph whose adjacency lists
+	 * were never built masks its wrapped graph with {@link SubgraphView} instead, keeping the relative order of its node ids.
+	 * @return
+	 */
+	public CompactGraph getCompactGraph() {
+		if(compactGraph==null) {
+			if(graph!=null) {
+				compactGraph = CompactGraph.of(this);
+			}else if(hiddenNodes.isEmpty()) {
+				compactGraph = wrapped;
+			}else {
+				SubgraphView view = new SubgraphView(wrapped);
+				for(Map.Entry<T, Integer> entry:nodeIndex.entrySet()) {
+					int id = hiddenNodes.get(entry.getValue())?wrapped.getId(entry.getKey().toString()):-1;
+					if(id>=0)view.hide(id);
+				}
+				compactGraph = view.toCompactGraph();
+			}
+		}
+		return compactGraph;
+	}
+	
+	/**
+	 * drops the views of the visible graph after a change, the adjacency lists of a wrapped graph are not built
+	 */
+	protected void invalidate() {
+		compactGraph = null;
+		alignedWeights = null;
+		visibleNodes = null;
+		numberOfEdges = -1;
+	}
+	
+	/**
+	 * @return all nodes of the graph including hidden ones, in a stable order: each node with successors is followed by its
+	 * successors not listed yet. A wrapped graph lists its nodes in the same order as the adjacency lists it was loaded from,
+	 * see {@link NodeOrder#listing(CompactGraph)}
+	 */
+	@SuppressWarnings("unchecked")
+	protected LinkedHashSet<T> registry() {
+		if(nodeRegistry==null) {
+			if(graph==null) {
+				nodeRegistry = new LinkedHashSet<>(wrapped.getNumberNodes()*2);
+				for(int id:NodeOrder.listing(wrapped)) {
+					nodeRegistry.add((T)wrapped.getLabel(id));
+				}
+			}else {
+				nodeRegistry = new LinkedHashSet<>(graph.size()*2);
+				for(T node:graph.keySet()) {
+					nodeRegistry.add(node);
+					for(T s:graph.get(node)) {
+						nodeRegistry.add(s);
+					}
+				}
+			}
+		}
+		return nodeRegistry;
+	}
+	
+	/**
+	 * sorts nodes in the order of {@link #getAllNodes()} without listing all nodes when the graph wasn't changed since it was
+	 * wrapped, see {@link NodeOrder#sort(CompactGraph, boolean, int[])}
+	 * @param ids ids in {@link #getCompactGraph()}, sorted in place
+	 */
+	public void sortNodes(int[] ids) {
+		CompactGraph compact = getCompactGraph();
+		if(graph==null && hiddenNodes.isEmpty()) {
+			NodeOrder.sort(compact, directed, ids);
+			return;
+		}
+		HashMap<String, Integer> positions = new HashMap<>(ids.length*2);
+		for(int id:ids) {
+			positions.put(compact.getLabel(id), -1);
+		}
+		int position = 0;
+		for(T node:visibleNodes()) {
+			if(positions.containsKey(node.toString()))positions.put(node.toString(), position);
+			position++;
+		}
+		long[] sorted = new long[ids.length];
+		for(int k=0;k<ids.length;k++) {
+			sorted[k] = ((long)positions.get(compact.getLabel(ids[k]))<<32)|ids[k];
+		}
+		Arrays.sort(sorted);
+		for(int k=0;k<ids.length;k++) {
+			ids[k] = (int)sorted[k];
+		}
+	}
+	
+	/**
+	 * @param id
+	 * @return true if the given node belongs to the graph, hidden or not
+	 */
+	public boolean containsNode(T id) {
+		return registry().contains(id);
+	}
+	
+	/**
+	 * @return the number of visible nodes
+	 */
+	public int getNumberNodes() {
+		return visibleNodes().size();
+	}
+	
+	private ArrayList<T> visibleNodes() {
+		if(visibleNodes==null) {
+			visibleNodes = new ArrayList<>(registry());
+			if(!hiddenNodes.isEmpty())visibleNodes.removeIf(this::isHidden);
+		}
+		return visibleNodes;
+	}
+	
+	public boolean isHidden(T id) {
+		if(hiddenNodes.isEmpty())return false;
+		Integer index = nodeIndex.get(id);
+		return index!=null && hiddenNodes.get(index);
+	}
+	
+	/**
+	 * @param id
+	 * @return the position of the given node in the visibility mask, assigned on first call
+	 */
+	protected int indexOf(T id) {
+		Integer index = nodeIndex.get(id);
+		if(index==null) {
+			index = nodeIndex.size();
+			nodeIndex.put(id, index);
+		}
+		return index;
+	}
+	
+	/**
+	 * added in v1.12.17102026, several views with their own masks can share the compact graph of this graph
+	 * @return a view of the visible part of this graph where all nodes are visible
+	 */
+	public SubgraphView view() {
+		return new SubgraphView(getCompactGraph());
+	}
+	
 	/**
 	 * returns all nodes that have successors, doesn't exclude hidden nodes (starting from version 1.5)
 	 * @return
 	 */
 	public Set<T> getNodes(){
-		return graph.keySet();
+		return adjacency().keySet();
 	}
 	
 	/**
+	 * since v1.12.17102026 the nodes come from a registry kept with the graph, the order is stable and the call costs O(n)
 	 * @return all nodes in the graph, excluding hidden nodes (starting from v1.5)
 	 */
 	public ArrayList<T> getAllNodes() {
-		ArrayList<T> result = new ArrayList<>();
-		for(T node:graph.keySet()) {
-			if(!result.contains(node))result.add(node);
-			ArrayList<T> successors = graph.get(node);
-			for(T s:successors) {
-				if(!result.contains(s))result.add(s);
-			}
-		}
-		result.removeAll(hiddenNodes);
-		return result;
+		return new ArrayList<>(visibleNodes());
 	}
 	
 	/**
@@ -97,11 +315,16 @@ public class Graph<T> implements Cloneable{
 	 */
 	public int getNumberEdges(boolean forceRecalculate) {
 		if(numberOfEdges>=0 && !forceRecalculate)return numberOfEdges;
+		if(graph==null) {
+			//the visible slots of a wrapped graph, without building its lists
+			numberOfEdges = getCompactGraph().getNumberSlots()/2;
+			return numberOfEdges;
+		}
 		int n=0;
-		for(T node:graph.keySet()) {
-			if(hiddenNodes.contains(node))continue;
-			for(T s:graph.get(node)) {
-				if(!hiddenNodes.contains(s)) {
+		for(T node:adjacency().keySet()) {
+			if(isHidden(node))continue;
+			for(T s:adjacency().get(node)) {
+				if(!isHidden(s)) {
 					n++;
 				}
 			}
@@ -122,14 +345,14 @@ public class Graph<T> implements Cloneable{
 	 */
 	@SuppressWarnings("unchecked")
 	public ArrayList<T> getSuccessors(T id, boolean copy){
-		if(hiddenNodes.contains(id))return new ArrayList<>();
+		if(isHidden(id))return new ArrayList<>();
 		
-		ArrayList<T> result = graph.get(id);
+		ArrayList<T> result = adjacency().get(id);
 		if(result==null)result=new ArrayList<>();
 		if(!copy)return result;
 		
 		result = (ArrayList<T>) result.clone();
-		result.removeAll(hiddenNodes);
+		if(!hiddenNodes.isEmpty())result.removeIf(this::isHidden);
 		
 		return result;
 	}
@@ -137,60 +360,80 @@ public class Graph<T> implements Cloneable{
 	public ArrayList<T> getPredecessors(T id){
 		//TODO:performance store predecessors in separate HashMap
 		
-		if(hiddenNodes.contains(id))return new ArrayList<>();
+		if(isHidden(id))return new ArrayList<>();
 		ArrayList<T> result = new ArrayList<T>();
-		for(T p:graph.keySet()) {
+		for(T p:adjacency().keySet()) {
 			//check if 'id' is one of the successors of 'p'
-			for(T s:graph.get(p)) {
+			for(T s:adjacency().get(p)) {
 				if(s.equals(id) && !result.contains(p)) {
 					result.add(p);
 				}
 			}
 		}
-		result.removeAll(hiddenNodes);
+		if(!hiddenNodes.isEmpty())result.removeIf(this::isHidden);
 		return result;
 	}
 
 	public void hideNode(T id) {
-		hiddenNodes.add(id);
+		hiddenNodes.set(indexOf(id));
+		invalidate();
 	}
 	
 	public void unhideNode(T id) {
-		hiddenNodes.remove(id);
+		Integer index = nodeIndex.get(id);
+		if(index!=null)hiddenNodes.clear(index);
+		invalidate();
 	}
 	
 	public void unhideAll() {
 		hiddenNodes.clear();
+		invalidate();
 	}
 	
 	public void hideAll() {
-		unhideAll();//to avoid removing currently hidden nodes from all nodes when calling getAllNodes
-		hiddenNodes = getAllNodes();
+		for(T node:registry()) {
+			hiddenNodes.set(indexOf(node));
+		}
+		invalidate();
 	}
 	
 	public void unhide(ArrayList<T> nodes) {
 		for(T node:nodes) {
-			unhideNode(node);
+			Integer index = nodeIndex.get(node);
+			if(index!=null)hiddenNodes.clear(index);
 		}
+		invalidate();
 	}
 	
 	public void hide(ArrayList<T> nodes) {
 		for(T node:nodes) {
-			hideNode(node);
+			hiddenNodes.set(indexOf(node));
 		}
+		invalidate();
 	}
 	
+	/**
+	 * removes the given nodes with a single pass over the adjacency lists
+	 * @param ids
+	 */
 	public void removeAll(ArrayList<T> ids) {
-		for(T id:ids) {
-			removeNode(id);
+		HashSet<T> removed = new HashSet<>(ids);
+		invalidate();
+		for(T id:removed) {
+			adjacency().remove(id);
+			if(nodeRegistry!=null)nodeRegistry.remove(id);
+		}
+		for(ArrayList<T> successors:adjacency().values()) {
+			successors.removeIf(removed::contains);
 		}
 	}
 	
 	public void removeNode(T id) {
-		graph.remove(id);
-		numberOfEdges=-1;
-		for(T key : graph.keySet()) {
-			graph.get(key).remove(id);
+		adjacency().remove(id);
+		invalidate();
+		if(nodeRegistry!=null)nodeRegistry.remove(id);
+		for(T key : adjacency().keySet()) {
+			adjacency().get(key).remove(id);
 		}
 	}
 	
@@ -208,18 +451,20 @@ public class Graph<T> implements Cloneable{
 	@SuppressWarnings("unchecked")
 	//TODO:clean-code find a way to represent edges generically or make the Graph class not generic
 	public void removeEdge(String src, String trg, boolean directed, boolean removeNodes) {
+		invalidate();
 		if(directed) {
-			graph.get(src).remove(trg);
+			adjacency().get(src).remove(trg);
 		}else {
-			graph.get(src).remove(trg);
-			graph.get(trg).remove(src);
+			adjacency().get(src).remove(trg);
+			adjacency().get(trg).remove(src);
 		}
+		if(!adjacency().containsKey(src) || !adjacency().containsKey(trg))nodeRegistry = null;//an end may have no edge left
 		if(removeNodes) {
-			if(graph.get(src).size()==0) {
+			if(adjacency().get(src).size()==0) {
 				removeNode((T) src);
 				System.out.println("node "+src+" removed");
 			}
-			if(graph.get(trg).size()==0) {
+			if(adjacency().get(trg).size()==0) {
 				removeNode((T) trg);
 				System.out.println("node "+trg+" removed");
 			}
@@ -228,7 +473,7 @@ public class Graph<T> implements Cloneable{
 	
 	public void keepOnly(ArrayList<T> group) {
 		ArrayList<T> others = getAllNodes();
-		others.removeAll(group);
+		others.removeAll(new HashSet<>(group));
 		removeAll(others);
 	}
 	
@@ -240,23 +485,46 @@ public class Graph<T> implements Cloneable{
 	}
 	
 	public void setOptionalWeights(HashMap<String,Double> optionalWeights) {
+		this.optionalWeights = EdgeWeights.fromMap(getCompactGraph(), optionalWeights, 1.0);
+	}
+	
+	public void setOptionalWeights(EdgeWeights optionalWeights) {
 		this.optionalWeights = optionalWeights;
 	}
 	
 	public double getOptionalWeight(String a, String b) {
-		if(optionalWeights.containsKey(a+","+b)) {
-			return optionalWeights.get(a+","+b);
+		if(optionalWeights!=null) {
+			double weight = optionalWeights.get(a, b);
+			if(!Double.isNaN(weight))return weight;
 		}
 		return 1.0;
 	}
 	
 	/**
 	 * added in v1.8.31122018, returns all weights of edges in a hashmap where the key is the id of 1st node + , + id of 2nd node. 
+	 * since v1.11.17102026 the map is the one given to {@link #setWeights(HashMap)}, or a view of the weights set as
+	 * {@link EdgeWeights} built on first call, see {@link EdgeWeights#toMap()}.
 	 * <b>don't modify the returned map because this function returns the same reference in the graph.</b>
 	 * @return
 	 */
 	public HashMap<String,Double> getWeights(){
-		return weights;
+		if(weightsView==null)weightsView = weights==null?new HashMap<>():weights.toMap();
+		return weightsView;
+	}
+	
+	/**
+	 * added in v1.11.17102026, returns the edge weights aligned with {@link #getCompactGraph()}, so that the weight of a slot is
+	 * <code>getEdgeWeights().get(slot)</code>. Edges without a weight have weight 1.
+	 * @return
+	 */
+	public EdgeWeights getEdgeWeights() {
+		CompactGraph compact = getCompactGraph();
+		if(alignedWeights==null || alignedWeights.getGraph()!=compact) {
+			if(weights==null)alignedWeights = new EdgeWeights(compact, 1.0);
+			else if(weights.getGraph()==compact)alignedWeights = weights;
+			else alignedWeights = weights.remap(compact, 1.0);
+		}
+		return alignedWeights;
 	}
 	
 	/**
@@ -266,27 +534,44 @@ public class Graph<T> implements Cloneable{
 	 * @param b
 	 * @return
 	 */
+	@SuppressWarnings("unchecked")
 	public double getWeight(String a, String b) {
-		if(!graph.containsKey(a) || !graph.containsKey(b))
+		if(!adjacency().containsKey(a) || !adjacency().containsKey(b))
 			throw new IllegalStateException("graph doesn't contain one of the requested nodes "+a+" or "+b);
-		if(weights.containsKey(a+","+b)) {
-			return weights.get(a+","+b);
-		}else if((graph.get(a).contains(b) || graph.get(b).contains(a)) &&
-				(!hiddenNodes.contains(a) && !hiddenNodes.contains(b))) {
+		double weight = weights==null?Double.NaN:weights.get(a, b);
+		if(!Double.isNaN(weight)) {
+			return weight;
+		}else if((adjacency().get(a).contains(b) || adjacency().get(b).contains(a)) &&
+				(!isHidden((T)a) && !isHidden((T)b))) {
 			return 1.0;
 		}
 		return 0.0;
 	}
 	
+	/**
+	 * @param slot a slot of {@link #getCompactGraph()}
+	 * @return the weight of the edge in the given slot
+	 */
+	public double getWeight(int slot) {
+		return getEdgeWeights().get(slot);
+	}
+	
+	@SuppressWarnings("unchecked")
 	public ArrayList<String> getEdgesOfWeight(double weight) {
 		ArrayList<String> edges = new ArrayList<>();
-		for(String edge:weights.keySet()) {
-			if(weights.get(edge)==weight) {
-				//check if this edge still exists
-				String src = edge.split(",")[0];
-				String trgt = edge.split(",")[1];
-				if(graph.get(src)!=null && graph.get(trgt)!=null && graph.get(src).contains(trgt)) {
-					edges.add(edge);
+		if(weights==null)return edges;
+		CompactGraph weighted = weights.getGraph();
+		int[] offsets = weighted.getOffsets();
+		int[] targets = weighted.getTargets();
+		for(int u=0;u<weighted.getNumberNodes();u++) {
+			for(int slot=offsets[u];slot<offsets[u+1];slot++) {
+				if(weights.isSet(slot) && weights.get(slot)==weight) {
+					//check if this edge still exists
+					String src = weighted.getLabel(u);
+					String trgt = weighted.getLabel(targets[slot]);
+					if(adjacency().get(src)!=null && adjacency().get(trgt)!=null && adjacency().get(src).contains((T)trgt)) {
+						edges.add(src+","+trgt);
+					}
 				}
 			}
 		}
@@ -295,12 +580,20 @@ public class Graph<T> implements Cloneable{
 	
 	public double getOutWeight(T node, boolean forceRecalculate) {
 		if(!forceRecalculate)return outWeights.get(node);
-		ArrayList<T> successors = getSuccessors(node);
-		double sumWeights = 0;
-		for(T s:successors) {
-			sumWeights += getWeight(node.toString(), s.toString());
-		}
-		return sumWeights;
+		CompactGraph compact = getCompactGraph();
+		int id = compact.getId(node.toString());
+		if(id<0)return 0;
+		return getOutWeight(id);
+	}
+	
+	/**
+	 * sums the weights of the visible edges of a node, v1.11.17102026. The weights are added in the order of the successor list,
+	 * see {@link EdgeWeights#sum(int)}, so that ties between out-weights are decided on the same values as summing the list.
+	 * @param id dense id of the node in {@link #getCompactGraph()}
+	 * @return
+	 */
+	public double getOutWeight(int id) {
+		return getEdgeWeights().sum(id);
 	}
 	
 	public double getOutWeight(T node) {
@@ -314,36 +607,91 @@ public class Graph<T> implements Cloneable{
 		return outWeights;
 	}
 	
+	/**
+	 * added in v1.13.17102026, the values of {@link #getOutWeights()} without boxing.
+	 * <b>don't modify the returned array because this function returns the same reference in the graph.</b>
+	 * @return the out-weight of each dense id of {@link #getCompactGraph()}, or null if the graph changed since they were computed
+	 */
+	public double[] getOutWeightValues() {
+		return outWeightGraph==getCompactGraph()?outWeightValues:null;
+	}
+	
 	/**
 	 * works only if flag_sortWeights is set to true
 	 * @return
 	 */
 	public double getMinOutWeight() {
-		return sortedOutWeights.get(0);
+		return sortedOutWeights.getMin();
 	}
 	
 	/**
 	 * works only if flag_sortWeights is set to true
-	 * @return
+	 * @return a new list of the distinct out-weights, see {@link #getOutWeightStatistics()} to query them without boxing
 	 */
 	public ArrayList<Double> getSortedOutWeights(){
-		return sortedOutWeights;
+		return sortedOutWeights.toList();
 	}
 	
 	/**
 	 * works only if flag_sortWeights is set to true
-	 * @return
+	 * @return a new list of the distinct edge weights, see {@link #getWeightStatistics()} to query them without boxing
 	 */
 	public ArrayList<Double> getSortedWeights(){
+		return sortedWeights.toList();
+	}
+	
+	/**
+	 * added in v1.12.17102026, works only if flag_sortWeights is set to true
+	 * @return sorted distinct out-weights
+	 */
+	public WeightStatistics getOutWeightStatistics() {
+		return sortedOutWeights;
+	}
+	
+	/**
+	 * added in v1.12.17102026, works only if flag_sortWeights is set to true
+	 * @return sorted distinct edge weights
+	 */
+	public WeightStatistics getWeightStatistics() {
 		return sortedWeights;
 	}
 	
+	/**
+	 * added in v1.12.17102026, when enabled the distinct weights and out-weights are sorted each time weights are set, and right
+	 * away if weights are already set
+	 * @param sortWeights
+	 */
+	public void setSortWeights(boolean sortWeights) {
+		flag_sortWeights = sortWeights;
+		if(!sortWeights || weights==null)return;
+		double[] values = new double[outWeights.size()];
+		int k = 0;
+		for(double outWeight:outWeights.values()) {
+			values[k++] = outWeight;
+		}
+		sortedOutWeights = WeightStatistics.of(values, true);
+		sortedWeights = WeightStatistics.of(weights.getValues(), true);
+	}
+	
 	public void setWeights(HashMap<String, Double> weights){
 		setWeights(weights,true);
 	}
-			
+	
 	public void setWeights(HashMap<String, Double> weights,boolean recalculateOutWeights) {
+		setWeights(EdgeWeights.fromMap(getCompactGraph(), weights, 1.0), recalculateOutWeights);
+		//the map may have keys of edges that are not in the graph, it is returned as is by getWeights()
+		this.weightsView = weights;
+	}
+	
+	public void setWeights(EdgeWeights weights){
+		setWeights(weights,true);
+	}
+	
+	@SuppressWarnings("unchecked")
+	public void setWeights(EdgeWeights weights,boolean recalculateOutWeights) {
 		this.weights = weights;
+		this.alignedWeights = null;
+		this.weightsView = null;
 		
 		if(!recalculateOutWeights){
 			return;
@@ -351,51 +699,21 @@ public class Graph<T> implements Cloneable{
 		
 		//recalculate out weights
 		outWeights.clear();
-		sortedOutWeights.clear();
+		sortedOutWeights = WeightStatistics.EMPTY;
 		
-		//sort outWeights
-		ArrayList<T> nodes = getAllNodes();
-		for(T node:nodes) {
-			double outWeight = getOutWeight(node, true);
-			outWeights.put(node, outWeight);
-			
-			if(flag_sortWeights) {
-				//add this new out weight to the set of sorted out weights
-				if(sortedOutWeights.size()==0 || outWeight<sortedOutWeights.get(0)) {
-					sortedOutWeights.add(0,outWeight);
-				}else if(outWeight>sortedOutWeights.get(sortedOutWeights.size()-1)) {
-					sortedOutWeights.add(sortedOutWeights.size(), outWeight);
-				}else {
-					for(int i=0;i<sortedOutWeights.size()-1;i++) {
-						if(outWeight>sortedOutWeights.get(i) && outWeight<sortedOutWeights.get(i+1)) {
-							sortedOutWeights.add(i+1,outWeight);
-							break;
-						}else if(outWeight==sortedOutWeights.get(i) || outWeight==sortedOutWeights.get(i+1)) {
-							break;
-						}
-					}
-				}
-			}
+		CompactGraph compact = getCompactGraph();
+		double[] values = new double[compact.getNumberNodes()];
+		for(int id=0;id<compact.getNumberNodes();id++) {
+			T node = (T)compact.getLabel(id);
+			values[id] = getOutWeight(id);
+			outWeights.put(node, values[id]);
 		}
+		outWeightValues = values;
+		outWeightGraph = compact;
 		if(flag_sortWeights) {
-			//sort weights
-			sortedWeights.clear();
-			for(Double weight:weights.values()) {
-				if(sortedWeights.size()==0 || weight<sortedWeights.get(0)) {
-					sortedWeights.add(0,weight);
-				}else if(weight>sortedWeights.get(sortedWeights.size()-1)) {
-					sortedWeights.add(sortedWeights.size(), weight);
-				}else {
-					for(int i=0;i<sortedWeights.size()-1;i++) {
-						if(weight>sortedWeights.get(i) && weight<sortedWeights.get(i+1)) {
-							sortedWeights.add(i+1,weight);
-							break;
-						}else if(weight==sortedWeights.get(i) || weight==sortedWeights.get(i+1)) {
-							break;
-						}
-					}
-				}
-			}
+			//sort the distinct out weights and weights, O(n log n) since v1.12.17102026
+			sortedOutWeights = WeightStatistics.of(values, true);
+			sortedWeights = WeightStatistics.of(weights.getValues(), true);
 		}
 	}
 	
@@ -407,7 +725,7 @@ public class Graph<T> implements Cloneable{
 		ArrayList<T> toBeRemoved = new ArrayList<>();
 		for(T id:ids) {
 			int internalEdges=0;
-			ArrayList<T> successors = graph.get(id);
+			ArrayList<T> successors = adjacency().get(id);
 			int totalEdges = successors.size();
 			for(T s:successors) {
 				if(ids.contains(s))internalEdges++;
@@ -429,7 +747,7 @@ public class Graph<T> implements Cloneable{
 		ArrayList<T> toBeRemoved = new ArrayList<>();
 		for(T id:ids) {
 			int internalEdges=0;
-			ArrayList<T> successors = graph.get(id);
+			ArrayList<T> successors = adjacency().get(id);
 			if(successors==null)successors=new ArrayList<>();
 			int totalEdges = successors.size();
 			for(T s:successors) {
@@ -454,7 +772,7 @@ public class Graph<T> implements Cloneable{
 			//count internal edges
 			boolean hasRelationWithPrev=false;
 			int internalEdges=0;
-			ArrayList<T> successors = graph.get(id);
+			ArrayList<T> successors = adjacency().get(id);
 			int totalEdges = successors.size();
 			for(T s:successors) {
 				if(ids.contains(s))internalEdges++;
@@ -486,66 +804,27 @@ public class Graph<T> implements Cloneable{
 	 * @return
 	 */
 	public static Graph<String> loadFromFile(String fileName, boolean directed, boolean loadWeights){
-		Graph<String> inst = new Graph<>();
-		inst.sourceFile = fileName;
-		inst.directed = directed;
-		HashMap<String, Double> weights = new HashMap<>();
-		int weightIndex=2;
-		//System.out.println("loading graph from file "+fileName);
+		return loadFromFile(fileName, directed, loadWeights, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * loads the graph with {@link EdgeListLoader}, which maps the file and parses it in parallel (v1.12.17102026)
+	 * @param fileName
+	 * @param directed
+	 * @param loadWeights
+	 * @param threads number of worker threads
+	 * @return the loaded graph, or an empty graph if the file can't be read
+	 */
+	public static Graph<String> loadFromFile(String fileName, boolean directed, boolean loadWeights, int threads){
 		try {
-			Scanner scanner = new Scanner(new FileReader(fileName));
-			while(scanner.hasNext()){
-				String rawLine = scanner.nextLine();
-				if(rawLine.startsWith("#") || !rawLine.contains("\t") || rawLine.startsWith("Id") || rawLine.startsWith("Source")) {
-					rawLine=rawLine.toLowerCase();
-					if(rawLine.contains("weight")){
-						String[] line = rawLine.split("\t");
-						ArrayList<String> headerList = new ArrayList<String>(Arrays.asList(line));
-						weightIndex = headerList.indexOf("weight");
-					}
-					continue;
-				}
-				String[] line = rawLine.split("\t");
-				try{
-					String srcId = line[0];
-					String trgtId = line[1];
-					
-					if(srcId.equals(trgtId))continue;
-					
-					/* Add edge here */
-					if(inst.graph.containsKey(srcId)){
-						if(!inst.graph.get(srcId).contains(trgtId)) {
-							inst.graph.get(srcId).add(trgtId);
-						}
-					}else{
-						ArrayList<String> targets = new ArrayList<>();
-						targets.add(trgtId);
-						inst.graph.put(srcId, targets);
-					}
-					if(loadWeights)weights.put(srcId+","+trgtId, Double.parseDouble(line[weightIndex]));
-					if(!directed) {
-						//add the same edge in the other direction i.e. from trgtId -> srcId
-						if(inst.graph.containsKey(trgtId)){
-							if(!inst.graph.get(trgtId).contains(srcId)) {
-								inst.graph.get(trgtId).add(srcId);
-							}
-						}else{
-							ArrayList<String> targets = new ArrayList<>();
-							targets.add(srcId);
-							inst.graph.put(trgtId, targets);
-						}
-						if(loadWeights)weights.put(trgtId+","+srcId, Double.parseDouble(line[weightIndex]));
-					}
-				}catch (NumberFormatException e){
-					System.out.println("error parsing one of the elements of '"+rawLine+"'");
-				}
-			}
-			scanner.close();
-		} catch (FileNotFoundException e) {
+			return EdgeListLoader.load(fileName, directed, loadWeights, threads);
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		
-		inst.setWeights(weights);
+		Graph<String> inst = new Graph<>();
+		inst.sourceFile = fileName;
+		inst.directed = directed;
+		inst.setWeights(new HashMap<>());
 		return inst;
 	}
 	
@@ -557,10 +836,10 @@ public class Graph<T> implements Cloneable{
 	public void write(Writer writer, boolean writeHidden){
 		try {
 			writer.write("Source\tTarget\tEdgeWeight\n");
-			for(T s:graph.keySet()){
-				if(!writeHidden && hiddenNodes.contains(s))continue;
-				for(T t:graph.get(s)){
-					if(!writeHidden && hiddenNodes.contains(t))continue;
+			for(T s:adjacency().keySet()){
+				if(!writeHidden && isHidden(s))continue;
+				for(T t:adjacency().get(s)){
+					if(!writeHidden && isHidden(t))continue;
 					writer.write(s.toString()+"\t"+t.toString()+"\t"+getWeight(s.toString(),t.toString())+"\n");
 				}
 			}
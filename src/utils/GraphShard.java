@@ -0,0 +1,419 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The part of a graph given to one process of a partitioned run. The nodes are cut in ranges of consecutive ids, shard s owns
+ * the nodes [bounds[s], bounds[s+1]); it holds the sorted neighbours of its nodes, and a halo: the ghosts, neighbours owned by
+ * other shards, with their own neighbours. This is enough to compute the overlap of every edge of an owned node without
+ * reading other shards. All node ids are the global ids of the whole graph.
+ * <p>
+ * The shards are written by {@link #split(ExternalGraph, int, File, long)} from an {@link ExternalGraph}, one little endian file per
+ * shard: a header, the bounds, the ghosts, the owned CSR with the orders of its slots, the ghost CSR, the hash codes of the labels
+ * of the ghosts and the labels of the owned nodes. The orders and hash codes give the file order of the edges and the listing
+ * order of the nodes, see {@link ExternalGraph.Block#getOrders()} and {@link NodeOrder}.
+ * @version 1.1.17102026
+ */
+public final class GraphShard {
+
+	public static final int MAGIC = 0x48584543;//"CEXH" read as a little endian int
+	public static final int VERSION = 2;
+	private static final int HEADER_SIZE = 64;
+
+	private final int shard;
+	private final int numberNodes;
+	private final int[] bounds;
+	private final int[] ghosts;
+	private final int[] offsets;
+	private final int[] targets;
+	private final int[] orders;
+	private final int[] ghostOffsets;
+	private final int[] ghostTargets;
+	private final int[] ghostHashes;
+	private final String[] labels;
+
+	private GraphShard(int shard, int numberNodes, int[] bounds, int[] ghosts, int[] offsets, int[] targets, int[] orders,
+			int[] ghostOffsets, int[] ghostTargets, int[] ghostHashes, String[] labels) {
+		this.shard = shard;
+		this.numberNodes = numberNodes;
+		this.bounds = bounds;
+		this.ghosts = ghosts;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.orders = orders;
+		this.ghostOffsets = ghostOffsets;
+		this.ghostTargets = ghostTargets;
+		this.ghostHashes = ghostHashes;
+		this.labels = labels;
+	}
+
+	/**
+	 * @param folder
+	 * @param shard
+	 * @return the file of the given shard in folder
+	 */
+	public static File file(File folder, int shard) {
+		return new File(folder, "shard-"+shard+".bin");
+	}
+
+	/**
+	 * cuts the nodes of the graph in ranges of about the same number of nodes plus slots, and writes the file of each shard
+	 * @param graph
+	 * @param shards number of shards
+	 * @param folder where the files are written
+	 * @param blockSlots slots read from the graph at once
+	 * @return the bounds of the shards, shard s owns [bounds[s], bounds[s+1])
+	 * @throws IOException
+	 */
+	public static int[] split(ExternalGraph graph, int shards, File folder, long blockSlots) throws IOException {
+		int n = graph.getNumberNodes();
+		long[] prefix = graph.getOffsets();
+		long total = prefix[n]+n;
+		int[] bounds = new int[shards+1];
+		for(int s=1;s<shards;s++) {
+			//first node whose slots and nodes before it reach s/shards of the total
+			long goal = total*s/shards;
+			int low = bounds[s-1];
+			int high = n;
+			while(low<high) {
+				int middle = (low+high)>>>1;
+				if(prefix[middle]+middle<goal)low = middle+1;
+				else high = middle;
+			}
+			bounds[s] = low;
+		}
+		bounds[shards] = n;
+		if(!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory())throw new IOException("unable to create "+folder);
+		int[] stamps = new int[n];
+		for(int s=0;s<shards;s++) {
+			write(graph, s, bounds, stamps, file(folder, s), blockSlots);
+		}
+		return bounds;
+	}
+
+	private static void write(ExternalGraph graph, int shard, int[] bounds, int[] stamps, File file, long blockSlots) throws IOException {
+		int from = bounds[shard];
+		int to = bounds[shard+1];
+		long[] prefix = graph.getOffsets();
+		if(prefix[to]-prefix[from]>Integer.MAX_VALUE)throw new IOException("shard "+shard+" has too many edges, use more shards");
+		//the ghosts: neighbours outside the range
+		int[] ghosts = new int[16];
+		int numberGhosts = 0;
+		ExternalGraph.Block block = null;
+		for(int start=from;start<to;) {
+			int end = end(prefix, start, to, blockSlots);
+			block = graph.read(start, end, false, block);
+			int[] neighbours = block.getTargets();
+			for(int slot=0;slot<block.size();slot++) {
+				int v = neighbours[slot];
+				if((v>=from && v<to) || stamps[v]==shard+1)continue;
+				stamps[v] = shard+1;
+				if(numberGhosts==ghosts.length)ghosts = Arrays.copyOf(ghosts, numberGhosts*2);
+				ghosts[numberGhosts++] = v;
+			}
+			start = end;
+		}
+		ghosts = Arrays.copyOf(ghosts, numberGhosts);
+		Arrays.sort(ghosts);
+		long ghostSlots = 0;
+		for(int v:ghosts) {
+			ghostSlots += graph.getDegree(v);
+		}
+		if(ghostSlots>Integer.MAX_VALUE)throw new IOException("the ghosts of shard "+shard+" have too many edges, use more shards");
+
+		byte[][] names = new byte[to-from][];
+		int[] labelOffsets = new int[to-from+1];
+		long labelBytes = 0;
+		for(int u=from;u<to;u++) {
+			names[u-from] = graph.getLabel(u).getBytes(StandardCharsets.UTF_8);
+			labelBytes += names[u-from].length;
+			if(labelBytes>Integer.MAX_VALUE)throw new IOException("labels of shard "+shard+" are too long, use more shards");
+			labelOffsets[u-from+1] = (int)labelBytes;
+		}
+
+		try(RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+			output.setLength(0);
+			ChannelOutput out = new ChannelOutput(output.getChannel());
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putInt(shard);
+			out.putInt(bounds.length-1);
+			out.putInt(graph.getNumberNodes());
+			out.putInt(numberGhosts);
+			out.putLong(prefix[to]-prefix[from]);
+			out.putLong(ghostSlots);
+			out.putLong(labelBytes);
+			out.align(HEADER_SIZE);
+
+			out.putInts(bounds);
+			out.putInts(ghosts);
+			for(int u=from;u<=to;u++) {
+				out.putInt((int)(prefix[u]-prefix[from]));
+			}
+			for(int start=from;start<to;) {
+				int end = end(prefix, start, to, blockSlots);
+				block = graph.read(start, end, false, block);
+				out.putInts(block.getTargets(), 0, block.size());
+				start = end;
+			}
+			for(int start=from;start<to;) {
+				int end = end(prefix, start, to, blockSlots);
+				block = graph.read(start, end, false, true, block);
+				out.putInts(block.getOrders(), 0, block.size());
+				start = end;
+			}
+			long slots = 0;
+			out.putInt(0);
+			for(int v:ghosts) {
+				slots += graph.getDegree(v);
+				out.putInt((int)slots);
+			}
+			for(int start=0;start<numberGhosts;) {
+				int end = graph.run(ghosts, start, numberGhosts, blockSlots);
+				block = graph.read(ghosts[start], ghosts[end-1]+1, false, block);
+				for(int k=start;k<end;k++) {
+					int first = block.start(ghosts[k]);
+					out.putInts(block.getTargets(), first, block.end(ghosts[k])-first);
+				}
+				start = end;
+			}
+			for(int v:ghosts) {
+				out.putInt(graph.getLabel(v).hashCode());
+			}
+			out.putInts(labelOffsets);
+			for(byte[] name:names) {
+				out.putBytes(name);
+			}
+			out.flush();
+		}
+	}
+
+	/**
+	 * @return the end of the run of nodes from start, before end, whose slots fit in the given capacity
+	 */
+	private static int end(long[] prefix, int start, int end, long capacity) {
+		int k = start+1;
+		while(k<end && prefix[k+1]-prefix[start]<=capacity)k++;
+		return k;
+	}
+
+	/**
+	 * reads a shard file
+	 * @param file
+	 * @return
+	 * @throws IOException if the file is not a shard or is truncated
+	 */
+	public static GraphShard load(File file) throws IOException {
+		return read(file, true);
+	}
+
+	/**
+	 * @param file
+	 * @return the labels of the nodes owned by the shard of the given file, without reading its edges
+	 * @throws IOException
+	 */
+	public static String[] loadLabels(File file) throws IOException {
+		return read(file, false).labels;
+	}
+
+	private static GraphShard read(File file, boolean withEdges) throws IOException {
+		try(RandomAccessFile input = new RandomAccessFile(file, "r"); FileChannel channel = input.getChannel()) {
+			if(channel.size()<HEADER_SIZE)throw new IOException(file+" is not a graph shard");
+			MappedByteBuffer header = GraphSnapshot.map(channel, 0, HEADER_SIZE);
+			if(header.getInt()!=MAGIC)throw new IOException(file+" is not a graph shard");
+			int version = header.getInt();
+			if(version!=VERSION)throw new IOException("unsupported shard version "+version+" in "+file);
+			int shard = header.getInt();
+			int shards = header.getInt();
+			int n = header.getInt();
+			int numberGhosts = header.getInt();
+			long slots = header.getLong();
+			long ghostSlots = header.getLong();
+			long labelBytes = header.getLong();
+			if(shards<1 || shard<0 || shard>=shards || n<0 || numberGhosts<0 || slots<0 || slots>Integer.MAX_VALUE || ghostSlots<0
+					|| ghostSlots>Integer.MAX_VALUE || labelBytes<0 || labelBytes>Integer.MAX_VALUE)
+				throw new IOException("corrupted shard header in "+file);
+
+			long position = HEADER_SIZE;
+			int[] bounds = new int[shards+1];
+			position = GraphSnapshot.readInts(channel, position, bounds);
+			int owned = bounds[shard+1]-bounds[shard];
+			long labelsPosition = position+4L*numberGhosts+4L*(owned+1)+8L*slots+4L*(numberGhosts+1)+4L*ghostSlots+4L*numberGhosts;
+			if(channel.size()<labelsPosition+4L*(owned+1)+labelBytes)throw new IOException(file+" is truncated");
+
+			int[] ghosts = null;
+			int[] offsets = null;
+			int[] targets = null;
+			int[] orders = null;
+			int[] ghostOffsets = null;
+			int[] ghostTargets = null;
+			int[] ghostHashes = null;
+			if(withEdges) {
+				ghosts = new int[numberGhosts];
+				position = GraphSnapshot.readInts(channel, position, ghosts);
+				offsets = new int[owned+1];
+				position = GraphSnapshot.readInts(channel, position, offsets);
+				targets = new int[(int)slots];
+				position = GraphSnapshot.readInts(channel, position, targets);
+				orders = new int[(int)slots];
+				position = GraphSnapshot.readInts(channel, position, orders);
+				ghostOffsets = new int[numberGhosts+1];
+				position = GraphSnapshot.readInts(channel, position, ghostOffsets);
+				ghostTargets = new int[(int)ghostSlots];
+				position = GraphSnapshot.readInts(channel, position, ghostTargets);
+				ghostHashes = new int[numberGhosts];
+				position = GraphSnapshot.readInts(channel, position, ghostHashes);
+			}
+			int[] labelOffsets = new int[owned+1];
+			position = GraphSnapshot.readInts(channel, labelsPosition, labelOffsets);
+			byte[] bytes = new byte[(int)labelBytes];
+			GraphSnapshot.readBytes(channel, position, bytes);
+			String[] labels = new String[owned];
+			for(int u=0;u<owned;u++) {
+				labels[u] = new String(bytes, labelOffsets[u], labelOffsets[u+1]-labelOffsets[u], StandardCharsets.UTF_8);
+			}
+			return new GraphShard(shard, n, bounds, ghosts, offsets, targets, orders, ghostOffsets, ghostTargets, ghostHashes, labels);
+		}
+	}
+
+	public int getShard() {
+		return shard;
+	}
+
+	public int getNumberShards() {
+		return bounds.length-1;
+	}
+
+	/**
+	 * @return the number of nodes of the whole graph
+	 */
+	public int getNumberNodes() {
+		return numberNodes;
+	}
+
+	/**
+	 * @return the first node owned by this shard
+	 */
+	public int getFrom() {
+		return bounds[shard];
+	}
+
+	/**
+	 * @return the end of the nodes owned by this shard
+	 */
+	public int getTo() {
+		return bounds[shard+1];
+	}
+
+	/**
+	 * @param shard
+	 * @return the first node owned by the given shard, the last shard ends at {@link #getNumberNodes()}
+	 */
+	public int getFrom(int shard) {
+		return bounds[shard];
+	}
+
+	/**
+	 * @param node
+	 * @return the shard owning the given node
+	 */
+	public int getOwner(int node) {
+		int s = Arrays.binarySearch(bounds, node);
+		//empty shards share their bound with the next one
+		if(s>=0) {
+			while(s+1<bounds.length-1 && bounds[s+1]==node)s++;
+			return s;
+		}
+		return -s-2;
+	}
+
+	/**
+	 * <b>don't modify the returned array because this function returns the same reference in the shard.</b>
+	 * @return the ghosts, sorted
+	 */
+	public int[] getGhosts() {
+		return ghosts;
+	}
+
+	/**
+	 * <b>don't modify the returned array because this function returns the same reference in the shard.</b>
+	 * @return offsets of the slots of each owned node, node getFrom()+k has the slots [offsets[k], offsets[k+1])
+	 */
+	public int[] getOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * <b>don't modify the returned array because this function returns the same reference in the shard.</b>
+	 * @return the neighbours of the owned nodes, sorted for each node
+	 */
+	public int[] getTargets() {
+		return targets;
+	}
+
+	/**
+	 * <b>don't modify the returned array because this function returns the same reference in the shard.</b>
+	 * @return the order of the edge of each slot of the owned nodes, its position in the edge list, unsigned
+	 */
+	public int[] getOrders() {
+		return orders;
+	}
+
+	/**
+	 * @param k local id of an owned node, node getFrom()+k
+	 * @param scratch reused if long enough, or null
+	 * @return its slots by increasing order, i.e. its neighbours in file order
+	 */
+	public int[] slotsInOrder(int k, int[] scratch) {
+		int start = offsets[k];
+		int degree = offsets[k+1]-start;
+		int[] slots = scratch!=null && scratch.length>=degree?scratch:new int[degree];
+		long[] keys = new long[degree];
+		for(int i=0;i<degree;i++) {
+			keys[i] = ((orders[start+i]&0xffffffffL)<<32)|i;
+		}
+		Arrays.sort(keys);
+		for(int i=0;i<degree;i++) {
+			slots[i] = start+(int)keys[i];
+		}
+		return slots;
+	}
+
+	/**
+	 * <b>don't modify the returned array because this function returns the same reference in the shard.</b>
+	 * @return offsets of the slots of each ghost, in the order of {@link #getGhosts()}
+	 */
+	public int[] getGhostOffsets() {
+		return ghostOffsets;
+	}
+
+	/**
+	 * <b>don't modify the returned array because this function returns the same reference in the shard.</b>
+	 * @return the neighbours of the ghosts, sorted for each ghost
+	 */
+	public int[] getGhostTargets() {
+		return ghostTargets;
+	}
+
+	/**
+	 * <b>don't modify the returned array because this function returns the same reference in the shard.</b>
+	 * @return the hash code of the label of each ghost, in the order of {@link #getGhosts()}
+	 */
+	public int[] getGhostHashes() {
+		return ghostHashes;
+	}
+
+	/**
+	 * @param node an owned node
+	 * @return its label
+	 */
+	public String getLabel(int node) {
+		return labels[node-bounds[shard]];
+	}
+}
@@ -0,0 +1,264 @@
+package utils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Versioned binary snapshot of a {@link CompactGraph}, optionally with the overlap weights of its edges and the out-weights of its
+ * nodes, so that repeated runs on the same network skip parsing and overlap calculation. All values are little endian and every
+ * section starts on an 8 byte boundary:
+ * <pre>
+ * header      magic "CEXS", version, flags, n, slots, number of edge ids, label bytes (long), padded to 64 bytes
+ * labels      int[n+1] byte offsets, then the UTF-8 bytes of all labels
+ * offsets     int[n+1]
+ * targets     int[slots]
+ * edge ids    int[slots]
+ * weights     double[number of edge ids], if FLAG_WEIGHTS
+ * out-weights double[n], if FLAG_OUT_WEIGHTS
+ * </pre>
+ * The loader maps the file read only, section by section, and moves each section into its array with one bulk copy, nothing
+ * is parsed and the edge ids are not numbered again.
+ * @version 1.0.17102026
+ */
+public final class GraphSnapshot {
+
+	public static final int MAGIC = 0x53584543;//"CEXS" read as a little endian int
+	public static final int VERSION = 1;
+	public static final int FLAG_DIRECTED = 1;
+	public static final int FLAG_WEIGHTS = 2;
+	public static final int FLAG_OUT_WEIGHTS = 4;
+	private static final int HEADER_SIZE = 64;
+	/**
+	 * largest region mapped at once, a multiple of 8
+	 */
+	private static final long WINDOW = 1L<<28;
+
+	private final Graph<String> graph;
+	private final EdgeWeights weights;
+
+	private GraphSnapshot(Graph<String> graph, EdgeWeights weights) {
+		this.graph = graph;
+		this.weights = weights;
+	}
+
+	/**
+	 * @return the loaded graph, its weights and out-weights are already set when the snapshot contains them
+	 */
+	public Graph<String> getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return the overlap weights stored in the snapshot, or null if it has none
+	 */
+	public EdgeWeights getWeights() {
+		return weights;
+	}
+
+	/**
+	 * @param fileName
+	 * @return true if the given file starts with the snapshot magic number
+	 */
+	public static boolean isSnapshot(String fileName) {
+		try(RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+			if(file.length()<HEADER_SIZE)return false;
+			return Integer.reverseBytes(file.readInt())==MAGIC;
+		}catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * writes the visible part of the given graph with the given weights and the out-weights currently set on the graph
+	 * @param fileName
+	 * @param graph
+	 * @param weights weights aligned with {@link Graph#getCompactGraph()}, or null to store the structure only
+	 * @throws IOException
+	 */
+	public static void write(String fileName, Graph<String> graph, EdgeWeights weights) throws IOException {
+		CompactGraph compact = graph.getCompactGraph();
+		double[] outWeights = null;
+		if(weights!=null) {
+			outWeights = new double[compact.getNumberNodes()];
+			for(int id=0;id<outWeights.length;id++) {
+				Double outWeight = graph.outWeights.get(compact.getLabel(id));
+				if(outWeight==null) {
+					outWeights = null;
+					break;
+				}
+				outWeights[id] = outWeight;
+			}
+		}
+		write(fileName, compact, weights, outWeights, graph.directed);
+	}
+
+	/**
+	 * @param fileName
+	 * @param compact
+	 * @param weights weights aligned with compact, or null
+	 * @param outWeights out-weight of each node id, or null
+	 * @param directed
+	 * @throws IOException
+	 */
+	public static void write(String fileName, CompactGraph compact, EdgeWeights weights, double[] outWeights, boolean directed)
+			throws IOException {
+		if(weights!=null && weights.getGraph()!=compact)throw new IllegalArgumentException("weights don't belong to the graph");
+		int n = compact.getNumberNodes();
+		if(outWeights!=null && outWeights.length!=n)throw new IllegalArgumentException("out-weights don't match the nodes");
+
+		byte[][] labels = new byte[n][];
+		int[] labelOffsets = new int[n+1];
+		long labelBytes = 0;
+		for(int id=0;id<n;id++) {
+			labels[id] = compact.getLabel(id).getBytes(StandardCharsets.UTF_8);
+			labelBytes += labels[id].length;
+			if(labelBytes>Integer.MAX_VALUE)throw new IOException("labels are too long to be stored in a snapshot");
+			labelOffsets[id+1] = (int)labelBytes;
+		}
+		int flags = (directed?FLAG_DIRECTED:0) | (weights!=null?FLAG_WEIGHTS:0) | (outWeights!=null?FLAG_OUT_WEIGHTS:0);
+
+		try(RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+			file.setLength(0);
+			ChannelOutput out = new ChannelOutput(file.getChannel());
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putInt(flags);
+			out.putInt(n);
+			out.putInt(compact.getNumberSlots());
+			out.putInt(compact.getNumberEdgeIds());
+			out.putLong(labelBytes);
+			out.align(HEADER_SIZE);
+
+			out.putInts(labelOffsets);
+			for(byte[] label:labels) {
+				out.putBytes(label);
+			}
+			out.align(8);
+			out.putInts(compact.getOffsets());
+			out.putInts(compact.getTargets());
+			out.putInts(compact.getEdgeIds());
+			out.align(8);
+			if(weights!=null)out.putDoubles(weights.getValues());
+			if(outWeights!=null)out.putDoubles(outWeights);
+			out.flush();
+		}
+	}
+
+	/**
+	 * maps the given snapshot and rebuilds the graph, the weights and out-weights are set on the graph as
+	 * {@link networkanalysis.NeighborhoodOverlap#calculateWeights(Graph, int)} would set them
+	 * @param fileName
+	 * @return
+	 * @throws IOException if the file is not a snapshot of a supported version or is truncated
+	 */
+	public static GraphSnapshot load(String fileName) throws IOException {
+		try(RandomAccessFile file = new RandomAccessFile(fileName, "r"); FileChannel channel = file.getChannel()) {
+			if(channel.size()<HEADER_SIZE)throw new IOException(fileName+" is not a graph snapshot");
+			MappedByteBuffer header = map(channel, 0, HEADER_SIZE);
+			if(header.getInt()!=MAGIC)throw new IOException(fileName+" is not a graph snapshot");
+			int version = header.getInt();
+			if(version!=VERSION)throw new IOException("unsupported snapshot version "+version+" in "+fileName);
+			int flags = header.getInt();
+			int n = header.getInt();
+			int slots = header.getInt();
+			int numberEdgeIds = header.getInt();
+			long labelBytes = header.getLong();
+			if(n<0 || slots<0 || numberEdgeIds<0 || labelBytes<0 || labelBytes>Integer.MAX_VALUE)
+				throw new IOException("corrupted snapshot header in "+fileName);
+
+			long position = HEADER_SIZE;
+			long expected = align(align(position+4L*(n+1)+labelBytes)+4L*(n+1)+8L*slots);
+			if((flags&FLAG_WEIGHTS)!=0)expected += 8L*numberEdgeIds;
+			if((flags&FLAG_OUT_WEIGHTS)!=0)expected += 8L*n;
+			if(channel.size()<expected)throw new IOException(fileName+" is truncated");
+
+			int[] labelOffsets = new int[n+1];
+			position = readInts(channel, position, labelOffsets);
+			byte[] bytes = new byte[(int)labelBytes];
+			position = readBytes(channel, position, bytes);
+			position = align(position);
+			String[] labels = new String[n];
+			for(int id=0;id<n;id++) {
+				labels[id] = new String(bytes, labelOffsets[id], labelOffsets[id+1]-labelOffsets[id], StandardCharsets.UTF_8);
+			}
+			bytes = null;
+
+			int[] offsets = new int[n+1];
+			position = readInts(channel, position, offsets);
+			int[] targets = new int[slots];
+			position = readInts(channel, position, targets);
+			int[] edgeIds = new int[slots];
+			position = readInts(channel, position, edgeIds);
+			position = align(position);
+			CompactGraph compact = new CompactGraph(labels, offsets, targets, edgeIds, numberEdgeIds);
+
+			Graph<String> graph = Graph.wrap(compact, (flags&FLAG_DIRECTED)!=0);
+			graph.sourceFile = fileName;
+			EdgeWeights weights = null;
+			if((flags&FLAG_WEIGHTS)!=0) {
+				double[] values = new double[numberEdgeIds];
+				position = readDoubles(channel, position, values);
+				weights = new EdgeWeights(compact, values);
+				if((flags&FLAG_OUT_WEIGHTS)!=0) {
+					double[] outWeights = new double[n];
+					position = readDoubles(channel, position, outWeights);
+					graph.setWeights(weights, false);
+					HashMap<String, Double> map = new HashMap<>(n*2);
+					for(int id=0;id<n;id++) {
+						map.put(labels[id], outWeights[id]);
+					}
+					graph.outWeights = map;
+				}else {
+					graph.setWeights(weights);
+				}
+				graph.setOptionalWeights(weights);
+			}
+			return new GraphSnapshot(graph, weights);
+		}
+	}
+
+	private static long align(long position) {
+		return (position+7)&~7L;
+	}
+
+	static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	static long readInts(FileChannel channel, long position, int[] values) throws IOException {
+		for(int from=0;from<values.length;) {
+			int count = (int)Math.min(values.length-from, WINDOW/4);
+			map(channel, position, 4L*count).asIntBuffer().get(values, from, count);
+			from += count;
+			position += 4L*count;
+		}
+		return position;
+	}
+
+	static long readDoubles(FileChannel channel, long position, double[] values) throws IOException {
+		for(int from=0;from<values.length;) {
+			int count = (int)Math.min(values.length-from, WINDOW/8);
+			map(channel, position, 8L*count).asDoubleBuffer().get(values, from, count);
+			from += count;
+			position += 8L*count;
+		}
+		return position;
+	}
+
+	static long readBytes(FileChannel channel, long position, byte[] values) throws IOException {
+		for(int from=0;from<values.length;) {
+			int count = (int)Math.min(values.length-from, WINDOW);
+			map(channel, position, count).get(values, from, count);
+			from += count;
+			position += count;
+		}
+		return position;
+	}
+}
@@ -0,0 +1,68 @@
+package utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder events of {@link Metrics}. This class is only loaded when jdk.jfr is available, the events cost nothing
+ * unless a recording enables them, for example with -XX:StartFlightRecording. jdk.jfr is not part of the Java 8 API, so Maven
+ * compiles this class apart, for the JDK running the build, and {@link Metrics} loads it by name.
+ * @version 1.1.17102026
+ */
+final class JfrEvents implements Metrics.Recorder {
+
+	JfrEvents() {
+	}
+
+	@Name("coreexpansion.Phase")
+	@Label("Core Expansion Phase")
+	@Category("Core Expansion")
+	@Description("a phase of a Core Expansion run")
+	static final class PhaseEvent extends Event {
+		@Label("Name")
+		String name;
+	}
+
+	@Name("coreexpansion.Sweep")
+	@Label("Core Expansion Sweep")
+	@Category("Core Expansion")
+	@Description("an addition iteration of Core Expansion")
+	static final class SweepEvent extends Event {
+		@Label("Phase")
+		@Description("0 for the addition with weights, 1 for the extra addition")
+		int phase;
+		@Label("Iteration")
+		int iteration;
+		@Label("Candidates")
+		long candidates;
+		@Label("Added")
+		long added;
+	}
+
+	@Override
+	public Object begin(Metrics.Phase phase) {
+		Event event = phase.isSweep()?new SweepEvent():new PhaseEvent();
+		if(!event.isEnabled())return null;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void commit(Metrics.Phase phase) {
+		if(phase.event instanceof SweepEvent) {
+			SweepEvent event = (SweepEvent)phase.event;
+			event.phase = phase.getSweepPhase();
+			event.iteration = phase.getIteration();
+			event.candidates = phase.getAttribute("candidates");
+			event.added = phase.getAttribute("added");
+			event.commit();
+		}else {
+			PhaseEvent event = (PhaseEvent)phase.event;
+			event.name = phase.getName();
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long keys to non-negative int values, without boxing.
+ * @version 1.0.17102026
+ */
+public class LongIntMap {
+
+	private long[] keys;
+	private int[] values;
+	private int size = 0;
+	private int mask;
+
+	public LongIntMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, expectedSize*2)-1)<<1;
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, -1);
+		mask = capacity-1;
+	}
+
+	private static int hash(long key) {
+		long h = key*0x9E3779B97F4A7C15L;
+		return (int)(h^(h>>>32));
+	}
+
+	/**
+	 * @param key
+	 * @return the value of the given key, or -1 if the map doesn't contain it
+	 */
+	public int get(long key) {
+		int i = hash(key)&mask;
+		while(values[i]!=-1) {
+			if(keys[i]==key)return values[i];
+			i = (i+1)&mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param key
+	 * @param value a non-negative value
+	 */
+	public void put(long key, int value) {
+		if(value<0)throw new IllegalArgumentException("values must be non-negative");
+		int i = hash(key)&mask;
+		while(values[i]!=-1) {
+			if(keys[i]==key) {
+				values[i] = value;
+				return;
+			}
+			i = (i+1)&mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if(++size*2>keys.length)resize();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private void resize() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[oldKeys.length*2];
+		values = new int[oldValues.length*2];
+		Arrays.fill(values, -1);
+		mask = keys.length-1;
+		size = 0;
+		for(int i=0;i<oldKeys.length;i++) {
+			if(oldValues[i]!=-1)put(oldKeys[i], oldValues[i]);
+		}
+	}
+}
@@ -0,0 +1,432 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process wide metrics of a run: nested phase timers measured with {@link System#nanoTime()}, counters and histograms, found by
+ * name like loggers. Phases are opened with try-with-resources in the thread driving the run and nest in the order they are
+ * opened, counters and histograms may be updated from any thread. When the JVM supports Flight Recorder, each phase and sweep is
+ * also emitted as a JFR event ("coreexpansion.Phase" and "coreexpansion.Sweep").
+ * <p>
+ * Counters are {@link LongAdder}s and histograms have power of two buckets, hot loops should count in a local variable and add
+ * it once per task. {@link #writeReport(String)} writes everything as JSON.
+ * @version 1.1.17102026
+ */
+public final class Metrics {
+
+	/**
+	 * when false, phases are not recorded and counters are not updated by the instrumented code
+	 */
+	public static volatile boolean enabled = true;
+	private static final Recorder JFR = jfrRecorder();
+
+	private static final ArrayList<Phase> roots = new ArrayList<>();
+	private static final ThreadLocal<ArrayDeque<Phase>> open = ThreadLocal.withInitial(ArrayDeque::new);
+	private static final LinkedHashMap<String, Counter> counters = new LinkedHashMap<>();
+	private static final LinkedHashMap<String, Histogram> histograms = new LinkedHashMap<>();
+	private static final LinkedHashMap<String, Object> info = new LinkedHashMap<>();
+
+	private Metrics() {
+	}
+
+	/**
+	 * @return the JFR events, loaded by name since they are compiled apart from the Java 8 API, null if jdk.jfr is missing
+	 */
+	private static Recorder jfrRecorder() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return (Recorder)Class.forName("utils.JfrEvents").getDeclaredConstructor().newInstance();
+		}catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * opens a phase, nested in the phase opened last by this thread
+	 * @param name
+	 * @return the phase, to close when it ends
+	 */
+	public static Phase phase(String name) {
+		return open(new Phase(name, -1, -1));
+	}
+
+	/**
+	 * opens an addition sweep, a phase with its own JFR event
+	 * @param phase 0 for the addition with weights, 1 for the extra addition
+	 * @param iteration
+	 * @return
+	 */
+	public static Phase sweep(int phase, int iteration) {
+		return open(new Phase("sweep", phase, iteration));
+	}
+
+	private static Phase open(Phase phase) {
+		if(!enabled)return phase;
+		ArrayDeque<Phase> stack = open.get();
+		Phase parent = stack.peek();
+		if(parent==null) {
+			synchronized (roots) {
+				roots.add(phase);
+			}
+		}else {
+			parent.children.add(phase);
+		}
+		stack.push(phase);
+		phase.recorded = true;
+		if(JFR!=null)phase.event = JFR.begin(phase);
+		phase.start = System.nanoTime();
+		return phase;
+	}
+
+	/**
+	 * @param name
+	 * @return the counter with this name, created on first use
+	 */
+	public static Counter counter(String name) {
+		synchronized (counters) {
+			Counter counter = counters.get(name);
+			if(counter==null) {
+				counter = new Counter();
+				counters.put(name, counter);
+			}
+			return counter;
+		}
+	}
+
+	/**
+	 * @param name
+	 * @return the histogram with this name, created on first use
+	 */
+	public static Histogram histogram(String name) {
+		synchronized (histograms) {
+			Histogram histogram = histograms.get(name);
+			if(histogram==null) {
+				histogram = new Histogram();
+				histograms.put(name, histogram);
+			}
+			return histogram;
+		}
+	}
+
+	/**
+	 * adds a description of the run to the report
+	 * @param key
+	 * @param value a string, a number or a boolean
+	 */
+	public static void info(String key, Object value) {
+		synchronized (info) {
+			info.put(key, value);
+		}
+	}
+
+	/**
+	 * forgets all phases, counters, histograms and information
+	 */
+	public static void reset() {
+		synchronized (roots) {
+			roots.clear();
+		}
+		open.get().clear();
+		synchronized (counters) {
+			counters.clear();
+		}
+		synchronized (histograms) {
+			histograms.clear();
+		}
+		synchronized (info) {
+			info.clear();
+		}
+	}
+
+	/**
+	 * records the degree of each node in the histogram "degree"
+	 * @param graph
+	 */
+	public static void recordDegrees(CompactGraph graph) {
+		if(!enabled)return;
+		Histogram histogram = histogram("degree");
+		long[] buckets = new long[Histogram.BUCKETS];
+		int[] offsets = graph.getOffsets();
+		long max = 0;
+		long min = Long.MAX_VALUE;
+		for(int u=0;u<graph.getNumberNodes();u++) {
+			int degree = offsets[u+1]-offsets[u];
+			buckets[Histogram.bucket(degree)]++;
+			max = Math.max(max, degree);
+			min = Math.min(min, degree);
+		}
+		histogram.merge(buckets, graph.getNumberSlots(), min, max);
+	}
+
+	/**
+	 * emits the events of the phases, see {@link JfrEvents}
+	 */
+	interface Recorder {
+
+		/**
+		 * @param phase
+		 * @return the started event of the phase, null if no recording wants it
+		 */
+		Object begin(Phase phase);
+
+		void commit(Phase phase);
+	}
+
+	/**
+	 * timer of a phase, closing it records its duration
+	 */
+	public static final class Phase implements AutoCloseable {
+
+		private final String name;
+		private final int sweepPhase;
+		private final int iteration;
+		private final ArrayList<Phase> children = new ArrayList<>(0);
+		private final LinkedHashMap<String, Long> attributes = new LinkedHashMap<>(4);
+		private boolean recorded = false;
+		private long start;
+		private long nanos = -1;
+		Object event;//JFR event, typed Object so that this class loads without jdk.jfr
+
+		private Phase(String name, int sweepPhase, int iteration) {
+			this.name = name;
+			this.sweepPhase = sweepPhase;
+			this.iteration = iteration;
+		}
+
+		/**
+		 * attaches a value to the phase, sweeps use "candidates" and "added"
+		 * @param key
+		 * @param value
+		 * @return this phase
+		 */
+		public Phase set(String key, long value) {
+			if(enabled)attributes.put(key, value);
+			return this;
+		}
+
+		@Override
+		public void close() {
+			if(nanos!=-1 || !recorded)return;
+			nanos = System.nanoTime()-start;
+			ArrayDeque<Phase> stack = open.get();
+			//phases left open inside this one are closed with it
+			while(!stack.isEmpty() && stack.pop()!=this);
+			if(event!=null)JFR.commit(this);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the duration in nanoseconds, -1 while the phase is open
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		int getSweepPhase() {
+			return sweepPhase;
+		}
+
+		int getIteration() {
+			return iteration;
+		}
+
+		boolean isSweep() {
+			return sweepPhase!=-1;
+		}
+
+		long getAttribute(String key) {
+			Long value = attributes.get(key);
+			return value==null?0:value;
+		}
+
+		private void write(Writer writer, String indent) throws IOException {
+			writer.write(indent+"{\"name\": \""+escape(name)+"\"");
+			if(isSweep())writer.write(", \"phase\": "+sweepPhase+", \"iteration\": "+iteration);
+			writer.write(", \"nanos\": "+nanos+", \"millis\": "+nanos/1e6);
+			for(Map.Entry<String, Long> attribute:attributes.entrySet()) {
+				writer.write(", \""+escape(attribute.getKey())+"\": "+attribute.getValue());
+			}
+			if(!children.isEmpty()) {
+				writer.write(", \"phases\": [\n");
+				writePhases(writer, children, indent+"\t");
+				writer.write(indent+"]");
+			}
+			writer.write("}");
+		}
+	}
+
+	/**
+	 * a sum that many threads can add to
+	 */
+	public static final class Counter {
+
+		private final LongAdder sum = new LongAdder();
+
+		private Counter() {
+		}
+
+		public void add(long value) {
+			if(enabled)sum.add(value);
+		}
+
+		public void increment() {
+			if(enabled)sum.increment();
+		}
+
+		public long get() {
+			return sum.sum();
+		}
+	}
+
+	/**
+	 * distribution of non negative values in power of two buckets: bucket 0 holds 0, bucket k holds [2^(k-1), 2^k)
+	 */
+	public static final class Histogram {
+
+		static final int BUCKETS = 64;
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private final AtomicLong sum = new AtomicLong();
+		private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+		private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+		private Histogram() {
+		}
+
+		static int bucket(long value) {
+			return value<=0?0:Math.min(BUCKETS-1, 64-Long.numberOfLeadingZeros(value));
+		}
+
+		public void record(long value) {
+			if(!enabled)return;
+			buckets.incrementAndGet(bucket(value));
+			sum.addAndGet(value);
+			min.accumulateAndGet(value, Math::min);
+			max.accumulateAndGet(value, Math::max);
+		}
+
+		private void merge(long[] counts, long total, long low, long high) {
+			for(int k=0;k<BUCKETS;k++) {
+				if(counts[k]>0)buckets.addAndGet(k, counts[k]);
+			}
+			sum.addAndGet(total);
+			min.accumulateAndGet(low, Math::min);
+			max.accumulateAndGet(high, Math::max);
+		}
+
+		public long getCount() {
+			long count = 0;
+			for(int k=0;k<BUCKETS;k++) {
+				count += buckets.get(k);
+			}
+			return count;
+		}
+
+		public long getSum() {
+			return sum.get();
+		}
+
+		public long getMin() {
+			return getCount()==0?0:min.get();
+		}
+
+		public long getMax() {
+			return getCount()==0?0:max.get();
+		}
+
+		public double getMean() {
+			long count = getCount();
+			return count==0?0:(double)getSum()/count;
+		}
+
+		private void write(Writer writer) throws IOException {
+			writer.write("{\"count\": "+getCount()+", \"sum\": "+getSum()+", \"min\": "+getMin()+", \"max\": "+getMax()
+					+", \"mean\": "+getMean()+", \"buckets\": [");
+			boolean first = true;
+			for(int k=0;k<BUCKETS;k++) {
+				long count = buckets.get(k);
+				if(count==0)continue;
+				if(!first)writer.write(", ");
+				first = false;
+				//upper bound of the bucket, inclusive
+				writer.write("{\"upTo\": "+(k==0?0:k==BUCKETS-1?Long.MAX_VALUE:(1L<<k)-1)+", \"count\": "+count+"}");
+			}
+			writer.write("]}");
+		}
+	}
+
+	/**
+	 * writes the phases, counters, histograms and run information as JSON
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void writeReport(String file) throws IOException {
+		try(BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+			writer.write("{\n\t\"run\": {");
+			synchronized (info) {
+				boolean first = true;
+				for(Map.Entry<String, Object> entry:info.entrySet()) {
+					writer.write((first?"":", ")+"\""+escape(entry.getKey())+"\": "+json(entry.getValue()));
+					first = false;
+				}
+			}
+			writer.write("},\n\t\"phases\": [\n");
+			synchronized (roots) {
+				writePhases(writer, roots, "\t\t");
+			}
+			writer.write("\t],\n\t\"counters\": {");
+			synchronized (counters) {
+				boolean first = true;
+				for(Map.Entry<String, Counter> entry:counters.entrySet()) {
+					writer.write((first?"\n":",\n")+"\t\t\""+escape(entry.getKey())+"\": "+entry.getValue().get());
+					first = false;
+				}
+			}
+			writer.write("\n\t},\n\t\"histograms\": {");
+			synchronized (histograms) {
+				boolean first = true;
+				for(Map.Entry<String, Histogram> entry:histograms.entrySet()) {
+					writer.write((first?"\n":",\n")+"\t\t\""+escape(entry.getKey())+"\": ");
+					entry.getValue().write(writer);
+					first = false;
+				}
+			}
+			writer.write("\n\t}\n}\n");
+		}
+	}
+
+	private static void writePhases(Writer writer, ArrayList<Phase> phases, String indent) throws IOException {
+		for(int k=0;k<phases.size();k++) {
+			phases.get(k).write(writer, indent);
+			writer.write(k<phases.size()-1?",\n":"\n");
+		}
+	}
+
+	private static String json(Object value) {
+		if(value instanceof Number || value instanceof Boolean)return String.valueOf(value);
+		return "\""+escape(String.valueOf(value))+"\"";
+	}
+
+	private static String escape(String text) {
+		StringBuilder builder = new StringBuilder(text.length());
+		for(int k=0;k<text.length();k++) {
+			char c = text.charAt(k);
+			if(c=='"' || c=='\\')builder.append('\\').append(c);
+			else if(c<0x20)builder.append(String.format("\\u%04x", (int)c));
+			else builder.append(c);
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,189 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * The order in which the HashMap based graph listed its nodes in {@link Graph#getAllNodes()}, which decides the order of the local
+ * maximums and so the ids of the communities. The successor lists were kept in a HashMap filled in order of first appearance of
+ * each source, and the nodes were listed by walking its keys, each key followed by its successors not listed yet.
+ * <p>
+ * The order is found again without building that map: a HashMap created with the default size walks its buckets in index order
+ * and the keys of a bucket in insertion order, so the rank of a key only depends on its hash code, on the number of keys and on
+ * when it was put, see {@link #hashKey(String, int, int)}. This is exact as long as no bucket held more than 8 keys at once, the map
+ * then turns the bucket into a tree, which the spread of String hash codes makes very unlikely.
+ * <p>
+ * In an undirected graph a node is therefore listed with the key that comes first among itself and its neighbours, right after it
+ * if it is not that key itself, in the order of its edge among the edges of the key. Local maximums can be ordered this way from
+ * their neighbourhood only, see {@link #sort(CompactGraph, boolean, int[])}.
+ * @version 1.0.17102026
+ */
+public final class NodeOrder {
+
+	private NodeOrder() {
+	}
+
+	/**
+	 * @param keys number of keys put in the map
+	 * @return the number of buckets of a HashMap created with the default size once the given number of keys were put
+	 */
+	public static int capacity(long keys) {
+		int capacity = 16;
+		while(keys>capacity/4*3 && capacity<(1<<30)) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	/**
+	 * @param label
+	 * @param capacity see {@link #capacity(long)}
+	 * @param insertion index of the put of this key, e.g. the node id when all nodes are keys put in order of first appearance
+	 * @return a value ordering the keys like the iteration of the map: the index of its bucket, then its insertion
+	 */
+	public static long hashKey(String label, int capacity, int insertion) {
+		return hashKey(label.hashCode(), capacity, insertion);
+	}
+
+	/**
+	 * @param hashCode hash code of the label, when only that is known
+	 * @param capacity
+	 * @param insertion
+	 * @return see {@link #hashKey(String, int, int)}
+	 */
+	public static long hashKey(int hashCode, int capacity, int insertion) {
+		int h = hashCode;
+		h ^= h>>>16;//spread of HashMap.hash
+		return ((long)(h&(capacity-1))<<32)|insertion;
+	}
+
+	/**
+	 * lists all nodes of a graph like the HashMap based graph did, see {@link NodeOrder}. The keys are the nodes with successors,
+	 * put in the order of their first edge, and the successors of a key follow the order of its edges.
+	 * @param graph a graph whose edge ids follow the edge list, see {@link CompactGraph#getSlotsInEdgeOrder()}
+	 * @return the ids of the nodes in listing order
+	 */
+	public static int[] listing(CompactGraph graph) {
+		int n = graph.getNumberNodes();
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		int[] slots = graph.getSlotsInEdgeOrder();
+		int[] edgeIds = graph.getEdgeIds();
+
+		//the keys in order of insertion, by their first edge then id
+		long[] firstEdges = new long[n];
+		int keys = 0;
+		for(int u=0;u<n;u++) {
+			if(offsets[u]<offsets[u+1])firstEdges[keys++] = ((long)edgeIds[slots[offsets[u]]]<<32)|u;
+		}
+		Arrays.sort(firstEdges, 0, keys);
+		int capacity = capacity(keys);
+		long[] order = new long[keys];
+		for(int k=0;k<keys;k++) {
+			order[k] = hashKey(graph.getLabel((int)firstEdges[k]), capacity, k);
+		}
+		Arrays.sort(order);
+
+		int[] listing = new int[n];
+		boolean[] listed = new boolean[n];
+		int count = 0;
+		for(long key:order) {
+			int u = (int)firstEdges[(int)key];
+			if(!listed[u]) {
+				listed[u] = true;
+				listing[count++] = u;
+			}
+			for(int k=offsets[u];k<offsets[u+1];k++) {
+				int v = targets[slots[k]];
+				if(!listed[v]) {
+					listed[v] = true;
+					listing[count++] = v;
+				}
+			}
+		}
+		for(int u=0;u<n;u++) {
+			if(!listed[u])listing[count++] = u;//nodes without any edge, not part of the map
+		}
+		return listing;
+	}
+
+	/**
+	 * sorts nodes of a graph in listing order, see {@link #listing(CompactGraph)}. When the graph is undirected with nodes numbered
+	 * in order of their first edge, as loaded from an edge list, the position of each node is found from its neighbourhood, without
+	 * listing the whole graph.
+	 * @param graph a graph whose edge ids follow the edge list
+	 * @param directed
+	 * @param nodes sorted in place
+	 */
+	public static void sort(CompactGraph graph, boolean directed, int[] nodes) {
+		int n = graph.getNumberNodes();
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		int[] slots = graph.getSlotsInEdgeOrder();
+		int[] edgeIds = graph.getEdgeIds();
+		boolean byFirstEdge = !directed;
+		for(int u=0;u<n && byFirstEdge;u++) {
+			byFirstEdge = offsets[u]<offsets[u+1] && (u==0 || edgeIds[slots[offsets[u]]]>=edgeIds[slots[offsets[u-1]]]);
+		}
+		if(!byFirstEdge) {
+			int[] listing = listing(graph);
+			long[] positions = new long[n];
+			for(int k=0;k<n;k++) {
+				positions[listing[k]] = k;
+			}
+			long[] sorted = new long[nodes.length];
+			for(int k=0;k<nodes.length;k++) {
+				sorted[k] = (positions[nodes[k]]<<32)|nodes[k];
+			}
+			Arrays.sort(sorted);
+			for(int k=0;k<nodes.length;k++) {
+				nodes[k] = (int)sorted[k];
+			}
+			return;
+		}
+
+		//all nodes are keys, put in id order
+		int capacity = capacity(n);
+		long[] keys = new long[nodes.length];
+		long[] edges = new long[nodes.length];
+		for(int k=0;k<nodes.length;k++) {
+			int u = nodes[k];
+			keys[k] = hashKey(graph.getLabel(u), capacity, u);
+			edges[k] = -1;
+			for(int slot=offsets[u];slot<offsets[u+1];slot++) {
+				int v = targets[slot];
+				long key = hashKey(graph.getLabel(v), capacity, v);
+				if(key<keys[k]) {
+					keys[k] = key;
+					edges[k] = edgeIds[slot];
+				}
+			}
+		}
+		sort(nodes, keys, edges);
+	}
+
+	/**
+	 * sorts nodes of an undirected graph in listing order from their neighbourhood
+	 * @param nodes sorted in place
+	 * @param keys for each entry of nodes, the smallest {@link #hashKey(String, int, int)} among the node and its neighbours
+	 * @param edges for each entry of nodes, -1 if the node is that key itself, otherwise the position in the edge list of its edge
+	 * to that key, sorted along with nodes
+	 */
+	public static void sort(int[] nodes, long[] keys, long[] edges) {
+		Integer[] entries = new Integer[nodes.length];
+		for(int k=0;k<entries.length;k++) {
+			entries[k] = k;
+		}
+		Arrays.sort(entries, (a, b) -> keys[a]!=keys[b]?Long.compare(keys[a], keys[b]):Long.compare(edges[a], edges[b]));
+		int[] sortedNodes = new int[nodes.length];
+		long[] sortedKeys = new long[nodes.length];
+		long[] sortedEdges = new long[nodes.length];
+		for(int k=0;k<entries.length;k++) {
+			sortedNodes[k] = nodes[entries[k]];
+			sortedKeys[k] = keys[entries[k]];
+			sortedEdges[k] = edges[entries[k]];
+		}
+		System.arraycopy(sortedNodes, 0, nodes, 0, nodes.length);
+		System.arraycopy(sortedKeys, 0, keys, 0, nodes.length);
+		System.arraycopy(sortedEdges, 0, edges, 0, nodes.length);
+	}
+}
@@ -0,0 +1,57 @@
+package utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a body over an int range on a fork-join pool, splitting the range in halves down to a grain size.
+ * @version 1.0.17102026
+ */
+@SuppressWarnings("serial")
+public class RangeTask extends RecursiveAction {
+
+	/**
+	 * work done on a sub-range [from, to)
+	 */
+	public interface Body {
+		void run(int from, int to);
+	}
+
+	private final Body body;
+	private final int from;
+	private final int to;
+	private final int grain;
+
+	private RangeTask(Body body, int from, int to, int grain) {
+		this.body = body;
+		this.from = from;
+		this.to = to;
+		this.grain = grain;
+	}
+
+	/**
+	 * runs body over [from, to)
+	 * @param pool the pool to run on, null to run in the calling thread
+	 * @param from
+	 * @param to
+	 * @param grain sub-ranges smaller than this are not split
+	 * @param body
+	 */
+	public static void run(ForkJoinPool pool, int from, int to, int grain, Body body) {
+		if(pool==null || to-from<=grain) {
+			if(from<to)body.run(from, to);
+			return;
+		}
+		pool.invoke(new RangeTask(body, from, to, Math.max(1, grain)));
+	}
+
+	@Override
+	protected void compute() {
+		if(to-from>grain) {
+			int middle = (from+to)>>>1;
+			invokeAll(new RangeTask(body, from, middle, grain), new RangeTask(body, middle, to, grain));
+		}else if(from<to) {
+			body.run(from, to);
+		}
+	}
+}
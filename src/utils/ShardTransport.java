@@ -0,0 +1,72 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Message passing between the processes of a partitioned run, one process per shard. The exchanges are bulk-synchronous: in a
+ * round every shard sends one message to each other shard, then waits for the messages of all others before going on, so the
+ * shards move from round to round together. Messages of a pair of shards are delivered in round order.
+ * @version 1.0.17102026
+ */
+public interface ShardTransport extends Closeable {
+
+	/**
+	 * @return the shard of this process, from 0 to {@link #getSize()}-1
+	 */
+	int getRank();
+
+	/**
+	 * @return the number of shards
+	 */
+	int getSize();
+
+	/**
+	 * one round: sends messages[s] to each shard s other than this one, and waits for the message of each other shard
+	 * @param messages one message per shard, null for an empty message; the entry of this shard is not sent
+	 * @return the message received from each shard, empty for this shard
+	 * @throws IOException
+	 */
+	byte[][] exchange(byte[][] messages) throws IOException;
+
+	/**
+	 * opens the transport described by spec:
+	 * <ul>
+	 * <li>socket, socket:port: TCP connections between the shards on this machine, shard s listens on port+s
+	 * ({@link SocketTransport#DEFAULT_PORT} by default)</li>
+	 * <li>socket:host:port,host:port,...: one address per shard</li>
+	 * <li>file:folder: message files in a folder shared by the shards</li>
+	 * </ul>
+	 * @param spec
+	 * @param rank
+	 * @param size
+	 * @param timeout milliseconds to wait for another shard, 0 to wait forever
+	 * @return
+	 * @throws IOException
+	 */
+	static ShardTransport open(String spec, int rank, int size, long timeout) throws IOException {
+		if(spec.startsWith("file:")) {
+			return new FileTransport(new File(spec.substring(5)), rank, size, timeout);
+		}
+		if(!spec.equals("socket") && !spec.startsWith("socket:")) {
+			throw new IllegalArgumentException("unknown transport "+spec+", expected socket[:port|:host:port,...] or file:folder");
+		}
+		InetSocketAddress[] addresses = new InetSocketAddress[size];
+		String[] hosts = spec.length()>7?spec.substring(7).split(","):new String[0];
+		if(hosts.length>1 || (hosts.length==1 && hosts[0].contains(":"))) {
+			if(hosts.length!=size)throw new IllegalArgumentException(hosts.length+" addresses given for "+size+" shards");
+			for(int s=0;s<size;s++) {
+				int colon = hosts[s].lastIndexOf(':');
+				addresses[s] = new InetSocketAddress(hosts[s].substring(0, colon), Integer.parseInt(hosts[s].substring(colon+1)));
+			}
+		}else {
+			int port = hosts.length==1?Integer.parseInt(hosts[0]):SocketTransport.DEFAULT_PORT;
+			for(int s=0;s<size;s++) {
+				addresses[s] = new InetSocketAddress("127.0.0.1", port+s);
+			}
+		}
+		return new SocketTransport(addresses, rank, timeout);
+	}
+}
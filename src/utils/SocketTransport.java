@@ -0,0 +1,170 @@
+package utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * {@link ShardTransport} over TCP, one connection per pair of shards. Shard s listens on its address, connects to the shards
+ * before it (retrying until they listen) and accepts the connections of the shards after it. In a round the messages are
+ * written by one thread per peer while the calling thread reads, so two shards sending large messages to each other never
+ * block on full socket buffers. A message is its length followed by its bytes.
+ * @version 1.0.17102026
+ */
+public final class SocketTransport implements ShardTransport {
+
+	/**
+	 * port of shard 0 when none is given, shard s listens on DEFAULT_PORT+s
+	 */
+	public static final int DEFAULT_PORT = 47100;
+	private static final int BUFFER = 1<<16;
+	private static final long RETRY = 50;
+
+	private final int rank;
+	private final Socket[] sockets;
+	private final DataInputStream[] inputs;
+	private final DataOutputStream[] outputs;
+	private final ExecutorService senders;
+
+	/**
+	 * connects this shard to all others, returns when all connections are open
+	 * @param addresses address of each shard
+	 * @param rank the shard of this process
+	 * @param timeout milliseconds to wait for another shard, 0 to wait forever
+	 * @throws IOException
+	 */
+	public SocketTransport(InetSocketAddress[] addresses, int rank, long timeout) throws IOException {
+		int size = addresses.length;
+		this.rank = rank;
+		this.sockets = new Socket[size];
+		this.inputs = new DataInputStream[size];
+		this.outputs = new DataOutputStream[size];
+		try(ServerSocket server = new ServerSocket()) {
+			server.setReuseAddress(true);
+			server.bind(addresses[rank], size);
+			server.setSoTimeout((int)Math.min(timeout, Integer.MAX_VALUE));
+			long deadline = timeout>0?System.currentTimeMillis()+timeout:Long.MAX_VALUE;
+			for(int s=0;s<rank;s++) {
+				Socket socket = connect(addresses[s], s, deadline);
+				new DataOutputStream(socket.getOutputStream()).writeInt(rank);
+				open(s, socket, timeout);
+			}
+			for(int k=rank+1;k<size;k++) {
+				Socket socket = server.accept();
+				int s = new DataInputStream(socket.getInputStream()).readInt();
+				if(s<=rank || s>=size || sockets[s]!=null) {
+					socket.close();
+					throw new IOException("unexpected connection from shard "+s);
+				}
+				open(s, socket, timeout);
+			}
+		}catch (IOException e) {
+			close();
+			throw e;
+		}
+		this.senders = Executors.newFixedThreadPool(Math.max(1, size-1), task -> {
+			Thread thread = new Thread(task, "shard-sender");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	private static Socket connect(InetSocketAddress address, int shard, long deadline) throws IOException {
+		while(true) {
+			Socket socket = new Socket();
+			try {
+				socket.connect(address);
+				return socket;
+			}catch (ConnectException e) {
+				socket.close();
+				//the shard is not listening yet
+				if(System.currentTimeMillis()>deadline)throw new IOException("shard "+shard+" is not listening on "+address);
+				try {
+					Thread.sleep(RETRY);
+				}catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					throw new IOException("interrupted while connecting to shard "+shard);
+				}
+			}
+		}
+	}
+
+	private void open(int shard, Socket socket, long timeout) throws IOException {
+		socket.setTcpNoDelay(true);
+		socket.setSoTimeout((int)Math.min(timeout, Integer.MAX_VALUE));
+		sockets[shard] = socket;
+		inputs[shard] = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER));
+		outputs[shard] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER));
+	}
+
+	@Override
+	public int getRank() {
+		return rank;
+	}
+
+	@Override
+	public int getSize() {
+		return sockets.length;
+	}
+
+	@Override
+	public byte[][] exchange(byte[][] messages) throws IOException {
+		int size = sockets.length;
+		ArrayList<Future<?>> sent = new ArrayList<>(size);
+		for(int s=0;s<size;s++) {
+			if(s==rank)continue;
+			DataOutputStream output = outputs[s];
+			byte[] message = messages[s]==null?new byte[0]:messages[s];
+			sent.add(senders.submit(() -> {
+				output.writeInt(message.length);
+				output.write(message);
+				output.flush();
+				return null;
+			}));
+		}
+		byte[][] received = new byte[size][];
+		received[rank] = new byte[0];
+		for(int s=0;s<size;s++) {
+			if(s==rank)continue;
+			received[s] = new byte[inputs[s].readInt()];
+			inputs[s].readFully(received[s]);
+		}
+		for(Future<?> future:sent) {
+			try {
+				future.get();
+			}catch (ExecutionException e) {
+				throw e.getCause() instanceof IOException?(IOException)e.getCause():new IOException(e.getCause());
+			}catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("interrupted while sending");
+			}
+		}
+		return received;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(senders!=null)senders.shutdownNow();
+		IOException failure = null;
+		for(Socket socket:sockets) {
+			if(socket==null)continue;
+			try {
+				socket.close();
+			}catch (IOException e) {
+				failure = e;
+			}
+		}
+		if(failure!=null)throw failure;
+	}
+}
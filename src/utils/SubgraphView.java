@@ -0,0 +1,201 @@
+package utils;
+
+import java.util.BitSet;
+
+/**
+ * Subgraph of a {@link CompactGraph} restricted by a visibility mask. The base graph is never copied, hiding or unhiding a node
+ * flips one bit, and every access filters the successors through the mask, so several views with different masks can share the
+ * same base graph. Use {@link #toCompactGraph()} when an algorithm needs the visible part as a graph of its own.
+ * @version 1.1.17102026
+ */
+public final class SubgraphView {
+
+	private final CompactGraph base;
+	private final BitSet visible;
+
+	/**
+	 * creates a view where all nodes of the base graph are visible
+	 * @param base
+	 */
+	public SubgraphView(CompactGraph base) {
+		this.base = base;
+		this.visible = new BitSet(base.getNumberNodes());
+		visible.set(0, base.getNumberNodes());
+	}
+
+	/**
+	 * creates a view on the same base graph with a copy of the mask of the given view
+	 * @param other
+	 */
+	public SubgraphView(SubgraphView other) {
+		this.base = other.base;
+		this.visible = (BitSet)other.visible.clone();
+	}
+
+	public CompactGraph getBase() {
+		return base;
+	}
+
+	/**
+	 * @param node id in the base graph
+	 * @return
+	 */
+	public boolean isVisible(int node) {
+		return visible.get(node);
+	}
+
+	public void hide(int node) {
+		visible.clear(node);
+	}
+
+	public void unhide(int node) {
+		visible.set(node);
+	}
+
+	public void hide(int[] nodes) {
+		for(int node:nodes) {
+			visible.clear(node);
+		}
+	}
+
+	public void unhide(int[] nodes) {
+		for(int node:nodes) {
+			visible.set(node);
+		}
+	}
+
+	public void hideAll() {
+		visible.clear();
+	}
+
+	public void unhideAll() {
+		visible.set(0, base.getNumberNodes());
+	}
+
+	/**
+	 * hides all nodes but the given ones
+	 * @param nodes ids in the base graph
+	 */
+	public void keepOnly(int[] nodes) {
+		visible.clear();
+		unhide(nodes);
+	}
+
+	/**
+	 * @return the number of visible nodes
+	 */
+	public int getNumberNodes() {
+		return visible.cardinality();
+	}
+
+	/**
+	 * @return ids of the visible nodes, sorted
+	 */
+	public int[] getNodes() {
+		int[] nodes = new int[visible.cardinality()];
+		int count = 0;
+		for(int node=visible.nextSetBit(0);node>=0;node=visible.nextSetBit(node+1)) {
+			nodes[count++] = node;
+		}
+		return nodes;
+	}
+
+	/**
+	 * @param node
+	 * @return the number of visible successors of a visible node, 0 for a hidden node
+	 */
+	public int getDegree(int node) {
+		if(!visible.get(node))return 0;
+		int[] offsets = base.getOffsets();
+		int[] targets = base.getTargets();
+		int degree = 0;
+		for(int slot=offsets[node];slot<offsets[node+1];slot++) {
+			if(visible.get(targets[slot]))degree++;
+		}
+		return degree;
+	}
+
+	/**
+	 * @param node
+	 * @return the visible successors of a visible node, sorted, empty for a hidden node
+	 */
+	public int[] getSuccessors(int node) {
+		int[] successors = new int[getDegree(node)];
+		if(successors.length==0)return successors;
+		int[] offsets = base.getOffsets();
+		int[] targets = base.getTargets();
+		int count = 0;
+		for(int slot=offsets[node];slot<offsets[node+1];slot++) {
+			if(visible.get(targets[slot]))successors[count++] = targets[slot];
+		}
+		return successors;
+	}
+
+	/**
+	 * @param u
+	 * @param slot a slot of u in the base graph
+	 * @return true if both ends of the edge in the given slot are visible
+	 */
+	public boolean isVisible(int u, int slot) {
+		return visible.get(u) && visible.get(base.getTargets()[slot]);
+	}
+
+	/**
+	 * @return the number of edge ids of the base graph with both ends visible, i.e. the number of visible undirected edges
+	 */
+	public int getNumberEdges() {
+		int[] offsets = base.getOffsets();
+		int[] targets = base.getTargets();
+		int edges = 0;
+		for(int u=visible.nextSetBit(0);u>=0;u=visible.nextSetBit(u+1)) {
+			for(int slot=offsets[u];slot<offsets[u+1];slot++) {
+				if(visible.get(targets[slot]) && base.ownsEdge(u, slot))edges++;
+			}
+		}
+		return edges;
+	}
+
+	/**
+	 * copies the visible part into a graph of its own, the visible nodes keep the relative order of their base ids and the visible
+	 * edges the relative order of their base edge ids, shared by the same slots
+	 * @return
+	 */
+	public CompactGraph toCompactGraph() {
+		int n = base.getNumberNodes();
+		int[] newIds = new int[n];
+		int count = 0;
+		for(int node=0;node<n;node++) {
+			newIds[node] = visible.get(node)?count++:-1;
+		}
+		String[] labels = new String[count];
+		int[] offsets = new int[count+1];
+		for(int node=visible.nextSetBit(0);node>=0;node=visible.nextSetBit(node+1)) {
+			labels[newIds[node]] = base.getLabel(node);
+			offsets[newIds[node]+1] = offsets[newIds[node]]+getDegree(node);
+		}
+		int[] baseOffsets = base.getOffsets();
+		int[] baseTargets = base.getTargets();
+		int[] baseEdgeIds = base.getEdgeIds();
+		int[] newEdgeIds = new int[base.getNumberEdgeIds()];
+		int[] targets = new int[offsets[count]];
+		int[] edgeIds = new int[offsets[count]];
+		int slot = 0;
+		for(int node=visible.nextSetBit(0);node>=0;node=visible.nextSetBit(node+1)) {
+			for(int s=baseOffsets[node];s<baseOffsets[node+1];s++) {
+				int target = newIds[baseTargets[s]];
+				if(target<0)continue;
+				targets[slot] = target;//ids are renumbered in order, targets stay sorted
+				edgeIds[slot++] = baseEdgeIds[s];
+				newEdgeIds[baseEdgeIds[s]] = 1;
+			}
+		}
+		int numberEdgeIds = 0;
+		for(int e=0;e<newEdgeIds.length;e++) {
+			if(newEdgeIds[e]!=0)newEdgeIds[e] = numberEdgeIds++;
+		}
+		for(slot=0;slot<edgeIds.length;slot++) {
+			edgeIds[slot] = newEdgeIds[edgeIds[slot]];
+		}
+		return new CompactGraph(labels, offsets, targets, edgeIds, numberEdgeIds);
+	}
+}
@@ -1,8 +1,9 @@
 package utils;
 
 /**
- * computes wall clock elapsed time from the instant of its call until calling {@link TimeTracker#stop()}
- *
+ * computes wall clock elapsed time from the instant of its call until calling {@link TimeTracker#stop()}, measured with
+ * {@link System#nanoTime()} so that it is not affected by changes of the system clock. Phases of a run are timed with {@link Metrics}.
+ * @version 1.1.17102026
  */
 public class TimeTracker {
 
@@ -13,17 +14,25 @@ public class TimeTracker {
 		restart();
 	}
 	public void restart() {
-		startTime = System.currentTimeMillis();
+		startTime = System.nanoTime();
 	}
 	
+	/**
+	 * @return the elapsed time in milliseconds
+	 */
 	public long stop() {
-		stopTime = System.currentTimeMillis();
+		stopTime = System.nanoTime();
+		return getTimeInMillis();
+	}
+	
+	public long getTimeInNanos() {
+		if(stopTime==-1)return -1;
 		return stopTime - startTime;
 	}
 	
 	public long getTimeInMillis() {
 		if(stopTime==-1)return -1;
-		return stopTime - startTime;
+		return (stopTime - startTime)/1000000;
 	}
 	
 	public double getTimeInSec() {
@@ -0,0 +1,56 @@
+package utils;
+
+/**
+ * Disjoint sets over the elements [0,n), with union by size and path halving.
+ * @version 1.0.17102026
+ */
+public class UnionFind {
+
+	private final int[] parent;
+	private final int[] size;
+
+	public UnionFind(int n) {
+		parent = new int[n];
+		size = new int[n];
+		for(int i=0;i<n;i++) {
+			parent[i] = i;
+			size[i] = 1;
+		}
+	}
+
+	/**
+	 * @param element
+	 * @return the root of the set containing the given element
+	 */
+	public int find(int element) {
+		while(parent[element]!=element) {
+			parent[element] = parent[parent[element]];
+			element = parent[element];
+		}
+		return element;
+	}
+
+	/**
+	 * merges the sets containing a and b
+	 * @param a
+	 * @param b
+	 * @return the root of the merged set
+	 */
+	public int union(int a, int b) {
+		int rootA = find(a);
+		int rootB = find(b);
+		if(rootA==rootB)return rootA;
+		if(size[rootA]<size[rootB]) {
+			int swap = rootA;
+			rootA = rootB;
+			rootB = swap;
+		}
+		parent[rootB] = rootA;
+		size[rootA] += size[rootB];
+		return rootA;
+	}
+
+	public int size() {
+		return parent.length;
+	}
+}
@@ -0,0 +1,114 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Sorted distinct values of a set of weights, kept in a primitive array. Building costs one sort, O(n log n), and the queries
+ * are binary searches that never box a value. NaN values are ignored, and 0.0 and -0.0 count as one value like with
+ * <code>==</code>. Instances are immutable.
+ * @version 1.0.17102026
+ */
+public final class WeightStatistics {
+
+	public static final WeightStatistics EMPTY = new WeightStatistics(new double[0]);
+	/**
+	 * below this number of values {@link #of(double[], boolean)} sorts in the calling thread
+	 */
+	public static int parallelThreshold = 1<<16;
+
+	private final double[] values;
+
+	private WeightStatistics(double[] values) {
+		this.values = values;
+	}
+
+	/**
+	 * @param weights the weights, not modified
+	 * @param parallel if true and there are many weights, they are sorted with {@link Arrays#parallelSort(double[])}
+	 * @return
+	 */
+	public static WeightStatistics of(double[] weights, boolean parallel) {
+		double[] sorted = weights.clone();
+		if(parallel && sorted.length>=parallelThreshold)Arrays.parallelSort(sorted);
+		else Arrays.sort(sorted);
+		int count = 0;
+		for(double weight:sorted) {
+			if(Double.isNaN(weight))break;//NaN values are sorted last
+			if(count==0 || weight!=sorted[count-1])sorted[count++] = weight;
+		}
+		return new WeightStatistics(count==sorted.length?sorted:Arrays.copyOf(sorted, count));
+	}
+
+	/**
+	 * @return the number of distinct values
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * @param k index in [0, size())
+	 * @return the k-th smallest distinct value
+	 */
+	public double get(int k) {
+		return values[k];
+	}
+
+	public double getMin() {
+		return values[0];
+	}
+
+	public double getMax() {
+		return values[values.length-1];
+	}
+
+	/**
+	 * @param value
+	 * @return the number of distinct values strictly smaller than the given value
+	 */
+	public int rank(double value) {
+		int low = 0;
+		int high = values.length;
+		while(low<high) {
+			int middle = (low+high)>>>1;
+			if(values[middle]<value)low = middle+1;
+			else high = middle;
+		}
+		return low;
+	}
+
+	public boolean contains(double value) {
+		int rank = rank(value);
+		return rank<values.length && values[rank]==value;
+	}
+
+	/**
+	 * nearest rank quantile over the distinct values
+	 * @param q in [0,1]
+	 * @return the smallest distinct value such that a fraction q of the distinct values are smaller or equal to it
+	 */
+	public double quantile(double q) {
+		if(q<0 || q>1)throw new IllegalArgumentException("quantile must be in [0,1]: "+q);
+		int k = (int)Math.ceil(q*values.length)-1;
+		return values[Math.max(k, 0)];
+	}
+
+	/**
+	 * @return a copy of the sorted distinct values
+	 */
+	public double[] toArray() {
+		return values.clone();
+	}
+
+	/**
+	 * @return the sorted distinct values in a new list, for callers that expect boxed values
+	 */
+	public ArrayList<Double> toList() {
+		ArrayList<Double> list = new ArrayList<>(values.length);
+		for(double value:values) {
+			list.add(value);
+		}
+		return list;
+	}
+}
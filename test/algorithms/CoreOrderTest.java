@@ -0,0 +1,40 @@
+package algorithms;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import networkanalysis.NeighborhoodOverlap;
+import utils.Graph;
+
+/**
+ * the maximums are merged into cores by visiting their successors in the order of their lists, so the community ids don't depend
+ * on how the graph is stored
+ * @version 1.0.17102026
+ */
+public class CoreOrderTest {
+
+	@Test
+	public void ringLatticeKeepsTheIdsOfTheSuccessorLists() {
+		//every node is a maximum of a 30-node ring lattice where each node is linked to the two nodes on each side
+		int n = 30;
+		HashMap<String, ArrayList<String>> lists = new HashMap<>();
+		for(int i=0;i<n;i++) {
+			ArrayList<String> successors = new ArrayList<>();
+			for(int d:new int[] {-2, -1, 1, 2}) {
+				successors.add(String.valueOf((i+d+n)%n));
+			}
+			lists.put(String.valueOf(i), successors);
+		}
+		Graph<String> graph = new Graph<>(lists);
+		NeighborhoodOverlap.calculate(graph);
+		HashMap<Integer, ArrayList<String>> groups = new CoreExpansionAlgorithm(graph).generateClasses(graph);
+
+		assertEquals(1, groups.size());
+		assertEquals(n, new HashSet<>(groups.get(0)).size());
+	}
+}
@@ -0,0 +1,119 @@
+package algorithms;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import networkanalysis.NeighborhoodOverlap;
+import utils.EdgeListLoader;
+import utils.Graph;
+
+/**
+ * after each batch the communities are those of a full run on the updated edge list, inserted edges being appended to it
+ * @version 1.0.17102026
+ */
+public class DynamicCoreExpansionTest {
+
+	@Test
+	public void singleChangesGiveTheCommunitiesOfAFullRun() throws IOException {
+		ArrayList<String[]> edges = blocks(new Random(7));
+		Random random = new Random(11);
+		for(int trial=0;trial<30;trial++) {
+			ArrayList<String[]> updated = new ArrayList<>(edges);
+			DynamicCoreExpansion dynamic = new DynamicCoreExpansion(load(edges));
+			dynamic.apply(change(updated, random, new DynamicCoreExpansion.Batch()));
+			assertEquals("trial "+trial, partition(fullRun(updated)), partition(dynamic.getCommunities()));
+		}
+	}
+
+	@Test
+	public void batchesGiveTheCommunitiesOfAFullRun() throws IOException {
+		ArrayList<String[]> edges = blocks(new Random(3));
+		Random random = new Random(5);
+		DynamicCoreExpansion dynamic = new DynamicCoreExpansion(load(edges));
+		for(int b=0;b<10;b++) {
+			DynamicCoreExpansion.Batch batch = new DynamicCoreExpansion.Batch();
+			for(int k=0;k<5;k++) {
+				change(edges, random, batch);
+			}
+			dynamic.apply(batch);
+			assertEquals("batch "+b, partition(fullRun(edges)), partition(dynamic.getCommunities()));
+		}
+	}
+
+	/**
+	 * 4 blocks of 30 nodes, dense inside and sparse between them
+	 */
+	private static ArrayList<String[]> blocks(Random random) {
+		ArrayList<String[]> edges = new ArrayList<>();
+		for(int a=0;a<120;a++) {
+			for(int b=a+1;b<120;b++) {
+				if(random.nextDouble()<(a/30==b/30?0.25:0.02))edges.add(new String[] {String.valueOf(a), String.valueOf(b)});
+			}
+		}
+		return edges;
+	}
+
+	/**
+	 * deletes a random edge or appends a new one, to both the edge list and the batch
+	 */
+	private static DynamicCoreExpansion.Batch change(ArrayList<String[]> edges, Random random, DynamicCoreExpansion.Batch batch) {
+		if(random.nextBoolean()) {
+			String[] edge = edges.remove(random.nextInt(edges.size()));
+			return batch.delete(edge[0], edge[1]);
+		}
+		HashSet<String> keys = new HashSet<>();
+		for(String[] edge:edges) {
+			keys.add(edge[0]+","+edge[1]);
+			keys.add(edge[1]+","+edge[0]);
+		}
+		String a, b;
+		do {
+			a = String.valueOf(random.nextInt(120));
+			b = String.valueOf(random.nextInt(120));
+		}while(a.equals(b) || keys.contains(a+","+b));
+		edges.add(new String[] {a, b});
+		return batch.insert(a, b);
+	}
+
+	private static HashMap<Integer, ArrayList<String>> fullRun(ArrayList<String[]> edges) throws IOException {
+		Graph<String> graph = load(edges);
+		NeighborhoodOverlap.calculate(graph);
+		return new CoreExpansionAlgorithm(graph).generateClasses(graph);
+	}
+
+	/**
+	 * @return the communities without their ids
+	 */
+	private static HashSet<TreeSet<String>> partition(HashMap<Integer, ArrayList<String>> groups) {
+		HashSet<TreeSet<String>> partition = new HashSet<>();
+		for(ArrayList<String> group:groups.values()) {
+			partition.add(new TreeSet<>(group));
+		}
+		return partition;
+	}
+
+	private static Graph<String> load(ArrayList<String[]> edges) throws IOException {
+		StringBuilder lines = new StringBuilder("Source\tTarget\n");
+		for(String[] edge:edges) {
+			lines.append(edge[0]).append('\t').append(edge[1]).append('\n');
+		}
+		File file = File.createTempFile("edges", ".dat");
+		try {
+			Files.write(file.toPath(), lines.toString().getBytes(StandardCharsets.UTF_8));
+			return EdgeListLoader.load(file.getPath(), false, false, 1);
+		}finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+/**
+ * the two directions of a directed edge have their own edge ids, so a-&gt;b and b-&gt;a keep different weights
+ * @version 1.0.17102026
+ */
+public class DirectedEdgeWeightsTest {
+
+	private static final double DELTA = 0;
+
+	@Test
+	public void loaderKeepsTheWeightOfEachDirection() throws IOException {
+		Graph<String> graph = load("Source\tTarget\tweight\na\tb\t0.25\nb\ta\t0.75\nb\tc\t0.5\n", true, true);
+		EdgeWeights weights = graph.getEdgeWeights();
+		assertEquals(3, graph.getCompactGraph().getNumberEdgeIds());
+		assertEquals(0.25, weights.get("a", "b"), DELTA);
+		assertEquals(0.75, weights.get("b", "a"), DELTA);
+		assertEquals(0.25, graph.getOutWeight("a"), DELTA);
+		assertEquals(1.25, graph.getOutWeight("b"), DELTA);
+	}
+
+	@Test
+	public void undirectedEdgesShareOneId() throws IOException {
+		Graph<String> graph = load("Source\tTarget\tweight\na\tb\t0.25\nb\ta\t0.75\nb\tc\t0.5\n", false, true);
+		EdgeWeights weights = graph.getEdgeWeights();
+		assertEquals(2, graph.getCompactGraph().getNumberEdgeIds());
+		//the last line of an edge gives its weight
+		assertEquals(0.75, weights.get("a", "b"), DELTA);
+		assertEquals(0.75, weights.get("b", "a"), DELTA);
+	}
+
+	@Test
+	public void fromMapReadsBothDirections() throws IOException {
+		Graph<String> graph = load("a\tb\nb\ta\nb\tc\n", true, false);
+		HashMap<String, Double> map = new HashMap<>();
+		map.put("a,b", 0.2);
+		map.put("b,a", 0.6);
+		map.put("b,c", 0.4);
+		CompactGraph compact = graph.getCompactGraph();
+		EdgeWeights weights = EdgeWeights.fromMap(compact, map, 1.0);
+		assertEquals(0.2, weights.get("a", "b"), DELTA);
+		assertEquals(0.6, weights.get("b", "a"), DELTA);
+		assertEquals(map, weights.toMap());
+
+		//every slot owns its edge id
+		int[] offsets = compact.getOffsets();
+		for(int u=0;u<compact.getNumberNodes();u++) {
+			for(int slot=offsets[u];slot<offsets[u+1];slot++) {
+				assertTrue(compact.ownsEdge(u, slot));
+			}
+		}
+		int[] ids = compact.getEdgeIds().clone();
+		Arrays.sort(ids);
+		assertEquals(Arrays.toString(new int[] {0, 1, 2}), Arrays.toString(ids));
+	}
+
+	@Test
+	public void remapKeepsBothDirections() throws IOException {
+		Graph<String> graph = load("Source\tTarget\tweight\na\tb\t0.25\nb\ta\t0.75\nb\tc\t0.5\n", true, true);
+		graph.hideNode("c");
+		EdgeWeights weights = graph.getEdgeWeights();
+		assertEquals(2, weights.getGraph().getNumberEdgeIds());
+		assertEquals(0.25, weights.get("a", "b"), DELTA);
+		assertEquals(0.75, weights.get("b", "a"), DELTA);
+	}
+
+	@Test
+	public void fromMapOnlySetsTheKeysOfTheMap() throws IOException {
+		Graph<String> graph = load("a\tb\nb\tc\nc\td\n", false, false);
+		HashMap<String, Double> map = new HashMap<>();
+		map.put("a,b", 0.25);
+		map.put("b,a", 0.25);
+		map.put("c,b", 0.5);
+		graph.setWeights(map);
+		assertEquals(map, graph.getEdgeWeights().toMap());
+		assertEquals(3, graph.getWeights().size());
+		//edges missing from the map weigh 1 in the sums
+		assertEquals(1.5, graph.getOutWeight("c"), DELTA);
+		assertEquals(1.0, graph.getWeight("c", "d"), DELTA);
+		graph.hideNode("d");
+		assertEquals(0.0, graph.getWeight("c", "d"), DELTA);
+		assertEquals(0.5, graph.getWeight("c", "b"), DELTA);
+	}
+
+	private static Graph<String> load(String edges, boolean directed, boolean loadWeights) throws IOException {
+		File file = File.createTempFile("edges", ".dat");
+		try {
+			Files.write(file.toPath(), edges.getBytes(StandardCharsets.UTF_8));
+			return EdgeListLoader.load(file.getPath(), directed, loadWeights, 1);
+		}finally {
+			file.delete();
+		}
+	}
+}